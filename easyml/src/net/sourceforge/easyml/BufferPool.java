@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BufferPool class is the pool of the byte and char buffers used by an
+ * {@linkplain EasyML} instance at stream-based serialization and
+ * de-serialization. Buffers are taken for the duration of one call and given
+ * back afterwards, so that they are reused across calls and threads, instead
+ * of being allocated per call or pinned per thread.
+ * <br/>
+ * The total size of the pooled buffers is bounded: buffers given back over
+ * the bound are left to the garbage collector.
+ * <br/>
+ * This implementation is thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooledBytes;
+    private final Queue<byte[]> byteBuffers;
+    private final Queue<char[]> charBuffers;
+    private final AtomicInteger pooledBytes;
+
+    /**
+     * Creates a new empty pool.
+     *
+     * @param bufferSize     the length of the pooled buffers
+     * @param maxPooledBytes the maximum total size, in bytes, of the pooled
+     *                       buffers, 0 to disable pooling
+     */
+    public BufferPool(int bufferSize, int maxPooledBytes) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBytes = maxPooledBytes;
+        this.byteBuffers = new ConcurrentLinkedQueue<>();
+        this.charBuffers = new ConcurrentLinkedQueue<>();
+        this.pooledBytes = new AtomicInteger();
+    }
+
+    /**
+     * Returns the length of the pooled buffers.
+     *
+     * @return the buffer size
+     */
+    public int bufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Returns the total size, in bytes, of the currently pooled buffers.
+     *
+     * @return the pooled size
+     */
+    public int pooledBytes() {
+        return this.pooledBytes.get();
+    }
+
+    /**
+     * Takes a byte buffer from this pool, creating one if the pool is empty.
+     *
+     * @return a byte buffer of {@linkplain #bufferSize()} length
+     */
+    public byte[] takeBytes() {
+        final byte[] ret = this.byteBuffers.poll();
+        if (ret == null) {
+            return new byte[this.bufferSize];
+        }
+        this.pooledBytes.addAndGet(-ret.length);
+        return ret;
+    }
+
+    /**
+     * Takes a char buffer from this pool, creating one if the pool is empty.
+     *
+     * @return a char buffer of {@linkplain #bufferSize()} length
+     */
+    public char[] takeChars() {
+        final char[] ret = this.charBuffers.poll();
+        if (ret == null) {
+            return new char[this.bufferSize];
+        }
+        this.pooledBytes.addAndGet(-ret.length * Character.BYTES);
+        return ret;
+    }
+
+    /**
+     * Gives the given byte buffer back to this pool. The buffer must no longer
+     * be used by the caller.
+     *
+     * @param buffer taken from this pool
+     */
+    public void give(byte[] buffer) {
+        if (buffer.length == this.bufferSize && this.reserve(buffer.length)) {
+            this.byteBuffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Gives the given char buffer back to this pool. The buffer must no longer
+     * be used by the caller.
+     *
+     * @param buffer taken from this pool
+     */
+    public void give(char[] buffer) {
+        if (buffer.length == this.bufferSize && this.reserve(buffer.length * Character.BYTES)) {
+            this.charBuffers.offer(buffer);
+        }
+    }
+
+    private boolean reserve(int size) {
+        int pooled;
+        do {
+            pooled = this.pooledBytes.get();
+            if (size > this.maxPooledBytes - pooled) {
+                return false;
+            }
+        } while (!this.pooledBytes.compareAndSet(pooled, pooled + size));
+        return true;
+    }
+}
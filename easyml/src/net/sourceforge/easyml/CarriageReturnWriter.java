@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * CarriageReturnWriter class is the {@linkplain Writer} filter replacing each
+ * carriage return with its character reference, <code>&amp;#13;</code>. It is
+ * used under the StAX stream writers created by EasyML, which write carriage
+ * returns in attribute values as they are, hence they would be lost to the XML
+ * end-of-line normalization at reading. The StAX writer driver never writes
+ * carriage returns of its own.
+ * <br/>
+ * This implementation is not thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class CarriageReturnWriter extends FilterWriter {
+
+    private static final String XML_LEGAL_CR = "&#13;";
+
+    /**
+     * Creates a new instance.
+     *
+     * @param out to write to
+     */
+    CarriageReturnWriter(Writer out) {
+        super(out);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void write(int c) throws IOException {
+        if (c == '\r') {
+            this.out.write(XML_LEGAL_CR);
+        } else {
+            this.out.write(c);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        final int end = off + len;
+        int from = off;
+        for (int i = off; i < end; i++) {
+            if (cbuf[i] == '\r') {
+                this.out.write(cbuf, from, i - from);
+                this.out.write(XML_LEGAL_CR);
+                from = i + 1;
+            }
+        }
+        this.out.write(cbuf, from, end - from);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        final int end = off + len;
+        int from = off;
+        for (int i = off; i < end; i++) {
+            if (str.charAt(i) == '\r') {
+                this.out.write(str, from, i - from);
+                this.out.write(XML_LEGAL_CR);
+                from = i + 1;
+            }
+        }
+        this.out.write(str, from, end - from);
+    }
+}
@@ -18,11 +18,13 @@
  */
 package net.sourceforge.easyml;
 
+import net.sourceforge.easyml.marshalling.NameToken;
+
 /**
  * DTD class contains the DTD constants.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.3.0
+ * @version 1.9.0
  * @since 1.0
  */
 public final class DTD {
@@ -62,6 +64,11 @@ public final class DTD {
      * The constant defining the <code>length</code> XML element attribute.
      */
     public static final String ATTRIBUTE_LENGTH = "length";
+    /**
+     * The constant defining the <code>scope</code> XML root element attribute,
+     * holding the reference scope, if other than the whole document.
+     */
+    public static final String ATTRIBUTE_SCOPE = "scope";
     /**
      * The constant defining the <code>base64</code> type XML element.
      */
@@ -90,6 +97,34 @@ public final class DTD {
      * The constant defining the <code>date</code> format, which is ISO-8601.
      */
     public static final String FORMAT_DATE = "yyyy-MM-dd'T'HH:mm:ss:SSS";
+    /**
+     * The token of {@linkplain #ELEMENT_NIL}.
+     */
+    public static final NameToken ELEMENT_NIL_TOKEN = new NameToken(ELEMENT_NIL);
+    /**
+     * The token of {@linkplain #ELEMENT_OBJECT}.
+     */
+    public static final NameToken ELEMENT_OBJECT_TOKEN = new NameToken(ELEMENT_OBJECT);
+    /**
+     * The token of {@linkplain #ELEMENT_ARRAY}.
+     */
+    public static final NameToken ELEMENT_ARRAY_TOKEN = new NameToken(ELEMENT_ARRAY);
+    /**
+     * The token of {@linkplain #ATTRIBUTE_IDREF}.
+     */
+    public static final NameToken ATTRIBUTE_IDREF_TOKEN = new NameToken(ATTRIBUTE_IDREF);
+    /**
+     * The token of {@linkplain #ATTRIBUTE_CLASS}.
+     */
+    public static final NameToken ATTRIBUTE_CLASS_TOKEN = new NameToken(ATTRIBUTE_CLASS);
+    /**
+     * The token of {@linkplain #ATTRIBUTE_LENGTH}.
+     */
+    public static final NameToken ATTRIBUTE_LENGTH_TOKEN = new NameToken(ATTRIBUTE_LENGTH);
+    /**
+     * The token of {@linkplain #ATTRIBUTE_SCOPE}.
+     */
+    public static final NameToken ATTRIBUTE_SCOPE_TOKEN = new NameToken(ATTRIBUTE_SCOPE);
 
     private DTD() {
     }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * DialectParser interface is the pull-parser contract of the built-in parsers
+ * of the XML dialect written by {@linkplain XMLWriter}, used by the
+ * {@linkplain XMLReaderDialectDriver}. The event constants are the same as the
+ * {@linkplain org.xmlpull.v1.XmlPullParser} ones.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @see DialectPullParser
+ * @see MappedDialectParser
+ * @since 1.9.0
+ */
+interface DialectParser {
+
+    /**
+     * Event of foreign input, which the parser does not support.
+     */
+    int FOREIGN = -1;
+    /**
+     * Event before the first read.
+     */
+    int START_DOCUMENT = 0;
+    /**
+     * Event of the input end.
+     */
+    int END_DOCUMENT = 1;
+    /**
+     * Event of an element start.
+     */
+    int START_TAG = 2;
+    /**
+     * Event of an element end.
+     */
+    int END_TAG = 3;
+    /**
+     * Event of text.
+     */
+    int TEXT = 4;
+
+    /**
+     * Returns the current event.
+     *
+     * @return the event type
+     */
+    int getEventType();
+
+    /**
+     * Returns the depth of the current element, 0 outside the root element.
+     *
+     * @return the depth
+     */
+    int getDepth();
+
+    /**
+     * Returns the canonical name of the current element start or end.
+     *
+     * @return the element name
+     */
+    String getName();
+
+    /**
+     * Returns the decoded value of the given attribute of the current element
+     * start, or null if the element has no such attribute.
+     *
+     * @param name the attribute name
+     * @return the attribute value or null
+     */
+    String getAttributeValue(String name);
+
+    /**
+     * Returns the value of the given attribute of the current element start,
+     * if it is written as a non-negative decimal int, such as the ids and
+     * lengths written by {@linkplain XMLWriter}, without creating a string.
+     *
+     * @param name the attribute name
+     * @return the int, or -1 if the element has no such attribute or if the
+     * value is written otherwise, e.g. via entities
+     */
+    int getAttributeIndex(String name);
+
+    /**
+     * Returns the current position, as line-column pair.
+     *
+     * @return the position descriptor
+     */
+    String positionDescriptor();
+
+    /**
+     * Moves to the next element start, element end, text, document end or
+     * foreign input event.
+     *
+     * @return the event type
+     * @throws IOException if reading failed
+     */
+    int next() throws IOException;
+
+    /**
+     * Moves to the next element start or end, skipping whitespace text.
+     *
+     * @return the event type, or {@linkplain #FOREIGN}
+     * @throws IOException if reading failed
+     */
+    int nextTag() throws IOException;
+
+    /**
+     * Reads the text of the current element start, moving to its end. The
+     * current element must not contain child elements.
+     *
+     * @return the text
+     * @throws IOException if reading failed
+     */
+    String nextText() throws IOException;
+
+    /**
+     * Reads the text of the current element start, moving to its end, same as
+     * {@linkplain #nextText()}, but without creating a string, if possible.
+     * The returned sequence is only valid until the next call to this parser.
+     *
+     * @return the text
+     * @throws IOException if reading failed
+     */
+    CharSequence nextTextChars() throws IOException;
+
+    /**
+     * Skips the current element start, including its content, moving to its
+     * end. The skipped content is only checked for nesting.
+     *
+     * @throws IOException if reading failed
+     */
+    void skipSubtree() throws IOException;
+
+    /**
+     * Returns the input, to be re-read from the start by another parser, if
+     * this parser stopped at the {@linkplain #FOREIGN} event.
+     *
+     * @return the input, from the start
+     * @throws IOException if the input could not be re-read
+     */
+    Reader foreignInput() throws IOException;
+}
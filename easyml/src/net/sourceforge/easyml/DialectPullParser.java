@@ -0,0 +1,817 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * DialectPullParser class is the pull-parser of the XML dialect written by
+ * {@linkplain XMLWriter}: elements, attributes, text, the predefined entities
+ * and character references. Comments, processing instructions and CDATA
+ * sections are tolerated. Namespaces are not processed, same as by the default
+ * {@linkplain org.xmlpull.v1.XmlPullParser} configuration.
+ * <br/>
+ * The input is read into a reusable <code>char[]</code> window: element names
+ * are resolved via a name table keyed on the window chars, attribute values
+ * are kept as window offsets and decoded only when requested and element
+ * subtrees are skipped by scanning the window, without events.
+ * <br/>
+ * Input declaring a DOCTYPE is foreign: the parser stops at it with the
+ * {@linkplain #FOREIGN} event, and the input can be re-read from the start via
+ * {@linkplain #foreignInput()} by a general XML parser.
+ * <br/>
+ * This implementation is not thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class DialectPullParser implements DialectParser {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NAMES_SIZE = 1024; // power of 2.
+    private static final int MAX_NAMES = NAMES_SIZE * 3 / 4;
+    private static final int MAX_ENTITY_LENGTH = 32;
+
+    private final UnaryOperator<String> symbols;
+    private final String[] rawNames; // name table: escaped names, as read.
+    private final String[] symbolNames; // name table: canonical names of rawNames.
+    private int nameCount;
+    private Reader in;
+    private char[] buf;
+    private int pos;
+    private int limit;
+    private int mark; // the start of the token being read, or -1.
+    private boolean eof;
+    private boolean prolog; // nothing is discarded from the window while in prolog.
+    private int discardedLines;
+    private int lineStart; // window offset of the current line start, negative if discarded.
+    private int eventType;
+    private int depth;
+    private String[] elementRawNames;
+    private String[] elementNames;
+    private boolean emptyElement;
+    private boolean whitespace;
+    private int attributeCount;
+    private int[] attributes; // name start, name end, value start, value end, per attribute.
+    private final StringBuilder text;
+    private CharBuffer textWindow; // lazy: view of buf, re-wrapped if buf is re-allocated.
+
+    /**
+     * Creates a new instance.
+     *
+     * @param symbols resolves the raw element names, as read, to the
+     *                canonical names returned by {@linkplain #getName()}
+     */
+    public DialectPullParser(UnaryOperator<String> symbols) {
+        this.symbols = symbols;
+        this.rawNames = new String[NAMES_SIZE];
+        this.symbolNames = new String[NAMES_SIZE];
+        this.nameCount = 0;
+        this.buf = new char[BUFFER_SIZE];
+        this.elementRawNames = new String[16];
+        this.elementNames = new String[16];
+        this.attributes = new int[4 * 8];
+        this.text = new StringBuilder();
+    }
+
+    /**
+     * Sets the input, resetting this parser but keeping its window and name
+     * table.
+     *
+     * @param in to read from
+     */
+    public void setInput(Reader in) {
+        this.in = in;
+        this.pos = 0;
+        this.limit = 0;
+        this.mark = -1;
+        this.eof = false;
+        this.prolog = true;
+        this.discardedLines = 0;
+        this.lineStart = 0;
+        this.eventType = START_DOCUMENT;
+        Arrays.fill(this.elementRawNames, 0, this.depth, null);
+        Arrays.fill(this.elementNames, 0, this.depth, null);
+        this.depth = 0;
+        this.emptyElement = false;
+        this.whitespace = false;
+        this.attributeCount = 0;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Reader foreignInput() throws IOException {
+        final PushbackReader ret = new PushbackReader(this.in, Math.max(this.limit, 1));
+        ret.unread(this.buf, 0, this.limit);
+        return ret;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int getEventType() {
+        return this.eventType;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String getName() {
+        return this.elementNames[this.depth - 1];
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String getAttributeValue(String name) {
+        final int[] a = this.attributes;
+        for (int i = 0; i < 4 * this.attributeCount; i += 4) {
+            if (regionEquals(name, this.buf, a[i], a[i + 1] - a[i])) {
+                return this.decodeAttributeValue(a[i + 2], a[i + 3]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int getAttributeIndex(String name) {
+        final int[] a = this.attributes;
+        for (int i = 0; i < 4 * this.attributeCount; i += 4) {
+            if (regionEquals(name, this.buf, a[i], a[i + 1] - a[i])) {
+                return this.parseIndex(a[i + 2], a[i + 3]);
+            }
+        }
+        return -1;
+    }
+
+    private int parseIndex(int start, int end) {
+        if (start == end || end - start > 10 || end - start > 1 && this.buf[start] == '0') {
+            return -1;
+        }
+        long ret = 0;
+        for (int i = start; i < end; i++) {
+            final int c = this.buf[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            ret = 10 * ret + (c - '0');
+        }
+        return ret <= Integer.MAX_VALUE ? (int) ret : -1;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String positionDescriptor() {
+        int line = this.discardedLines + 1;
+        int start = this.lineStart;
+        final int end = Math.min(this.pos, this.limit);
+        for (int i = Math.max(start, 0); i < end; i++) {
+            if (this.buf[i] == '\n') {
+                line++;
+                start = i + 1;
+            }
+        }
+        return line + "," + (end - start + 1);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int next() throws IOException {
+        this.attributeCount = 0;
+        if (this.emptyElement) {
+            this.emptyElement = false;
+            return this.eventType = END_TAG;
+        }
+        if (this.eventType == END_TAG) {
+            this.pop();
+        }
+        while (true) {
+            if (this.pos == this.limit && !this.readMore()) {
+                if (this.depth > 0) {
+                    throw this.error("unexpected end of document");
+                }
+                return this.eventType = END_DOCUMENT;
+            }
+            final char c = this.buf[this.pos];
+            if (c != '<') {
+                this.skipText();
+                return this.eventType = TEXT;
+            }
+            this.ensure(2);
+            final char c2 = this.buf[this.pos + 1];
+            if (c2 == '/') {
+                this.readEndTag();
+                return this.eventType = END_TAG;
+            } else if (c2 == '?') {
+                this.skipUntil("?>", 2);
+            } else if (c2 == '!') {
+                if (this.startsWith("<!--")) {
+                    this.skipUntil("-->", 4);
+                } else if (this.startsWith("<![CDATA[")) {
+                    this.whitespace = this.skipCData();
+                    return this.eventType = TEXT;
+                } else if (this.prolog && this.depth == 0 && this.startsWith("<!DOCTYPE")) {
+                    return this.eventType = FOREIGN;
+                } else {
+                    throw this.error("unsupported markup");
+                }
+            } else {
+                this.readStartTag();
+                return this.eventType = START_TAG;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int nextTag() throws IOException {
+        int et = this.next();
+        while (et == TEXT && this.whitespace) {
+            et = this.next();
+        }
+        if (et != START_TAG && et != END_TAG && et != FOREIGN) {
+            throw this.error("expected element start or end");
+        }
+        return et;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String nextText() throws IOException {
+        final CharSequence ret = this.nextTextChars();
+        return ret.length() == 0 ? "" : ret.toString();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public CharSequence nextTextChars() throws IOException {
+        if (this.eventType != START_TAG) {
+            throw this.error("expected element start");
+        }
+        this.attributeCount = 0;
+        if (this.emptyElement) {
+            this.emptyElement = false;
+            this.eventType = END_TAG;
+            return "";
+        }
+        // fast path: the entire plain text is in the window:
+        final char[] b = this.buf;
+        final int start = this.pos;
+        for (int i = start; i < this.limit - 1; i++) {
+            final char c = b[i];
+            if (c == '<') {
+                if (b[i + 1] != '/' || indexOf(b, '>', i + 2, this.limit) == -1) {
+                    break; // the text window must stay valid until after the end tag is read.
+                }
+                CharBuffer ret = this.textWindow;
+                if (ret == null || ret.array() != b) {
+                    this.textWindow = ret = CharBuffer.wrap(b);
+                }
+                ret.clear().position(start).limit(i);
+                this.pos = i;
+                this.readEndTag();
+                this.eventType = END_TAG;
+                return ret;
+            } else if (c == '&' || c == '\r') {
+                break;
+            }
+        }
+        // slow path:
+        final StringBuilder sb = this.text;
+        sb.setLength(0);
+        while (true) {
+            if (this.pos == this.limit && !this.readMore()) {
+                throw this.error("unexpected end of document");
+            }
+            final char c = this.buf[this.pos];
+            if (c == '<') {
+                this.ensure(2);
+                final char c2 = this.buf[this.pos + 1];
+                if (c2 == '/') {
+                    break;
+                } else if (c2 == '?') {
+                    this.skipUntil("?>", 2);
+                } else if (this.startsWith("<!--")) {
+                    this.skipUntil("-->", 4);
+                } else if (this.startsWith("<![CDATA[")) {
+                    this.appendCData(sb);
+                } else {
+                    throw this.error("unexpected element start in text");
+                }
+            } else if (c == '&') {
+                this.appendEntity(sb);
+            } else if (c == '\r') {
+                this.pos++;
+                if ((this.pos < this.limit || this.readMore()) && this.buf[this.pos] == '\n') {
+                    this.pos++;
+                }
+                sb.append('\n');
+            } else {
+                final int s = this.pos;
+                int p = s + 1;
+                while (p < this.limit && (this.buf[p] != '<' && this.buf[p] != '&' && this.buf[p] != '\r')) {
+                    p++;
+                }
+                sb.append(this.buf, s, p - s);
+                this.pos = p;
+            }
+        }
+        this.readEndTag();
+        this.eventType = END_TAG;
+        return sb;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void skipSubtree() throws IOException {
+        if (this.eventType != START_TAG) {
+            throw this.error("expected element start");
+        }
+        this.attributeCount = 0;
+        if (this.emptyElement) {
+            this.emptyElement = false;
+            this.eventType = END_TAG;
+            return;
+        }
+        int nested = 0;
+        while (true) {
+            while (this.pos < this.limit && this.buf[this.pos] != '<') {
+                this.pos++;
+            }
+            if (this.pos == this.limit) {
+                if (!this.readMore()) {
+                    throw this.error("unexpected end of document");
+                }
+                continue;
+            }
+            this.ensure(2);
+            final char c2 = this.buf[this.pos + 1];
+            if (c2 == '/') {
+                if (nested == 0) {
+                    this.readEndTag();
+                    this.eventType = END_TAG;
+                    return;
+                }
+                nested--;
+                this.skipUntil(">", 2);
+            } else if (c2 == '?') {
+                this.skipUntil("?>", 2);
+            } else if (this.startsWith("<!--")) {
+                this.skipUntil("-->", 4);
+            } else if (this.startsWith("<![CDATA[")) {
+                this.skipUntil("]]>", 9);
+            } else if (!this.skipStartTag()) {
+                nested++;
+            }
+        }
+    }
+
+    private void skipText() throws IOException {
+        boolean ws = true;
+        while (true) {
+            while (this.pos < this.limit) {
+                final char c = this.buf[this.pos];
+                if (c == '<') {
+                    this.whitespace = ws;
+                    return;
+                }
+                ws &= c <= ' ';
+                this.pos++;
+            }
+            if (!this.readMore()) {
+                this.whitespace = ws;
+                return;
+            }
+        }
+    }
+
+    private void readStartTag() throws IOException {
+        this.prolog = false;
+        this.mark = this.pos;
+        final int end = this.findTagEnd();
+        final char[] b = this.buf;
+        int i = this.mark + 1;
+        this.mark = -1;
+        // name:
+        final int nameStart = i;
+        i = this.readName(i, end);
+        this.push(this.nameFor(nameStart, i - nameStart));
+        // attributes:
+        int count = 0;
+        while (true) {
+            while (i < end && b[i] <= ' ') {
+                i++;
+            }
+            if (i == end) {
+                break;
+            }
+            if (b[i] == '/') {
+                if (i + 1 != end) {
+                    throw this.error("expected >");
+                }
+                this.emptyElement = true;
+                break;
+            }
+            final int attrStart = i;
+            i = this.readName(i, end);
+            final int attrEnd = i;
+            while (i < end && b[i] <= ' ') {
+                i++;
+            }
+            if (i == end || b[i] != '=') {
+                throw this.error("expected =");
+            }
+            i++;
+            while (i < end && b[i] <= ' ') {
+                i++;
+            }
+            final char quote = i < end ? b[i] : 0;
+            if (quote != '"' && quote != '\'') {
+                throw this.error("expected quoted attribute value");
+            }
+            final int valueStart = ++i;
+            while (b[i] != quote) {
+                i++;
+            }
+            if (4 * count == this.attributes.length) {
+                this.attributes = Arrays.copyOf(this.attributes, 2 * this.attributes.length);
+            }
+            final int a = 4 * count++;
+            this.attributes[a] = attrStart;
+            this.attributes[a + 1] = attrEnd;
+            this.attributes[a + 2] = valueStart;
+            this.attributes[a + 3] = i;
+            i++;
+        }
+        this.attributeCount = count;
+    }
+
+    // skips a start tag, without reading it, returning true if empty:
+    private boolean skipStartTag() throws IOException {
+        this.mark = this.pos;
+        final int end = this.findTagEnd();
+        this.mark = -1;
+        return this.buf[end - 1] == '/';
+    }
+
+    // moves past the '>' of the tag starting at mark, returning the index of '>':
+    private int findTagEnd() throws IOException {
+        char quote = 0;
+        while (true) {
+            if (this.pos == this.limit && !this.readMore()) {
+                throw this.error("unexpected end of document");
+            }
+            final char c = this.buf[this.pos++];
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '>') {
+                return this.pos - 1;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            }
+        }
+    }
+
+    private void readEndTag() throws IOException {
+        this.mark = this.pos;
+        final int end = this.findTagEnd();
+        int i = this.mark + 2;
+        this.mark = -1;
+        final int nameStart = i;
+        i = this.readName(i, end);
+        final int nameEnd = i;
+        while (i < end && this.buf[i] <= ' ') {
+            i++;
+        }
+        if (i != end) {
+            throw this.error("expected >");
+        }
+        if (this.depth == 0) {
+            throw this.error("unexpected element end");
+        }
+        final String expected = this.elementRawNames[this.depth - 1];
+        if (!regionEquals(expected, this.buf, nameStart, nameEnd - nameStart)) {
+            throw this.error("expected: </" + expected + ">");
+        }
+    }
+
+    private int readName(int i, int end) {
+        final char[] b = this.buf;
+        final char first = i < end ? b[i] : 0;
+        if ((first < 'a' || first > 'z') && (first < 'A' || first > 'Z') && first != '_' && first != ':' && first < 0xC0) {
+            throw this.error("name expected");
+        }
+        i++;
+        while (i < end) {
+            final char c = b[i];
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '-' || c == ':' || c == '.' || c >= 0xB7) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private void push(int nameIdx) {
+        if (this.depth == this.elementNames.length) {
+            this.elementRawNames = Arrays.copyOf(this.elementRawNames, 2 * this.depth);
+            this.elementNames = Arrays.copyOf(this.elementNames, 2 * this.depth);
+        }
+        this.elementRawNames[this.depth] = this.rawNames[nameIdx];
+        this.elementNames[this.depth] = this.symbolNames[nameIdx];
+        this.depth++;
+    }
+
+    private void pop() {
+        this.depth--;
+        this.elementRawNames[this.depth] = null;
+        this.elementNames[this.depth] = null;
+    }
+
+    // name table look-up, returning the slot index:
+    private int nameFor(int start, int len) {
+        final char[] b = this.buf;
+        int h = 0;
+        for (int i = start; i < start + len; i++) {
+            h = 31 * h + b[i];
+        }
+        int slot = (h ^ (h >>> 16)) & (NAMES_SIZE - 1);
+        while (this.rawNames[slot] != null) {
+            if (regionEquals(this.rawNames[slot], b, start, len)) {
+                return slot;
+            }
+            slot = (slot + 1) & (NAMES_SIZE - 1);
+        }
+        if (this.nameCount == MAX_NAMES) { // bound memory for arbitrary input: recycle the table.
+            Arrays.fill(this.rawNames, null);
+            Arrays.fill(this.symbolNames, null);
+            this.nameCount = 0;
+            return this.nameFor(start, len);
+        }
+        final String raw = new String(b, start, len);
+        this.rawNames[slot] = raw;
+        this.symbolNames[slot] = this.symbols.apply(raw);
+        this.nameCount++;
+        return slot;
+    }
+
+    private String decodeAttributeValue(int start, int end) {
+        final char[] b = this.buf;
+        int i = start;
+        while (i < end && b[i] != '&' && b[i] != '\n' && b[i] != '\r') {
+            i++;
+        }
+        if (i == end) {
+            return new String(b, start, end - start);
+        }
+        final StringBuilder sb = new StringBuilder(end - start);
+        sb.append(b, start, i - start);
+        while (i < end) {
+            final char c = b[i];
+            if (c == '&') {
+                final int semicolon = indexOf(b, ';', i + 1, Math.min(end, i + MAX_ENTITY_LENGTH));
+                if (semicolon == -1) {
+                    throw this.error("unterminated entity");
+                }
+                this.appendEntityValue(sb, b, i + 1, semicolon);
+                i = semicolon + 1;
+            } else if (c == '\r') {
+                sb.append(' ');
+                i += i + 1 < end && b[i + 1] == '\n' ? 2 : 1;
+            } else {
+                sb.append(c == '\n' ? ' ' : c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendEntity(StringBuilder sb) throws IOException {
+        int semicolon = -1;
+        for (int k = 1; k < MAX_ENTITY_LENGTH; k++) {
+            if (this.pos + k == this.limit && !this.ensure0(k + 1)) {
+                break;
+            }
+            if (this.buf[this.pos + k] == ';') {
+                semicolon = this.pos + k;
+                break;
+            }
+        }
+        if (semicolon == -1) {
+            throw this.error("unterminated entity");
+        }
+        this.appendEntityValue(sb, this.buf, this.pos + 1, semicolon);
+        this.pos = semicolon + 1;
+    }
+
+    private void appendEntityValue(StringBuilder sb, char[] b, int start, int end) {
+        final int len = end - start;
+        if (len > 1 && b[start] == '#') {
+            try {
+                final int cp = b[start + 1] == 'x'
+                        ? Integer.parseInt(new String(b, start + 2, len - 2), 16)
+                        : Integer.parseInt(new String(b, start + 1, len - 1));
+                sb.appendCodePoint(cp);
+                return;
+            } catch (IllegalArgumentException invalid) {
+                throw this.error("invalid character reference: " + new String(b, start, len));
+            }
+        }
+        if (regionEquals("lt", b, start, len)) {
+            sb.append('<');
+        } else if (regionEquals("gt", b, start, len)) {
+            sb.append('>');
+        } else if (regionEquals("amp", b, start, len)) {
+            sb.append('&');
+        } else if (regionEquals("quot", b, start, len)) {
+            sb.append('"');
+        } else if (regionEquals("apos", b, start, len)) {
+            sb.append('\'');
+        } else {
+            throw this.error("unresolved entity: &" + new String(b, start, len) + ';');
+        }
+    }
+
+    private void appendCData(StringBuilder sb) throws IOException {
+        this.pos += 9; // <![CDATA[
+        while (true) {
+            this.ensure(3);
+            final char c = this.buf[this.pos];
+            if (c == ']' && this.buf[this.pos + 1] == ']' && this.buf[this.pos + 2] == '>') {
+                this.pos += 3;
+                return;
+            }
+            sb.append(c);
+            this.pos++;
+        }
+    }
+
+    // skips a CDATA section, returning true if whitespace only:
+    private boolean skipCData() throws IOException {
+        this.pos += 9; // <![CDATA[
+        boolean ws = true;
+        while (true) {
+            this.ensure(3);
+            final char c = this.buf[this.pos];
+            if (c == ']' && this.buf[this.pos + 1] == ']' && this.buf[this.pos + 2] == '>') {
+                this.pos += 3;
+                return ws;
+            }
+            ws &= c <= ' ';
+            this.pos++;
+        }
+    }
+
+    // skips past the given terminator, starting after the given markup prefix length:
+    private void skipUntil(String terminator, int prefixLength) throws IOException {
+        this.pos += prefixLength;
+        final int len = terminator.length();
+        while (true) {
+            this.ensure(len);
+            if (regionEquals(terminator, this.buf, this.pos, len)) {
+                this.pos += len;
+                return;
+            }
+            this.pos++;
+        }
+    }
+
+    private boolean startsWith(String markup) throws IOException {
+        return this.ensure0(markup.length()) && regionEquals(markup, this.buf, this.pos, markup.length());
+    }
+
+    private void ensure(int n) throws IOException {
+        if (!this.ensure0(n)) {
+            throw this.error("unexpected end of document");
+        }
+    }
+
+    private boolean ensure0(int n) throws IOException {
+        while (this.limit - this.pos < n) {
+            if (!this.readMore()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // reads more input into the window, keeping the current token, if any:
+    private boolean readMore() throws IOException {
+        if (this.eof) {
+            return false;
+        }
+        final int keep = this.prolog ? 0 : (this.mark >= 0 ? this.mark : this.pos);
+        if (keep > 0) {
+            for (int i = 0; i < keep; i++) {
+                if (this.buf[i] == '\n') {
+                    this.discardedLines++;
+                    this.lineStart = i + 1;
+                }
+            }
+            this.lineStart -= keep;
+            System.arraycopy(this.buf, keep, this.buf, 0, this.limit - keep);
+            this.limit -= keep;
+            this.pos -= keep;
+            if (this.mark >= 0) {
+                this.mark -= keep;
+            }
+        } else if (this.limit == this.buf.length) { // token larger than the window:
+            this.buf = Arrays.copyOf(this.buf, 2 * this.buf.length);
+        }
+        int n;
+        do {
+            n = this.in.read(this.buf, this.limit, this.buf.length - this.limit);
+        } while (n == 0);
+        if (n < 0) {
+            this.eof = true;
+            return false;
+        }
+        if (this.limit == 0 && this.prolog && this.buf[0] == '\uFEFF') { // skip the byte order mark:
+            System.arraycopy(this.buf, 1, this.buf, 0, --n);
+            if (n == 0) {
+                return this.readMore();
+            }
+        }
+        this.limit += n;
+        return true;
+    }
+
+    private InvalidFormatException error(String msg) {
+        return new InvalidFormatException(this.positionDescriptor(), msg);
+    }
+
+    private static boolean regionEquals(String s, char[] b, int start, int len) {
+        if (s.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) != b[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(char[] b, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -38,10 +38,25 @@ import net.sourceforge.easyml.marshalling.java.util.concurrent.atomic.AtomicLong
 import net.sourceforge.easyml.marshalling.java.util.concurrent.atomic.AtomicReferenceStrategy;
 import net.sourceforge.easyml.marshalling.java.util.regex.PatternStrategy;
 import org.w3c.dom.Document;
+import org.xml.sax.ContentHandler;
 import org.xmlpull.v1.XmlPullParser;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.*;
 import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -86,7 +101,7 @@ import java.util.function.Supplier;
  * objects.<br/>
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.3
+ * @version 1.9.0
  * @see XMLReader
  * @see XMLWriter
  * @since 1.0
@@ -156,6 +171,15 @@ public final class EasyML {
         public abstract void applyTo(XMLWriter writer);
     }
 
+    /**
+     * The default length, in bytes or chars, of the stream buffers.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    /**
+     * The default maximum total size, in bytes, of the pooled stream buffers.
+     */
+    public static final int DEFAULT_BUFFER_POOL_SIZE = 32 * DEFAULT_BUFFER_SIZE;
+
     /**
      * The writer configuration prototype, configured the same as its reader
      * counterpart.
@@ -178,16 +202,32 @@ public final class EasyML {
      * The preferred parser configuration. Is optional.
      */
     protected final Optional<Supplier<XmlPullParser>> xmlPullParserProvider;
+    /**
+     * The StAX input factory to read text with, instead of the built-in
+     * parser. Is optional.
+     */
+    protected final Optional<XMLInputFactory> xmlInputFactory;
+    /**
+     * The StAX output factory to write text with, instead of the built-in
+     * drivers. Is optional.
+     */
+    protected final Optional<XMLOutputFactory> xmlOutputFactory;
+    /**
+     * The charset of the stream-based serialization and de-serialization.
+     */
+    protected final Charset charset;
+    private final BufferPool buffers;
 
     /**
      * Creates a new instance with the default settings and default reader and
      * writer strategies.
      */
     public EasyML() {
-        this(null, false);
+        this(null, null, null, false, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_POOL_SIZE);
     }
 
-    private EasyML(Supplier<XmlPullParser> xmlPullParserProvider, boolean prettyCollections) {
+    private EasyML(Supplier<XmlPullParser> xmlPullParserProvider, XMLInputFactory xmlInputFactory, XMLOutputFactory xmlOutputFactory,
+                   boolean prettyCollections, Charset charset, int bufferSize, int bufferPoolSize) {
         this.writerPrototype = new XMLWriter();
         this.readerPrototype = new XMLReader(ConcurrentHashMap::new);
         defaultConfiguration(this.writerPrototype, prettyCollections);
@@ -195,6 +235,10 @@ public final class EasyML {
         this.perThreadWriter = ThreadLocal.withInitial(() -> new XMLWriter(writerPrototype));
         this.perThreadReader = ThreadLocal.withInitial(() -> new XMLReader(readerPrototype));
         this.xmlPullParserProvider = Optional.ofNullable(xmlPullParserProvider);
+        this.xmlInputFactory = Optional.ofNullable(xmlInputFactory);
+        this.xmlOutputFactory = Optional.ofNullable(xmlOutputFactory);
+        this.charset = charset;
+        this.buffers = new BufferPool(bufferSize, bufferPoolSize);
     }
 
     /**
@@ -202,8 +246,17 @@ public final class EasyML {
      */
     EasyML(
             Supplier<XmlPullParser> xmlPullParserProvider,
+            XMLInputFactory xmlInputFactory,
+            XMLOutputFactory xmlOutputFactory,
             boolean prettyCollections,
+            Charset charset,
+            int bufferSize,
+            int bufferPoolSize,
             Style style,
+            boolean treeMode,
+            boolean sharedReferenceCheck,
+            boolean compactIds,
+            int referenceScope,
             String dateFormat,
             String customRootTag,
             Map<Class, String> classToAlias,
@@ -215,11 +268,21 @@ public final class EasyML {
             Set<CompositeStrategy> registeredComposite,
             Set<SimpleStrategy> unregisteredSimple,
             Set<CompositeStrategy> unregisteredComposite) {
-        this(xmlPullParserProvider, prettyCollections); // xmlPullParserProvider, prettyCollections.
+        this(xmlPullParserProvider, xmlInputFactory, xmlOutputFactory, prettyCollections, charset, bufferSize, bufferPoolSize); // parsers, prettyCollections, charset, buffers.
         // style:
         if (style != null) {
             style.applyTo(this.writerPrototype);
         }
+        // treeMode:
+        this.writerPrototype.setTreeMode(treeMode);
+        this.writerPrototype.setSharedReferenceCheck(sharedReferenceCheck);
+        this.readerPrototype.setTreeMode(treeMode);
+        // compactIds:
+        this.writerPrototype.setCompactIds(compactIds);
+        this.readerPrototype.setCompactIds(compactIds);
+        // referenceScope:
+        this.writerPrototype.setReferenceScope(referenceScope);
+        this.readerPrototype.setReferenceScope(referenceScope);
         // dateFormat:
         if (dateFormat != null) {
             this.writerPrototype.setDateFormat(dateFormat);
@@ -578,15 +641,35 @@ public final class EasyML {
      */
     public XMLWriter newWriter(Writer out) {
         final XMLWriter ret = new XMLWriter(writerPrototype);
-        ret.reset(out);
+        if (this.xmlOutputFactory.isPresent()) {
+            ret.reset(this.newStreamWriter(out), out);
+        } else {
+            ret.reset(out);
+        }
         return ret;
     }
 
+    private XMLStreamWriter newStreamWriter(Writer out) {
+        try {
+            return this.xmlOutputFactory.get().createXMLStreamWriter(new CarriageReturnWriter(out));
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+    }
+
+    private XMLStreamWriter newStreamWriter(OutputStream out) {
+        try {
+            return this.xmlOutputFactory.get().createXMLStreamWriter(new CarriageReturnWriter(new OutputStreamWriter(out, this.newEncoder())));
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+    }
+
     /**
      * Creates a new shared-configuration writer with the given
      * <code>out</code>. Use this method to directly access the XMLWriter API,
      * which offers features such as write-primitives and multiple writes to
-     * same out. Otherwise, use
+     * same out, encoded with the configured charset. Otherwise, use
      * {@linkplain #serialize(java.lang.Object, java.io.OutputStream)}.
      * <br>
      * <b>Note:</b> the returned writer shall be closed by the caller.
@@ -595,6 +678,53 @@ public final class EasyML {
      * @return a new shared-configuration writer
      */
     public XMLWriter newWriter(OutputStream out) {
+        final XMLWriter ret = new XMLWriter(writerPrototype);
+        if (this.xmlOutputFactory.isPresent()) {
+            ret.reset(this.newStreamWriter(out), out);
+        } else if (this.isUTF8()) {
+            ret.reset(out, new byte[this.buffers.bufferSize()]); // not pooled: owned by the returned writer.
+        } else {
+            ret.reset(new BufferedWriter(new OutputStreamWriter(out, this.charset), this.buffers.bufferSize()));
+        }
+        return ret;
+    }
+
+    private boolean isUTF8() {
+        return this.charset.equals(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a new shared-configuration writer with the given StAX
+     * <code>out</code>. Use this method to directly access the XMLWriter API,
+     * which offers features such as write-primitives and multiple writes to
+     * same out. Otherwise, use
+     * {@linkplain #serialize(java.lang.Object, javax.xml.stream.XMLStreamWriter)}.
+     * <br>
+     * <b>Note:</b> the returned writer shall be closed by the caller, which
+     * flushes, but does not close, the stream writer.
+     *
+     * @param out to write to
+     * @return a new shared-configuration writer
+     */
+    public XMLWriter newWriter(XMLStreamWriter out) {
+        final XMLWriter ret = new XMLWriter(writerPrototype);
+        ret.reset(out);
+        return ret;
+    }
+
+    /**
+     * Creates a new shared-configuration writer with the given SAX
+     * <code>out</code>. Use this method to directly access the XMLWriter API,
+     * which offers features such as write-primitives and multiple writes to
+     * same out. Otherwise, use
+     * {@linkplain #serialize(java.lang.Object, org.xml.sax.ContentHandler)}.
+     * <br>
+     * <b>Note:</b> the returned writer shall be closed by the caller.
+     *
+     * @param out to write to
+     * @return a new shared-configuration writer
+     */
+    public XMLWriter newWriter(ContentHandler out) {
         final XMLWriter ret = new XMLWriter(writerPrototype);
         ret.reset(out);
         return ret;
@@ -634,10 +764,30 @@ public final class EasyML {
      */
     public XMLReader newReader(Reader in) {
         final XMLReader ret = new XMLReader(readerPrototype);
-        ret.reset(in, preferredParserOrNull());
+        if (this.xmlInputFactory.isPresent()) {
+            ret.reset(this.newStreamReader(in), in);
+        } else {
+            ret.reset(in, preferredParserOrNull());
+        }
         return ret;
     }
 
+    private XMLStreamReader newStreamReader(Reader in) {
+        try {
+            return this.xmlInputFactory.get().createXMLStreamReader(in);
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+    }
+
+    private XMLStreamReader newStreamReader(InputStream in) {
+        try {
+            return this.xmlInputFactory.get().createXMLStreamReader(in, this.charset.name());
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+    }
+
     private XmlPullParser preferredParserOrNull() {
         return this.xmlPullParserProvider.map(Supplier::get).orElse(null);
     }
@@ -645,8 +795,9 @@ public final class EasyML {
     /**
      * Creates a new shared-configuration reader with the given <code>in</code>.
      * Use this method to directly access the XMLReader API, which offers
-     * features such as read-primitives and multiple reads from same in.
-     * Otherwise, use {@linkplain #deserialize(java.io.InputStream)}.
+     * features such as read-primitives and multiple reads from same in,
+     * decoded with the configured charset. Otherwise, use
+     * {@linkplain #deserialize(java.io.InputStream)}.
      * <br>
      * <b>Note:</b> the returned reader shall be closed by the caller.
      *
@@ -655,7 +806,64 @@ public final class EasyML {
      */
     public XMLReader newReader(InputStream in) {
         final XMLReader ret = new XMLReader(readerPrototype);
-        ret.reset(in, preferredParserOrNull());
+        if (this.xmlInputFactory.isPresent()) {
+            ret.reset(this.newStreamReader(in), in);
+        } else {
+            ret.reset(new InputStreamReader(in, this.charset), preferredParserOrNull());
+        }
+        return ret;
+    }
+
+    /**
+     * Creates a new shared-configuration reader with the given <code>in</code>
+     * file. Use this method to directly access the XMLReader API, which offers
+     * features such as read-primitives and multiple reads from same in.
+     * Otherwise, use {@linkplain #deserialize(java.nio.file.Path)}.
+     * <br>
+     * The file is read memory-mapped if UTF-8 encoded and no custom parser is
+     * configured, else it is read as stream.
+     * <br>
+     * <b>Note:</b> the returned reader shall be closed by the caller, which
+     * closes the file as well.
+     *
+     * @param in to read from
+     * @return a new shared-configuration reader
+     * @throws RuntimeException if the file could not be opened
+     */
+    public XMLReader newReader(Path in) {
+        final XMLReader ret = new XMLReader(readerPrototype);
+        try {
+            if (this.isMappable()) {
+                ret.reset(FileChannel.open(in, StandardOpenOption.READ), true);
+            } else {
+                ret.reset(new InputStreamReader(Files.newInputStream(in), this.charset), preferredParserOrNull());
+            }
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+        return ret;
+    }
+
+    private boolean isMappable() {
+        return this.isUTF8() && !this.xmlPullParserProvider.isPresent() && !this.xmlInputFactory.isPresent();
+    }
+
+    /**
+     * Creates a new shared-configuration reader with the given StAX
+     * <code>in</code>. Use this method to directly access the XMLReader API,
+     * which offers features such as read-primitives and multiple reads from
+     * same in. Otherwise, use
+     * {@linkplain #deserialize(javax.xml.stream.XMLStreamReader)}.
+     * <br>
+     * <b>Note:</b> the returned reader shall be closed by the caller, which
+     * does not close the stream reader.
+     *
+     * @param in to read from
+     * @return a new shared-configuration reader
+     */
+    public XMLReader newReader(XMLStreamReader in) {
+        final XMLReader ret = new XMLReader(readerPrototype);
+        ret.reset(in);
         return ret;
     }
 
@@ -689,6 +897,10 @@ public final class EasyML {
      * @param out to write with
      */
     public void serialize(Object o, Writer out) {
+        if (this.xmlOutputFactory.isPresent()) {
+            this.serialize(o, this.newStreamWriter(out));
+            return;
+        }
         final XMLWriter writer = this.perThreadWriter.get();
         writer.reset(out);
         try {
@@ -699,8 +911,12 @@ public final class EasyML {
     }
 
     /**
-     * Serializes the given object to the given output stream. Does not support
-     * multiple writes; for that use an XML writer directly.
+     * Serializes the given object to the given output stream, encoded with the
+     * configured charset. Does not support multiple writes; for that use an XML
+     * writer directly.
+     * <br>
+     * The output is buffered via pooled buffers and written to the stream when
+     * the buffers fill up and once at the end, with a single flush.
      * <br>
      * <b>Note:</b> the out parameter shall be closed by the caller.
      *
@@ -708,7 +924,87 @@ public final class EasyML {
      * @param out to write to
      */
     public void serialize(Object o, OutputStream out) {
-        this.serialize(o, new OutputStreamWriter(out));
+        if (this.xmlOutputFactory.isPresent()) {
+            this.serialize(o, this.newStreamWriter(out));
+            return;
+        }
+        final XMLWriter writer = this.perThreadWriter.get();
+        if (this.isUTF8()) {
+            writer.reset(out, this.buffers.takeBytes());
+            try {
+                writer.write(o);
+            } finally {
+                try {
+                    writer.flush();
+                } finally {
+                    this.buffers.give(writer.detachBuffer());
+                }
+            }
+        } else {
+            final char[] chars = this.buffers.takeChars();
+            final byte[] bytes = this.buffers.takeBytes();
+            final PooledStreamWriter pooled = new PooledStreamWriter(out, this.newEncoder(), chars, bytes);
+            writer.reset(pooled);
+            try {
+                writer.write(o);
+            } finally {
+                try {
+                    writer.flush();
+                    pooled.close(); // ends the encoding, without closing out.
+                } catch (IOException ioX) {
+                    throw new RuntimeException(ioX);
+                } finally {
+                    pooled.detachBuffers(); // the writer keeps referencing the stream writer.
+                    this.buffers.give(chars);
+                    this.buffers.give(bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializes the given object to the given StAX stream writer, as an
+     * EasyML fragment. Does not support multiple writes; for that use an XML
+     * writer directly.
+     * <br>
+     * <b>Note:</b> the out parameter is flushed, but not closed, hence it can
+     * be written to further.
+     *
+     * @param o   to serialize
+     * @param out to write to
+     */
+    public void serialize(Object o, XMLStreamWriter out) {
+        final XMLWriter writer = this.perThreadWriter.get();
+        writer.reset(out);
+        try {
+            writer.write(o);
+        } finally {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Serializes the given object as SAX events to the given content handler,
+     * as one document, without producing XML text. Does not support multiple
+     * writes; for that use an XML writer directly.
+     *
+     * @param o   to serialize
+     * @param out to emit events to
+     */
+    public void serialize(Object o, ContentHandler out) {
+        final XMLWriter writer = this.perThreadWriter.get();
+        writer.reset(out);
+        try {
+            writer.write(o);
+        } finally {
+            writer.flush();
+        }
+    }
+
+    private CharsetEncoder newEncoder() {
+        return this.charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
     }
 
     /**
@@ -753,13 +1049,33 @@ public final class EasyML {
      * @return the de-serialized object
      */
     public Object deserialize(Reader in) {
+        if (this.xmlInputFactory.isPresent()) {
+            return this.deserialize(this.newStreamReader(in));
+        }
         final XMLReader reader = this.perThreadReader.get();
         reader.reset(in, preferredParserOrNull());
         return reader.read();
     }
 
     /**
-     * De-serializes from the given input stream.
+     * De-serializes from the given StAX stream reader, starting at its current
+     * element start, if positioned on one, else at its next element start.
+     * <br>
+     * <b>Note:</b> the in parameter is left positioned on the EasyML root end,
+     * and is not closed, hence it can be read from further.
+     *
+     * @param in to read from
+     * @return the de-serialized object
+     */
+    public Object deserialize(XMLStreamReader in) {
+        final XMLReader reader = this.perThreadReader.get();
+        reader.reset(in);
+        return reader.read();
+    }
+
+    /**
+     * De-serializes from the given input stream, decoded with the configured
+     * charset. The input is read via a pooled buffer.
      * <br>
      * <b>Note:</b> the in parameter shall be closed by the caller.
      *
@@ -767,7 +1083,51 @@ public final class EasyML {
      * @return the de-serialized object
      */
     public Object deserialize(InputStream in) {
-        return this.deserialize(new InputStreamReader(in));
+        if (this.xmlInputFactory.isPresent()) {
+            return this.deserialize(this.newStreamReader(in));
+        }
+        final byte[] bytes = this.buffers.takeBytes();
+        final PooledStreamReader pooled = new PooledStreamReader(in, this.newDecoder(), bytes);
+        try {
+            return this.deserialize(pooled);
+        } finally {
+            pooled.detachBuffer(); // the reader keeps referencing the stream reader.
+            this.buffers.give(bytes);
+        }
+    }
+
+    /**
+     * De-serializes from the given file. UTF-8 encoded files are memory-mapped
+     * and parsed in place, decoding only the text values read, unless a custom
+     * parser is configured. Other charsets are read as stream.
+     *
+     * @param in the file to read from
+     * @return the de-serialized object
+     * @throws RuntimeException if the file could not be read
+     */
+    public Object deserialize(Path in) {
+        if (!this.isMappable()) {
+            try (InputStream stream = Files.newInputStream(in)) {
+                return this.deserialize(stream);
+            } catch (IOException ioX) {
+                throw new RuntimeException(ioX);
+            }
+        }
+        final XMLReader reader = this.perThreadReader.get();
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+            reader.reset(channel, false);
+            return reader.read();
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        } finally {
+            reader.releaseMapped();
+        }
+    }
+
+    private CharsetDecoder newDecoder() {
+        return this.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
     }
 
     /**
@@ -22,7 +22,11 @@ import net.sourceforge.easyml.marshalling.CompositeStrategy;
 import net.sourceforge.easyml.marshalling.SimpleStrategy;
 import org.xmlpull.v1.XmlPullParser;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -50,7 +54,7 @@ import java.util.function.Supplier;
  * <b>Note:</b> this builder implementation is <b>not</b> thread-safe
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.1
+ * @version 1.9.0
  * @see EasyML
  * @see XMLReader
  * @see XMLWriter
@@ -59,8 +63,17 @@ import java.util.function.Supplier;
 public final class EasyMLBuilder implements Supplier<EasyML> {
 
     private Supplier<XmlPullParser> xmlPullParserProvider;
+    private XMLInputFactory xmlInputFactory;
+    private XMLOutputFactory xmlOutputFactory;
     private boolean prettyCollections;
+    private Charset charset = StandardCharsets.UTF_8;
+    private int bufferSize = EasyML.DEFAULT_BUFFER_SIZE;
+    private int bufferPoolSize = EasyML.DEFAULT_BUFFER_POOL_SIZE;
     private EasyML.Style style;
+    private boolean treeMode;
+    private boolean sharedReferenceCheck;
+    private boolean compactIds;
+    private int referenceScope;
     private String dateFormat;
     private String customRootTag;
     private Map<Class, String> classToAlias;
@@ -87,6 +100,33 @@ public final class EasyMLBuilder implements Supplier<EasyML> {
         return this;
     }
 
+    /**
+     * Sets a user-defined StAX input factory, to be used at text xml
+     * de-serialization instead of the built-in parser, or null for the
+     * built-in parser. The factory must be thread-safe once configured.
+     * <br/>
+     * <b>Note:</b> the factory takes precedence over the XML pull-parser
+     * provider, if both are set.
+     *
+     * @param xmlInputFactory implementation to be used by the reader
+     */
+    public EasyMLBuilder withXMLInputFactory(XMLInputFactory xmlInputFactory) {
+        this.xmlInputFactory = xmlInputFactory;
+        return this;
+    }
+
+    /**
+     * Sets a user-defined StAX output factory, to be used at text xml
+     * serialization instead of the built-in drivers, or null for the built-in
+     * drivers. The factory must be thread-safe once configured.
+     *
+     * @param xmlOutputFactory implementation to be used by the writer
+     */
+    public EasyMLBuilder withXMLOutputFactory(XMLOutputFactory xmlOutputFactory) {
+        this.xmlOutputFactory = xmlOutputFactory;
+        return this;
+    }
+
     /**
      * Sets the XML outputting style for Java Collections to pretty.
      * Java Collections framework Collections and Maps will be formatted more generically.
@@ -98,6 +138,51 @@ public final class EasyMLBuilder implements Supplier<EasyML> {
         return this;
     }
 
+    /**
+     * Sets the charset to encode and decode with at stream-based serialization
+     * and de-serialization. Defaults to UTF-8, which is written directly to the
+     * output streams, bypassing the charset encoder.
+     *
+     * @param charset to use
+     */
+    public EasyMLBuilder withCharset(Charset charset) {
+        if (charset == null) {
+            throw new IllegalArgumentException("charset: null");
+        }
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * Sets the length, in bytes or chars, of the buffers used at stream-based
+     * serialization and de-serialization. Defaults to
+     * {@linkplain EasyML#DEFAULT_BUFFER_SIZE}.
+     *
+     * @param bufferSize to use, of at least 64
+     */
+    public EasyMLBuilder withBufferSize(int bufferSize) {
+        if (bufferSize < 64) {
+            throw new IllegalArgumentException("bufferSize: too small: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum total size, in bytes, of the buffers pooled for reuse
+     * across stream-based serialization and de-serialization calls. Defaults
+     * to {@linkplain EasyML#DEFAULT_BUFFER_POOL_SIZE}.
+     *
+     * @param bufferPoolSize to use, or 0 to disable pooling
+     */
+    public EasyMLBuilder withBufferPoolSize(int bufferPoolSize) {
+        if (bufferPoolSize < 0) {
+            throw new IllegalArgumentException("bufferPoolSize: negative: " + bufferPoolSize);
+        }
+        this.bufferPoolSize = bufferPoolSize;
+        return this;
+    }
+
     /**
      * Sets the format to use at XML date formatting and parsing. This is done
      * by re-configuring both the XML reader and writer with the given format.
@@ -109,6 +194,65 @@ public final class EasyMLBuilder implements Supplier<EasyML> {
         return this;
     }
 
+    /**
+     * Sets the tree mode of both the XML reader and writer. In tree mode, the
+     * object graphs are expected to be trees: no object identity is tracked
+     * and no id and idref attributes are written or read. Defaults to false.
+     *
+     * @param treeMode true to (de)serialize object graphs as trees
+     * @see XMLWriter#setTreeMode(boolean)
+     * @see XMLReader#setTreeMode(boolean)
+     */
+    public EasyMLBuilder withTreeMode(boolean treeMode) {
+        this.treeMode = treeMode;
+        return this;
+    }
+
+    /**
+     * Sets the tree mode shared reference check of the XML writer, which
+     * fails the serialization of object graphs which are not trees.
+     * Defaults to false.
+     *
+     * @param sharedReferenceCheck true to fail at shared references in tree mode
+     * @see XMLWriter#setSharedReferenceCheck(boolean)
+     */
+    public EasyMLBuilder withSharedReferenceCheck(boolean sharedReferenceCheck) {
+        this.sharedReferenceCheck = sharedReferenceCheck;
+        return this;
+    }
+
+    /**
+     * Sets the compact ids mode of both the XML reader and writer, where id
+     * attributes are written only on the objects referenced again, hence are
+     * optional at reading. The written output of a reference scope is buffered
+     * up to a bound, beyond which all ids are written. Defaults to false.
+     *
+     * @param compactIds true to write ids on referenced objects only
+     * @see XMLWriter#setCompactIds(boolean)
+     * @see XMLReader#setCompactIds(boolean)
+     */
+    public EasyMLBuilder withCompactIds(boolean compactIds) {
+        this.compactIds = compactIds;
+        return this;
+    }
+
+    /**
+     * Sets the reference scope of both the XML reader and writer: the number
+     * of top-level values after which the object references are released, or
+     * 0 for the whole document, which is the default.
+     *
+     * @param referenceScope the number of values per scope, or 0 for the whole document
+     * @see XMLWriter#setReferenceScope(int)
+     * @see XMLReader#setReferenceScope(int)
+     */
+    public EasyMLBuilder withReferenceScope(int referenceScope) {
+        if (referenceScope < 0) {
+            throw new IllegalArgumentException("referenceScope: negative: " + referenceScope);
+        }
+        this.referenceScope = referenceScope;
+        return this;
+    }
+
     /**
      * Sets the format to use at XML date formatting and parsing. This is done
      * by re-configuring both the XML reader and writer with the given format.
@@ -309,8 +453,17 @@ public final class EasyMLBuilder implements Supplier<EasyML> {
         // build:
         return new EasyML(
                 xmlPullParserProvider,
+                xmlInputFactory,
+                xmlOutputFactory,
                 prettyCollections,
+                charset,
+                bufferSize,
+                bufferPoolSize,
                 style,
+                treeMode,
+                sharedReferenceCheck,
+                compactIds,
+                referenceScope,
                 dateFormat,
                 customRootTag,
                 classToAlias,
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.util.Arrays;
+
+/**
+ * IdentityTable class is the table of the objects visited by an
+ * {@linkplain XMLWriter} in the current object graph, by identity, mapping
+ * each to its positive int id, in visiting order: 1, 2, 3, and so on.
+ * <br/>
+ * The keys are kept by id and the hash slots hold ids, via open addressing
+ * with linear probing. A slot is occupied only if it is stamped with the
+ * current generation, hence clearing does not touch the slots: it releases
+ * the keys, in O(size), and starts a new generation, in O(1). Tables grown by
+ * a large graph are shrunk after being repeatedly cleared under-used.
+ * <br/>
+ * Each id can also be marked with an int, e.g. a visiting state, which is
+ * kept by id as well and reset to 0 at clear.
+ * <br/>
+ * This implementation is not thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class IdentityTable {
+
+    private static final int INITIAL_SLOTS = 64; // power of 2.
+    private static final int SHRINK_AFTER = 16; // consecutive under-used clears.
+    private Object[] keys; // by id - 1.
+    private int[] maybeMarks; // lazy, by id - 1.
+    private int[] slotIds; // valid only if stamped with the current generation.
+    private int[] slotGenerations;
+    private int generation;
+    private int size;
+    private int underUsedClears;
+
+    /**
+     * Creates a new empty instance.
+     */
+    IdentityTable() {
+        this.allocate(INITIAL_SLOTS);
+    }
+
+    private void allocate(int slots) {
+        this.keys = new Object[slots / 2];
+        this.slotIds = new int[slots];
+        this.slotGenerations = new int[slots];
+        this.generation = 1;
+    }
+
+    /**
+     * Returns the number of objects in this table, which is also the last id.
+     *
+     * @return the size
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the id of the given object, or 0 if the object is not in this
+     * table.
+     *
+     * @param key the object to look up, by identity
+     * @return the positive id or 0
+     */
+    int get(Object key) {
+        final int[] ids = this.slotIds;
+        final int[] generations = this.slotGenerations;
+        final int mask = ids.length - 1;
+        int slot = slotFor(key, mask);
+        while (generations[slot] == this.generation) {
+            final int id = ids[slot];
+            if (this.keys[id - 1] == key) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the given object, which must not be in this table, and returns its
+     * id, the next one.
+     *
+     * @param key the object to add
+     * @return the new id
+     */
+    int add(Object key) {
+        if (this.size == this.keys.length) { // load factor 1/2 reached:
+            this.grow();
+        }
+        this.keys[this.size] = key;
+        final int id = ++this.size;
+        this.insert(key, id);
+        return id;
+    }
+
+    private void insert(Object key, int id) {
+        final int mask = this.slotIds.length - 1;
+        int slot = slotFor(key, mask);
+        while (this.slotGenerations[slot] == this.generation) {
+            slot = (slot + 1) & mask;
+        }
+        this.slotIds[slot] = id;
+        this.slotGenerations[slot] = this.generation;
+    }
+
+    /**
+     * Returns the mark of the given id, or 0 if not marked.
+     *
+     * @param id the id, of an object in this table
+     * @return the mark
+     */
+    int markOf(int id) {
+        return this.maybeMarks != null ? this.maybeMarks[id - 1] : 0;
+    }
+
+    /**
+     * Marks the given id with the given mark.
+     *
+     * @param id   the id, of an object in this table
+     * @param mark the mark to set
+     */
+    void mark(int id, int mark) {
+        if (this.maybeMarks == null) {
+            this.maybeMarks = new int[this.keys.length];
+        }
+        this.maybeMarks[id - 1] = mark;
+    }
+
+    private void grow() {
+        final Object[] oldKeys = this.keys;
+        this.allocate(2 * this.slotIds.length);
+        System.arraycopy(oldKeys, 0, this.keys, 0, this.size);
+        if (this.maybeMarks != null) {
+            this.maybeMarks = Arrays.copyOf(this.maybeMarks, this.keys.length);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.insert(this.keys[i], i + 1);
+        }
+    }
+
+    /**
+     * Clears this table, releasing the objects and restarting the ids from 1.
+     */
+    void clear() {
+        if (this.slotIds.length > INITIAL_SLOTS && 8 * this.size < this.slotIds.length) {
+            if (++this.underUsedClears == SHRINK_AFTER) {
+                this.underUsedClears = 0;
+                this.size = 0;
+                this.maybeMarks = null;
+                this.allocate(INITIAL_SLOTS);
+                return;
+            }
+        } else {
+            this.underUsedClears = 0;
+        }
+        Arrays.fill(this.keys, 0, this.size, null);
+        if (this.maybeMarks != null) {
+            Arrays.fill(this.maybeMarks, 0, this.size, 0);
+        }
+        this.size = 0;
+        if (++this.generation == 0) { // wrapped: the stamps must be reset.
+            Arrays.fill(this.slotGenerations, 0);
+            this.generation = 1;
+        }
+    }
+
+    // Fibonacci hashing of the identity hash code, folding the high bits into the masked ones:
+    private static int slotFor(Object key, int mask) {
+        final int h = System.identityHashCode(key) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
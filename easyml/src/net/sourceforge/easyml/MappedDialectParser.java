@@ -0,0 +1,888 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * MappedDialectParser class is the {@linkplain DialectParser} of UTF-8 encoded
+ * files, tokenizing the bytes in place, in memory-mapped segments of the file.
+ * It supports the same XML subset as the {@linkplain DialectPullParser}.
+ * <br/>
+ * Element names are resolved via a name table keyed on the mapped bytes, and
+ * only the text values and attribute values actually requested are decoded.
+ * Files larger than a segment, e.g. of over 2 GB, are mapped segment by
+ * segment, each segment starting at the token being read, hence a single tag
+ * must fit a segment.
+ * <br/>
+ * This implementation is not thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class MappedDialectParser implements DialectParser {
+
+    /**
+     * The default mapped segment size.
+     */
+    public static final int SEGMENT_SIZE = 1 << 30;
+    private static final int NAMES_SIZE = 1024; // power of 2.
+    private static final int MAX_NAMES = NAMES_SIZE * 3 / 4;
+    private static final int MAX_ENTITY_LENGTH = 32;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final UnaryOperator<String> symbols;
+    private final int segmentSize;
+    private final byte[][] rawNames; // name table: escaped names, as read.
+    private final String[] symbolNames; // name table: canonical names of rawNames.
+    private int nameCount;
+    private FileChannel channel;
+    private long size;
+    private long base; // the file offset of the segment.
+    private ByteBuffer seg;
+    private int pos;
+    private int limit;
+    private int mark; // the start of the token being read, or -1.
+    private boolean prolog;
+    private int eventType;
+    private int depth;
+    private byte[][] elementRawNames;
+    private String[] elementNames;
+    private boolean emptyElement;
+    private boolean whitespace;
+    private int attributeCount;
+    private int[] attributes; // name start, name end, value start, value end, per attribute.
+    private byte[] scratch;
+    private char[] chars; // the ASCII scratch text, widened.
+    private CharBuffer charsWindow; // view of chars.
+
+    /**
+     * Creates a new instance.
+     *
+     * @param symbols     resolves the raw element names, as read, to the
+     *                    canonical names returned by {@linkplain #getName()}
+     * @param segmentSize the maximum size of a mapped segment
+     */
+    public MappedDialectParser(UnaryOperator<String> symbols, int segmentSize) {
+        this.symbols = symbols;
+        this.segmentSize = segmentSize;
+        this.rawNames = new byte[NAMES_SIZE][];
+        this.symbolNames = new String[NAMES_SIZE];
+        this.nameCount = 0;
+        this.seg = EMPTY;
+        this.elementRawNames = new byte[16][];
+        this.elementNames = new String[16];
+        this.attributes = new int[4 * 8];
+        this.scratch = new byte[256];
+        this.chars = new char[64];
+        this.charsWindow = CharBuffer.wrap(this.chars);
+    }
+
+    /**
+     * Sets the input, resetting this parser but keeping its name table.
+     *
+     * @param channel to read from, from the start
+     * @throws IOException if mapping failed
+     */
+    public void setInput(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.base = 0;
+        this.seg = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(this.segmentSize, this.size));
+        this.pos = 0;
+        this.limit = this.seg.limit();
+        this.mark = -1;
+        this.prolog = true;
+        this.eventType = START_DOCUMENT;
+        Arrays.fill(this.elementRawNames, 0, this.depth, null);
+        Arrays.fill(this.elementNames, 0, this.depth, null);
+        this.depth = 0;
+        this.emptyElement = false;
+        this.whitespace = false;
+        this.attributeCount = 0;
+        if (this.limit >= 3 && this.seg.get(0) == (byte) 0xEF && this.seg.get(1) == (byte) 0xBB && this.seg.get(2) == (byte) 0xBF) {
+            this.pos = 3; // skip the byte order mark.
+        }
+    }
+
+    /**
+     * Releases the mapped segment and the input.
+     */
+    public void clearInput() {
+        this.channel = null;
+        this.seg = EMPTY;
+        this.pos = 0;
+        this.limit = 0;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Reader foreignInput() throws IOException {
+        return Channels.newReader(this.channel.position(0), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int getEventType() {
+        return this.eventType;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String getName() {
+        return this.elementNames[this.depth - 1];
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String getAttributeValue(String name) {
+        final int[] a = this.attributes;
+        for (int i = 0; i < 4 * this.attributeCount; i += 4) {
+            if (this.regionEquals(name, a[i], a[i + 1] - a[i])) {
+                return this.decodeAttributeValue(a[i + 2], a[i + 3]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int getAttributeIndex(String name) {
+        final int[] a = this.attributes;
+        for (int i = 0; i < 4 * this.attributeCount; i += 4) {
+            if (this.regionEquals(name, a[i], a[i + 1] - a[i])) {
+                return this.parseIndex(a[i + 2], a[i + 3]);
+            }
+        }
+        return -1;
+    }
+
+    private int parseIndex(int start, int end) {
+        if (start == end || end - start > 10 || end - start > 1 && this.seg.get(start) == '0') {
+            return -1;
+        }
+        long ret = 0;
+        for (int i = start; i < end; i++) {
+            final int c = this.seg.get(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            ret = 10 * ret + (c - '0');
+        }
+        return ret <= Integer.MAX_VALUE ? (int) ret : -1;
+    }
+
+    /**
+     * Returns the current position, as line-column pair, the column being
+     * counted in bytes. The lines are counted on demand, from the file start.
+     *
+     * @return the position descriptor
+     */
+    @Override
+    public String positionDescriptor() {
+        final long target = this.base + Math.min(this.pos, this.limit);
+        long line = 1;
+        long lineStart = 0;
+        try {
+            for (long offset = 0; offset < target; offset += this.segmentSize) {
+                final int len = (int) Math.min(this.segmentSize, target - offset);
+                final ByteBuffer b = offset == this.base ? this.seg : this.channel.map(FileChannel.MapMode.READ_ONLY, offset, len);
+                for (int i = 0; i < len; i++) {
+                    if (b.get(i) == '\n') {
+                        line++;
+                        lineStart = offset + i + 1;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException unavailable) {
+            return "@" + target;
+        }
+        return line + "," + (target - lineStart + 1);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int next() throws IOException {
+        this.attributeCount = 0;
+        if (this.emptyElement) {
+            this.emptyElement = false;
+            return this.eventType = END_TAG;
+        }
+        if (this.eventType == END_TAG) {
+            this.pop();
+        }
+        while (true) {
+            if (this.pos == this.limit && !this.readMore()) {
+                if (this.depth > 0) {
+                    throw this.error("unexpected end of document");
+                }
+                return this.eventType = END_DOCUMENT;
+            }
+            if (this.seg.get(this.pos) != '<') {
+                this.skipText();
+                return this.eventType = TEXT;
+            }
+            this.ensure(2);
+            final byte c2 = this.seg.get(this.pos + 1);
+            if (c2 == '/') {
+                this.readEndTag();
+                return this.eventType = END_TAG;
+            } else if (c2 == '?') {
+                this.skipUntil("?>", 2);
+            } else if (c2 == '!') {
+                if (this.startsWith("<!--")) {
+                    this.skipUntil("-->", 4);
+                } else if (this.startsWith("<![CDATA[")) {
+                    this.whitespace = this.skipCData();
+                    return this.eventType = TEXT;
+                } else if (this.prolog && this.depth == 0 && this.startsWith("<!DOCTYPE")) {
+                    return this.eventType = FOREIGN;
+                } else {
+                    throw this.error("unsupported markup");
+                }
+            } else {
+                this.readStartTag();
+                return this.eventType = START_TAG;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int nextTag() throws IOException {
+        int et = this.next();
+        while (et == TEXT && this.whitespace) {
+            et = this.next();
+        }
+        if (et != START_TAG && et != END_TAG && et != FOREIGN) {
+            throw this.error("expected element start or end");
+        }
+        return et;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String nextText() throws IOException {
+        final int n = this.readText();
+        return n == 0 ? "" : new String(this.scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public CharSequence nextTextChars() throws IOException {
+        final int n = this.readText();
+        final byte[] s = this.scratch;
+        if (n > this.chars.length) {
+            this.chars = new char[Math.max(n, 2 * this.chars.length)];
+            this.charsWindow = CharBuffer.wrap(this.chars);
+        }
+        final char[] c = this.chars;
+        for (int i = 0; i < n; i++) {
+            if (s[i] < 0) { // non-ASCII: decode.
+                return new String(s, 0, n, StandardCharsets.UTF_8);
+            }
+            c[i] = (char) s[i];
+        }
+        this.charsWindow.clear().limit(n);
+        return this.charsWindow;
+    }
+
+    // reads the text of the current element start into the scratch, returning its length:
+    private int readText() throws IOException {
+        if (this.eventType != START_TAG) {
+            throw this.error("expected element start");
+        }
+        this.attributeCount = 0;
+        if (this.emptyElement) {
+            this.emptyElement = false;
+            this.eventType = END_TAG;
+            return 0;
+        }
+        // fast path: the entire plain text is in the segment:
+        final ByteBuffer b = this.seg;
+        final int start = this.pos;
+        for (int i = start; i < this.limit - 1; i++) {
+            final byte c = b.get(i);
+            if (c == '<') {
+                if (b.get(i + 1) != '/') {
+                    break;
+                }
+                final int n = this.append(0, start, i - start);
+                this.pos = i;
+                this.readEndTag();
+                this.eventType = END_TAG;
+                return n;
+            } else if (c == '&' || c == '\r') {
+                break;
+            }
+        }
+        // slow path, collecting the bytes to decode into the scratch:
+        int n = 0;
+        while (true) {
+            if (this.pos == this.limit && !this.readMore()) {
+                throw this.error("unexpected end of document");
+            }
+            final byte c = this.seg.get(this.pos);
+            if (c == '<') {
+                this.ensure(2);
+                final byte c2 = this.seg.get(this.pos + 1);
+                if (c2 == '/') {
+                    break;
+                } else if (c2 == '?') {
+                    this.skipUntil("?>", 2);
+                } else if (this.startsWith("<!--")) {
+                    this.skipUntil("-->", 4);
+                } else if (this.startsWith("<![CDATA[")) {
+                    n = this.appendCData(n);
+                } else {
+                    throw this.error("unexpected element start in text");
+                }
+            } else if (c == '&') {
+                n = this.appendEntity(n);
+            } else if (c == '\r') {
+                this.pos++;
+                if ((this.pos < this.limit || this.readMore()) && this.seg.get(this.pos) == '\n') {
+                    this.pos++;
+                }
+                n = this.append(n, (byte) '\n');
+            } else {
+                final int s = this.pos;
+                int p = s + 1;
+                byte cp;
+                while (p < this.limit && (cp = this.seg.get(p)) != '<' && cp != '&' && cp != '\r') {
+                    p++;
+                }
+                n = this.append(n, s, p - s);
+                this.pos = p;
+            }
+        }
+        this.readEndTag();
+        this.eventType = END_TAG;
+        return n;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void skipSubtree() throws IOException {
+        if (this.eventType != START_TAG) {
+            throw this.error("expected element start");
+        }
+        this.attributeCount = 0;
+        if (this.emptyElement) {
+            this.emptyElement = false;
+            this.eventType = END_TAG;
+            return;
+        }
+        int nested = 0;
+        while (true) {
+            while (this.pos < this.limit && this.seg.get(this.pos) != '<') {
+                this.pos++;
+            }
+            if (this.pos == this.limit) {
+                if (!this.readMore()) {
+                    throw this.error("unexpected end of document");
+                }
+                continue;
+            }
+            this.ensure(2);
+            final byte c2 = this.seg.get(this.pos + 1);
+            if (c2 == '/') {
+                if (nested == 0) {
+                    this.readEndTag();
+                    this.eventType = END_TAG;
+                    return;
+                }
+                nested--;
+                this.skipUntil(">", 2);
+            } else if (c2 == '?') {
+                this.skipUntil("?>", 2);
+            } else if (this.startsWith("<!--")) {
+                this.skipUntil("-->", 4);
+            } else if (this.startsWith("<![CDATA[")) {
+                this.skipUntil("]]>", 9);
+            } else if (!this.skipStartTag()) {
+                nested++;
+            }
+        }
+    }
+
+    private void skipText() throws IOException {
+        boolean ws = true;
+        while (true) {
+            while (this.pos < this.limit) {
+                final byte c = this.seg.get(this.pos);
+                if (c == '<') {
+                    this.whitespace = ws;
+                    return;
+                }
+                ws &= c >= 0 && c <= ' ';
+                this.pos++;
+            }
+            if (!this.readMore()) {
+                this.whitespace = ws;
+                return;
+            }
+        }
+    }
+
+    private void readStartTag() throws IOException {
+        this.prolog = false;
+        this.mark = this.pos;
+        final int end = this.findTagEnd();
+        final ByteBuffer b = this.seg;
+        int i = this.mark + 1;
+        this.mark = -1;
+        // name:
+        final int nameStart = i;
+        i = this.readName(i, end);
+        this.push(this.nameFor(nameStart, i - nameStart));
+        // attributes:
+        int count = 0;
+        while (true) {
+            while (i < end && isWhitespace(b.get(i))) {
+                i++;
+            }
+            if (i == end) {
+                break;
+            }
+            if (b.get(i) == '/') {
+                if (i + 1 != end) {
+                    throw this.error("expected >");
+                }
+                this.emptyElement = true;
+                break;
+            }
+            final int attrStart = i;
+            i = this.readName(i, end);
+            final int attrEnd = i;
+            while (i < end && isWhitespace(b.get(i))) {
+                i++;
+            }
+            if (i == end || b.get(i) != '=') {
+                throw this.error("expected =");
+            }
+            i++;
+            while (i < end && isWhitespace(b.get(i))) {
+                i++;
+            }
+            final byte quote = i < end ? b.get(i) : 0;
+            if (quote != '"' && quote != '\'') {
+                throw this.error("expected quoted attribute value");
+            }
+            final int valueStart = ++i;
+            while (b.get(i) != quote) {
+                i++;
+            }
+            if (4 * count == this.attributes.length) {
+                this.attributes = Arrays.copyOf(this.attributes, 2 * this.attributes.length);
+            }
+            final int a = 4 * count++;
+            this.attributes[a] = attrStart;
+            this.attributes[a + 1] = attrEnd;
+            this.attributes[a + 2] = valueStart;
+            this.attributes[a + 3] = i;
+            i++;
+        }
+        this.attributeCount = count;
+    }
+
+    // skips a start tag, without reading it, returning true if empty:
+    private boolean skipStartTag() throws IOException {
+        this.mark = this.pos;
+        final int end = this.findTagEnd();
+        this.mark = -1;
+        return this.seg.get(end - 1) == '/';
+    }
+
+    // moves past the '>' of the tag starting at mark, returning the index of '>':
+    private int findTagEnd() throws IOException {
+        byte quote = 0;
+        while (true) {
+            if (this.pos == this.limit && !this.readMore()) {
+                throw this.error("unexpected end of document");
+            }
+            final byte c = this.seg.get(this.pos++);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '>') {
+                return this.pos - 1;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            }
+        }
+    }
+
+    private void readEndTag() throws IOException {
+        this.mark = this.pos;
+        final int end = this.findTagEnd();
+        int i = this.mark + 2;
+        this.mark = -1;
+        final int nameStart = i;
+        i = this.readName(i, end);
+        final int nameEnd = i;
+        while (i < end && isWhitespace(this.seg.get(i))) {
+            i++;
+        }
+        if (i != end) {
+            throw this.error("expected >");
+        }
+        if (this.depth == 0) {
+            throw this.error("unexpected element end");
+        }
+        final byte[] expected = this.elementRawNames[this.depth - 1];
+        if (!this.regionEquals(expected, nameStart, nameEnd - nameStart)) {
+            throw this.error("expected: </" + new String(expected, StandardCharsets.UTF_8) + ">");
+        }
+    }
+
+    private int readName(int i, int end) {
+        final ByteBuffer b = this.seg;
+        final int first = i < end ? b.get(i) & 0xFF : 0;
+        if ((first < 'a' || first > 'z') && (first < 'A' || first > 'Z') && first != '_' && first != ':' && first < 0xC0) {
+            throw this.error("name expected");
+        }
+        i++;
+        while (i < end) {
+            final int c = b.get(i) & 0xFF;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '-' || c == ':' || c == '.' || c >= 0x80) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private void push(int nameIdx) {
+        if (this.depth == this.elementNames.length) {
+            this.elementRawNames = Arrays.copyOf(this.elementRawNames, 2 * this.depth);
+            this.elementNames = Arrays.copyOf(this.elementNames, 2 * this.depth);
+        }
+        this.elementRawNames[this.depth] = this.rawNames[nameIdx];
+        this.elementNames[this.depth] = this.symbolNames[nameIdx];
+        this.depth++;
+    }
+
+    private void pop() {
+        this.depth--;
+        this.elementRawNames[this.depth] = null;
+        this.elementNames[this.depth] = null;
+    }
+
+    // name table look-up, returning the slot index:
+    private int nameFor(int start, int len) {
+        final ByteBuffer b = this.seg;
+        int h = 0;
+        for (int i = start; i < start + len; i++) {
+            h = 31 * h + b.get(i);
+        }
+        int slot = (h ^ (h >>> 16)) & (NAMES_SIZE - 1);
+        while (this.rawNames[slot] != null) {
+            if (this.regionEquals(this.rawNames[slot], start, len)) {
+                return slot;
+            }
+            slot = (slot + 1) & (NAMES_SIZE - 1);
+        }
+        if (this.nameCount == MAX_NAMES) { // bound memory for arbitrary input: recycle the table.
+            Arrays.fill(this.rawNames, null);
+            Arrays.fill(this.symbolNames, null);
+            this.nameCount = 0;
+            return this.nameFor(start, len);
+        }
+        final byte[] raw = new byte[len];
+        b.get(start, raw, 0, len);
+        final String rawString = new String(raw, StandardCharsets.UTF_8);
+        this.rawNames[slot] = raw;
+        this.symbolNames[slot] = this.symbols.apply(rawString);
+        this.nameCount++;
+        return slot;
+    }
+
+    private String decodeAttributeValue(int start, int end) {
+        final ByteBuffer b = this.seg;
+        int i = start;
+        byte c;
+        while (i < end && (c = b.get(i)) != '&' && c != '\n' && c != '\r') {
+            i++;
+        }
+        if (i == end) {
+            return this.decode(start, end - start);
+        }
+        int n = this.append(0, start, i - start);
+        while (i < end) {
+            c = b.get(i);
+            if (c == '&') {
+                int semicolon = -1;
+                for (int k = i + 1; k < Math.min(end, i + MAX_ENTITY_LENGTH); k++) {
+                    if (b.get(k) == ';') {
+                        semicolon = k;
+                        break;
+                    }
+                }
+                if (semicolon == -1) {
+                    throw this.error("unterminated entity");
+                }
+                n = this.appendEntityValue(n, i + 1, semicolon);
+                i = semicolon + 1;
+            } else if (c == '\r') {
+                n = this.append(n, (byte) ' ');
+                i += i + 1 < end && b.get(i + 1) == '\n' ? 2 : 1;
+            } else {
+                n = this.append(n, c == '\n' ? (byte) ' ' : c);
+                i++;
+            }
+        }
+        return new String(this.scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private int appendEntity(int n) throws IOException {
+        int semicolon = -1;
+        for (int k = 1; k < MAX_ENTITY_LENGTH; k++) {
+            if (this.pos + k == this.limit && !this.ensure0(k + 1)) {
+                break;
+            }
+            if (this.seg.get(this.pos + k) == ';') {
+                semicolon = this.pos + k;
+                break;
+            }
+        }
+        if (semicolon == -1) {
+            throw this.error("unterminated entity");
+        }
+        n = this.appendEntityValue(n, this.pos + 1, semicolon);
+        this.pos = semicolon + 1;
+        return n;
+    }
+
+    private int appendEntityValue(int n, int start, int end) {
+        final int len = end - start;
+        if (this.regionEquals("lt", start, len)) {
+            return this.append(n, (byte) '<');
+        } else if (this.regionEquals("gt", start, len)) {
+            return this.append(n, (byte) '>');
+        } else if (this.regionEquals("amp", start, len)) {
+            return this.append(n, (byte) '&');
+        } else if (this.regionEquals("quot", start, len)) {
+            return this.append(n, (byte) '"');
+        } else if (this.regionEquals("apos", start, len)) {
+            return this.append(n, (byte) '\'');
+        }
+        final char[] entity = new char[len]; // ASCII, if valid.
+        for (int i = 0; i < len; i++) {
+            entity[i] = (char) (this.seg.get(start + i) & 0xFF);
+        }
+        final String ref = new String(entity);
+        if (len > 1 && entity[0] == '#') {
+            try {
+                final int cp = entity[1] == 'x'
+                        ? Integer.parseInt(ref.substring(2), 16)
+                        : Integer.parseInt(ref.substring(1));
+                final byte[] utf8 = new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8);
+                for (byte u : utf8) {
+                    n = this.append(n, u);
+                }
+                return n;
+            } catch (IllegalArgumentException invalid) {
+                throw this.error("invalid character reference: " + ref);
+            }
+        }
+        throw this.error("unresolved entity: &" + ref + ';');
+    }
+
+    private int appendCData(int n) throws IOException {
+        this.pos += 9; // <![CDATA[
+        while (true) {
+            this.ensure(3);
+            final byte c = this.seg.get(this.pos);
+            if (c == ']' && this.seg.get(this.pos + 1) == ']' && this.seg.get(this.pos + 2) == '>') {
+                this.pos += 3;
+                return n;
+            }
+            n = this.append(n, c);
+            this.pos++;
+        }
+    }
+
+    // skips a CDATA section, returning true if whitespace only:
+    private boolean skipCData() throws IOException {
+        this.pos += 9; // <![CDATA[
+        boolean ws = true;
+        while (true) {
+            this.ensure(3);
+            final byte c = this.seg.get(this.pos);
+            if (c == ']' && this.seg.get(this.pos + 1) == ']' && this.seg.get(this.pos + 2) == '>') {
+                this.pos += 3;
+                return ws;
+            }
+            ws &= isWhitespace(c);
+            this.pos++;
+        }
+    }
+
+    // skips past the given terminator, starting after the given markup prefix length:
+    private void skipUntil(String terminator, int prefixLength) throws IOException {
+        this.pos += prefixLength;
+        final int len = terminator.length();
+        while (true) {
+            this.ensure(len);
+            if (this.regionEquals(terminator, this.pos, len)) {
+                this.pos += len;
+                return;
+            }
+            this.pos++;
+        }
+    }
+
+    private boolean startsWith(String markup) throws IOException {
+        return this.ensure0(markup.length()) && this.regionEquals(markup, this.pos, markup.length());
+    }
+
+    private void ensure(int n) throws IOException {
+        if (!this.ensure0(n)) {
+            throw this.error("unexpected end of document");
+        }
+    }
+
+    private boolean ensure0(int n) throws IOException {
+        while (this.limit - this.pos < n) {
+            if (!this.readMore()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // maps the next segment, starting at the current token, if any:
+    private boolean readMore() throws IOException {
+        final long end = this.base + this.limit;
+        if (end >= this.size) {
+            return false;
+        }
+        final int keep = this.mark >= 0 ? this.mark : this.pos;
+        final long newBase = this.base + keep;
+        final int len = (int) Math.min(this.segmentSize, this.size - newBase);
+        if (newBase + len <= end) {
+            throw this.error("token larger than the mapped segment size: " + this.segmentSize);
+        }
+        this.seg = this.channel.map(FileChannel.MapMode.READ_ONLY, newBase, len);
+        this.base = newBase;
+        this.limit = len;
+        this.pos -= keep;
+        if (this.mark >= 0) {
+            this.mark -= keep;
+        }
+        return true;
+    }
+
+    private String decode(int start, int len) {
+        if (len > this.scratch.length) {
+            this.scratch = new byte[Math.max(len, 2 * this.scratch.length)];
+        }
+        this.seg.get(start, this.scratch, 0, len);
+        return new String(this.scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private int append(int n, byte b) {
+        if (n == this.scratch.length) {
+            this.scratch = Arrays.copyOf(this.scratch, 2 * n);
+        }
+        this.scratch[n] = b;
+        return n + 1;
+    }
+
+    private int append(int n, int start, int len) {
+        if (n + len > this.scratch.length) {
+            this.scratch = Arrays.copyOf(this.scratch, Math.max(n + len, 2 * this.scratch.length));
+        }
+        this.seg.get(start, this.scratch, n, len);
+        return n + len;
+    }
+
+    private InvalidFormatException error(String msg) {
+        return new InvalidFormatException(this.positionDescriptor(), msg);
+    }
+
+    private boolean regionEquals(String ascii, int start, int len) {
+        if (ascii.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (ascii.charAt(i) != this.seg.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionEquals(byte[] bytes, int start, int len) {
+        if (bytes.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (bytes[i] != this.seg.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c >= 0 && c <= ' ';
+    }
+}
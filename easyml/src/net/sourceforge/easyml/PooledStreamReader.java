@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * PooledStreamReader class is the buffered {@linkplain Reader} decoding chars
+ * from an input stream, with the given charset decoder, via the given buffer.
+ * Unlike {@linkplain java.io.InputStreamReader}, it allocates no buffers of its
+ * own, hence the buffer can be pooled, see {@linkplain BufferPool}.
+ * <br/>
+ * Malformed and unmappable input is replaced, as by the
+ * {@linkplain java.io.InputStreamReader}. Closing this reader does not close
+ * the stream.
+ * <br/>
+ * This implementation is not thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class PooledStreamReader extends Reader {
+
+    private static final ByteBuffer DETACHED_BYTES = ByteBuffer.allocate(0);
+    private InputStream in;
+    private final CharsetDecoder decoder;
+    private ByteBuffer bytes;
+    private final char[] pending; // decoded, but not yet read, chars.
+    private int pendingCount;
+    private boolean eof;
+    private boolean flushed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param in      to read from
+     * @param decoder to decode with, configured to replace malformed and
+     *                unmappable input
+     * @param bytes   the byte buffer to use
+     */
+    public PooledStreamReader(InputStream in, CharsetDecoder decoder, byte[] bytes) {
+        this.in = in;
+        this.decoder = decoder.reset();
+        this.bytes = ByteBuffer.wrap(bytes);
+        this.bytes.limit(0);
+        this.pending = new char[2];
+        this.pendingCount = 0;
+        this.eof = false;
+        this.flushed = false;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (this.pendingCount > 0) {
+            return this.readPending(cbuf, off, len);
+        }
+        if (len < this.pending.length) { // too short for a surrogate pair:
+            final int n = this.decode(this.pending, 0, this.pending.length);
+            if (n < 0) {
+                return n;
+            }
+            this.pendingCount = n;
+            return this.readPending(cbuf, off, len);
+        }
+        return this.decode(cbuf, off, len);
+    }
+
+    private int readPending(char[] cbuf, int off, int len) {
+        final int n = Math.min(len, this.pendingCount);
+        System.arraycopy(this.pending, 0, cbuf, off, n);
+        this.pendingCount -= n;
+        System.arraycopy(this.pending, n, this.pending, 0, this.pendingCount);
+        return n;
+    }
+
+    // decodes into the given array, of at least 2 chars, reading as needed:
+    private int decode(char[] cbuf, int off, int len) throws IOException {
+        final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (!this.flushed) {
+            final CoderResult result = this.decoder.decode(this.bytes, out, this.eof);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (this.eof && result.isUnderflow()) {
+                this.decoder.flush(out);
+                this.flushed = true;
+            }
+            if (out.position() > off) {
+                return out.position() - off;
+            }
+            if (!this.eof) {
+                this.fillBytes();
+            }
+        }
+        return -1;
+    }
+
+    private void fillBytes() throws IOException {
+        this.bytes.compact();
+        final int n = this.in.read(this.bytes.array(), this.bytes.position(), this.bytes.remaining());
+        if (n < 0) {
+            this.eof = true;
+        } else {
+            this.bytes.position(this.bytes.position() + n);
+        }
+        this.bytes.flip();
+    }
+
+    /**
+     * Does not close the stream.
+     */
+    @Override
+    public void close() {
+        this.pendingCount = 0;
+    }
+
+    /**
+     * Detaches the buffer, and the stream, from this instance, so that the
+     * buffer can be pooled again while this instance is still referenced.
+     * Further reads return end of stream.
+     */
+    /* default*/ void detachBuffer() {
+        this.in = null;
+        this.bytes = DETACHED_BYTES;
+        this.pendingCount = 0;
+        this.eof = true;
+        this.flushed = true;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * PooledStreamWriter class is the buffered {@linkplain Writer} encoding chars to
+ * an output stream, with the given charset encoder, into the given buffers.
+ * Unlike {@linkplain java.io.OutputStreamWriter}, it allocates no buffers of its
+ * own, hence the buffers can be pooled, see {@linkplain BufferPool}.
+ * <br/>
+ * Malformed and unmappable input is replaced, as by the
+ * {@linkplain java.io.OutputStreamWriter}. The stream is written to only when
+ * the buffers fill up, at {@linkplain #flush()} and at {@linkplain #close()}.
+ * Closing this writer ends the encoding, e.g. writes the trailing shift
+ * sequence of stateful charsets, but does not close the stream.
+ * <br/>
+ * This implementation is not thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class PooledStreamWriter extends Writer {
+
+    private static final char[] DETACHED_CHARS = new char[0];
+    private static final ByteBuffer DETACHED_BYTES = ByteBuffer.allocate(0);
+    private OutputStream out;
+    private final CharsetEncoder encoder;
+    private char[] chars;
+    private ByteBuffer bytes;
+    private int pos;
+    private boolean unflushed; // bytes written to out since its last flush.
+
+    /**
+     * Creates a new instance.
+     *
+     * @param out     to write to
+     * @param encoder to encode with, configured to replace malformed and
+     *                unmappable input
+     * @param chars   the char buffer to use
+     * @param bytes   the byte buffer to use
+     */
+    public PooledStreamWriter(OutputStream out, CharsetEncoder encoder, char[] chars, byte[] bytes) {
+        this.out = out;
+        this.encoder = encoder.reset();
+        this.chars = chars;
+        this.bytes = ByteBuffer.wrap(bytes);
+        this.pos = 0;
+        this.unflushed = false;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void write(int c) throws IOException {
+        if (this.pos == this.chars.length) {
+            this.encodeChars();
+        }
+        this.chars[this.pos++] = (char) c;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            if (this.pos == this.chars.length) {
+                this.encodeChars();
+            }
+            final int n = Math.min(len, this.chars.length - this.pos);
+            System.arraycopy(cbuf, off, this.chars, this.pos, n);
+            this.pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (this.pos == this.chars.length) {
+                this.encodeChars();
+            }
+            final int n = Math.min(len, this.chars.length - this.pos);
+            str.getChars(off, off + n, this.chars, this.pos);
+            this.pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    // encodes the buffered chars, keeping an unpaired trailing high surrogate:
+    private void encodeChars() throws IOException {
+        final CharBuffer in = this.encodeChars(false);
+        final int remaining = in.remaining();
+        if (remaining > 0) {
+            System.arraycopy(this.chars, in.position(), this.chars, 0, remaining);
+        }
+        this.pos = remaining;
+    }
+
+    private CharBuffer encodeChars(boolean endOfInput) throws IOException {
+        if (this.out == null) {
+            throw new IOException("closed or detached");
+        }
+        final CharBuffer in = CharBuffer.wrap(this.chars, 0, this.pos);
+        while (true) {
+            final CoderResult result = this.encoder.encode(in, this.bytes, endOfInput);
+            if (result.isOverflow()) {
+                this.writeBytes();
+            } else if (result.isUnderflow()) {
+                return in;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void writeBytes() throws IOException {
+        if (this.bytes.position() > 0) {
+            this.out.write(this.bytes.array(), 0, this.bytes.position());
+            this.bytes.clear();
+            this.unflushed = true;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.out == null) {
+            return; // closed or detached: nothing to flush.
+        }
+        this.encodeChars();
+        this.writeBytes();
+        this.out.flush();
+        this.unflushed = false;
+    }
+
+    /**
+     * Ends the encoding and flushes this writer, without closing the stream.
+     * The stream is flushed only if written to since its last flush. Further
+     * writes fail.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.out == null) {
+            return; // closed or detached.
+        }
+        this.encodeChars(true);
+        this.pos = 0;
+        while (this.encoder.flush(this.bytes).isOverflow()) {
+            this.writeBytes();
+        }
+        this.writeBytes();
+        if (this.unflushed) {
+            this.out.flush();
+            this.unflushed = false;
+        }
+        this.detachBuffers();
+    }
+
+    /**
+     * Detaches the buffers, and the stream, from this instance, so that the
+     * buffers can be pooled again while this instance is still referenced.
+     * Unflushed chars are discarded, and further writes fail.
+     */
+    /* default*/ void detachBuffers() {
+        this.out = null;
+        this.chars = DETACHED_CHARS;
+        this.bytes = DETACHED_BYTES;
+        this.pos = 0;
+    }
+}
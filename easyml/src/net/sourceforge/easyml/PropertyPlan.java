@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import net.sourceforge.easyml.marshalling.MarshalContext;
+import net.sourceforge.easyml.util.ReflectionUtil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PropertyPlan class is the per-class compiled form of the bean properties
+ * used by the {@linkplain XMLWriter} <code>writeObject</code>. A plan is
+ * computed once per class and configuration, containing the resolved getters,
+ * aliased names and exclusions, so that the bean path does not have to
+ * reflect on fields and methods for each written object.
+ * <br/>
+ * This implementation is immutable and thus thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class PropertyPlan {
+
+    /**
+     * Property class is a resolved bean property.
+     */
+    static final class Property {
+
+        /**
+         * The property field.
+         */
+        final Field field;
+        /**
+         * The property getter, if defined by the field's class, else null.
+         */
+        final Method accessor;
+        /**
+         * The aliased property name, used as XML element name.
+         */
+        final String name;
+
+        private Property(Field field, Method accessor, String name) {
+            this.field = field;
+            this.accessor = accessor;
+            this.name = name;
+            if (accessor == null) {
+                ReflectionUtil.setAccessible(field);
+            }
+        }
+
+        /**
+         * Reads this property from the given object.
+         *
+         * @param o the source
+         * @return property value
+         * @throws IllegalAccessException if no getter and field can not be accessed
+         */
+        Object read(Object o) throws IllegalAccessException {
+            return this.accessor != null ? ReflectionUtil.readProperty(o, this.field, this.accessor) : this.field.get(o);
+        }
+    }
+
+    private static final Property[] NO_PROPERTIES = new Property[0];
+    private final Property[] properties;
+
+    private PropertyPlan(Property[] properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Creates the plan to be used when writing objects of the given class.
+     * The plan contains the non-excluded properties, in class hierarchy order
+     * starting from the given class.
+     *
+     * @param cls to plan for
+     * @param ctx to resolve aliases and exclusions with
+     * @return the write plan
+     */
+    static PropertyPlan forWrite(Class cls, MarshalContext ctx) {
+        final List<Property> properties = new ArrayList<>();
+        while (cls != Object.class) { // process inheritance:
+            for (Field f : cls.getDeclaredFields()) { // process composition:
+                if (ctx.excluded(f)) {
+                    continue; // skip excluded field.
+                }
+                final ReflectionUtil.FieldInfo fi = ReflectionUtil.fieldInfoForRead(f);
+                if (!fi.isProperty) {
+                    continue; // skip non-property.
+                }
+                properties.add(new Property(f, fi.accessor, ctx.aliasOrNameFor(f)));
+            }
+            cls = cls.getSuperclass();
+        }
+        return new PropertyPlan(properties.toArray(NO_PROPERTIES));
+    }
+
+    /**
+     * Returns the properties to write, in order.
+     *
+     * @return the write properties
+     */
+    Property[] properties() {
+        return this.properties;
+    }
+}
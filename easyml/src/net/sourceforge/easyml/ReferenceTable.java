@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ReferenceTable class is the table of the objects decoded by an
+ * {@linkplain XMLReader} in the current object graph, by id, for resolving the
+ * idrefs.
+ * <br/>
+ * The ids written by {@linkplain XMLWriter} are consecutive positive ints,
+ * hence the objects are kept in an array, indexed by id. Any other ids, i.e.
+ * non-int or sparse ones, are kept in a map by their string form, so that the
+ * array is bounded by the number of objects. Clearing releases only the used
+ * array range, and tables grown by a large graph are shrunk after being
+ * repeatedly cleared under-used.
+ * <br/>
+ * This implementation is not thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class ReferenceTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int SHRINK_AFTER = 16; // consecutive under-used clears.
+    private Object[] byId;
+    private int used; // the array range to release at clear.
+    private int size;
+    private Map<String, Object> maybeOthers; // lazy.
+    private int underUsedClears;
+
+    /**
+     * Creates a new empty instance.
+     */
+    ReferenceTable() {
+        this.byId = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Puts the given object under the given id, replacing the previous one.
+     * Objects without id, in compact ids mode, are not put.
+     *
+     * @param id    the id, if a non-negative int, or else -1
+     * @param rawId the string id, if id is -1, else ignored, or null if none
+     * @param value the decoded object
+     */
+    void put(int id, String rawId, Object value) {
+        if (id >= 0) {
+            if (id >= this.byId.length && id < 2 * this.size + INITIAL_CAPACITY) { // dense: grow.
+                this.byId = Arrays.copyOf(this.byId, Math.max(2 * this.byId.length, id + 1));
+            }
+            if (id < this.byId.length) {
+                if (this.byId[id] == null) {
+                    this.size++;
+                }
+                this.byId[id] = value;
+                this.used = Math.max(this.used, id + 1);
+                return;
+            }
+            rawId = Integer.toString(id); // sparse.
+        } else if (rawId == null) { // no id.
+            return;
+        }
+        if (this.maybeOthers == null) {
+            this.maybeOthers = new HashMap<>();
+        }
+        if (this.maybeOthers.put(rawId, value) == null) {
+            this.size++;
+        }
+    }
+
+    /**
+     * Returns the object under the given id, or null if none.
+     *
+     * @param id    the id, if a non-negative int, or else -1
+     * @param rawId the string id, required if id is -1, else ignored
+     * @return the decoded object or null
+     */
+    Object get(int id, String rawId) {
+        if (id >= 0 && id < this.byId.length) {
+            final Object ret = this.byId[id];
+            if (ret != null || this.maybeOthers == null) {
+                return ret;
+            }
+        }
+        if (this.maybeOthers == null) {
+            return null;
+        }
+        return this.maybeOthers.get(id >= 0 ? Integer.toString(id) : rawId);
+    }
+
+    /**
+     * Clears this table, releasing the objects.
+     */
+    void clear() {
+        if (this.byId.length > INITIAL_CAPACITY && 8 * this.used < this.byId.length) {
+            if (++this.underUsedClears == SHRINK_AFTER) {
+                this.underUsedClears = 0;
+                this.byId = new Object[INITIAL_CAPACITY];
+                this.used = 0;
+            }
+        } else {
+            this.underUsedClears = 0;
+        }
+        Arrays.fill(this.byId, 0, this.used, null);
+        this.used = 0;
+        this.size = 0;
+        this.maybeOthers = null;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+/**
+ * ValueParser class parses the primitive values written by
+ * {@linkplain XMLWriter} from character sequences, such as the text windows of
+ * the built-in parsers, without creating intermediary strings. The results and
+ * the errors are the same as those of the corresponding <code>parseX</code>
+ * methods of the JDK wrapper classes.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class ValueParser {
+
+    private static final int MAX_FAST_DIGITS = 18; // any 18 digits fit into a long.
+    private static final long MAX_FAST_MANTISSA = 1L << 53; // exactly representable as double.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Parses an int, similar to {@linkplain Integer#parseInt(String)}.
+     *
+     * @param text to parse
+     * @return the int
+     * @throws NumberFormatException if text is not an int
+     */
+    static int parseInt(CharSequence text) {
+        return Integer.parseInt(text, 0, text.length(), 10);
+    }
+
+    /**
+     * Parses a long, similar to {@linkplain Long#parseLong(String)}.
+     *
+     * @param text to parse
+     * @return the long
+     * @throws NumberFormatException if text is not a long
+     */
+    static long parseLong(CharSequence text) {
+        return Long.parseLong(text, 0, text.length(), 10);
+    }
+
+    /**
+     * Parses a non-negative decimal int, such as the ids and lengths written
+     * by {@linkplain XMLWriter}, without signs, spaces or leading zeros.
+     *
+     * @param text to parse
+     * @return the int, or -1 if text is not such an int
+     */
+    static int parseIndex(CharSequence text) {
+        final int len = text.length();
+        if (len == 0 || len > 10 || len > 1 && text.charAt(0) == '0') {
+            return -1;
+        }
+        long ret = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            ret = 10 * ret + (c - '0');
+        }
+        return ret <= Integer.MAX_VALUE ? (int) ret : -1;
+    }
+
+    /**
+     * Parses a boolean, similar to {@linkplain Boolean#parseBoolean(String)}.
+     *
+     * @param text to parse
+     * @return true if text equals, ignoring case, <code>true</code>
+     */
+    static boolean parseBoolean(CharSequence text) {
+        return text.length() == 4
+                && Character.toLowerCase(text.charAt(0)) == 't'
+                && Character.toLowerCase(text.charAt(1)) == 'r'
+                && Character.toLowerCase(text.charAt(2)) == 'u'
+                && Character.toLowerCase(text.charAt(3)) == 'e';
+    }
+
+    /**
+     * Parses a double, similar to {@linkplain Double#parseDouble(String)}.
+     * Plain decimals of at most 18 digits, whose digits read as an integer do
+     * not exceed 2<sup>53</sup>, with a decimal exponent within +/-22, as
+     * written for most values, are computed exactly via a single correctly
+     * rounded multiplication or division; any other text is delegated to the
+     * JDK parser.
+     *
+     * @param text to parse
+     * @return the double
+     * @throws NumberFormatException if text is not a double
+     */
+    static double parseDouble(CharSequence text) {
+        final int len = text.length();
+        int i = 0;
+        final boolean negative = len > 0 && text.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean dot = false;
+        for (; i < len; i++) {
+            final char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_FAST_DIGITS) {
+                    return parseDoubleSlow(text);
+                }
+                mantissa = 10 * mantissa + (c - '0');
+                if (dot) {
+                    exponent--;
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return parseDoubleSlow(text);
+        }
+        if (i < len) { // exponent:
+            final char e = text.charAt(i++);
+            if (e != 'E' && e != 'e' || i == len) {
+                return parseDoubleSlow(text);
+            }
+            final boolean negativeExp = text.charAt(i) == '-';
+            if (negativeExp || text.charAt(i) == '+') {
+                i++;
+            }
+            if (i == len || len - i > 3) {
+                return parseDoubleSlow(text);
+            }
+            int exp = 0;
+            for (; i < len; i++) {
+                final char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return parseDoubleSlow(text);
+                }
+                exp = 10 * exp + (c - '0');
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+        if (mantissa > MAX_FAST_MANTISSA || exponent < -22 || exponent > 22) {
+            return parseDoubleSlow(text);
+        }
+        final double value = exponent < 0
+                ? mantissa / POWERS_OF_TEN[-exponent]
+                : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(CharSequence text) {
+        return Double.parseDouble(text.toString());
+    }
+
+    private ValueParser() {
+    }
+}
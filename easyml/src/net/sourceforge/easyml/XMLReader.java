@@ -27,7 +27,9 @@ import net.sourceforge.easyml.util.XMLUtil;
 import org.w3c.dom.Document;
 import org.xmlpull.v1.XmlPullParser;
 
+import javax.xml.stream.XMLStreamReader;
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -35,9 +37,14 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.*;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -65,7 +72,7 @@ import java.util.stream.StreamSupport;
  * shared configuration can be created, via constructors.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.7.3
+ * @version 1.9.0
  * @see XMLWriter
  * @since 1.0
  */
@@ -76,23 +83,44 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      * reasons, to define whitelists or blacklists of classes that are outputted
      * by the XMLReader. By default, the security policy is in <b>blacklist</b>
      * mode.
+     * <br/>
+     * The containment of each checked class is memoized until the policy is
+     * modified. Blacklisted class names of the read objects are rejected before
+     * being loaded.
      */
     public static final class SecurityPolicy {
 
         private final Set<Class> strict;
         private final List<Class> inheritance;
         private boolean whitelist;
+        private volatile ClassValue<Boolean> containsCache;
+        private volatile Map<String, Class> names; // lazy: the strict and hierarchy root classes, by name.
 
         private SecurityPolicy() {
             this.strict = new HashSet<>();
             this.inheritance = new ArrayList<>();
             this.whitelist = false;
+            this.invalidate();
         }
 
         SecurityPolicy(boolean whitelist, Class[] classes, Class[] classHierarchies) {
             this.strict = new HashSet<>(Arrays.asList(classes));
             this.inheritance = new ArrayList<>(Arrays.asList(classHierarchies));
             this.whitelist = whitelist;
+            this.invalidate();
+        }
+
+        /**
+         * Discards all memoized containment results.
+         */
+        private void invalidate() {
+            this.containsCache = new ClassValue<Boolean>() {
+                @Override
+                protected Boolean computeValue(Class<?> type) {
+                    return SecurityPolicy.this.strict.contains(type) || SecurityPolicy.this.containsHierarchically(type);
+                }
+            };
+            this.names = null;
         }
 
         /**
@@ -147,7 +175,9 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
                 throw new IllegalArgumentException("c: is abstract or an interface");
             }
             // we add c even if it's contained hierarchically, for fast contains check:
-            return this.strict.add(c);
+            final boolean ret = this.strict.add(c);
+            this.invalidate();
+            return ret;
         }
 
         /**
@@ -176,7 +206,9 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
                     }
                 }
                 // ..and adding root hierarchy:
-                return this.inheritance.add(root);
+                this.inheritance.add(root);
+                this.invalidate();
+                return true;
             }
             return false;
         }
@@ -198,7 +230,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
          * @return true if class has been found, false otherwise
          */
         public boolean contains(Class c) {
-            return this.strict.contains(c) || this.containsHierarchically(c);
+            return this.containsCache.get(c);
         }
 
         /**
@@ -214,6 +246,40 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
             }
         }
 
+        /**
+         * Checks if the given class name is allowed w.r.t this policy, before
+         * the class is loaded. Blacklists reject the names of the contained
+         * classes and hierarchy roots. Whitelists accept all names, since the
+         * component, element and subclass names are unknown before loading:
+         * the loaded class is checked via {@linkplain #check(Class)}.
+         *
+         * @param className to check
+         * @throws IllegalClassException when the given name is contained in this blacklist
+         */
+        public void checkName(String className) {
+            if (!this.whitelist) {
+                final Class illegal = this.names().get(className);
+                if (illegal != null) {
+                    throw new IllegalClassException(illegal);
+                }
+            }
+        }
+
+        private Map<String, Class> names() {
+            Map<String, Class> ret = this.names;
+            if (ret == null) {
+                ret = new HashMap<>();
+                for (Class c : this.strict) {
+                    ret.put(c.getName(), c);
+                }
+                for (Class c : this.inheritance) {
+                    ret.put(c.getName(), c);
+                }
+                this.names = ret;
+            }
+            return ret;
+        }
+
         /**
          * Clears this instance of all classes.
          */
@@ -221,6 +287,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
             this.strict.clear();
             this.inheritance.clear();
             this.whitelist = false; // otherwise this empty policy will reject everything after clear.
+            this.invalidate();
         }
 
         /**
@@ -265,6 +332,38 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
             return this.target.rootTag;
         }
 
+        /**
+         * Returns the canonical, unescaped, element name for the given raw tag
+         * name, as read from the XML. The DTD element names and the names of
+         * the registered strategies resolve to the very same instances used as
+         * keys, hence the dispatch and the strategies' name comparisons take
+         * the identity fast path. Implementations should call this method at
+         * most once per parsing event, from {@linkplain #elementName()}.
+         *
+         * @param rawName the tag name, as read
+         * @return the canonical element name
+         */
+        protected final String symbolFor(String rawName) {
+            return this.target.symbolFor(rawName);
+        }
+
+        /**
+         * Returns the value of the given attribute of the current element
+         * start, if it is a non-negative decimal int, such as the ids and
+         * lengths written by {@linkplain XMLWriter}. This implementation parses
+         * {@linkplain #elementAttribute(String)}; drivers may override in order
+         * to parse the value in place, without creating a string.
+         *
+         * @param name the attribute name
+         * @return the int, or -1 if the element has no such attribute or if the
+         * value is not such an int, in which case it is to be read via
+         * {@linkplain #elementAttribute(String)}
+         */
+        public int elementIntAttribute(String name) {
+            final String value = this.elementAttribute(name);
+            return value != null ? ValueParser.parseIndex(value) : -1;
+        }
+
         /**
          * {@inheritDoc }
          */
@@ -406,17 +505,24 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         Map<String, Object> get();
     }
 
-    private static final char FIELD_FQN_SEPARATOR = '#';
+    /* default*/ static final char FIELD_FQN_SEPARATOR = '#';
+    private static final int MAX_SYMBOLS = 1024;
     private Driver driver;
     private boolean beforeRoot;
     /* default*/ String rootTag;
-    private Map<String, Object> decoded;
+    private ReferenceTable decoded;
+    /* default*/ boolean treeMode;
+    /* default*/ boolean compactIds;
+    /* default*/ int referenceScope;
+    private int scopedValues;
     private boolean sharedConfiguration;
     private UnmarshalContextImpl context;
     /* default*/ Map<String, Object> cachedAliasingReflection;
     private Set<String> maybeExclusions;
+    /* default*/ Map<Class, FieldIndex> cachedFieldIndexes;
     private Map<String, SimpleStrategy> simpleStrategies;
     private Map<String, CompositeStrategy> compositeStrategies;
+    private Map<String, String> maybeSymbols;
     /* default*/ SimpleDateFormat dateFormat;
     /* default*/ SecurityPolicy maybeSecurityPolicy;
 
@@ -432,13 +538,18 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
     private void init(AliasingReflectionCacheSupplier getAliasingReflectionCache) {
         this.beforeRoot = true;
         this.rootTag = DTD.ELEMENT_EASYML;
-        this.decoded = new HashMap<>();
+        this.decoded = new ReferenceTable();
+        this.treeMode = false;
+        this.compactIds = false;
+        this.referenceScope = 0;
         this.sharedConfiguration = false;
         this.context = new UnmarshalContextImpl();
         this.cachedAliasingReflection = getAliasingReflectionCache.get();
         this.maybeExclusions = null; // lazy.
+        this.cachedFieldIndexes = new ConcurrentHashMap<>();
         this.simpleStrategies = new StrategyHashMap<>();
         this.compositeStrategies = new StrategyHashMap<>();
+        this.maybeSymbols = null; // lazy.
         this.dateFormat = new SimpleDateFormat(DTD.FORMAT_DATE);
         this.maybeSecurityPolicy = null; // lazy.
         // add DTD strategies by default:
@@ -468,38 +579,63 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
     private void initIdentically(XMLReader other) {
         this.beforeRoot = true;
         this.rootTag = other.rootTag;
-        this.decoded = new HashMap<>();
+        this.decoded = new ReferenceTable();
+        this.treeMode = other.treeMode;
+        this.compactIds = other.compactIds;
+        this.referenceScope = other.referenceScope;
         this.sharedConfiguration = true;
         this.context = new UnmarshalContextImpl();
         this.cachedAliasingReflection = other.cachedAliasingReflection;
         this.maybeExclusions = other.maybeExclusions;
+        this.cachedFieldIndexes = other.cachedFieldIndexes;
         this.simpleStrategies = other.simpleStrategies;
         this.compositeStrategies = other.compositeStrategies;
+        this.maybeSymbols = null; // lazy.
         this.dateFormat = new SimpleDateFormat(other.dateFormat.toPattern());
         this.maybeSecurityPolicy = other.maybeSecurityPolicy;
     }
 
     /**
      * Creates a new instance with the given <code>reader</code> to use and the
-     * <code>kXML2</code> parser as default. The parser is set to the given
-     * reader.
+     * built-in parser as default, falling back to <code>kXML2</code> for
+     * foreign input. The parser is set to the given reader.
      *
      * @param reader to read input with
      */
     public XMLReader(Reader reader) {
-        this.driver = new XMLReaderTextDriver(this, reader);
+        this.driver = new XMLReaderDialectDriver(this, reader);
         this.init(AliasingReflectionCacheSupplier.DEFAULT);
     }
 
     /**
-     * Creates a new instance with the given <code>in</code> stream to read from
-     * and the <code>kXML2</code> parser as default. The parser is set to the
-     * given stream.
+     * Creates a new instance with the given <code>in</code> stream to read
+     * UTF-8 encoded XML from and the built-in parser as default, falling back
+     * to <code>kXML2</code> for foreign input. The parser is set to the given
+     * stream.
      *
      * @param in stream from which to read
      */
     public XMLReader(InputStream in) {
-        this(new InputStreamReader(in));
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a new instance reading the given UTF-8 encoded file, memory-mapped,
+     * via the built-in parser, falling back to <code>kXML2</code> for foreign
+     * input. The file is closed on {@linkplain #close()}.
+     *
+     * @param in file from which to read
+     */
+    @SuppressWarnings("this-escape") // the driver only stores the reference to this reader.
+    public XMLReader(Path in) {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(in, StandardOpenOption.READ);
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+        this.driver = new XMLReaderDialectDriver(this, channel, true);
+        this.init(AliasingReflectionCacheSupplier.DEFAULT);
     }
 
     /**
@@ -516,15 +652,29 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
     }
 
     /**
-     * Creates a new instance with the given <code>in</code> stream to read from
-     * and the <code>parser</code> to process XML with. The parser is set to the
-     * given stream.
+     * Creates a new instance with the given <code>in</code> stream to read
+     * UTF-8 encoded XML from and the <code>parser</code> to process XML with.
+     * The parser is set to the given stream.
      *
      * @param in     stream from which to read
      * @param parser to process the in XML with
      */
     public XMLReader(InputStream in, XmlPullParser parser) {
-        this(new InputStreamReader(in), parser);
+        this(new InputStreamReader(in, StandardCharsets.UTF_8), parser);
+    }
+
+    /**
+     * Creates a new instance with the given <code>in</code> StAX stream reader
+     * to read from, starting at its current element start, if positioned on
+     * one, else at its next element start. The stream reader is not closed by
+     * this instance, hence it can be read from further.
+     *
+     * @param in stream reader from which to read
+     */
+    @SuppressWarnings("this-escape") // the driver only stores the reference to this reader.
+    public XMLReader(XMLStreamReader in) {
+        this.driver = new XMLReaderStAXDriver(this, in, null);
+        this.init(AliasingReflectionCacheSupplier.DEFAULT);
     }
 
     /**
@@ -580,6 +730,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      */
     public Map<String, SimpleStrategy> getSimpleStrategies() {
         this.checkNotSharedConfiguration();
+        this.maybeSymbols = null; // re-seed.
         return this.simpleStrategies;
     }
 
@@ -597,6 +748,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      */
     public Map<String, CompositeStrategy> getCompositeStrategies() {
         this.checkNotSharedConfiguration();
+        this.maybeSymbols = null; // re-seed.
         return this.compositeStrategies;
     }
 
@@ -645,6 +797,87 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         }
         this.checkNotSharedConfiguration();
         this.rootTag = rootTag;
+        this.maybeSymbols = null; // re-seed.
+    }
+
+    /**
+     * Gets the {@linkplain #treeMode} property.
+     *
+     * @return the property value
+     */
+    public boolean isTreeMode() {
+        return this.treeMode;
+    }
+
+    /**
+     * Sets the {@linkplain #treeMode} property. In tree mode, the read object
+     * graphs are expected to be trees, as written by a tree mode
+     * {@linkplain XMLWriter}: the id attributes are neither required nor
+     * tracked, and idref attributes are rejected as invalid format.
+     *
+     * @param treeMode true if read object graphs as trees, false otherwise
+     * @throws IllegalStateException if shared configuration
+     * @see XMLWriter#setTreeMode(boolean)
+     */
+    public void setTreeMode(boolean treeMode) {
+        this.checkNotSharedConfiguration();
+        this.treeMode = treeMode;
+    }
+
+    /**
+     * Gets the {@linkplain #compactIds} property.
+     *
+     * @return the property value
+     */
+    public boolean isCompactIds() {
+        return this.compactIds;
+    }
+
+    /**
+     * Sets the {@linkplain #compactIds} property. In compact ids mode, the
+     * objects are read as written by a compact ids mode {@linkplain XMLWriter}:
+     * the id attribute is optional, present only on the objects which are
+     * referenced again. Otherwise, each object element requires an id.
+     *
+     * @param compactIds true if ids are optional, false otherwise
+     * @throws IllegalStateException if shared configuration
+     * @see XMLWriter#setCompactIds(boolean)
+     */
+    public void setCompactIds(boolean compactIds) {
+        this.checkNotSharedConfiguration();
+        this.compactIds = compactIds;
+    }
+
+    /**
+     * Gets the {@linkplain #referenceScope} property.
+     *
+     * @return the property value
+     */
+    public int getReferenceScope() {
+        return this.referenceScope;
+    }
+
+    /**
+     * Sets the {@linkplain #referenceScope} property: the number of values
+     * read via {@linkplain #read()} or {@linkplain #readArray(Class)} after
+     * which the decoded objects are released, or 0 for the whole document,
+     * which is the default. Values read via the primitive <code>readX</code>
+     * methods, and failed reads, are not counted. It must match the reference
+     * scope of the {@linkplain XMLWriter} which wrote the input, as recorded on
+     * the root element, else reading fails at the root.
+     *
+     * @param referenceScope the number of values per scope, or 0 for the
+     *                       whole document
+     * @throws IllegalArgumentException if negative
+     * @throws IllegalStateException    if shared configuration
+     * @see XMLWriter#setReferenceScope(int)
+     */
+    public void setReferenceScope(int referenceScope) {
+        if (referenceScope < 0) {
+            throw new IllegalArgumentException("referenceScope: negative: " + referenceScope);
+        }
+        this.checkNotSharedConfiguration();
+        this.referenceScope = referenceScope;
     }
 
     /**
@@ -679,6 +912,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
             throw new IllegalArgumentException("alias: null, empty, or contains illegal XML chars: " + alias);
         }
         this.checkNotSharedConfiguration();
+        this.cachedFieldIndexes.clear();
         this.cachedAliasingReflection.put(alias, aliased);
     }
 
@@ -711,6 +945,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         if (maybeExclusions == null) {
             maybeExclusions = new HashSet<>();
         }
+        this.cachedFieldIndexes.clear();
         this.maybeExclusions.add(qualifiedFieldKey(declaring, field));
     }
 
@@ -730,19 +965,47 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      * @return boolean read
      */
     public boolean readBoolean() {
-        return Boolean.parseBoolean(this.readValue(DTD.TYPE_BOOLEAN));
+        this.startValue(DTD.TYPE_BOOLEAN);
+        final boolean ret = this.driver.readBooleanValue();
+        this.endValue();
+        return ret;
     }
 
     // reads values for the above api:
     private String readValue(String element) {
+        this.startValue(element);
+        final String ret = this.driver.readValue();
+        this.endValue();
+        return ret;
+    }
+
+    private void startValue(String element) {
         this.ensureRootStartPos();
         if (!this.driver.elementName().equals(element)) {
             throw new InvalidFormatException(this.driver.positionDescriptor(),
                     "expected: " + element + ", found: " + this.driver.elementName());
         }
-        final String ret = this.driver.readValue();
+    }
+
+    private void endValue() {
         this.driver.next(); // consume element end.
         this.ensureRootEndClear();
+    }
+
+    // reads ints for the above api, range-checked as by the parseX methods of the JDK wrappers:
+    private int readIntValue(String element, int min, int max) {
+        this.startValue(element);
+        final int ret;
+        try {
+            ret = this.driver.readIntValue();
+        } catch (NumberFormatException nfx) {
+            throw new InvalidFormatException(this.driver.positionDescriptor(), nfx);
+        }
+        if (ret < min || ret > max) {
+            throw new InvalidFormatException(this.driver.positionDescriptor(),
+                    new NumberFormatException("Value out of range. Value:\"" + ret + "\""));
+        }
+        this.endValue();
         return ret;
     }
 
@@ -769,11 +1032,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      * @return byte read
      */
     public byte readByte() {
-        try {
-            return Byte.parseByte(this.readValue(ByteStrategy.NAME));
-        } catch (NumberFormatException nfx) {
-            throw new InvalidFormatException(this.driver.positionDescriptor(), nfx);
-        }
+        return (byte) this.readIntValue(ByteStrategy.NAME, Byte.MIN_VALUE, Byte.MAX_VALUE);
     }
 
     /**
@@ -784,11 +1043,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      * @return short read
      */
     public short readShort() {
-        try {
-            return Short.parseShort(this.readValue(ShortStrategy.NAME));
-        } catch (NumberFormatException nfx) {
-            throw new InvalidFormatException(this.driver.positionDescriptor(), nfx);
-        }
+        return (short) this.readIntValue(ShortStrategy.NAME, Short.MIN_VALUE, Short.MAX_VALUE);
     }
 
     /**
@@ -797,11 +1052,15 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      * @return double read
      */
     public double readDouble() {
+        this.startValue(DTD.TYPE_DOUBLE);
+        final double ret;
         try {
-            return Double.parseDouble(this.readValue(DTD.TYPE_DOUBLE));
+            ret = this.driver.readDoubleValue();
         } catch (NumberFormatException nfx) {
             throw new InvalidFormatException(this.driver.positionDescriptor(), nfx);
         }
+        this.endValue();
+        return ret;
     }
 
     /**
@@ -825,11 +1084,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      * @return int read
      */
     public int readInt() {
-        try {
-            return Integer.parseInt(this.readValue(DTD.TYPE_INT));
-        } catch (NumberFormatException nfx) {
-            throw new InvalidFormatException(this.driver.positionDescriptor(), nfx);
-        }
+        return this.readIntValue(DTD.TYPE_INT, Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
     /**
@@ -840,11 +1095,15 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      * @return long read
      */
     public long readLong() {
+        this.startValue(LongStrategy.NAME);
+        final long ret;
         try {
-            return Long.parseLong(this.readValue(LongStrategy.NAME));
+            ret = this.driver.readLongValue();
         } catch (NumberFormatException nfx) {
             throw new InvalidFormatException(this.driver.positionDescriptor(), nfx);
         }
+        this.endValue();
+        return ret;
     }
 
     /**
@@ -884,6 +1143,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         this.ensureRootStartPos();
         try {
             final Object ret = this.read0(componentType);
+            this.endScopedValue();
             return ret;
         } catch (RuntimeException ex) {
             this.driver.consumeFully();
@@ -893,6 +1153,13 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         }
     }
 
+    private void endScopedValue() {
+        if (this.referenceScope != 0 && ++this.scopedValues == this.referenceScope) {
+            this.scopedValues = 0;
+            this.decoded.clear();
+        }
+    }
+
     // reads, always starting at the element start and ending after the element end:
     private Object read0(Class componentType) {
         final String localPartName = this.driver.elementName();
@@ -900,7 +1167,7 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         // non-nil:
         SimpleStrategy ss = this.simpleStrategies.get(localPartName);
         if (ss != null) {
-            final Object ret = ss.unmarshal(this.driver.readValue(), this.context);
+            final Object ret = this.readSimple(ss);
             // security check:
             this.ensureSecurityPolicy(ret);
             this.driver.next(); // consume element end.
@@ -917,28 +1184,47 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         try {
             final CompositeStrategy cs = this.compositeStrategies.get(localPartName);
             if (cs != null) {
+                this.ensureSecurityPolicyName();
+                if (this.treeMode) {
+                    final Object newed = cs.unmarshalNew(this.driver, this.context);
+                    this.ensureSecurityPolicy(newed);
+                    @SuppressWarnings("unchecked") // newed was created by cs, hence is of its target type.
+                    final Object inited = cs.unmarshalInit(newed, this.driver, this.context);
+                    if (newed != inited) {
+                        this.ensureSecurityPolicy(inited);
+                    }
+                    this.driver.next();// consume composite element end.
+                    return inited;
+                }
                 // read id attr as the unmarshalNew might move the reader:
-                final String idAttr = this.driver.elementRequiredAttribute(DTD.ATTRIBUTE_ID);
+                final int id = this.driver.elementIntAttribute(DTD.ATTRIBUTE_ID);
+                final String rawId = id < 0 ? this.elementRawId() : null;
                 // instantiate, secure and register composite:
                 final Object newed = cs.unmarshalNew(this.driver, this.context);
                 this.ensureSecurityPolicy(newed);
-                this.decoded.put(idAttr, newed);
+                this.decoded.put(id, rawId, newed);
                 // init composite:
+                @SuppressWarnings("unchecked") // newed was created by cs, hence is of its target type.
                 final Object inited = cs.unmarshalInit(newed, this.driver, this.context);
                 if (newed != inited) { // support features such as immutable objects or Serializable readResolve:
                     this.ensureSecurityPolicy(inited);
-                    this.decoded.put(idAttr, inited);
+                    this.decoded.put(id, rawId, inited);
                 }
                 this.driver.next();// consume composite element end.
                 return inited;
             }
             // object:
             if (localPartName.equals(DTD.ELEMENT_OBJECT)) {
-                final String idRef = this.driver.elementAttribute(DTD.ATTRIBUTE_IDREF);
-                if (idRef != null) { // idref-ed object:
-                    final Object refed = this.decoded.get(idRef);
+                final int idRef = this.driver.elementIntAttribute(DTD.ATTRIBUTE_IDREF);
+                final String rawIdRef = idRef < 0 ? this.driver.elementAttribute(DTD.ATTRIBUTE_IDREF) : null;
+                if (idRef >= 0 || rawIdRef != null) { // idref-ed object:
+                    if (this.treeMode) {
+                        throw new InvalidFormatException(this.driver.positionDescriptor(), "idref in tree mode");
+                    }
+                    final Object refed = this.decoded.get(idRef, rawIdRef);
                     if (refed == null) {
-                        throw new InvalidFormatException(this.driver.positionDescriptor(), "invalid idref: " + idRef);
+                        throw new InvalidFormatException(this.driver.positionDescriptor(),
+                                "invalid idref: " + (idRef >= 0 ? Integer.toString(idRef) : rawIdRef));
                     }
                     this.driver.next(); // consume idref-ed object element start.
                     this.driver.next(); // consume idref-ed object element end.
@@ -964,56 +1250,129 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         }
     }
 
+    // read0: simple: the built-in number and boolean strategies parse in place:
+    private Object readSimple(SimpleStrategy ss) {
+        try {
+            if (ss == IntStrategy.INSTANCE) {
+                return this.driver.readIntValue();
+            }
+            if (ss == LongStrategy.INSTANCE) {
+                return this.driver.readLongValue();
+            }
+            if (ss == DoubleStrategy.INSTANCE) {
+                return this.driver.readDoubleValue();
+            }
+        } catch (NumberFormatException nfx) {
+            throw new InvalidFormatException(this.driver.positionDescriptor(), nfx);
+        }
+        if (ss == BooleanStrategy.INSTANCE) {
+            return this.driver.readBooleanValue();
+        }
+        return ss.unmarshal(this.driver.readValue(), this.context);
+    }
+
+    // registers the decoded object under the id of the current element start:
+    private void putDecoded(Object o) {
+        if (this.treeMode) {
+            return;
+        }
+        final int id = this.driver.elementIntAttribute(DTD.ATTRIBUTE_ID);
+        this.decoded.put(id, id < 0 ? this.elementRawId() : null, o);
+    }
+
+    // the id attribute, if not an int, optional in compact ids mode only:
+    private String elementRawId() {
+        return this.compactIds ? this.driver.elementAttribute(DTD.ATTRIBUTE_ID) : this.driver.elementRequiredAttribute(DTD.ATTRIBUTE_ID);
+    }
+
+    // readObj: primitive fields of built-in strategy values are parsed in place and set without boxing:
+    private boolean readPrimitiveField(Object target, Field f) throws IllegalAccessException {
+        final Class type = f.getType();
+        if (!type.isPrimitive()) {
+            return false;
+        }
+        final SimpleStrategy ss = this.simpleStrategies.get(this.driver.elementName());
+        if (ss == null || ss != inPlaceStrategyFor(type)) {
+            return false;
+        }
+        if (this.maybeSecurityPolicy != null) {
+            this.maybeSecurityPolicy.check(ss.target());
+        }
+        try {
+            ValueType.of(type).setReadField(this.driver, target, f);
+        } catch (NumberFormatException nfx) {
+            throw new InvalidFormatException(this.driver.positionDescriptor(), nfx);
+        }
+        this.driver.next(); // consume element end.
+        return true;
+    }
+
+    private static SimpleStrategy inPlaceStrategyFor(Class primitive) {
+        if (primitive == int.class) {
+            return IntStrategy.INSTANCE;
+        } else if (primitive == long.class) {
+            return LongStrategy.INSTANCE;
+        } else if (primitive == double.class) {
+            return DoubleStrategy.INSTANCE;
+        } else if (primitive == boolean.class) {
+            return BooleanStrategy.INSTANCE;
+        } else if (primitive == short.class) {
+            return ShortStrategy.INSTANCE;
+        } else if (primitive == byte.class) {
+            return ByteStrategy.INSTANCE;
+        }
+        return null;
+    }
+
     // read0: readObj:
     private Object readObject()
             throws ClassNotFoundException, InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
         // read object attributes and create instance and mark it as visited:
-        Class cls = this.context.classFor(this.driver.elementRequiredAttribute(DTD.ATTRIBUTE_CLASS));
+        this.ensureSecurityPolicyName();
+        final Class cls = this.context.classFor(this.driver.elementRequiredAttribute(DTD.ATTRIBUTE_CLASS));
         final Object ret = ReflectionUtil.instantiate(cls);
         // security check:
         this.ensureSecurityPolicy(ret);
-        this.decoded.put(this.driver.elementRequiredAttribute(DTD.ATTRIBUTE_ID), ret);
+        this.putDecoded(ret);
         // read object properties:
+        Class level = cls;
         while (this.driver.next()) {
             if (this.driver.atElementStart()) {
                 final String localPartName = this.driver.elementName();
-                // search the class for the specified property:
-                Field f = null;
-                boolean skipF = false;
-                while (cls != Object.class) {
-
-                    if (this.context.excluded(cls, localPartName)) {
-                        skipF = true;
-                        break; // skip excluded field search.
+                // search the class, from the current hierarchy level up, for the specified property:
+                FieldIndex.Entry p = null;
+                while (level != Object.class) {
+                    p = this.fieldIndexFor(level).get(localPartName);
+                    if (p != null && (p.excluded || !Modifier.isStatic(p.field.getModifiers()))) {
+                        break; // found.
                     }
-
-                    try {
-                        f = this.context.fieldFor(cls, localPartName);
-                        if (!Modifier.isStatic(f.getModifiers())) {
-                            break; // field found.
-                        }
-                    } catch (NoSuchFieldException searchInSuperclass) {
-                    }
-
-                    cls = cls.getSuperclass();
+                    p = null;
+                    level = level.getSuperclass();
+                }
+                if (p == null) {
+                    throw new InvalidFormatException(this.driver.positionDescriptor(), "undefined property: " + cls.getName() + '.' + localPartName);
                 }
-                if (skipF) {
+                if (p.excluded) {
                     this.driver.consume();
                     continue; // skip excluded field.
                 }
-                if (f == null) {
-                    throw new InvalidFormatException(this.driver.positionDescriptor(), "undefined property: " + cls.getName() + '.' + localPartName);
-                }
                 // check if field is indeed an instance property:
-                final ReflectionUtil.FieldInfo fi = ReflectionUtil.fieldInfoForWrite(f);
-                if (!fi.isProperty) {
-                    throw new InvalidFormatException(this.driver.positionDescriptor(), "not a property: " + cls.getName() + '.' + localPartName);
+                if (!p.isProperty) {
+                    throw new InvalidFormatException(this.driver.positionDescriptor(), "not a property: " + p.field.getDeclaringClass().getName() + '.' + localPartName);
                 }
                 // move down in the property value and read it:
                 if (!this.driver.next() || !this.driver.atElementStart()) {
                     throw new InvalidFormatException(this.driver.positionDescriptor(), "expected element start");
                 }
-                ReflectionUtil.writeProperty(ret, this.read0(f.getType().getComponentType()), f, fi.accessor);
+                if (p.accessor == null && this.readPrimitiveField(ret, p.field)) {
+                    continue;
+                }
+                final Object value = this.read0(p.field.getType().getComponentType());
+                if (p.accessor != null) {
+                    ReflectionUtil.writeProperty(ret, value, p.field, p.accessor);
+                } else {
+                    p.field.set(ret, value);
+                }
             } else if (this.driver.atElementEnd() && this.driver.elementName().equals(DTD.ELEMENT_OBJECT)) {
                 this.driver.next(); // consume object element end.
                 return ret;
@@ -1022,15 +1381,75 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         throw new InvalidFormatException(this.driver.positionDescriptor(), "missing element end: " + DTD.ELEMENT_OBJECT);
     }
 
+    // symbol table: raw tag name to canonical element name:
+    /* default*/ String symbolFor(String rawName) {
+        Map<String, String> symbols = this.maybeSymbols;
+        if (symbols == null) {
+            this.maybeSymbols = symbols = this.newSymbols();
+        }
+        String ret = symbols.get(rawName);
+        if (ret == null) {
+            ret = XMLUtil.unescapeXMLTag(rawName);
+            if (symbols.size() < MAX_SYMBOLS) { // bound memory for arbitrary input.
+                symbols.put(rawName, ret);
+            }
+        }
+        return ret;
+    }
+
+    private Map<String, String> newSymbols() {
+        final Map<String, String> ret = new HashMap<>();
+        for (String name : new String[]{DTD.ELEMENT_EASYML, DTD.ELEMENT_NIL, DTD.ELEMENT_OBJECT, DTD.ELEMENT_ARRAY, this.rootTag}) {
+            ret.put(XMLUtil.escapeXMLTag(name), name);
+        }
+        for (String name : this.simpleStrategies.keySet()) {
+            ret.put(XMLUtil.escapeXMLTag(name), name);
+        }
+        for (String name : this.compositeStrategies.keySet()) {
+            ret.put(XMLUtil.escapeXMLTag(name), name);
+        }
+        return ret;
+    }
+
+    private FieldIndex fieldIndexFor(Class declaring) {
+        final FieldIndex cached = this.cachedFieldIndexes.get(declaring);
+        if (cached != null) {
+            return cached;
+        }
+        return this.cachedFieldIndexes.computeIfAbsent(declaring, this::newFieldIndex);
+    }
+
+    private FieldIndex newFieldIndex(Class declaring) {
+        final String qualifierPrefix = declaring.getName() + FIELD_FQN_SEPARATOR;
+        final Map<String, Field> aliases = new HashMap<>();
+        for (Map.Entry<String, Object> e : this.cachedAliasingReflection.entrySet()) {
+            if (e.getValue() instanceof Field && e.getKey().startsWith(qualifierPrefix)) {
+                aliases.put(e.getKey().substring(qualifierPrefix.length()), (Field) e.getValue());
+            }
+        }
+        final Set<String> excluded = new HashSet<>();
+        if (this.maybeExclusions != null) {
+            for (String e : this.maybeExclusions) {
+                if (e.startsWith(qualifierPrefix)) {
+                    excluded.add(e.substring(qualifierPrefix.length()));
+                }
+            }
+        }
+        return new FieldIndex(declaring, aliases, excluded);
+    }
+
     // read0: array: componentType can be null if not specified
     private Object readArray0(Class componentType) {
         final Class compType = componentType != null ? componentType : Object.class;
         // read array attributes to create instance nd mark it as visited:
-        final String idAttrVal = this.driver.elementRequiredAttribute(DTD.ATTRIBUTE_ID);
-        final Object ret = Array.newInstance(compType, Integer.parseInt(this.driver.elementRequiredAttribute(DTD.ATTRIBUTE_LENGTH)));
+        int length = this.driver.elementIntAttribute(DTD.ATTRIBUTE_LENGTH);
+        if (length < 0) {
+            length = Integer.parseInt(this.driver.elementRequiredAttribute(DTD.ATTRIBUTE_LENGTH));
+        }
+        final Object ret = Array.newInstance(compType, length);
         // security check:
         this.ensureSecurityPolicy(ret);
-        this.decoded.put(idAttrVal, ret);
+        this.putDecoded(ret);
         this.driver.next(); // consumed array element start.
         // read array items:
         if (compType.isPrimitive()) {
@@ -1065,12 +1484,24 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         }
     }
 
+    // checks the class name of the object about to be instantiated, before loading it:
+    private void ensureSecurityPolicyName() {
+        if (this.maybeSecurityPolicy != null) {
+            final String className = this.driver.elementAttribute(DTD.ATTRIBUTE_CLASS);
+            if (className != null) {
+                this.maybeSecurityPolicy.checkName(className);
+            }
+        }
+    }
+
     private void ensureRootStartPos() {
         if (this.beforeRoot) {
             while (this.driver.next()) {
                 if (this.driver.atElementStart()) {
                     if (this.driver.elementName().equals(this.rootTag)) {
+                        this.ensureReferenceScope();
                         this.beforeRoot = false;
+                        this.scopedValues = 0;
                         this.driver.next(); // consumed easyml start tag.
                         return;
                     }
@@ -1080,6 +1511,15 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         }
     }
 
+    private void ensureReferenceScope() {
+        final String scope = this.driver.elementAttribute(DTD.ATTRIBUTE_SCOPE);
+        final int found = scope != null ? ValueParser.parseIndex(scope) : 0;
+        if (found != this.referenceScope) {
+            throw new InvalidFormatException(this.driver.positionDescriptor(),
+                    "reference scope: expected: " + this.referenceScope + ", found: " + (scope != null ? scope : "0"));
+        }
+    }
+
     private void ensureRootEndClear() {
         if (isRootEnd()) {
             this.decoded.clear();
@@ -1092,31 +1532,88 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
     }
 
     /**
-     * Resets this instance, setting it to the new <code>reader</code>.
+     * Resets this instance, setting it to the new <code>reader</code>. The
+     * built-in parser is the default one, falling back to <code>kXML2</code>
+     * for foreign input.
      *
      * @param reader to use from now on
      * @param parser to use, null if default
      */
     public void reset(Reader reader, XmlPullParser parser) {
-        if (this.driver != null && this.driver.getClass() == XMLReaderTextDriver.class) {
+        if (parser == null) {
+            if (this.driver != null && this.driver.getClass() == XMLReaderDialectDriver.class) {
+                ((XMLReaderDialectDriver) this.driver).reset(reader);
+            } else {
+                this.driver = new XMLReaderDialectDriver(this, reader);
+            }
+        } else if (this.driver != null && this.driver.getClass() == XMLReaderTextDriver.class) {
             ((XMLReaderTextDriver) this.driver).reset(reader, parser);
         } else {
-            this.driver = parser != null ?
-                    new XMLReaderTextDriver(this, reader, parser) :
-                    new XMLReaderTextDriver(this, reader);
+            this.driver = new XMLReaderTextDriver(this, reader, parser);
         }
         this.decoded.clear();
         this.beforeRoot = true;
     }
 
     /**
-     * Resets this instance, setting it to the new <code>in</code> stream.
+     * Resets this instance, setting it to the new <code>in</code> stream, to
+     * read UTF-8 encoded XML from.
      *
      * @param in     to use from now on
      * @param parser to use, null if default
      */
     public void reset(InputStream in, XmlPullParser parser) {
-        this.reset(new InputStreamReader(in), parser);
+        this.reset(new InputStreamReader(in, StandardCharsets.UTF_8), parser);
+    }
+
+    /**
+     * Resets this instance, setting it to read the given UTF-8 encoded file
+     * channel, memory-mapped, via the built-in parser.
+     *
+     * @param in    to use from now on
+     * @param owned true if the channel is to be closed on {@linkplain #close()}
+     */
+    /* default*/ void reset(FileChannel in, boolean owned) {
+        if (this.driver != null && this.driver.getClass() == XMLReaderDialectDriver.class) {
+            ((XMLReaderDialectDriver) this.driver).reset(in, owned);
+        } else {
+            this.driver = new XMLReaderDialectDriver(this, in, owned);
+        }
+        this.decoded.clear();
+        this.beforeRoot = true;
+    }
+
+    /**
+     * Drops the memory-mapped input, if any, without closing this instance.
+     */
+    /* default*/ void releaseMapped() {
+        if (this.driver != null && this.driver.getClass() == XMLReaderDialectDriver.class) {
+            ((XMLReaderDialectDriver) this.driver).releaseMapped();
+        }
+    }
+
+    /**
+     * Resets this instance, setting it to the new <code>in</code> StAX stream
+     * reader, which is not closed by this instance.
+     *
+     * @param in to use from now on
+     */
+    public void reset(XMLStreamReader in) {
+        this.reset(in, null);
+    }
+
+    /**
+     * Resets this instance, setting it to the new <code>in</code> StAX stream
+     * reader, created over the given input.
+     *
+     * @param in        to use from now on
+     * @param inToClose the input underlying in, to close on
+     *                  {@linkplain #close()}, or null if owned by the caller
+     */
+    /* default*/ void reset(XMLStreamReader in, Closeable inToClose) {
+        this.driver = new XMLReaderStAXDriver(this, in, inToClose);
+        this.decoded.clear();
+        this.beforeRoot = true;
     }
 
     /**
@@ -1147,6 +1644,8 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
      */
     public void clearCache() {
         this.checkNotSharedConfiguration();
+        // clear field index cache:
+        this.cachedFieldIndexes.clear();
         // clear class and field cache:
         final Iterator<Map.Entry<String, Object>> iter = this.cachedAliasingReflection.entrySet().iterator();
         while (iter.hasNext()) {
@@ -1195,8 +1694,10 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
         this.context = null;
         this.cachedAliasingReflection = null;
         this.maybeExclusions = null;
+        this.cachedFieldIndexes = null;
         this.compositeStrategies = null;
         this.simpleStrategies = null;
+        this.maybeSymbols = null;
         this.maybeSecurityPolicy = null;
     }
 
@@ -1330,6 +1831,11 @@ public class XMLReader implements Closeable, Iterable, Supplier, BooleanSupplier
             return maybeExclusions != null && maybeExclusions.contains(qualifiedFieldKey(declaring, aliasOrName));
         }
 
+        @Override
+        public FieldIndex fieldIndexFor(Class declaring) {
+            return XMLReader.this.fieldIndexFor(declaring);
+        }
+
         @Override
         public Date parseDate(String date) throws ParseException {
             return dateFormat.parse(date);
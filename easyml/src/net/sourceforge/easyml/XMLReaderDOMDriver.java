@@ -18,11 +18,13 @@
  */
 package net.sourceforge.easyml;
 
-import net.sourceforge.easyml.util.XMLUtil;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * XMLReaderDOMDriver class is the XML reader driver implementation for reading
@@ -30,9 +32,12 @@ import org.w3c.dom.NodeList;
  * pull-parsing API, meant for working with XML text, so that it works for
  * already parsed XML in the form of DOM. This prevents workarounds such as
  * transforming the DOM to text so that it can be inputed as text to EasyML.
+ * <br/>
+ * The DOM is traversed via first-child and next-sibling cursor navigation, in
+ * linear time, regardless of the <code>NodeList</code> implementation.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.3
+ * @version 1.9.0
  * @since 1.1.0
  */
 final class XMLReaderDOMDriver extends XMLReader.Driver {
@@ -40,6 +45,8 @@ final class XMLReaderDOMDriver extends XMLReader.Driver {
     private Document root;
     private Element crt;
     private boolean crtAtEnd;
+    private String rawName; // last resolved node name.
+    private String name; // canonical name of rawName.
 
     /**
      * Creates a new instance.
@@ -58,29 +65,37 @@ final class XMLReaderDOMDriver extends XMLReader.Driver {
     }
 
     /**
-     * Returns a path-like string to indicate the position in the XML DOM.
+     * Returns a path-like string to indicate the position in the XML DOM. The
+     * path is computed on demand.
      *
      * @return path position string
      */
     @Override
     public String positionDescriptor() {
-        final StringBuilder descriptorBuilder = new StringBuilder(32);
-        final StringBuilder eBuilder = new StringBuilder(24);
-        Element e = this.crt;
-        while (e != null) {
-            eBuilder.append('/').append(e.getNodeName());
-            if (e.hasAttribute(DTD.ATTRIBUTE_ID)) {
-                eBuilder.append("[@").append(DTD.ATTRIBUTE_ID)
-                        .append("='").append(e.getAttribute(DTD.ATTRIBUTE_ID)).append("']");
+        final List<Element> path = new ArrayList<>();
+        for (Node e = this.crt; e != null && e.getNodeType() == Node.ELEMENT_NODE; e = e.getParentNode()) {
+            path.add((Element) e);
+        }
+        final StringBuilder descriptorBuilder = new StringBuilder(32 * path.size());
+        for (int i = path.size() - 1; i >= 0; i--) {
+            final Element e = path.get(i);
+            descriptorBuilder.append('/').append(e.getNodeName());
+            final Attr id = e.getAttributeNode(DTD.ATTRIBUTE_ID);
+            if (id != null) {
+                descriptorBuilder.append("[@").append(DTD.ATTRIBUTE_ID)
+                        .append("='").append(id.getValue()).append("']");
             }
-            descriptorBuilder.insert(0, eBuilder);
-            eBuilder.delete(0, eBuilder.length());
-            final Node ep = e.getParentNode();
-            e = ep.getNodeType() == Node.ELEMENT_NODE ? (Element) ep : null;
         }
         return descriptorBuilder.toString();
     }
 
+    private static Element firstElementFrom(Node n) {
+        while (n != null && n.getNodeType() != Node.ELEMENT_NODE) {
+            n = n.getNextSibling();
+        }
+        return (Element) n;
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -94,39 +109,27 @@ final class XMLReaderDOMDriver extends XMLReader.Driver {
         }
         if (!this.crtAtEnd) {
             // if !atEnd and we can go down:
-            final NodeList crtNL = this.crt.getChildNodes();
-            final int crtNLlen = crtNL.getLength();
-            for (int i = 0; i < crtNLlen; i++) {
-                final Node iN = crtNL.item(i);
-                if (iN.getNodeType() == Node.ELEMENT_NODE) {
-                    this.crt = (Element) iN;
-                    return true;
-                }
-            }
-            // if we go to end tag:
-            if (crtNLlen == 0 || this.crt.getLastChild().getNodeType() == Node.TEXT_NODE) {
-                this.crtAtEnd = true;
+            final Element child = firstElementFrom(this.crt.getFirstChild());
+            if (child != null) {
+                this.crt = child;
                 return true;
             }
+            // else we go to end tag:
+            this.crtAtEnd = true;
+            return true;
         }
         // if we go to sibling start tag:
-        if (this.crtAtEnd) {
-            Node sN = this.crt.getNextSibling();
-            while (sN != null && sN.getNodeType() != Node.ELEMENT_NODE) {
-                sN = sN.getNextSibling();
-            }
-            if (sN != null && sN.getNodeType() == Node.ELEMENT_NODE) {
-                this.crt = (Element) sN;
-                this.crtAtEnd = false;
-                return true;
-            }
-            // if we go up (at end=true):
-            final Node pN = this.crt.getParentNode();
-            if (pN != null && pN.getNodeType() == Node.ELEMENT_NODE) {
-                this.crt = (Element) pN;
-                this.crtAtEnd = true;
-                return true;
-            }
+        final Element sibling = firstElementFrom(this.crt.getNextSibling());
+        if (sibling != null) {
+            this.crt = sibling;
+            this.crtAtEnd = false;
+            return true;
+        }
+        // if we go up (at end=true):
+        final Node pN = this.crt.getParentNode();
+        if (pN != null && pN.getNodeType() == Node.ELEMENT_NODE) {
+            this.crt = (Element) pN;
+            return true;
         }
         // up == null => return false:
         return false;
@@ -156,7 +159,12 @@ final class XMLReaderDOMDriver extends XMLReader.Driver {
         if (this.crt == null) {
             throw new IllegalStateException("not at element start or end: " + this.positionDescriptor());
         }
-        return XMLUtil.unescapeXMLTag(this.crt.getNodeName());
+        final String raw = this.crt.getNodeName();
+        if (raw != this.rawName) { // DOM nodes return the same instance for the same node.
+            this.name = this.symbolFor(raw);
+            this.rawName = raw;
+        }
+        return this.name;
     }
 
     /**
@@ -168,7 +176,8 @@ final class XMLReaderDOMDriver extends XMLReader.Driver {
             throw new IllegalStateException("not at element start: " + this.positionDescriptor());
         }
         // signal attribute not present using null not "":
-        return this.crt.hasAttribute(name) ? this.crt.getAttribute(name) : null;
+        final Attr attr = this.crt.getAttributeNode(name);
+        return attr != null ? attr.getValue() : null;
     }
 
     /**
@@ -211,12 +220,9 @@ final class XMLReaderDOMDriver extends XMLReader.Driver {
             parent = e.getParentNode();
         }
         // search next sibling, if any, or move to easyml end:
-        Node sibling = e.getNextSibling();
-        while (sibling != null && sibling.getNodeType() != Node.ELEMENT_NODE) {
-            sibling = sibling.getNextSibling();
-        }
+        final Element sibling = firstElementFrom(e.getNextSibling());
         if (sibling != null) {
-            this.crt = (Element) sibling;
+            this.crt = sibling;
             this.crtAtEnd = false;
         } else {
             this.crt = (Element) parent;
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+
+/**
+ * XMLReaderDialectDriver class is the default XML reader driver implementation
+ * for reading XML text, pull-parse style, via the built-in
+ * {@linkplain DialectPullParser}, tuned to the XML written by
+ * {@linkplain XMLWriter}. Files are read via the {@linkplain MappedDialectParser},
+ * directly from the memory-mapped UTF-8 bytes.
+ * <br/>
+ * Foreign input, which the built-in parser does not support, is read by
+ * falling back to an {@linkplain XMLReaderTextDriver}, with its default
+ * <code>kXML2</code> parser.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class XMLReaderDialectDriver extends XMLReader.Driver {
+
+    private final XMLReader target;
+    private DialectParser parser;
+    private DialectPullParser maybeTextParser; // lazy.
+    private MappedDialectParser maybeMappedParser; // lazy.
+    private Closeable inputToClose;
+    private XMLReaderTextDriver maybeFallback;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param target to use and be used by
+     * @param in     to read from
+     */
+    public XMLReaderDialectDriver(XMLReader target, Reader in) {
+        super(target);
+        this.target = target;
+        this.reset(in);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param target to use and be used by
+     * @param in     to read from, memory-mapped
+     * @param owned  true if the channel is to be closed on {@linkplain #close()}
+     */
+    public XMLReaderDialectDriver(XMLReader target, FileChannel in, boolean owned) {
+        super(target);
+        this.target = target;
+        this.reset(in, owned);
+    }
+
+    /**
+     * Resets this current instance to read using the given reader, reusing the
+     * parser.
+     *
+     * @param in the required input reader
+     */
+    public void reset(Reader in) {
+        this.releaseMapped();
+        if (this.maybeTextParser == null) {
+            this.maybeTextParser = new DialectPullParser(this::symbolFor);
+        }
+        this.maybeTextParser.setInput(in);
+        this.parser = this.maybeTextParser;
+        this.inputToClose = in;
+        this.maybeFallback = null;
+    }
+
+    /**
+     * Resets this current instance to read the given UTF-8 encoded file
+     * channel, memory-mapped, reusing the parser.
+     *
+     * @param in    the required input channel
+     * @param owned true if the channel is to be closed on {@linkplain #close()}
+     */
+    public void reset(FileChannel in, boolean owned) {
+        if (this.maybeMappedParser == null) {
+            this.maybeMappedParser = new MappedDialectParser(this::symbolFor, MappedDialectParser.SEGMENT_SIZE);
+        }
+        try {
+            this.maybeMappedParser.setInput(in);
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+        this.parser = this.maybeMappedParser;
+        this.inputToClose = owned ? in : null;
+        this.maybeFallback = null;
+    }
+
+    /**
+     * Drops the mapped segment, if any, so that it can be unmapped.
+     */
+    public void releaseMapped() {
+        if (this.maybeMappedParser != null) {
+            this.maybeMappedParser.clearInput();
+        }
+    }
+
+    /**
+     * Returns a line-column pair to indicate the position in the XML text.
+     *
+     * @return line-column position string
+     */
+    @Override
+    public String positionDescriptor() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.positionDescriptor();
+        }
+        return this.parser.positionDescriptor();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean next() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.next();
+        }
+        try {
+            if (this.parser.getEventType() == DialectParser.END_DOCUMENT) {
+                return false;
+            }
+            if (this.parser.nextTag() == DialectParser.FOREIGN) {
+                this.maybeFallback = new XMLReaderTextDriver(this.target, this.parser.foreignInput());
+                return this.maybeFallback.next();
+            }
+            return true;
+        } catch (IOException ioX) {
+            throw new InvalidFormatException(this.positionDescriptor(), ioX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean atElementStart() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.atElementStart();
+        }
+        return this.parser.getEventType() == DialectParser.START_TAG;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean atElementEnd() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.atElementEnd();
+        }
+        return this.parser.getEventType() == DialectParser.END_TAG;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String elementName() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.elementName();
+        }
+        final int eventType = this.parser.getEventType();
+        if (eventType == DialectParser.START_TAG || eventType == DialectParser.END_TAG) {
+            return this.parser.getName(); // already canonical.
+        }
+        throw new IllegalStateException("expected element start or end: " + this.positionDescriptor());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String elementAttribute(String name) {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.elementAttribute(name);
+        }
+        if (this.parser.getEventType() == DialectParser.START_TAG) {
+            return this.parser.getAttributeValue(name);
+        }
+        throw new IllegalStateException("not at element start at: " + this.positionDescriptor());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int elementIntAttribute(String name) {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.elementIntAttribute(name);
+        }
+        if (this.parser.getEventType() == DialectParser.START_TAG) {
+            final int ret = this.parser.getAttributeIndex(name);
+            return ret >= 0 ? ret : super.elementIntAttribute(name); // written otherwise, e.g. via entities.
+        }
+        throw new IllegalStateException("not at element start at: " + this.positionDescriptor());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String readValue() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.readValue();
+        }
+        try {
+            return this.parser.nextText();
+        } catch (IOException ioX) {
+            throw new InvalidFormatException(this.positionDescriptor(), ioX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int readIntValue() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.readIntValue();
+        }
+        return ValueParser.parseInt(this.readValueChars());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public long readLongValue() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.readLongValue();
+        }
+        return ValueParser.parseLong(this.readValueChars());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public double readDoubleValue() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.readDoubleValue();
+        }
+        return ValueParser.parseDouble(this.readValueChars());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean readBooleanValue() {
+        if (this.maybeFallback != null) {
+            return this.maybeFallback.readBooleanValue();
+        }
+        return ValueParser.parseBoolean(this.readValueChars());
+    }
+
+    private CharSequence readValueChars() {
+        try {
+            return this.parser.nextTextChars();
+        } catch (IOException ioX) {
+            throw new InvalidFormatException(this.positionDescriptor(), ioX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void consume() {
+        if (this.maybeFallback != null) {
+            this.maybeFallback.consume();
+            return;
+        }
+        if (!this.atElementStart()) {
+            throw new IllegalStateException("not at element start: " + this.positionDescriptor());
+        }
+        try {
+            this.parser.skipSubtree();
+        } catch (IOException ioX) {
+            throw new InvalidFormatException(this.positionDescriptor(), ioX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    protected void consumeFully() {
+        if (this.maybeFallback != null) {
+            this.maybeFallback.consumeFully();
+            return;
+        }
+        try {
+            // move up until easyml is parent:
+            int et = this.parser.getEventType();
+            while (!(et == DialectParser.END_TAG && this.parser.getDepth() == 2)
+                    && et != DialectParser.END_DOCUMENT) {
+                et = this.parser.next();
+            }
+            // move on sibling start tag:
+            if (et != DialectParser.END_DOCUMENT) {
+                this.parser.nextTag();
+            }
+        } catch (IOException ioX) {
+            throw new InvalidFormatException(this.positionDescriptor(), ioX);
+        }
+    }
+
+    /**
+     * Closes the underlying reader or owned channel.
+     */
+    @Override
+    public void close() {
+        this.releaseMapped();
+        if (this.inputToClose != null) {
+            try {
+                this.inputToClose.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * XMLReaderStAXDriver class is the XML reader driver implementation for reading
+ * XML from StAX {@linkplain XMLStreamReader}s, enabling EasyML input to be
+ * embedded in larger StAX pipelines. If the stream reader is positioned on an
+ * element start then reading starts from that element, else from the next one.
+ * <br/>
+ * The stream reader is not closed by this driver, unless created by EasyML,
+ * hence the caller can continue reading from it, after the EasyML root end.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class XMLReaderStAXDriver extends XMLReader.Driver {
+
+    private final XMLStreamReader reader;
+    private final Closeable inToClose;
+    private boolean started;
+    private int depth; // relative to the start position, same as XmlPullParser.getDepth().
+    private String rawName; // last resolved tag name, as returned by the reader.
+    private String name; // canonical name of rawName.
+
+    /**
+     * Creates a new instance.
+     *
+     * @param target    to use and be used by
+     * @param in        to read from
+     * @param inToClose the input underlying <code>in</code>, to close on
+     *                  {@linkplain #close()} together with <code>in</code>, or
+     *                  null if owned by the caller
+     */
+    public XMLReaderStAXDriver(XMLReader target, XMLStreamReader in, Closeable inToClose) {
+        super(target);
+        this.reader = in;
+        this.inToClose = inToClose;
+        this.started = false;
+        this.depth = 0;
+    }
+
+    /**
+     * Returns a line-column pair to indicate the position in the XML text.
+     *
+     * @return line-column position string
+     */
+    @Override
+    public String positionDescriptor() {
+        final Location location = this.reader.getLocation();
+        return location != null ? location.getLineNumber() + "," + location.getColumnNumber() : "";
+    }
+
+    // moves to the next event, keeping track of the depth:
+    private int advance() throws XMLStreamException {
+        if (this.reader.getEventType() == XMLStreamConstants.END_ELEMENT) {
+            this.depth--;
+        }
+        final int et = this.reader.next();
+        if (et == XMLStreamConstants.START_ELEMENT) {
+            this.depth++;
+        }
+        return et;
+    }
+
+    // moves to the next element start or end, same as XmlPullParser.nextTag():
+    private int advanceTag() throws XMLStreamException {
+        int et = this.advance();
+        while (et != XMLStreamConstants.START_ELEMENT && et != XMLStreamConstants.END_ELEMENT) {
+            if (et == XMLStreamConstants.END_DOCUMENT
+                    || ((et == XMLStreamConstants.CHARACTERS || et == XMLStreamConstants.CDATA) && !this.reader.isWhiteSpace())) {
+                throw new InvalidFormatException(this.positionDescriptor(), "expected element start or end");
+            }
+            et = this.advance();
+        }
+        return et;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean next() {
+        try {
+            if (!this.started) {
+                this.started = true;
+                if (this.reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                    this.depth = 1;
+                    return true;
+                }
+            }
+            if (this.reader.getEventType() == XMLStreamConstants.END_DOCUMENT) {
+                return false;
+            }
+            this.advanceTag();
+            return true;
+        } catch (XMLStreamException xsX) {
+            throw new InvalidFormatException(this.positionDescriptor(), xsX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean atElementStart() {
+        return this.started && this.reader.getEventType() == XMLStreamConstants.START_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean atElementEnd() {
+        return this.started && this.reader.getEventType() == XMLStreamConstants.END_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String elementName() {
+        if (this.reader.isStartElement() || this.reader.isEndElement()) {
+            final String raw = this.reader.getLocalName();
+            if (raw != this.rawName) { // readers may return the same instance for the same name.
+                this.name = this.symbolFor(raw);
+                this.rawName = raw;
+            }
+            return this.name;
+        }
+        throw new IllegalStateException("expected element start or end: " + this.positionDescriptor());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String elementAttribute(String name) {
+        if (this.reader.isStartElement()) {
+            return this.reader.getAttributeValue(null, name);
+        }
+        throw new IllegalStateException("not at element start at: " + this.positionDescriptor());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String readValue() {
+        try {
+            return this.reader.getElementText();
+        } catch (XMLStreamException xsX) {
+            throw new InvalidFormatException(this.positionDescriptor(), xsX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void consume() {
+        if (!this.atElementStart()) {
+            throw new IllegalStateException("not at element start: " + this.positionDescriptor());
+        }
+        try {
+            int nested = 1;
+            do {
+                final int et = this.advance();
+                if (et == XMLStreamConstants.START_ELEMENT) {
+                    nested++;
+                } else if (et == XMLStreamConstants.END_ELEMENT) {
+                    nested--;
+                } else if (et == XMLStreamConstants.END_DOCUMENT) {
+                    throw new InvalidFormatException(this.positionDescriptor(), "unexpected end of document");
+                }
+            } while (nested != 0);
+        } catch (XMLStreamException xsX) {
+            throw new InvalidFormatException(this.positionDescriptor(), xsX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    protected void consumeFully() {
+        try {
+            // move up until easyml is parent:
+            int et = this.reader.getEventType();
+            while (!(et == XMLStreamConstants.END_ELEMENT && this.depth == 2)
+                    && et != XMLStreamConstants.END_DOCUMENT) {
+                et = this.advance();
+            }
+            // move on sibling start tag:
+            if (et != XMLStreamConstants.END_DOCUMENT) {
+                this.advanceTag();
+            }
+        } catch (XMLStreamException xsX) {
+            throw new InvalidFormatException(this.positionDescriptor(), xsX);
+        }
+    }
+
+    /**
+     * Closes the stream reader and its underlying input, if created by EasyML.
+     */
+    @Override
+    public void close() {
+        if (this.inToClose != null) {
+            try {
+                this.reader.close();
+                this.inToClose.close();
+            } catch (XMLStreamException | IOException ignore) {
+            }
+        }
+    }
+}
@@ -18,7 +18,6 @@
  */
 package net.sourceforge.easyml;
 
-import net.sourceforge.easyml.util.XMLUtil;
 import org.kxml2.io.KXmlParser;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -32,15 +31,20 @@ import java.io.Reader;
  * implementation is {@linkplain KXmlParser}, but other
  * {@linkplain XmlPullParser} implementations can be specified as construction
  * parameters.
+ * <br/>
+ * Element names are resolved via the reader's symbol table once per parsing
+ * event.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.3
+ * @version 1.9.0
  * @since 1.1.0
  */
 final class XMLReaderTextDriver extends XMLReader.Driver {
 
     private XmlPullParser parser;
     private Reader readerToClose;
+    private String rawName; // last resolved tag name, as returned by the parser.
+    private String name; // canonical name of rawName.
 
     /**
      * Creates a new instance.
@@ -69,6 +73,8 @@ final class XMLReaderTextDriver extends XMLReader.Driver {
         try {
             this.parser.setInput(in);
             this.readerToClose = in;
+            this.rawName = null;
+            this.name = null;
         } catch (XmlPullParserException xppX) {
             throw new IllegalStateException("not initialized", xppX);
         }
@@ -132,7 +138,12 @@ final class XMLReaderTextDriver extends XMLReader.Driver {
         try {
             final int eventType = this.parser.getEventType();
             if (eventType == XmlPullParser.START_TAG || eventType == XmlPullParser.END_TAG) {
-                return XMLUtil.unescapeXMLTag(this.parser.getName());
+                final String raw = this.parser.getName();
+                if (raw != this.rawName) { // parsers return the same instance for the same event.
+                    this.name = this.symbolFor(raw);
+                    this.rawName = raw;
+                }
+                return this.name;
             }
             throw new IllegalStateException("expected element start or end: " + this.parser.getLineNumber() + "," + this.parser.getColumnNumber());
         } catch (XmlPullParserException xppX) {
@@ -25,12 +25,15 @@ import net.sourceforge.easyml.util.ReflectionUtil;
 import net.sourceforge.easyml.util.ReflectionUtil.ValueType;
 import net.sourceforge.easyml.util.XMLUtil;
 import org.w3c.dom.Document;
+import org.xml.sax.ContentHandler;
 
+import javax.xml.stream.XMLStreamWriter;
 import java.io.*;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.DoubleConsumer;
 import java.util.function.IntConsumer;
@@ -60,7 +63,7 @@ import java.util.function.LongConsumer;
  * shared configuration can be created, via constructors.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.7.2
+ * @version 1.9.0
  * @see XMLReader
  * @since 1.0
  */
@@ -69,6 +72,9 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
     /**
      * StrategyRegistry class is a {@linkplain Strategy} container used to add,
      * prioritize, and look-up strategies for given {@linkplain Class}es.
+     * Look-up results, including the lack of an applicable strategy, are
+     * memoized per class and invalidated by the methods which modify this
+     * instance.
      *
      * @param <S> strategy class
      */
@@ -77,11 +83,29 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         private final Map<Class, S> strict;
         private final List<S> range;
         private List<S> backup;
+        private volatile ClassValue<Optional<S>> lookupCache; // empty if no strategy applies.
 
         private StrategyRegistry() {
             this.strict = new IdentityHashMap<>();
             this.range = new LinkedList<>();
             this.backup = null;
+            this.lookupCache = this.newLookupCache();
+        }
+
+        private ClassValue<Optional<S>> newLookupCache() {
+            return new ClassValue<Optional<S>>() {
+                @Override
+                protected Optional<S> computeValue(Class<?> type) {
+                    return Optional.ofNullable(StrategyRegistry.this.lookup0(type));
+                }
+            };
+        }
+
+        /**
+         * Discards all memoized look-up results.
+         */
+        private void invalidate() {
+            this.lookupCache = this.newLookupCache();
         }
 
         /**
@@ -90,16 +114,67 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
          * applicable.
          * <b>Note:</b> The order of the backup list is important as applicable
          * strategies will be searched starting from first to last.
+         * <br/>
+         * <b>Note:</b> the memoized look-up results are discarded by each
+         * modification of the returned list.
          *
          * @return the value
          */
         public List<S> getBackup() {
             if (this.backup == null) {
-                this.backup = new ArrayList<>();
+                this.backup = new BackupList();
             }
             return this.backup;
         }
 
+        /**
+         * BackupList class is the backup list implementation, which discards
+         * the memoized look-up results after each modification.
+         */
+        private final class BackupList extends AbstractList<S> {
+
+            private final List<S> list = new ArrayList<>();
+
+            @Override
+            public S get(int index) {
+                return this.list.get(index);
+            }
+
+            @Override
+            public int size() {
+                return this.list.size();
+            }
+
+            @Override
+            public S set(int index, S s) {
+                final S ret = this.list.set(index, s);
+                StrategyRegistry.this.invalidate();
+                return ret;
+            }
+
+            @Override
+            public void add(int index, S s) {
+                this.list.add(index, s);
+                this.modCount++;
+                StrategyRegistry.this.invalidate();
+            }
+
+            @Override
+            public S remove(int index) {
+                final S ret = this.list.remove(index);
+                this.modCount++;
+                StrategyRegistry.this.invalidate();
+                return ret;
+            }
+
+            @Override
+            protected void removeRange(int fromIndex, int toIndex) {
+                this.list.subList(fromIndex, toIndex).clear();
+                this.modCount++;
+                StrategyRegistry.this.invalidate();
+            }
+        }
+
         /**
          * Returns the size of this instance.
          *
@@ -161,6 +236,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
          * @return the replaced strict strategy, if any, or null
          */
         public S add(S s) {
+            this.invalidate();
             if (s.strict()) {
                 return this.strict.put(s.target(), s);
             } else {
@@ -187,6 +263,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
          * @return true if strategy has been removed, false otherwise
          */
         public boolean remove(S s) {
+            this.invalidate();
             if (s.strict()) {
                 return this.strict.remove(s.target()) != null;
             } else {
@@ -216,6 +293,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
          * Clears this instance of all strategies.
          */
         public void clear() {
+            this.invalidate();
             this.strict.clear();
             this.range.clear();
             if (this.backup != null) {
@@ -240,6 +318,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
             //validate:
             this.validateForPrioritize(high);
             this.validateForPrioritize(low);
+            this.invalidate();
             // prioritize:
             final ListIterator<S> rangeItr = this.range.listIterator();
             while (rangeItr.hasNext()) {
@@ -282,6 +361,10 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
          * @return the applicable strategy or null
          */
         public S lookup(Class target) {
+            return this.lookupCache.get(target).orElse(null);
+        }
+
+        private S lookup0(Class target) {
             final S ss = this.strict.get(target);
             if (ss != null) {
                 return ss; // found strict.
@@ -328,7 +411,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         protected static final byte STATE_VALUE = 2;
         protected static final byte STATE_VALUE_END = 3;
         private final XMLWriter target;
-        private String oneTimeUniqueId;
+        private int oneTimeUniqueId; // 0 if none.
         protected byte state;
 
         /**
@@ -352,7 +435,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
             return this.target.prettyPrint;
         }
 
-        private void setOneTimeUniqueIdTo(String uniqueId) {
+        /* default*/ final void setOneTimeUniqueIdTo(int uniqueId) {
             this.oneTimeUniqueId = uniqueId;
         }
 
@@ -360,12 +443,59 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
          * Writes the one-time only unique id, if available.
          */
         public final void writeOneTimeUniqueId(Consumer<String> uniqueIdWriter) {
-            if (this.oneTimeUniqueId != null) {
-                uniqueIdWriter.accept(this.oneTimeUniqueId);
-                this.oneTimeUniqueId = null;
+            final int uniqueId = this.takeOneTimeUniqueId();
+            if (uniqueId != 0) {
+                uniqueIdWriter.accept(Integer.toString(uniqueId));
             }
         }
 
+        /**
+         * Returns and clears the one-time only unique id, if available. Unlike
+         * {@linkplain #writeOneTimeUniqueId(Consumer)}, neither the id string
+         * nor a capturing consumer is created.
+         *
+         * @return the positive unique id, or 0 if none
+         */
+        protected final int takeOneTimeUniqueId() {
+            final int uniqueId = this.oneTimeUniqueId;
+            this.oneTimeUniqueId = 0;
+            return uniqueId;
+        }
+
+        /**
+         * Writes the given int as the current element's value. This
+         * implementation writes the int's string form; drivers may override
+         * in order to format the digits straight into their output.
+         *
+         * @param value to write
+         */
+        public void writeValue(int value) {
+            this.writeValue(Integer.toString(value));
+        }
+
+        /**
+         * Writes the given long as the current element's value. This
+         * implementation writes the long's string form; drivers may override
+         * in order to format the digits straight into their output.
+         *
+         * @param value to write
+         */
+        public void writeValue(long value) {
+            this.writeValue(Long.toString(value));
+        }
+
+        /**
+         * Sets the given int as the value of the given attribute of the current
+         * element. This implementation sets the int's string form; drivers may
+         * override in order to format the digits straight into their output.
+         *
+         * @param attribute to set
+         * @param value     to set
+         */
+        public void setAttribute(NameToken attribute, int value) {
+            this.setAttribute(attribute, Integer.toString(value));
+        }
+
         /**
          * {@inheritDoc }
          */
@@ -472,18 +602,36 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         }
     }
 
+    private static final NameToken TYPE_INT_TOKEN = new NameToken(DTD.TYPE_INT);
+    private static final NameToken TYPE_LONG_TOKEN = new NameToken(LongStrategy.NAME);
+    private static final NameToken TYPE_SHORT_TOKEN = new NameToken(ShortStrategy.NAME);
+    private static final NameToken TYPE_BYTE_TOKEN = new NameToken(ByteStrategy.NAME);
+    private static final NameToken TYPE_CHAR_TOKEN = new NameToken(CharacterStrategy.NAME);
+    private static final NameToken TYPE_DOUBLE_TOKEN = new NameToken(DTD.TYPE_DOUBLE);
+    private static final NameToken TYPE_FLOAT_TOKEN = new NameToken(FloatStrategy.NAME);
+    private static final NameToken TYPE_BOOLEAN_TOKEN = new NameToken(DTD.TYPE_BOOLEAN);
+    private static final NameToken TYPE_STRING_TOKEN = new NameToken(DTD.TYPE_STRING);
+    private static final int COMPACT_REFERENCED = -1;
     private Driver driver;
-    private Map<Object, String> encoded;
+    private IdentityTable encoded;
     private boolean sharedConfiguration;
     /* default*/ boolean skipDefaults;
     /* default*/ boolean prettyPrint;
+    /* default*/ boolean treeMode;
+    /* default*/ boolean sharedReferenceCheck;
+    /* default*/ boolean compactIds;
+    /* default*/ int referenceScope;
     /* default*/ String rootTag;
     /* default*/ SimpleDateFormat dateFormat;
     private MarshalContextImpl context;
     private Map<Object, String> maybeAliasing;
     private Set<Field> maybeExclusions;
+    private Map<Class, PropertyPlan> cachedPropertyPlans;
     private StrategyRegistry<SimpleStrategy> simpleStrategies;
     private StrategyRegistry<CompositeStrategy> compositeStrategies;
+    private XMLWriterRecordingDriver maybeRecorder; // lazy.
+    private int lastCompactId;
+    private int scopedValues;
 
     /**
      * Creates a new configuration prototype instance.
@@ -495,13 +643,18 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
     }
 
     private void init() {
-        this.encoded = new IdentityHashMap<>();
+        this.encoded = new IdentityTable();
         this.sharedConfiguration = false;
         this.context = new MarshalContextImpl();
         this.maybeAliasing = null; // lazy.
         this.maybeExclusions = null; // lazy.
+        this.cachedPropertyPlans = new ConcurrentHashMap<>();
         this.skipDefaults = true;
         this.prettyPrint = false;
+        this.treeMode = false;
+        this.sharedReferenceCheck = false;
+        this.compactIds = false;
+        this.referenceScope = 0;
         this.rootTag = DTD.ELEMENT_EASYML;
         this.dateFormat = new SimpleDateFormat(DTD.FORMAT_DATE);
         this.simpleStrategies = new StrategyRegistry<>();
@@ -531,13 +684,18 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
     }
 
     private void initIdentically(XMLWriter other) {
-        this.encoded = new IdentityHashMap<>();
+        this.encoded = new IdentityTable();
         this.sharedConfiguration = true;
         this.context = new MarshalContextImpl();
         this.maybeAliasing = other.maybeAliasing;
         this.maybeExclusions = other.maybeExclusions;
+        this.cachedPropertyPlans = other.cachedPropertyPlans;
         this.skipDefaults = other.skipDefaults;
         this.prettyPrint = other.prettyPrint;
+        this.treeMode = other.treeMode;
+        this.sharedReferenceCheck = other.sharedReferenceCheck;
+        this.compactIds = other.compactIds;
+        this.referenceScope = other.referenceScope;
         this.rootTag = other.rootTag;
         this.dateFormat = new SimpleDateFormat(other.dateFormat.toPattern());
         this.simpleStrategies = other.simpleStrategies;
@@ -555,12 +713,16 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
     }
 
     /**
-     * Creates a new instance with the given <code>out</code> stream to write to.
+     * Creates a new instance with the given <code>out</code> stream to write
+     * UTF-8 encoded XML to. The output is buffered, hence it is written to the
+     * stream at {@linkplain #flush()}.
      *
      * @param out stream to output to
      */
+    @SuppressWarnings("this-escape") // the driver only stores the reference to this writer.
     public XMLWriter(OutputStream out) {
-        this(new OutputStreamWriter(out));
+        this.driver = new XMLWriterUTF8Driver(this, out);
+        this.init();
     }
 
     /**
@@ -573,6 +735,31 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         this.init();
     }
 
+    /**
+     * Creates a new instance with the given <code>out</code> StAX stream
+     * writer to write to. The stream writer is flushed, but not closed, by
+     * this instance, hence it can be written to further.
+     *
+     * @param out stream writer to output to
+     */
+    @SuppressWarnings("this-escape") // the driver only stores the reference to this writer.
+    public XMLWriter(XMLStreamWriter out) {
+        this.driver = new XMLWriterStAXDriver(this, out, null);
+        this.init();
+    }
+
+    /**
+     * Creates a new instance with the given <code>out</code> SAX content
+     * handler to emit events to, one document per root element.
+     *
+     * @param out content handler to output to
+     */
+    @SuppressWarnings("this-escape") // the driver only stores the reference to this writer.
+    public XMLWriter(ContentHandler out) {
+        this.driver = new XMLWriterSAXDriver(this, out);
+        this.init();
+    }
+
     /**
      * Creates a new instance with the given <code>driver</code>.
      * For generic formats, other than XML.
@@ -645,6 +832,124 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         this.prettyPrint = prettyPrint;
     }
 
+    /**
+     * Gets the {@linkplain #treeMode} property.
+     *
+     * @return the property value
+     */
+    public boolean isTreeMode() {
+        return this.treeMode;
+    }
+
+    /**
+     * Sets the {@linkplain #treeMode} property. In tree mode, the written
+     * object graphs are expected to be trees: object identity is not tracked
+     * and no id and idref attributes are written, hence a shared object is
+     * written once per reference and a cyclic graph is not supported.
+     * The target reader should be in tree mode as well.
+     *
+     * @param treeMode true if write object graphs as trees, false otherwise
+     * @throws IllegalStateException if shared configuration
+     * @see #setSharedReferenceCheck(boolean)
+     * @see XMLReader#setTreeMode(boolean)
+     */
+    public void setTreeMode(boolean treeMode) {
+        this.checkNotSharedConfiguration();
+        this.treeMode = treeMode;
+    }
+
+    /**
+     * Gets the {@linkplain #sharedReferenceCheck} property.
+     *
+     * @return the property value
+     */
+    public boolean isSharedReferenceCheck() {
+        return this.sharedReferenceCheck;
+    }
+
+    /**
+     * Sets the {@linkplain #sharedReferenceCheck} property, a debugging aid
+     * which applies in tree mode only. If enabled, object identity is tracked
+     * without writing ids, and writing a composite object reached twice, i.e.
+     * a shared or a cyclic reference, fails with an
+     * {@linkplain IllegalArgumentException}.
+     *
+     * @param sharedReferenceCheck true if fail at shared references in tree
+     *                             mode, false otherwise
+     * @throws IllegalStateException if shared configuration
+     */
+    public void setSharedReferenceCheck(boolean sharedReferenceCheck) {
+        this.checkNotSharedConfiguration();
+        this.sharedReferenceCheck = sharedReferenceCheck;
+    }
+
+    /**
+     * Gets the {@linkplain #compactIds} property.
+     *
+     * @return the property value
+     */
+    public boolean isCompactIds() {
+        return this.compactIds;
+    }
+
+    /**
+     * Sets the {@linkplain #compactIds} property. In compact ids mode, the id
+     * attribute is written only on the objects which are referenced again, via
+     * idref. Object identity is tracked as usual, but the output is recorded
+     * and written to the output only at the end of the reference scope, i.e.
+     * at {@linkplain #flush()} unless a {@linkplain #setReferenceScope(int)}
+     * is set, when all the idrefs are known. Hence the output of a scope is
+     * buffered in memory, up to a bound of about 64k elements, attributes and
+     * values: scopes beyond it are written as they are marshalled, with the
+     * ids of all objects, so compact ids are best combined with a reference
+     * scope when writing large graphs or streams.
+     * <br/>
+     * The target reader should be in compact ids mode as well.
+     *
+     * @param compactIds true if write ids on referenced objects only, false
+     *                   otherwise
+     * @throws IllegalStateException if shared configuration
+     */
+    public void setCompactIds(boolean compactIds) {
+        this.checkNotSharedConfiguration();
+        this.compactIds = compactIds;
+    }
+
+    /**
+     * Gets the {@linkplain #referenceScope} property.
+     *
+     * @return the property value
+     */
+    public int getReferenceScope() {
+        return this.referenceScope;
+    }
+
+    /**
+     * Sets the {@linkplain #referenceScope} property: the number of values
+     * given to {@linkplain #write(Object)} after which the object identities
+     * are forgotten and the ids restart, or 0 for the whole document, which is
+     * the default. Objects are referenced via idref only within their scope,
+     * hence a scope of 1 writes each value as an independent record, and a
+     * stream of records is written in constant memory. Values written via the
+     * primitive <code>writeX</code> methods are not counted.
+     * <br/>
+     * The scope is written as an attribute of the root element, and the
+     * target reader must be set to the same reference scope.
+     *
+     * @param referenceScope the number of values per scope, or 0 for the
+     *                       whole document
+     * @throws IllegalArgumentException if negative
+     * @throws IllegalStateException    if shared configuration
+     * @see XMLReader#setReferenceScope(int)
+     */
+    public void setReferenceScope(int referenceScope) {
+        if (referenceScope < 0) {
+            throw new IllegalArgumentException("referenceScope: negative: " + referenceScope);
+        }
+        this.checkNotSharedConfiguration();
+        this.referenceScope = referenceScope;
+    }
+
     /**
      * Gets the {@linkplain #rootTag} property.
      *
@@ -732,6 +1037,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         if (maybeAliasing == null) {
             maybeAliasing = new HashMap<>();
         }
+        this.cachedPropertyPlans.clear();
         return this.maybeAliasing.put(toAlias, alias);
     }
 
@@ -761,6 +1067,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         if (this.maybeExclusions == null) {
             this.maybeExclusions = new HashSet<>();
         }
+        this.cachedPropertyPlans.clear();
         this.maybeExclusions.add(f);
     }
 
@@ -770,11 +1077,25 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param b to write
      */
     public void writeBoolean(boolean b) {
-        this.writeValue(DTD.TYPE_BOOLEAN, Boolean.toString(b));
+        this.writeValue(TYPE_BOOLEAN_TOKEN, Boolean.toString(b));
     }
 
     // write values for the above api:
-    private void writeValue(String element, String value) {
+    private void writeValue(NameToken element, String value) {
+        this.ensureRootWritten();
+        this.driver.startElement(element);
+        this.driver.writeValue(value);
+        this.driver.endElement();
+    }
+
+    private void writeValue(NameToken element, int value) {
+        this.ensureRootWritten();
+        this.driver.startElement(element);
+        this.driver.writeValue(value);
+        this.driver.endElement();
+    }
+
+    private void writeValue(NameToken element, long value) {
         this.ensureRootWritten();
         this.driver.startElement(element);
         this.driver.writeValue(value);
@@ -789,7 +1110,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param c to write
      */
     public void writeChar(char c) {
-        this.writeValue(CharacterStrategy.NAME, Character.toString(c));
+        this.writeValue(TYPE_CHAR_TOKEN, Character.toString(c));
     }
 
     /**
@@ -800,7 +1121,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param b to write
      */
     public void writeByte(byte b) {
-        this.writeValue(ByteStrategy.NAME, Byte.toString(b));
+        this.writeValue(TYPE_BYTE_TOKEN, (int) b);
     }
 
     /**
@@ -811,7 +1132,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param s to write
      */
     public void writeShort(short s) {
-        this.writeValue(ShortStrategy.NAME, Short.toString(s));
+        this.writeValue(TYPE_SHORT_TOKEN, (int) s);
     }
 
     /**
@@ -820,7 +1141,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param d to write
      */
     public void writeDouble(double d) {
-        this.writeValue(DTD.TYPE_DOUBLE, Double.toString(d));
+        this.writeValue(TYPE_DOUBLE_TOKEN, Double.toString(d));
     }
 
     /**
@@ -831,7 +1152,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param f to write
      */
     public void writeFloat(float f) {
-        this.writeValue(FloatStrategy.NAME, Float.toString(f));
+        this.writeValue(TYPE_FLOAT_TOKEN, Float.toString(f));
     }
 
     /**
@@ -840,7 +1161,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param i to write
      */
     public void writeInt(int i) {
-        this.writeValue(DTD.TYPE_INT, Integer.toString(i));
+        this.writeValue(TYPE_INT_TOKEN, i);
     }
 
     /**
@@ -851,7 +1172,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param l to write
      */
     public void writeLong(long l) {
-        this.writeValue(LongStrategy.NAME, Long.toString(l));
+        this.writeValue(TYPE_LONG_TOKEN, l);
     }
 
     /**
@@ -860,7 +1181,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @param s to write
      */
     public void writeString(String s) {
-        this.writeValue(DTD.TYPE_STRING, s);
+        this.writeValue(TYPE_STRING_TOKEN, s);
     }
 
     /**
@@ -871,20 +1192,72 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      * @throws IllegalArgumentException if an invalid bean is encountered
      */
     public final void write(Object o) {
+        if (this.compactIds && !this.treeMode && this.driver != this.maybeRecorder) {
+            this.startCompactScope();
+        }
         this.ensureRootWritten();
         try {
             this.write0(o);
         } catch (IllegalAccessException ex) {
             throw new IllegalArgumentException("o: invalid bean: " + ex.getMessage(), ex);
         }
+        // end reference scope:
+        if (this.referenceScope != 0 && ++this.scopedValues == this.referenceScope) {
+            this.scopedValues = 0;
+            this.endCompactScope();
+            this.encoded.clear();
+            this.lastCompactId = 0;
+        }
     }
 
     private void ensureRootWritten() {
         if (this.isInitialState()) {
             this.driver.startElement(this.rootTag);
+            if (this.referenceScope != 0) {
+                this.driver.setAttribute(DTD.ATTRIBUTE_SCOPE_TOKEN, this.referenceScope);
+            }
         }
     }
 
+    // compact ids: records the output of the scope, until all idrefs are known:
+    private void startCompactScope() {
+        if (this.maybeRecorder == null) {
+            this.maybeRecorder = new XMLWriterRecordingDriver(this);
+        }
+        this.maybeRecorder.record(this.driver);
+        this.driver = this.maybeRecorder;
+    }
+
+    // compact ids: writes the recorded output, with the referenced ids only:
+    private void endCompactScope() {
+        if (this.driver == this.maybeRecorder) {
+            this.driver = this.maybeRecorder.target();
+            this.maybeRecorder.replay();
+        }
+    }
+
+    /**
+     * Returns the compact id to write for the given id, if referenced, or 0.
+     * To be used by {@linkplain XMLWriterRecordingDriver} only, in element
+     * order.
+     */
+    /* default*/ int compactIdOf(int id) {
+        if (this.encoded.markOf(id) != COMPACT_REFERENCED) {
+            return 0;
+        }
+        final int compactId = ++this.lastCompactId;
+        this.encoded.mark(id, compactId);
+        return compactId;
+    }
+
+    /**
+     * Returns the compact id to write for the given idref.
+     * To be used by {@linkplain XMLWriterRecordingDriver} only.
+     */
+    /* default*/ int compactIdRefOf(int idRef) {
+        return this.encoded.markOf(idRef);
+    }
+
     private boolean isInitialState() {
         // driver is null when this is instantiated by EasyML constructor and before first write:
         return this.driver == null || this.driver.state == XMLWriter.Driver.STATE_INITIAL;
@@ -894,7 +1267,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         // simple strategy:
         // nil:
         if (data == null) {
-            this.driver.startElement(DTD.ELEMENT_NIL);
+            this.driver.startElement(DTD.ELEMENT_NIL_TOKEN);
             this.driver.endElement();
             return;
         }
@@ -902,41 +1275,70 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         final Class cls = data.getClass();
         SimpleStrategy ss = this.simpleStrategies.lookup(cls);
         if (ss != null) {
+            // built-in number strategies: format without intermediary strings:
+            if (ss == IntStrategy.INSTANCE) {
+                this.driver.startElement(TYPE_INT_TOKEN);
+                this.driver.writeValue(((Integer) data).intValue());
+                this.driver.endElement();
+                return;
+            }
+            if (ss == LongStrategy.INSTANCE) {
+                this.driver.startElement(TYPE_LONG_TOKEN);
+                this.driver.writeValue(((Long) data).longValue());
+                this.driver.endElement();
+                return;
+            }
             this.driver.startElement(ss.name());
             this.driver.writeValue(ss.marshal(data, this.context));
             this.driver.endElement();
             return;
         }
         // composite strategy:
+        if (this.treeMode) {
+            // tree: no identity tracking, unless checking for shared references:
+            if (this.sharedReferenceCheck) {
+                if (this.encoded.get(data) != 0) {
+                    throw new IllegalArgumentException("o: shared reference in tree mode: " + cls.getName());
+                }
+                this.encoded.add(data);
+            }
+            this.writeComposite(data, cls);
+            return;
+        }
         // check if data was already visited in the object graph:
-        final String idRef = this.encoded.get(data);
-        if (idRef != null) {
+        final int idRef = this.encoded.get(data);
+        if (idRef != 0) {
+            if (this.compactIds) { // the recorded id is to be written:
+                this.encoded.mark(idRef, COMPACT_REFERENCED);
+            }
             // write object idref for already-visited data:
-            this.driver.startElement(DTD.ELEMENT_OBJECT);
-            this.driver.setAttribute(DTD.ATTRIBUTE_IDREF, idRef);
+            this.driver.startElement(DTD.ELEMENT_OBJECT_TOKEN);
+            this.driver.setAttribute(DTD.ATTRIBUTE_IDREF_TOKEN, idRef);
             this.driver.endElement();
         } else {
             // mark data as visited:
-            final String nextUniqueId = Integer.toString(this.encoded.size() + 1);
-            this.encoded.put(data, nextUniqueId);
-            this.driver.setOneTimeUniqueIdTo(nextUniqueId);
+            this.driver.setOneTimeUniqueIdTo(this.encoded.add(data));
             // visit data:
-            final CompositeStrategy cs = this.compositeStrategies.lookup(cls);
-            if (cs != null) {
-                cs.marshal(data, this.driver, this.context);
-            } else if (cls.isArray()) {
-                this.writeArray(data);
-            } else {
-                this.writeObject(data);
-            }
+            this.writeComposite(data, cls);
+        }
+    }
+
+    private void writeComposite(Object data, Class cls) throws IllegalAccessException {
+        final CompositeStrategy cs = this.compositeStrategies.lookup(cls);
+        if (cs != null) {
+            cs.marshal(data, this.driver, this.context);
+        } else if (cls.isArray()) {
+            this.writeArray(data);
+        } else {
+            this.writeObject(data);
         }
     }
 
     // array: the array of unknown class to write as XML
     private void writeArray(Object array) throws IllegalAccessException {
         final int length = Array.getLength(array);
-        this.driver.startElement(DTD.ELEMENT_ARRAY);
-        this.driver.setAttribute(DTD.ATTRIBUTE_LENGTH, Integer.toString(length));
+        this.driver.startElement(DTD.ELEMENT_ARRAY_TOKEN);
+        this.driver.setAttribute(DTD.ATTRIBUTE_LENGTH_TOKEN, length);
         final Class arrayItemCls = array.getClass().getComponentType();
         if (arrayItemCls.isPrimitive()) {
             final ValueType vt = ValueType.of(arrayItemCls);
@@ -955,31 +1357,27 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
     // obj: "object with properties" to write
     private void writeObject(Object obj) throws IllegalAccessException {
         // begin bean encoding:
-        Class cls = obj.getClass();
-        this.driver.startElement(DTD.ELEMENT_OBJECT);
-        this.driver.setAttribute(DTD.ATTRIBUTE_CLASS, this.context.aliasOrNameFor(cls));
-        // encode properties:
-        while (cls != Object.class) { // process inheritance:
-            for (Field f : cls.getDeclaredFields()) { // process composition:
-                if (this.context.excluded(f)) {
-                    continue; // skip excluded field.
-                }
-                final ReflectionUtil.FieldInfo fi = ReflectionUtil.fieldInfoForRead(f);
-                if (!fi.isProperty) {
-                    continue; // skip non-property.
-                }
-                // write property value:
-                final String aliasedFieldName = this.context.aliasOrNameFor(f);
-                this.driver.startElement(aliasedFieldName);
-                this.write0(ReflectionUtil.readProperty(obj, f, fi.accessor));
-                this.driver.endElement();
-            }
-            cls = cls.getSuperclass();
+        final Class cls = obj.getClass();
+        this.driver.startElement(DTD.ELEMENT_OBJECT_TOKEN);
+        this.driver.setAttribute(DTD.ATTRIBUTE_CLASS_TOKEN, this.context.aliasOrNameFor(cls));
+        // encode properties, in inheritance then composition order:
+        for (PropertyPlan.Property p : this.propertyPlanFor(cls).properties()) {
+            this.driver.startElement(p.name);
+            this.write0(p.read(obj));
+            this.driver.endElement();
         }
         // end bean encoding:
         this.driver.endElement();
     }
 
+    private PropertyPlan propertyPlanFor(Class cls) {
+        final PropertyPlan cached = this.cachedPropertyPlans.get(cls);
+        if (cached != null) {
+            return cached;
+        }
+        return this.cachedPropertyPlans.computeIfAbsent(cls, c -> PropertyPlan.forWrite(c, this.context));
+    }
+
     /**
      * Flushes the written objects to the output and writes the easyml root end tag.
      */
@@ -987,8 +1385,11 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
     public final void flush() {
         if (!this.isInitialState()) {
             this.driver.endElement(); // DTD.ELEMENT_EASYML.
+            this.endCompactScope();
             this.driver.flush();
             this.encoded.clear();
+            this.lastCompactId = 0;
+            this.scopedValues = 0;
         }
     }
 
@@ -1000,17 +1401,54 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      */
     public void reset(Writer writer) {
         this.flush();
-        this.driver = new XMLWriterTextDriver(this, writer);
+        if (this.driver instanceof XMLWriterTextDriver) { // reuse driver:
+            ((XMLWriterTextDriver) this.driver).reset(writer);
+        } else {
+            this.driver = new XMLWriterTextDriver(this, writer);
+        }
     }
 
     /**
      * Resets this instance, flushing if necessary, and setting it to the new
-     * <code>out</code> stream.
+     * <code>out</code> stream, to write UTF-8 encoded XML to.
      *
      * @param out to use from now on
      */
     public void reset(OutputStream out) {
-        this.reset(new OutputStreamWriter(out));
+        this.flush();
+        if (this.driver instanceof XMLWriterUTF8Driver) { // reuse buffer:
+            ((XMLWriterUTF8Driver) this.driver).reset(out);
+        } else {
+            this.driver = new XMLWriterUTF8Driver(this, out);
+        }
+    }
+
+    /**
+     * Resets this instance, flushing if necessary, and setting it to the new
+     * <code>out</code> stream, to write UTF-8 encoded XML to via the given
+     * pooled buffer. The buffer is to be taken back via
+     * {@linkplain #detachBuffer()}.
+     *
+     * @param out    to use from now on
+     * @param buffer to write via
+     */
+    /* default*/ void reset(OutputStream out, byte[] buffer) {
+        this.flush();
+        if (this.driver instanceof XMLWriterUTF8Driver) {
+            ((XMLWriterUTF8Driver) this.driver).reset(out, buffer);
+        } else {
+            this.driver = new XMLWriterUTF8Driver(this, out, buffer);
+        }
+    }
+
+    /**
+     * Detaches the buffer given at {@linkplain #reset(OutputStream, byte[])}.
+     * This instance must be flushed and reset before further use.
+     *
+     * @return the buffer
+     */
+    /* default*/ byte[] detachBuffer() {
+        return ((XMLWriterUTF8Driver) this.driver).detachBuffer();
     }
 
     /**
@@ -1024,6 +1462,40 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         this.driver = new XMLWriterDOMDriver(this, out);
     }
 
+    /**
+     * Resets this instance, flushing if necessary, and setting it to the new
+     * <code>out</code> StAX stream writer, which is flushed but not closed.
+     *
+     * @param out to use from now on
+     */
+    public void reset(XMLStreamWriter out) {
+        this.reset(out, null);
+    }
+
+    /**
+     * Resets this instance, flushing if necessary, and setting it to the new
+     * <code>out</code> StAX stream writer, created over the given output.
+     *
+     * @param out        to use from now on
+     * @param outToClose the output underlying out, to close on
+     *                   {@linkplain #close()}, or null if owned by the caller
+     */
+    /* default*/ void reset(XMLStreamWriter out, Closeable outToClose) {
+        this.flush();
+        this.driver = new XMLWriterStAXDriver(this, out, outToClose);
+    }
+
+    /**
+     * Resets this instance, flushing if necessary, and setting it to the new
+     * <code>out</code> SAX content handler.
+     *
+     * @param out to use from now on
+     */
+    public void reset(ContentHandler out) {
+        this.flush();
+        this.driver = new XMLWriterSAXDriver(this, out);
+    }
+
     /**
      * Clears the so-far-filled cache of this instance, decreasing memory
      * consumption as well as time performance. If this instance is a prototype
@@ -1039,8 +1511,11 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
      */
     public void clearCache() {
         this.checkNotSharedConfiguration();
-        // no class and field cache.
+        // clear property plan cache:
+        this.cachedPropertyPlans.clear();
         // clear strategies cache:
+        this.simpleStrategies.invalidate();
+        this.compositeStrategies.invalidate();
         this.simpleStrategies.forEach(XMLWriter::clearCache);
         this.compositeStrategies.forEach(XMLWriter::clearCache);
     }
@@ -1064,6 +1539,7 @@ public class XMLWriter implements Flushable, Closeable, Consumer, IntConsumer, L
         this.context = null;
         this.maybeAliasing = null;
         this.maybeExclusions = null;
+        this.cachedPropertyPlans = null;
         this.compositeStrategies = null;
         this.simpleStrategies = null;
     }
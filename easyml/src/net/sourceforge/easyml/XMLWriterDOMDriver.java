@@ -18,6 +18,7 @@
  */
 package net.sourceforge.easyml;
 
+import net.sourceforge.easyml.marshalling.NameToken;
 import net.sourceforge.easyml.util.XMLUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -28,7 +29,7 @@ import org.w3c.dom.Node;
  * XML to DOM documents.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.3
+ * @version 1.9.0
  * @since 1.1.0
  */
 final class XMLWriterDOMDriver extends XMLWriter.Driver {
@@ -56,20 +57,35 @@ final class XMLWriterDOMDriver extends XMLWriter.Driver {
      */
     @Override
     public void startElement(String name) {
+        this.startEscapedElement(XMLUtil.escapeXMLTag(name));
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(NameToken name) {
+        this.startEscapedElement(name.escaped());
+    }
+
+    private void startEscapedElement(String escapedName) {
         if (this.state == XMLWriter.Driver.STATE_INITIAL || this.state == XMLWriter.Driver.STATE_START) {
             this.state = XMLWriter.Driver.STATE_VALUE;
         } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
             throw new IllegalStateException("cannot write element start");
         }
         // update state:
-        final Element started = this.root.createElement(XMLUtil.escapeXMLTag(name));
+        final Element started = this.root.createElement(escapedName);
         if (this.crt == null) {
             this.root.appendChild(started);
         } else {
             this.crt.appendChild(started);
         }
         this.crt = started;
-        this.writeOneTimeUniqueId(id -> crt.setAttribute(DTD.ATTRIBUTE_ID, id));
+        final int uniqueId = this.takeOneTimeUniqueId();
+        if (uniqueId != 0) {
+            started.setAttribute(DTD.ATTRIBUTE_ID, Integer.toString(uniqueId));
+        }
         this.state = XMLWriter.Driver.STATE_START;
     }
 
@@ -84,6 +100,14 @@ final class XMLWriterDOMDriver extends XMLWriter.Driver {
         this.crt.setAttribute(attribute, value);
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(NameToken attribute, String value) {
+        this.setAttribute(attribute.escaped(), value);
+    }
+
     /**
      * {@inheritDoc }
      */
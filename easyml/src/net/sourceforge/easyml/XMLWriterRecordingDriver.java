@@ -0,0 +1,365 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import net.sourceforge.easyml.marshalling.NameToken;
+import net.sourceforge.easyml.util.XMLUtil;
+
+import java.util.Arrays;
+
+/**
+ * XMLWriterRecordingDriver class is the XML writer driver implementation which
+ * records the written XML, to be replayed into the actual driver later on. It
+ * is used by {@linkplain XMLWriter} in compact ids mode, where the id of an
+ * element is written only if an idref to it follows: the output of a reference
+ * scope is recorded, as it is marshalled, and replayed at the end of the scope,
+ * when all idrefs are known.
+ * <br/>
+ * The element ids are renumbered at replay, via
+ * {@linkplain XMLWriter#compactIdOf(int)}, hence the replayed ids are
+ * consecutive.
+ * <br/>
+ * The recording is bounded to {@linkplain #MAX_RECORDED} events: beyond it,
+ * the recording is replayed with all the ids, and the rest of the scope is
+ * written through to the actual driver, as if not in compact ids mode.
+ * The element order and the attributes are validated as they are recorded,
+ * as by {@linkplain XMLWriterTextDriver}.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class XMLWriterRecordingDriver extends XMLWriter.Driver {
+
+    /**
+     * The maximum number of events recorded per reference scope.
+     */
+    static final int MAX_RECORDED = 64 * 1024;
+    private static final byte START = 0;
+    private static final byte START_TOKEN = 1;
+    private static final byte ATTRIBUTE = 2;
+    private static final byte ATTRIBUTE_TOKEN = 3;
+    private static final byte ATTRIBUTE_TOKEN_INT = 4;
+    private static final byte END = 5;
+    private static final byte VALUE = 6;
+    private static final byte VALUE_INT = 7;
+    private static final byte VALUE_LONG = 8;
+    private static final int INITIAL_CAPACITY = 256;
+    private final XMLWriter writer;
+    private XMLWriter.Driver target;
+    private boolean writeThrough; // recording bound reached: writing to target, with all ids.
+    private byte[] ops;
+    private Object[] names; // String or NameToken.
+    private String[] values;
+    private long[] numbers; // int and long values, and element ids.
+    private int size;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param target to use and be used by
+     */
+    XMLWriterRecordingDriver(XMLWriter target) {
+        super(target);
+        this.writer = target;
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.ops = new byte[capacity];
+        this.names = new Object[capacity];
+        this.values = new String[capacity];
+        this.numbers = new long[capacity];
+    }
+
+    /**
+     * Starts recording, to be replayed into the given driver, continuing from
+     * its current state.
+     *
+     * @param target the driver to replay into
+     */
+    void record(XMLWriter.Driver target) {
+        this.target = target;
+        this.writeThrough = false;
+        this.state = target.state;
+    }
+
+    /**
+     * Returns the driver to replay into.
+     *
+     * @return the target driver
+     */
+    XMLWriter.Driver target() {
+        return this.target;
+    }
+
+    // true if to record, false if to write through, once the recording bound is reached:
+    private boolean recording() {
+        if (this.writeThrough) {
+            return false;
+        }
+        if (this.size == MAX_RECORDED) {
+            this.replay(false);
+            this.writeThrough = true;
+            return false;
+        }
+        return true;
+    }
+
+    private void add(byte op, Object name, String value, long number) {
+        if (this.size == this.ops.length) {
+            final int capacity = Math.min(2 * this.size, MAX_RECORDED);
+            this.ops = Arrays.copyOf(this.ops, capacity);
+            this.names = Arrays.copyOf(this.names, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.numbers = Arrays.copyOf(this.numbers, capacity);
+        }
+        this.ops[this.size] = op;
+        this.names[this.size] = name;
+        this.values[this.size] = value;
+        this.numbers[this.size] = number;
+        this.size++;
+    }
+
+    private void checkStartElement() {
+        if (this.state != XMLWriter.Driver.STATE_START
+                && this.state != XMLWriter.Driver.STATE_INITIAL
+                && this.state != XMLWriter.Driver.STATE_VALUE) {
+            throw new IllegalStateException("cannot write element start");
+        }
+    }
+
+    private void checkAttribute() {
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
+    }
+
+    private void checkValue() {
+        if (this.state != XMLWriter.Driver.STATE_START && this.state != XMLWriter.Driver.STATE_VALUE) {
+            throw new IllegalStateException("cannot write value");
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(String name) {
+        this.checkStartElement();
+        if (this.recording()) {
+            this.add(START, name, null, this.takeOneTimeUniqueId());
+        } else {
+            this.target.setOneTimeUniqueIdTo(this.takeOneTimeUniqueId());
+            this.target.startElement(name);
+        }
+        this.state = XMLWriter.Driver.STATE_START;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(NameToken name) {
+        this.checkStartElement();
+        if (this.recording()) {
+            this.add(START_TOKEN, name, null, this.takeOneTimeUniqueId());
+        } else {
+            this.target.setOneTimeUniqueIdTo(this.takeOneTimeUniqueId());
+            this.target.startElement(name);
+        }
+        this.state = XMLWriter.Driver.STATE_START;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(String attribute, String value) {
+        if (!XMLUtil.isLegalXMLTag(attribute)) {
+            throw new IllegalArgumentException("attribute: " + attribute);
+        }
+        this.checkAttribute();
+        if (this.recording()) {
+            this.add(ATTRIBUTE, attribute, value, 0);
+        } else {
+            this.target.setAttribute(attribute, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(NameToken attribute, String value) {
+        this.checkAttribute();
+        if (this.recording()) {
+            this.add(ATTRIBUTE_TOKEN, attribute, value, 0);
+        } else {
+            this.target.setAttribute(attribute, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(NameToken attribute, int value) {
+        this.checkAttribute();
+        if (this.recording()) {
+            this.add(ATTRIBUTE_TOKEN_INT, attribute, null, value);
+        } else {
+            this.target.setAttribute(attribute, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void endElement() {
+        if (this.state == XMLWriter.Driver.STATE_INITIAL) {
+            throw new IllegalStateException("cannot write element end");
+        }
+        if (this.recording()) {
+            this.add(END, null, null, 0);
+        } else {
+            this.target.endElement();
+        }
+        this.state = XMLWriter.Driver.STATE_VALUE;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value: null");
+        }
+        this.checkValue();
+        if (this.recording()) {
+            this.add(VALUE, null, value, 0);
+        } else {
+            this.target.writeValue(value);
+        }
+        this.state = XMLWriter.Driver.STATE_VALUE_END;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(int value) {
+        this.checkValue();
+        if (this.recording()) {
+            this.add(VALUE_INT, null, null, value);
+        } else {
+            this.target.writeValue(value);
+        }
+        this.state = XMLWriter.Driver.STATE_VALUE_END;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(long value) {
+        this.checkValue();
+        if (this.recording()) {
+            this.add(VALUE_LONG, null, null, value);
+        } else {
+            this.target.writeValue(value);
+        }
+        this.state = XMLWriter.Driver.STATE_VALUE_END;
+    }
+
+    /**
+     * Replays the recording into the target driver and clears it, ending the
+     * scope. The ids and idrefs are renumbered, and only the ids which are
+     * referenced are written.
+     */
+    void replay() {
+        this.replay(true);
+        this.writeThrough = false;
+    }
+
+    // replays with compact ids, or with all ids as they were assigned:
+    private void replay(boolean compact) {
+        final XMLWriter.Driver out = this.target;
+        for (int i = 0; i < this.size; i++) {
+            switch (this.ops[i]) {
+                case START:
+                    this.replayId(out, (int) this.numbers[i], compact);
+                    out.startElement((String) this.names[i]);
+                    break;
+                case START_TOKEN:
+                    this.replayId(out, (int) this.numbers[i], compact);
+                    out.startElement((NameToken) this.names[i]);
+                    break;
+                case ATTRIBUTE:
+                    out.setAttribute((String) this.names[i], this.values[i]);
+                    break;
+                case ATTRIBUTE_TOKEN:
+                    out.setAttribute((NameToken) this.names[i], this.values[i]);
+                    break;
+                case ATTRIBUTE_TOKEN_INT:
+                    final NameToken attribute = (NameToken) this.names[i];
+                    final int value = (int) this.numbers[i];
+                    out.setAttribute(attribute, compact && attribute == DTD.ATTRIBUTE_IDREF_TOKEN ? this.writer.compactIdRefOf(value) : value);
+                    break;
+                case END:
+                    out.endElement();
+                    break;
+                case VALUE:
+                    out.writeValue(this.values[i]);
+                    break;
+                case VALUE_INT:
+                    out.writeValue((int) this.numbers[i]);
+                    break;
+                default: // VALUE_LONG.
+                    out.writeValue(this.numbers[i]);
+                    break;
+            }
+        }
+        this.clear();
+    }
+
+    private void replayId(XMLWriter.Driver out, int id, boolean compact) {
+        if (id != 0) {
+            final int replayedId = compact ? this.writer.compactIdOf(id) : id;
+            if (replayedId != 0) {
+                out.setOneTimeUniqueIdTo(replayedId);
+            }
+        }
+    }
+
+    /**
+     * Discards the recording.
+     */
+    void clear() {
+        if (this.ops.length > INITIAL_CAPACITY && 8 * this.size < this.ops.length) { // release spikes.
+            this.allocate(INITIAL_CAPACITY);
+        } else {
+            Arrays.fill(this.names, 0, this.size, null);
+            Arrays.fill(this.values, 0, this.size, null);
+        }
+        this.size = 0;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import net.sourceforge.easyml.marshalling.NameToken;
+import net.sourceforge.easyml.util.XMLUtil;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * XMLWriterSAXDriver class is the XML writer driver implementation for writing
+ * XML as SAX {@linkplain ContentHandler} events, enabling object graphs to be
+ * streamed into XSLT transformers, validators or other SAX consumers without
+ * writing and re-parsing XML text.
+ * <br/>
+ * Each root element is emitted as a document, i.e. between
+ * <code>startDocument</code> and <code>endDocument</code> events, the latter
+ * at {@linkplain #flush()}. The element start events are emitted once their
+ * attributes are complete, and attribute values and text are passed
+ * un-escaped, as SAX requires.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class XMLWriterSAXDriver extends XMLWriter.Driver {
+
+    private static final String NO_NAMESPACE = "";
+    private static final String CDATA_TYPE = "CDATA";
+    private static final char[] XML_NEWLINE = System.getProperty("line.separator").toCharArray();
+    private static final int XML_INDENTATION_INIT = -1;
+
+    private final ContentHandler handler;
+    private final AttributesImpl attributes;
+    private final List<String> elementStack;
+    private String pendingName; // started element, whose start event is pending its attributes.
+    private boolean documentStarted;
+    private char[] chars;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param target to use and be used by
+     * @param out    to write events to
+     */
+    public XMLWriterSAXDriver(XMLWriter target, ContentHandler out) {
+        super(target);
+        this.handler = out;
+        this.attributes = new AttributesImpl();
+        this.elementStack = new ArrayList<>();
+        this.pendingName = null;
+        this.documentStarted = false;
+        this.chars = new char[64];
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(String name) {
+        this.startEscapedElement(XMLUtil.escapeXMLTag(name));
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(NameToken name) {
+        this.startEscapedElement(name.escaped());
+    }
+
+    private void startEscapedElement(String escapedName) {
+        try {
+            if (this.state == XMLWriter.Driver.STATE_INITIAL) {
+                if (!this.documentStarted) {
+                    this.handler.startDocument();
+                    this.documentStarted = true;
+                }
+            } else if (this.state == XMLWriter.Driver.STATE_START) {
+                this.emitPendingStart();
+                this.writeIndent();
+            } else if (this.state == XMLWriter.Driver.STATE_VALUE) {
+                this.writeIndent();
+            } else {
+                throw new IllegalStateException("cannot write element start");
+            }
+        } catch (SAXException saxX) {
+            throw new RuntimeException(saxX);
+        }
+        // update state:
+        this.pendingName = escapedName;
+        this.attributes.clear();
+        final int uniqueId = this.takeOneTimeUniqueId();
+        if (uniqueId != 0) {
+            this.addAttribute(DTD.ATTRIBUTE_ID, Integer.toString(uniqueId));
+        }
+        this.elementStack.add(escapedName);
+        this.state = XMLWriter.Driver.STATE_START;
+    }
+
+    private void emitPendingStart() throws SAXException {
+        this.handler.startElement(NO_NAMESPACE, this.pendingName, this.pendingName, this.attributes);
+        this.pendingName = null;
+    }
+
+    private void writeIndent() throws SAXException {
+        if (this.isPrettyPrint()) {
+            final int size = XML_INDENTATION_INIT + this.elementStack.size();
+            final int len = XML_NEWLINE.length + Math.max(size, 0);
+            this.ensureChars(len);
+            System.arraycopy(XML_NEWLINE, 0, this.chars, 0, XML_NEWLINE.length);
+            Arrays.fill(this.chars, XML_NEWLINE.length, len, ' ');
+            this.handler.ignorableWhitespace(this.chars, 0, len);
+        }
+    }
+
+    private void ensureChars(int len) {
+        if (this.chars.length < len) {
+            this.chars = new char[Math.max(len, 2 * this.chars.length)];
+        }
+    }
+
+    private void addAttribute(String attribute, String value) {
+        this.attributes.addAttribute(NO_NAMESPACE, attribute, attribute, CDATA_TYPE, value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(String attribute, String value) {
+        if (!XMLUtil.isLegalXMLTag(attribute)) {
+            throw new IllegalArgumentException("attribute: " + attribute);
+        }
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
+        this.addAttribute(attribute, value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(NameToken attribute, String value) {
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
+        this.addAttribute(attribute.escaped(), value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void endElement() {
+        if (this.state == XMLWriter.Driver.STATE_INITIAL) {
+            throw new IllegalStateException("cannot write element end");
+        }
+        // first remove from stack because stack size is used for indenting end tag:
+        final String endTag = this.elementStack.remove(this.elementStack.size() - 1);
+        try {
+            if (this.state == XMLWriter.Driver.STATE_START) {
+                this.emitPendingStart();
+            } else if (this.state == XMLWriter.Driver.STATE_VALUE) {
+                this.writeIndent();
+            }
+            this.handler.endElement(NO_NAMESPACE, endTag, endTag);
+        } catch (SAXException saxX) {
+            throw new RuntimeException(saxX);
+        }
+        // update state:
+        this.state = XMLWriter.Driver.STATE_VALUE;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value: null");
+        }
+        try {
+            if (this.state == XMLWriter.Driver.STATE_START) {
+                this.emitPendingStart();
+                this.state = XMLWriter.Driver.STATE_VALUE;
+            } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
+                throw new IllegalStateException("cannot write value");
+            }
+            final int len = value.length();
+            this.ensureChars(len);
+            value.getChars(0, len, this.chars, 0);
+            this.handler.characters(this.chars, 0, len);
+        } catch (SAXException saxX) {
+            throw new RuntimeException(saxX);
+        }
+        this.state = STATE_VALUE_END;
+    }
+
+    /**
+     * Ends the document, if started.
+     */
+    @Override
+    public void flush() {
+        super.flush();
+        if (this.documentStarted) {
+            this.documentStarted = false;
+            try {
+                this.handler.endDocument();
+            } catch (SAXException saxX) {
+                throw new RuntimeException(saxX);
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import net.sourceforge.easyml.marshalling.NameToken;
+import net.sourceforge.easyml.util.XMLUtil;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * XMLWriterStAXDriver class is the XML writer driver implementation for writing
+ * XML to StAX {@linkplain XMLStreamWriter}s, enabling EasyML output to be
+ * embedded in larger StAX pipelines. The stream writer escapes the attribute
+ * values and text itself, except for carriage returns, which this driver
+ * writes as character references in text. In attribute values, carriage
+ * returns are preserved only if the stream writer escapes them, as the ones
+ * created by EasyML do: the StAX API has no way of writing character
+ * references inside start tags.
+ * <br/>
+ * The stream writer is not closed by this driver, unless created by EasyML,
+ * hence the caller can continue writing to it after EasyML is done.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class XMLWriterStAXDriver extends XMLWriter.Driver {
+
+    private static final String XML_NEWLINE = "\n"; // no carriage returns, see class doc.
+    private static final String XML_CR_REFERENCE = "#13";
+    private static final int XML_INDENTATION_INIT = -1;
+    private static final char[] XML_INDENTATION_BUF
+            = new char[]{' ', ' ', ' ', ' ', ' ', ' ', ' ', ' '};
+
+    private final XMLStreamWriter writer;
+    private final Closeable outToClose;
+    private int depth;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param target     to use and be used by
+     * @param out        to write to
+     * @param outToClose the output underlying <code>out</code>, to close on
+     *                   {@linkplain #close()} together with <code>out</code>,
+     *                   or null if owned by the caller
+     */
+    public XMLWriterStAXDriver(XMLWriter target, XMLStreamWriter out, Closeable outToClose) {
+        super(target);
+        this.writer = out;
+        this.outToClose = outToClose;
+        this.depth = 0;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(String name) {
+        this.startEscapedElement(XMLUtil.escapeXMLTag(name));
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(NameToken name) {
+        this.startEscapedElement(name.escaped());
+    }
+
+    private void startEscapedElement(String escapedName) {
+        try {
+            if (this.state == XMLWriter.Driver.STATE_START || this.state == XMLWriter.Driver.STATE_VALUE) {
+                this.writeIndent();
+            } else if (this.state != XMLWriter.Driver.STATE_INITIAL) {
+                throw new IllegalStateException("cannot write element start");
+            }
+            this.writer.writeStartElement(escapedName);
+            final int uniqueId = this.takeOneTimeUniqueId();
+            if (uniqueId != 0) {
+                this.writer.writeAttribute(DTD.ATTRIBUTE_ID, Integer.toString(uniqueId));
+            }
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+        // update state:
+        this.depth++;
+        this.state = XMLWriter.Driver.STATE_START;
+    }
+
+    private void writeIndent() throws XMLStreamException {
+        if (this.isPrettyPrint()) {
+            this.writer.writeCharacters(XML_NEWLINE);
+            int size = XML_INDENTATION_INIT + this.depth;
+            while (size >= XML_INDENTATION_BUF.length) {
+                this.writer.writeCharacters(XML_INDENTATION_BUF, 0, XML_INDENTATION_BUF.length);
+                size -= XML_INDENTATION_BUF.length;
+            }
+            if (size > 0) {
+                this.writer.writeCharacters(XML_INDENTATION_BUF, 0, size);
+            }
+        }
+    }
+
+    private void tryWriteAttribute(String attribute, String value) {
+        try {
+            this.writer.writeAttribute(attribute, value);
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(String attribute, String value) {
+        if (!XMLUtil.isLegalXMLTag(attribute)) {
+            throw new IllegalArgumentException("attribute: " + attribute);
+        }
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
+        this.tryWriteAttribute(attribute, value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(NameToken attribute, String value) {
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
+        this.tryWriteAttribute(attribute.escaped(), value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void endElement() {
+        if (this.state == XMLWriter.Driver.STATE_INITIAL) {
+            throw new IllegalStateException("cannot write element end");
+        }
+        // first decrease depth because it is used for indenting end tag:
+        this.depth--;
+        try {
+            if (this.state == XMLWriter.Driver.STATE_VALUE) {
+                this.writeIndent();
+            }
+            this.writer.writeEndElement();
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+        // update state:
+        this.state = XMLWriter.Driver.STATE_VALUE;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value: null");
+        }
+        if (this.state == XMLWriter.Driver.STATE_START) {
+            this.state = XMLWriter.Driver.STATE_VALUE;
+        } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
+            throw new IllegalStateException("cannot write value");
+        }
+        try {
+            // carriage returns as character references, else lost to end-of-line normalization:
+            int from = 0;
+            for (int cr = value.indexOf('\r'); cr != -1; cr = value.indexOf('\r', from)) {
+                if (cr > from) {
+                    this.writer.writeCharacters(value.substring(from, cr));
+                }
+                this.writer.writeEntityRef(XML_CR_REFERENCE);
+                from = cr + 1;
+            }
+            this.writer.writeCharacters(from == 0 ? value : value.substring(from));
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+        this.state = STATE_VALUE_END;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void flush() {
+        super.flush();
+        try {
+            this.writer.flush();
+        } catch (XMLStreamException xsX) {
+            throw new RuntimeException(xsX);
+        }
+    }
+
+    /**
+     * Flushes and, if created by EasyML, closes the stream writer and its
+     * underlying output.
+     */
+    @Override
+    public void close() {
+        super.close();
+        if (this.outToClose != null) {
+            try {
+                this.writer.close();
+                this.outToClose.close();
+            } catch (XMLStreamException | IOException ignore) {
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package net.sourceforge.easyml;
 
+import net.sourceforge.easyml.marshalling.NameToken;
 import net.sourceforge.easyml.util.XMLUtil;
 
 import java.io.IOException;
@@ -30,7 +31,7 @@ import java.util.List;
  * XML to output streams.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.3
+ * @version 1.9.0
  * @since 1.1.0
  */
 final class XMLWriterTextDriver extends XMLWriter.Driver {
@@ -41,9 +42,12 @@ final class XMLWriterTextDriver extends XMLWriter.Driver {
     private static final int XML_INDENTATION_INIT = -1;
     private static final char[] XML_INDENTATION_BUF
             = new char[]{' ', ' ', ' ', ' ', ' ', ' ', ' ', ' '};
+    private static final String XML_FRAGMENT_ATTRIBUTE_ID = ' ' + DTD.ATTRIBUTE_ID;
+    private static final int MAX_DIGITS = 20; // the longest long: -9223372036854775808
 
-    private final Writer writer;
+    private Writer writer;
     private final List<String> elementStack;
+    private final char[] digits;
 
     /**
      * Creates a new instance.
@@ -55,6 +59,19 @@ final class XMLWriterTextDriver extends XMLWriter.Driver {
         super(target);
         this.writer = out;
         this.elementStack = new ArrayList<>();
+        this.digits = new char[MAX_DIGITS];
+    }
+
+    /**
+     * Resets this instance to write to the given writer, reusing the
+     * allocated structures.
+     *
+     * @param out to write to
+     */
+    public void reset(Writer out) {
+        this.writer = out;
+        this.elementStack.clear();
+        this.state = XMLWriter.Driver.STATE_INITIAL;
     }
 
     /**
@@ -63,27 +80,59 @@ final class XMLWriterTextDriver extends XMLWriter.Driver {
     @Override
     public void startElement(String name) {
         try {
-            if (this.state == XMLWriter.Driver.STATE_START) {
-                this.writer.write('>');
-                writeIndentedLt();
-            } else if (this.state == XMLWriter.Driver.STATE_INITIAL) {
-                this.writer.write('<');
-            } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
-                throw new IllegalStateException("cannot write element start");
-            } else {
-                writeIndentedLt();
-            }
+            this.writeStartLt();
             final String escapedName = XMLUtil.escapeXMLTag(name);
             this.writer.write(escapedName);
-            this.writeOneTimeUniqueId(id -> tryWriteAttrEqValue(DTD.ATTRIBUTE_ID, id));
-            // update state:
-            this.elementStack.add(escapedName);
-            this.state = XMLWriter.Driver.STATE_START;
+            this.writeStartRest(escapedName);
         } catch (IOException ioX) {
             throw new RuntimeException(ioX);
         }
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(NameToken name) {
+        try {
+            this.writeStartLt();
+            name.writeTo(this.writer);
+            this.writeStartRest(name.escaped());
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    private void writeStartLt() throws IOException {
+        if (this.state == XMLWriter.Driver.STATE_START) {
+            this.writer.write('>');
+            writeIndentedLt();
+        } else if (this.state == XMLWriter.Driver.STATE_INITIAL) {
+            this.writer.write('<');
+        } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
+            throw new IllegalStateException("cannot write element start");
+        } else {
+            writeIndentedLt();
+        }
+    }
+
+    private void writeStartRest(String escapedName) {
+        final int uniqueId = this.takeOneTimeUniqueId();
+        if (uniqueId != 0) {
+            try {
+                this.writer.write(XML_FRAGMENT_ATTRIBUTE_ID);
+                this.writer.write("=\"");
+                this.writeDigits(uniqueId);
+                this.writer.write('\"');
+            } catch (IOException ioX) {
+                throw new RuntimeException(ioX);
+            }
+        }
+        // update state:
+        this.elementStack.add(escapedName);
+        this.state = XMLWriter.Driver.STATE_START;
+    }
+
     private void writeIndentedLt() throws IOException {
         if (this.isPrettyPrint()) {
             this.writeIndent();
@@ -103,35 +152,77 @@ final class XMLWriterTextDriver extends XMLWriter.Driver {
         }
     }
 
-    private void tryWriteAttrEqValue(String attr, String value) {
+    // formats the given number right-aligned into the digits buffer, without intermediary strings:
+    private void writeDigits(long l) throws IOException {
+        final char[] d = this.digits;
+        int start = d.length;
+        long n = l < 0 ? l : -l; // negative, in order to cover Long.MIN_VALUE.
+        do {
+            final long q = n / 10;
+            d[--start] = (char) ('0' + (q * 10 - n));
+            n = q;
+        } while (n != 0);
+        if (l < 0) {
+            d[--start] = '-';
+        }
+        this.writer.write(d, start, d.length - start);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(String attribute, String value) {
+        if (!XMLUtil.isLegalXMLTag(attribute)) {
+            throw new IllegalArgumentException("attribute: " + attribute);
+        }
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
         try {
-            writeAttrEqValue(attr, value);
+            this.writer.write(' ');
+            this.writer.write(attribute);
+            this.writer.write("=\"");
+            XMLUtil.escapeXML(value, this.writer);
+            this.writer.write('\"');
         } catch (IOException ioX) {
             throw new RuntimeException(ioX);
         }
     }
 
-    private void writeAttrEqValue(String attr, String value) throws IOException {
-        this.writer.write(' ');
-        this.writer.write(attr);
-        this.writer.write("=\"");
-        this.writer.write(value);
-        this.writer.write('\"');
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(NameToken attribute, String value) {
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
+        try {
+            this.writer.write(' ');
+            attribute.writeTo(this.writer);
+            this.writer.write("=\"");
+            XMLUtil.escapeXML(value, this.writer);
+            this.writer.write('\"');
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
     }
 
     /**
      * {@inheritDoc }
      */
     @Override
-    public void setAttribute(String attribute, String value) {
-        if (!XMLUtil.isLegalXMLTag(attribute)) {
-            throw new IllegalArgumentException("attribute: " + attribute);
-        }
+    public void setAttribute(NameToken attribute, int value) {
         if (this.state != XMLWriter.Driver.STATE_START) {
             throw new IllegalStateException("cannot write element attributes");
         }
         try {
-            writeAttrEqValue(attribute, XMLUtil.escapeXML(value));
+            this.writer.write(' ');
+            attribute.writeTo(this.writer);
+            this.writer.write("=\"");
+            this.writeDigits(value);
+            this.writer.write('\"');
         } catch (IOException ioX) {
             throw new RuntimeException(ioX);
         }
@@ -182,19 +273,45 @@ final class XMLWriterTextDriver extends XMLWriter.Driver {
             throw new IllegalArgumentException("value: null");
         }
         try {
-            if (this.state == XMLWriter.Driver.STATE_START) {
-                this.writer.write('>');
-                this.state = XMLWriter.Driver.STATE_VALUE;
-            } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
-                throw new IllegalStateException("cannot write value");
-            }
-            this.writer.write(XMLUtil.escapeXML(value));
+            this.writeValueGt();
+            XMLUtil.escapeXML(value, this.writer);
             this.state = STATE_VALUE_END;
         } catch (IOException ioX) {
             throw new RuntimeException(ioX);
         }
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(int value) {
+        this.writeValue((long) value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(long value) {
+        try {
+            this.writeValueGt();
+            this.writeDigits(value);
+            this.state = STATE_VALUE_END;
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    private void writeValueGt() throws IOException {
+        if (this.state == XMLWriter.Driver.STATE_START) {
+            this.writer.write('>');
+            this.state = XMLWriter.Driver.STATE_VALUE;
+        } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
+            throw new IllegalStateException("cannot write value");
+        }
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml;
+
+import net.sourceforge.easyml.marshalling.NameToken;
+import net.sourceforge.easyml.util.XMLUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * XMLWriterUTF8Driver class is the XML writer driver implementation for writing
+ * UTF-8 encoded XML directly to output streams. Unlike
+ * {@linkplain XMLWriterTextDriver}, this implementation bypasses the charset
+ * encoder: it encodes into its own buffer, with an ASCII fast path, and writes
+ * the element names and fixed XML fragments as pre-encoded bytes.
+ * <br/>
+ * The output is identical to the one of {@linkplain XMLWriterTextDriver}
+ * writing to an UTF-8 {@linkplain java.io.OutputStreamWriter}. The buffer is
+ * reused across {@linkplain #reset(OutputStream)}s, or given at
+ * {@linkplain #reset(OutputStream, byte[])}, if pooled by the caller.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+final class XMLWriterUTF8Driver extends XMLWriter.Driver {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_CACHED_NAMES = 1024;
+    private static final int MAX_ENCODED_CHAR = 6; // the longest escape: &quot;
+    private static final byte[] XML_NEWLINE = System.getProperty("line.separator").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] XML_FRAGMENT_SLASH_GT = {'/', '>'};
+    private static final byte[] XML_FRAGMENT_LT_SLASH = {'<', '/'};
+    private static final byte[] XML_FRAGMENT_EQ_QUOT = {'=', '"'};
+    private static final byte[] XML_ATTRIBUTE_ID = (' ' + DTD.ATTRIBUTE_ID).getBytes(StandardCharsets.UTF_8);
+    private static final int XML_INDENTATION_INIT = -1;
+    private static final byte[] XML_INDENTATION_BUF = {' ', ' ', ' ', ' ', ' ', ' ', ' ', ' '};
+    private static final byte[] XML_LEGAL_LT = "&lt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XML_LEGAL_GT = "&gt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XML_LEGAL_AMP = "&amp;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XML_LEGAL_QUOT = "&quot;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XML_LEGAL_APOS = "&apos;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XML_LEGAL_CR = "&#13;".getBytes(StandardCharsets.US_ASCII);
+
+    private OutputStream out;
+    private byte[] buf;
+    private int pos;
+    private Object[] elementStack; // byte[] encoded names or NameTokens.
+    private int depth;
+    private final Map<String, byte[]> cachedNames;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param target to use and be used by
+     * @param out    to write to
+     */
+    public XMLWriterUTF8Driver(XMLWriter target, OutputStream out) {
+        this(target, out, new byte[BUFFER_SIZE]);
+    }
+
+    /**
+     * Creates a new instance, writing via the given buffer.
+     *
+     * @param target to use and be used by
+     * @param out    to write to
+     * @param buf    the buffer to use, of at least 8 bytes
+     */
+    public XMLWriterUTF8Driver(XMLWriter target, OutputStream out, byte[] buf) {
+        super(target);
+        this.out = out;
+        this.buf = buf;
+        this.pos = 0;
+        this.elementStack = new Object[16];
+        this.depth = 0;
+        this.cachedNames = new HashMap<>();
+    }
+
+    /**
+     * Resets this instance to write to the given stream, keeping the buffer
+     * and the encoded names cache. The previous stream must be flushed.
+     *
+     * @param out to write to from now on
+     */
+    public void reset(OutputStream out) {
+        if (this.buf == null) { // detached:
+            this.buf = new byte[BUFFER_SIZE];
+        }
+        this.out = out;
+        this.pos = 0;
+        Arrays.fill(this.elementStack, 0, this.depth, null);
+        this.depth = 0;
+        this.state = XMLWriter.Driver.STATE_INITIAL;
+    }
+
+    /**
+     * Resets this instance to write to the given stream via the given buffer,
+     * keeping the encoded names cache. The previous stream must be flushed.
+     *
+     * @param out to write to from now on
+     * @param buf the buffer to use from now on, of at least 8 bytes
+     */
+    public void reset(OutputStream out, byte[] buf) {
+        this.buf = buf;
+        this.reset(out);
+    }
+
+    /**
+     * Detaches the buffer from this instance, so that it can be reused by the
+     * caller, and the stream. This instance must be flushed and it must be
+     * reset before further use.
+     *
+     * @return the detached buffer
+     */
+    public byte[] detachBuffer() {
+        final byte[] ret = this.buf;
+        this.buf = null;
+        this.out = null;
+        return ret;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(String name) {
+        this.startElement0(this.encodedName(name));
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void startElement(NameToken name) {
+        this.startElement0(name);
+    }
+
+    private void startElement0(Object encodedName) {
+        try {
+            if (this.state == XMLWriter.Driver.STATE_START) {
+                this.write('>');
+                this.writeIndentedLt();
+            } else if (this.state == XMLWriter.Driver.STATE_INITIAL) {
+                this.write('<');
+            } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
+                throw new IllegalStateException("cannot write element start");
+            } else {
+                this.writeIndentedLt();
+            }
+            this.writeName(encodedName);
+            final int uniqueId = this.takeOneTimeUniqueId();
+            if (uniqueId != 0) {
+                this.write(XML_ATTRIBUTE_ID);
+                this.write(XML_FRAGMENT_EQ_QUOT);
+                this.writeDigits(uniqueId);
+                this.write('"');
+            }
+            // update state:
+            if (this.depth == this.elementStack.length) {
+                this.elementStack = Arrays.copyOf(this.elementStack, 2 * this.depth);
+            }
+            this.elementStack[this.depth++] = encodedName;
+            this.state = XMLWriter.Driver.STATE_START;
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    private byte[] encodedName(String name) {
+        byte[] ret = this.cachedNames.get(name);
+        if (ret == null) {
+            ret = XMLUtil.escapeXMLTag(name).getBytes(StandardCharsets.UTF_8);
+            if (this.cachedNames.size() < MAX_CACHED_NAMES) { // bound memory for arbitrary names.
+                this.cachedNames.put(name, ret);
+            }
+        }
+        return ret;
+    }
+
+    private void writeName(Object encodedName) throws IOException {
+        if (encodedName instanceof NameToken) {
+            final NameToken token = (NameToken) encodedName;
+            final int len = token.utf8Length();
+            if (len > this.buf.length - this.pos) {
+                this.flushBuffer();
+                if (len > this.buf.length) {
+                    this.out.write(token.escaped().getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            token.getUtf8(this.buf, this.pos);
+            this.pos += len;
+        } else {
+            this.write((byte[]) encodedName);
+        }
+    }
+
+    private void writeIndentedLt() throws IOException {
+        if (this.isPrettyPrint()) {
+            this.writeIndent();
+        }
+        this.write('<');
+    }
+
+    private void writeIndent() throws IOException {
+        this.write(XML_NEWLINE);
+        int size = XML_INDENTATION_INIT + this.depth;
+        while (size >= XML_INDENTATION_BUF.length) {
+            this.write(XML_INDENTATION_BUF);
+            size -= XML_INDENTATION_BUF.length;
+        }
+        if (size > 0) {
+            this.write(XML_INDENTATION_BUF, size);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(String attribute, String value) {
+        if (!XMLUtil.isLegalXMLTag(attribute)) {
+            throw new IllegalArgumentException("attribute: " + attribute);
+        }
+        this.setAttribute0(this.encodedName(attribute), value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(NameToken attribute, String value) {
+        this.setAttribute0(attribute, value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void setAttribute(NameToken attribute, int value) {
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
+        try {
+            this.write(' ');
+            this.writeName(attribute);
+            this.write(XML_FRAGMENT_EQ_QUOT);
+            this.writeDigits(value);
+            this.write('"');
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    private void setAttribute0(Object encodedAttribute, String value) {
+        if (this.state != XMLWriter.Driver.STATE_START) {
+            throw new IllegalStateException("cannot write element attributes");
+        }
+        try {
+            this.write(' ');
+            this.writeName(encodedAttribute);
+            this.write(XML_FRAGMENT_EQ_QUOT);
+            this.writeEscaped(value);
+            this.write('"');
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void endElement() {
+        if (this.state == XMLWriter.Driver.STATE_INITIAL) {
+            throw new IllegalStateException("cannot write element end");
+        }
+        // proceed with end element: first remove from stack because stack size is used for indenting end tag:
+        try {
+            final Object endTag = this.elementStack[--this.depth];
+            this.elementStack[this.depth] = null;
+            if (this.state == XMLWriter.Driver.STATE_START) {
+                this.write(XML_FRAGMENT_SLASH_GT);
+            } else {
+                if (this.state == XMLWriter.Driver.STATE_VALUE) {
+                    if (this.isPrettyPrint()) {
+                        this.writeIndent();
+                    }
+                }
+                this.write(XML_FRAGMENT_LT_SLASH);
+                this.writeName(endTag);
+                this.write('>');
+            }
+            // update state:
+            this.state = XMLWriter.Driver.STATE_VALUE;
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value: null");
+        }
+        try {
+            this.writeValueGt();
+            this.writeEscaped(value);
+            this.state = STATE_VALUE_END;
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(int value) {
+        this.writeValue((long) value);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void writeValue(long value) {
+        try {
+            this.writeValueGt();
+            this.writeDigits(value);
+            this.state = STATE_VALUE_END;
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    private void writeValueGt() throws IOException {
+        if (this.state == XMLWriter.Driver.STATE_START) {
+            this.write('>');
+            this.state = XMLWriter.Driver.STATE_VALUE;
+        } else if (this.state != XMLWriter.Driver.STATE_VALUE) {
+            throw new IllegalStateException("cannot write value");
+        }
+    }
+
+    // formats the given number straight into the buffer, without intermediary strings:
+    private void writeDigits(long l) throws IOException {
+        int len = 1;
+        long n = l < 0 ? l : -l; // negative, in order to cover Long.MIN_VALUE.
+        for (long m = n / 10; m != 0; m /= 10) {
+            len++;
+        }
+        if (l < 0) {
+            len++;
+        }
+        if (len > this.buf.length - this.pos) {
+            this.flushBuffer();
+            if (len > this.buf.length) {
+                this.out.write(Long.toString(l).getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+        }
+        final byte[] b = this.buf;
+        int p = this.pos + len;
+        do {
+            final long q = n / 10;
+            b[--p] = (byte) ('0' + (q * 10 - n));
+            n = q;
+        } while (n != 0);
+        if (l < 0) {
+            b[--p] = '-';
+        }
+        this.pos += len;
+    }
+
+    // UTF-8 encodes the given text, escaping the illegal XML chars:
+    private void writeEscaped(String text) throws IOException {
+        final int len = text.length();
+        byte[] b = this.buf;
+        int p = this.pos;
+        for (int i = 0; i < len; i++) {
+            if (b.length - p < MAX_ENCODED_CHAR) {
+                this.pos = p;
+                this.flushBuffer();
+                p = this.pos;
+            }
+            final char c = text.charAt(i);
+            if (c < 0x80) { // ASCII:
+                final byte[] escaped;
+                switch (c) {
+                    case '<':
+                        escaped = XML_LEGAL_LT;
+                        break;
+                    case '>':
+                        escaped = XML_LEGAL_GT;
+                        break;
+                    case '&':
+                        escaped = XML_LEGAL_AMP;
+                        break;
+                    case '"':
+                        escaped = XML_LEGAL_QUOT;
+                        break;
+                    case '\'':
+                        escaped = XML_LEGAL_APOS;
+                        break;
+                    case '\r':
+                        escaped = XML_LEGAL_CR;
+                        break;
+                    default:
+                        b[p++] = (byte) c;
+                        continue;
+                }
+                System.arraycopy(escaped, 0, b, p, escaped.length);
+                p += escaped.length;
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                final char low = i + 1 < len ? text.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    final int cp = Character.toCodePoint(c, low);
+                    b[p++] = (byte) (0xF0 | (cp >> 18));
+                    b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (cp & 0x3F));
+                    i++;
+                } else { // malformed: replace as the charset encoder does.
+                    b[p++] = '?';
+                }
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        this.pos = p;
+    }
+
+    private void write(char asciiChar) throws IOException {
+        if (this.pos == this.buf.length) {
+            this.flushBuffer();
+        }
+        this.buf[this.pos++] = (byte) asciiChar;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        this.write(bytes, bytes.length);
+    }
+
+    private void write(byte[] bytes, int len) throws IOException {
+        if (len > this.buf.length - this.pos) {
+            this.flushBuffer();
+            if (len > this.buf.length) {
+                this.out.write(bytes, 0, len);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, this.buf, this.pos, len);
+        this.pos += len;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.pos > 0) {
+            this.out.write(this.buf, 0, this.pos);
+            this.pos = 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void flush() {
+        super.flush();
+        try {
+            this.flushBuffer();
+            this.out.flush();
+        } catch (IOException ioX) {
+            throw new RuntimeException(ioX);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void close() {
+        super.close();
+        try {
+            this.out.close();
+        } catch (IOException ioX) {
+            // ignore.
+        }
+        Arrays.fill(this.elementStack, 0, this.depth, null);
+        this.depth = 0;
+    }
+}
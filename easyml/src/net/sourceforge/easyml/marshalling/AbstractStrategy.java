@@ -23,11 +23,27 @@ package net.sourceforge.easyml.marshalling;
  * leaving it abstract, only to implement other behavior characteristics.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.5.1
+ * @version 1.9.0
  * @since 1.0
  */
 public abstract class AbstractStrategy implements Named {
 
+    private NameToken nameToken; // lazy: racy, since tokens are immutable.
+
+    /**
+     * Returns the token of {@linkplain #name()}, to be written via
+     * {@linkplain CompositeWriter#startElement(NameToken)}.
+     *
+     * @return the name token
+     */
+    protected final NameToken nameToken() {
+        NameToken ret = this.nameToken;
+        if (ret == null) {
+            this.nameToken = ret = new NameToken(this.name());
+        }
+        return ret;
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -28,7 +28,7 @@ import java.util.function.*;
  * to read a composite datatype from XML format.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.7.3
+ * @version 1.9.0
  * @since 1.0
  */
 public interface CompositeReader extends Iterable, Supplier, BooleanSupplier, IntSupplier, LongSupplier, DoubleSupplier {
@@ -65,6 +65,10 @@ public interface CompositeReader extends Iterable, Supplier, BooleanSupplier, In
      * Returns the name of the element this instance is at. This method can be
      * invoked only if {@linkplain #atElementStart()} or
      * {@linkplain #atElementEnd()}.
+     * <br/>
+     * The names of the DTD elements and of the registered strategies are
+     * returned as the very instances used to register them, so comparing them
+     * to constants via <code>equals</code> is an identity check.
      *
      * @return the element name
      */
@@ -218,6 +222,67 @@ public interface CompositeReader extends Iterable, Supplier, BooleanSupplier, In
      */
     String readValue();
 
+    /**
+     * Reads the value of the element this instance is at directly, as an int,
+     * same as {@linkplain Integer#parseInt(String)} of {@linkplain #readValue()}.
+     * Readers may parse the value in place, without creating a string.
+     * <br/>
+     * <b>Note: This method can be invoked only once, if this instance is at an
+     * element start.</b>
+     *
+     * @return the read int value
+     * @throws NumberFormatException if the value is not an int
+     */
+    default int readIntValue() {
+        return Integer.parseInt(this.readValue());
+    }
+
+    /**
+     * Reads the value of the element this instance is at directly, as a long,
+     * same as {@linkplain Long#parseLong(String)} of {@linkplain #readValue()}.
+     * Readers may parse the value in place, without creating a string.
+     * <br/>
+     * <b>Note: This method can be invoked only once, if this instance is at an
+     * element start.</b>
+     *
+     * @return the read long value
+     * @throws NumberFormatException if the value is not a long
+     */
+    default long readLongValue() {
+        return Long.parseLong(this.readValue());
+    }
+
+    /**
+     * Reads the value of the element this instance is at directly, as a
+     * double, same as {@linkplain Double#parseDouble(String)} of
+     * {@linkplain #readValue()}. Readers may parse the value in place, without
+     * creating a string.
+     * <br/>
+     * <b>Note: This method can be invoked only once, if this instance is at an
+     * element start.</b>
+     *
+     * @return the read double value
+     * @throws NumberFormatException if the value is not a double
+     */
+    default double readDoubleValue() {
+        return Double.parseDouble(this.readValue());
+    }
+
+    /**
+     * Reads the value of the element this instance is at directly, as a
+     * boolean, same as {@linkplain Boolean#parseBoolean(String)} of
+     * {@linkplain #readValue()}. Readers may parse the value in place, without
+     * creating a string.
+     * <br/>
+     * <b>Note: This method can be invoked only once, if this instance is at an
+     * element start.</b>
+     *
+     * @return the read boolean value
+     */
+    default boolean readBooleanValue() {
+        return Boolean.parseBoolean(this.readValue());
+    }
+
     /**
      * Returns an iterator over this reader.
      */
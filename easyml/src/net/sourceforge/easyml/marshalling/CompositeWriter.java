@@ -28,7 +28,7 @@ import java.util.function.LongConsumer;
  * to write composite datatypes into XML.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.5.1
+ * @version 1.9.0
  * @since 1.0
  */
 public interface CompositeWriter extends Consumer, IntConsumer, LongConsumer, DoubleConsumer {
@@ -45,6 +45,17 @@ public interface CompositeWriter extends Consumer, IntConsumer, LongConsumer, Do
      */
     void startElement(String name);
 
+    /**
+     * Writes the start of an element with the given, already escaped, name.
+     * This method is the same as {@linkplain #startElement(String)}, but
+     * without the per-call name escaping.
+     *
+     * @param name of the start tag element
+     */
+    default void startElement(NameToken name) {
+        this.startElement(name.name());
+    }
+
     /**
      * Writes the end tag of the current element.
      * <br/>
@@ -66,6 +77,19 @@ public interface CompositeWriter extends Consumer, IntConsumer, LongConsumer, Do
      */
     void setAttribute(String attribute, String value);
 
+    /**
+     * Writes an attribute-equals-value pair, with the given, already validated,
+     * attribute name. This method is the same as
+     * {@linkplain #setAttribute(String, String)}, but without the per-call
+     * attribute name validation.
+     *
+     * @param attribute the attribute name
+     * @param value     the attribute value
+     */
+    default void setAttribute(NameToken attribute, String value) {
+        this.setAttribute(attribute.name(), value);
+    }
+
     /**
      * Writes the given boolean in XML format.
      *
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml.marshalling;
+
+import net.sourceforge.easyml.util.ReflectionUtil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FieldIndex class is the per-class index of the fields declared by a class,
+ * by name and alias, used at un-marshalling to resolve XML element names to
+ * fields. Each entry holds the resolved field, its setter, if any, and the
+ * exclusion flag, so that a look-up neither allocates nor throws.
+ * Instances are obtained via {@linkplain UnmarshalContext#fieldIndexFor(Class)}.
+ * <br/>
+ * This implementation is immutable and thus thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+public final class FieldIndex {
+
+    /**
+     * Entry class is a resolved field name or alias.
+     */
+    public static final class Entry {
+
+        /**
+         * The resolved field, set accessible, or null if excluded and not
+         * declared.
+         */
+        public final Field field;
+        /**
+         * The field setter, if defined by the field's class, else null.
+         */
+        public final Method accessor;
+        /**
+         * True if the field is a property, false otherwise.
+         */
+        public final boolean isProperty;
+        /**
+         * True if the field name or alias is excluded.
+         */
+        public final boolean excluded;
+
+        private Entry(Field field, Method accessor, boolean isProperty, boolean excluded) {
+            this.field = field;
+            this.accessor = accessor;
+            this.isProperty = isProperty;
+            this.excluded = excluded;
+            if (field != null) {
+                ReflectionUtil.setAccessible(field);
+            }
+        }
+    }
+
+    private final Class declaring;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates a new index of the fields declared by the given class.
+     *
+     * @param declaring the class to index
+     * @param aliases   the field aliases of the declaring class, by alias
+     * @param excluded  the excluded names and aliases of the declaring class
+     */
+    public FieldIndex(Class declaring, Map<String, Field> aliases, Set<String> excluded) {
+        this.declaring = declaring;
+        this.entries = new HashMap<>();
+        // fields by name:
+        final Map<Field, Entry> fieldEntries = new HashMap<>();
+        for (Field f : declaring.getDeclaredFields()) {
+            final ReflectionUtil.FieldInfo fi = ReflectionUtil.fieldInfoForWrite(f);
+            final Entry e = new Entry(f, fi.accessor, fi.isProperty, false);
+            fieldEntries.put(f, e);
+            this.entries.put(f.getName(), e);
+        }
+        // fields by alias:
+        for (Map.Entry<String, Field> alias : aliases.entrySet()) {
+            final Entry aliased = fieldEntries.get(alias.getValue());
+            if (aliased != null) {
+                this.entries.put(alias.getKey(), aliased);
+            }
+        }
+        // excluded names, which take precedence:
+        for (String name : excluded) {
+            final Entry resolved = this.entries.get(name);
+            this.entries.put(name, new Entry(resolved != null ? resolved.field : null, null, false, true));
+        }
+    }
+
+    /**
+     * Returns the indexed class.
+     *
+     * @return the declaring class
+     */
+    public Class declaring() {
+        return this.declaring;
+    }
+
+    /**
+     * Returns the entry for the given field name or alias, or null if the
+     * indexed class declares no such field.
+     *
+     * @param aliasOrName a configured field alias or a field name
+     * @return the entry or null
+     */
+    public Entry get(String aliasOrName) {
+        return this.entries.get(aliasOrName);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml.marshalling;
+
+import net.sourceforge.easyml.util.XMLUtil;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * NameToken class is an XML element or attribute name, validated and escaped
+ * once, at creation. Tokens are meant to be created once, as constants, and
+ * written via the {@linkplain CompositeWriter} token overloads, which skip the
+ * per-call name validation and escaping.
+ * <br/>
+ * This implementation is immutable and thus thread-safe.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+public final class NameToken {
+
+    private final String name;
+    private final String escaped;
+    private final char[] escapedChars;
+    private final byte[] escapedUtf8;
+
+    /**
+     * Creates a new instance for the given name.
+     *
+     * @param name the element or attribute name
+     * @throws IllegalArgumentException if name is null or not a legal XML name, once escaped
+     */
+    public NameToken(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name: null");
+        }
+        final String escaped = XMLUtil.escapeXMLTag(name);
+        if (!XMLUtil.isLegalXMLName(escaped)) {
+            throw new IllegalArgumentException("name: illegal: " + name);
+        }
+        this.name = name;
+        this.escaped = escaped;
+        this.escapedChars = escaped.toCharArray();
+        this.escapedUtf8 = escaped.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the name, as given at creation.
+     *
+     * @return the name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns the escaped name, as written to XML.
+     *
+     * @return the escaped name
+     */
+    public String escaped() {
+        return this.escaped;
+    }
+
+    /**
+     * Writes the escaped name to the given writer.
+     *
+     * @param out to write to
+     * @throws IOException if the writer failed
+     */
+    public void writeTo(Writer out) throws IOException {
+        out.write(this.escapedChars);
+    }
+
+    /**
+     * Returns the length of the UTF-8 encoded escaped name.
+     *
+     * @return the number of bytes
+     */
+    public int utf8Length() {
+        return this.escapedUtf8.length;
+    }
+
+    /**
+     * Copies the UTF-8 encoded escaped name into the given destination array,
+     * similar to {@linkplain String#getChars(int, int, char[], int)}.
+     *
+     * @param dst      the destination array
+     * @param dstBegin the start offset in the destination array
+     */
+    public void getUtf8(byte[] dst, int dstBegin) {
+        System.arraycopy(this.escapedUtf8, 0, dst, dstBegin, this.escapedUtf8.length);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -27,7 +27,7 @@ import java.util.Date;
  * {@linkplain Strategy} instances at un-marshalling stage.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.7.3
+ * @version 1.9.0
  * @since 1.0
  */
 public interface UnmarshalContext {
@@ -66,6 +66,16 @@ public interface UnmarshalContext {
      */
     boolean excluded(Class declaring, String aliasOrName);
 
+    /**
+     * Returns the index of the fields declared by the given class, resolving
+     * field aliases, names and exclusions without allocation or exceptions.
+     * The index is computed once per class and configuration.
+     *
+     * @param declaring class declaring the fields
+     * @return the field index
+     */
+    FieldIndex fieldIndexFor(Class declaring);
+
     /**
      * Parses the given date using the date format context configuration.
      *
@@ -27,6 +27,7 @@ import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ExternalizableStrategy class that implements the
@@ -42,15 +43,17 @@ import java.util.Arrays;
  * <br/>Pure Java reflection is used when un-marshalling objects, because the
  * Externalizable interface states that its implementations must define "public
  * no-arg constructors".
+ * <br/>The writeReplace and readResolve methods are looked up once per class and
+ * cached, and the stream adapters are reused per thread.
  * <br/>
  * This implementation is thread-safe.
  * <br/>
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.6.0
+ * @version 1.9.0
  * @since 1.4.4
  */
-public final class ExternalizableStrategy extends AbstractStrategy implements CompositeStrategy<Externalizable> {
+public final class ExternalizableStrategy extends AbstractStrategy implements CompositeStrategy<Externalizable>, Caching {
 
     /**
      * Constant defining the value used for the strategy name.
@@ -62,8 +65,54 @@ public final class ExternalizableStrategy extends AbstractStrategy implements Co
     public static final ExternalizableStrategy INSTANCE = new ExternalizableStrategy();
     private static final String METHOD_WRITEREPLACE = "writeReplace";
     private static final String METHOD_READRESOLVE = "readResolve";
+    private static final Method NO_METHOD = emptyMethod();
+
+    private static Method emptyMethod() {
+        try {
+            return Object.class.getMethod("toString");
+        } catch (NoSuchMethodException somethingIsVeryWrong) {
+            throw new ExceptionInInitializerError(somethingIsVeryWrong);
+        }
+    }
+
+    private final ConcurrentHashMap<Class, Method> writeReplaceCache;
+    private final ConcurrentHashMap<Class, Method> readResolveCache;
+    private final ThreadLocal<ExtOutputStream> outStreams;
+    private final ThreadLocal<ExtInputStream> inStreams;
 
     private ExternalizableStrategy() {
+        this.writeReplaceCache = new ConcurrentHashMap<>();
+        this.readResolveCache = new ConcurrentHashMap<>();
+        this.outStreams = ThreadLocal.withInitial(ExtOutputStream::new);
+        this.inStreams = ThreadLocal.withInitial(ExtInputStream::new);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearCache() {
+        this.writeReplaceCache.clear();
+        this.readResolveCache.clear();
+    }
+
+    // returns the declared method, or null if not found:
+    private static Method cachedDeclaredMethod(ConcurrentHashMap<Class, Method> cache, Class cls, String methodName) {
+        Method ret = cache.get(cls);
+        if (ret == null) {
+            ret = cache.computeIfAbsent(cls, c -> reflectDeclaredMethod(c, methodName));
+        }
+        return ret != NO_METHOD ? ret : null;
+    }
+
+    private static Method reflectDeclaredMethod(Class cls, String methodName) {
+        try {
+            final Method m = cls.getDeclaredMethod(methodName, ReflectionUtil.METHOD_NO_PARAMS);
+            ReflectionUtil.setAccessible(m); // method may be private. Hence, must be set accessible true.
+            return m;
+        } catch (NoSuchMethodException methodNotFound) {
+            return NO_METHOD;
+        }
     }
 
     /**
@@ -105,35 +154,48 @@ public final class ExternalizableStrategy extends AbstractStrategy implements Co
     public void marshal(Externalizable target, CompositeWriter writer, MarshalContext ctx) {
         Externalizable theTarget = target;
         // check for writeReplace():
-        try {
-            final Method writeReplaceM = target.getClass().getDeclaredMethod(METHOD_WRITEREPLACE, ReflectionUtil.METHOD_NO_PARAMS);
-            ReflectionUtil.setAccessible(writeReplaceM); // method may be private. Hence must be set accessible true.
-            final Object replacement = writeReplaceM.invoke(target);
-            if (replacement == null) {
-                writer.write(null); // redirect to null.
-                return;
-            }
-            if (!(replacement instanceof Serializable)) {
-                throw new RuntimeException(new NotSerializableException(replacement.getClass().getName()));
-            }
-            if (!(replacement instanceof Externalizable)) {
-                writer.write(replacement); // redirect to Serializable.
-                return;
+        final Method writeReplaceM = cachedDeclaredMethod(this.writeReplaceCache, target.getClass(), METHOD_WRITEREPLACE);
+        if (writeReplaceM != null) {
+            try {
+                final Object replacement = writeReplaceM.invoke(target);
+                if (replacement == null) {
+                    writer.write(null); // redirect to null.
+                    return;
+                }
+                if (!(replacement instanceof Serializable)) {
+                    throw new RuntimeException(new NotSerializableException(replacement.getClass().getName()));
+                }
+                if (!(replacement instanceof Externalizable)) {
+                    writer.write(replacement); // redirect to Serializable.
+                    return;
+                }
+                theTarget = (Externalizable) replacement;
+            } catch (IllegalAccessException writeReplaceNotAccessible) {
+                // proceed with standard serialization.
+            } catch (InvocationTargetException writeReplaceFailure) {
+                throw new RuntimeException(writeReplaceFailure);
             }
-            theTarget = (Externalizable) replacement;
-        } catch (NoSuchMethodException | IllegalAccessException writeReplaceNotFound) {
-            // proceed with standard serialization.
-        } catch (InvocationTargetException writeReplaceFailure) {
-            throw new RuntimeException(writeReplaceFailure);
         }
         // begin object encoding:
         writer.startElement(this.name());
         writer.setAttribute(DTD.ATTRIBUTE_CLASS, ctx.aliasOrNameFor(theTarget.getClass()));
-        // process composition:
+        // process composition: reuse the thread's stream if free or already bound to this writer:
+        ExtOutputStream outStream = this.outStreams.get();
+        final boolean bound = outStream.writer == null;
+        if (bound) {
+            outStream.writer = writer;
+        } else if (outStream.writer != writer) {
+            outStream = new ExtOutputStream();
+            outStream.writer = writer;
+        }
         try {
-            theTarget.writeExternal(new ExtOutputStream(writer));
+            theTarget.writeExternal(outStream);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            if (bound) {
+                outStream.writer = null;
+            }
         }
         // end object encoding:
         writer.endElement();
@@ -167,28 +229,42 @@ public final class ExternalizableStrategy extends AbstractStrategy implements Co
                     "expected: start element, found: " + reader.elementName());
         }
         final Class cls = target.getClass();
+        // reuse the thread's stream if free or already bound to this reader:
+        ExtInputStream inStream = this.inStreams.get();
+        final boolean bound = inStream.reader == null;
+        if (bound) {
+            inStream.reader = reader;
+        } else if (inStream.reader != reader) {
+            inStream = new ExtInputStream();
+            inStream.reader = reader;
+        }
         try {
-            target.readExternal(new ExtInputStream(reader));
+            target.readExternal(inStream);
         } catch (ClassNotFoundException | IOException ex) {
             throw new IllegalArgumentException(ex);
+        } finally {
+            if (bound) {
+                inStream.reader = null;
+            }
         }
         if (reader.atElementEnd() && reader.elementName().equals(this.name())) {
             // check for readResolve():
-            try {
-                final Method readResolveM = cls.getDeclaredMethod(METHOD_READRESOLVE, ReflectionUtil.METHOD_NO_PARAMS);
-                ReflectionUtil.setAccessible(readResolveM); // method may be private. Hence, must be set accessible true.
-                final Object resolved = readResolveM.invoke(target);
-                if (resolved == null) {
-                    return null;
-                }
-                if (!(resolved instanceof Serializable)) {
-                    throw new RuntimeException(new NotSerializableException(resolved.getClass().getName()));
+            final Method readResolveM = cachedDeclaredMethod(this.readResolveCache, cls, METHOD_READRESOLVE);
+            if (readResolveM != null) {
+                try {
+                    final Object resolved = readResolveM.invoke(target);
+                    if (resolved == null) {
+                        return null;
+                    }
+                    if (!(resolved instanceof Serializable)) {
+                        throw new RuntimeException(new NotSerializableException(resolved.getClass().getName()));
+                    }
+                    return resolved;
+                } catch (IllegalAccessException readResolveNotAccessible) {
+                    // ignore.
+                } catch (InvocationTargetException readResolveFailure) {
+                    throw new RuntimeException(readResolveFailure);
                 }
-                return resolved;
-            } catch (NoSuchMethodException | IllegalAccessException readResolveNotFound) {
-                // ignore.
-            } catch (InvocationTargetException readResolveFailure) {
-                throw new RuntimeException(readResolveFailure);
             }
             return target;
         }
@@ -197,11 +273,7 @@ public final class ExternalizableStrategy extends AbstractStrategy implements Co
 
     private static final class ExtOutputStream implements ObjectOutput {
 
-        private final CompositeWriter writer;
-
-        public ExtOutputStream(CompositeWriter writer) {
-            this.writer = writer;
-        }
+        private CompositeWriter writer;
 
         @Override
         public void close() {
@@ -293,11 +365,7 @@ public final class ExternalizableStrategy extends AbstractStrategy implements Co
 
     private static final class ExtInputStream implements ObjectInput {
 
-        private final CompositeReader reader;
-
-        public ExtInputStream(CompositeReader reader) {
-            this.reader = reader;
-        }
+        private CompositeReader reader;
 
         @Override
         public void close() {
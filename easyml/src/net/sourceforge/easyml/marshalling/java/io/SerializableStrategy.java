@@ -29,10 +29,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -50,11 +47,12 @@ import java.util.concurrent.ConcurrentHashMap;
  * </ul>
  * <p>
  * <br/> Non-pure Java reflection is used when un-marshalling objects of classes
- * which do not define a default constructor.<br/>This implementation is
- * thread-safe.
+ * which do not define a default constructor. The per-class serialization data
+ * is computed once and cached, and the stream adapters are pooled per thread.
+ * <br/>This implementation is thread-safe.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.7.3
+ * @version 1.9.0
  * @since 1.0
  */
 public final class SerializableStrategy extends AbstractStrategy implements CompositeStrategy<Serializable>, Caching {
@@ -65,6 +63,9 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
     private static final String ELEMENT_OUTER = "this.out";
     private static final String ELEMENT_FIELDS = "this.fields";
     private static final String ATTRIBUTE_NIL = "nil";
+    private static final NameToken ELEMENT_OUTER_TOKEN = new NameToken(ELEMENT_OUTER);
+    private static final NameToken ELEMENT_FIELDS_TOKEN = new NameToken(ELEMENT_FIELDS);
+    private static final NameToken ATTRIBUTE_NIL_TOKEN = new NameToken(ATTRIBUTE_NIL);
     private static final String FIELD_PERSISTENTFIELDS = "serialPersistentFields";
     private static final int MODIFIERS_PERSISTENTFIELDS = Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL;
     private static final String METHOD_WRITEREPLACE = "writeReplace";
@@ -74,26 +75,17 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
     private static final Class[] PARAMS_OOS = new Class[]{ObjectOutputStream.class};
     private static final Class[] PARAMS_OIS = new Class[]{ObjectInputStream.class};
     private static final NoSuchMethodException EXCEPTION_FLOW_NOSUCHMETHOD = new NoSuchMethodException();
-    private static final Method NO_METHOD = emptyMethod();
 
-    private static Method emptyMethod() {
-        try {
-            return Object.class.getMethod("toString");
-        } catch (NoSuchMethodException somethingIsVeryWrong) {
-            throw new ExceptionInInitializerError(somethingIsVeryWrong);
-        }
-    }
-
-    private final ConcurrentHashMap<Class, Method> writeReplaceCache;
-    private final ConcurrentHashMap<Class, Method> writeObjectCache;
-    private final ConcurrentHashMap<Class, Method> readResolveCache;
-    private final ConcurrentHashMap<Class, Method> readObjectCache;
+    private final ConcurrentHashMap<Class, ClassDescriptor> classDescriptorCache;
+    private final ConcurrentHashMap<Class, LevelDescriptor> levelDescriptorCache;
+    private final ThreadLocal<ArrayDeque<SerOutputStream>> outStreamPool;
+    private final ThreadLocal<ArrayDeque<SerInputStream>> inStreamPool;
 
     public SerializableStrategy() {
-        writeReplaceCache = new ConcurrentHashMap<>();
-        writeObjectCache = new ConcurrentHashMap<>();
-        readResolveCache = new ConcurrentHashMap<>();
-        readObjectCache = new ConcurrentHashMap<>();
+        classDescriptorCache = new ConcurrentHashMap<>();
+        levelDescriptorCache = new ConcurrentHashMap<>();
+        outStreamPool = ThreadLocal.withInitial(ArrayDeque::new);
+        inStreamPool = ThreadLocal.withInitial(ArrayDeque::new);
     }
 
     /**
@@ -101,14 +93,24 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
      */
     @Override
     public void clearCache() {
-        writeReplaceCache.clear();
-        writeObjectCache.clear();
-        readResolveCache.clear();
-        readObjectCache.clear();
+        classDescriptorCache.clear();
+        levelDescriptorCache.clear();
     }
 
-    private Method cachedWriteReplace(Class source) throws NoSuchMethodException {
-        return methodOrThrow(writeReplaceCache.computeIfAbsent(source, SerializableStrategy::reflectWriteReplace));
+    private ClassDescriptor classDescriptorFor(Class cls) {
+        final ClassDescriptor cached = classDescriptorCache.get(cls);
+        if (cached != null) {
+            return cached;
+        }
+        return classDescriptorCache.computeIfAbsent(cls, c -> new ClassDescriptor(c, this));
+    }
+
+    private LevelDescriptor levelDescriptorFor(Class level) {
+        final LevelDescriptor cached = levelDescriptorCache.get(level);
+        if (cached != null) {
+            return cached;
+        }
+        return levelDescriptorCache.computeIfAbsent(level, LevelDescriptor::new);
     }
 
     private static Method reflectWriteReplace(Class source) {
@@ -137,37 +139,18 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
         try {
             return reflector.reflect(source);
         } catch (NoSuchMethodException methodNotFound) {
-            return NO_METHOD;
-        }
-    }
-
-    private static Method methodOrThrow(Method m) throws NoSuchMethodException {
-        if (m == NO_METHOD) {
-            throw EXCEPTION_FLOW_NOSUCHMETHOD;
+            return null;
         }
-        return m;
-    }
-
-    private Method cachedWriteObject(Class source) throws NoSuchMethodException {
-        return methodOrThrow(writeObjectCache.computeIfAbsent(source, SerializableStrategy::reflectWriteObject));
     }
 
     private static Method reflectWriteObject(Class source) {
         return reflectMethod(source, c -> accessDeclaredMethod(c, METHOD_WRITEOBJECT, PARAMS_OOS));
     }
 
-    private Method cachedReadResolve(Class source) throws NoSuchMethodException {
-        return methodOrThrow(readResolveCache.computeIfAbsent(source, SerializableStrategy::reflectReadResolve));
-    }
-
     private static Method reflectReadResolve(Class source) {
         return reflectMethod(source, c -> accessHierarchicalMethod(c, METHOD_READRESOLVE, ReflectionUtil.METHOD_NO_PARAMS));
     }
 
-    private Method cachedReadObject(Class source) throws NoSuchMethodException {
-        return methodOrThrow(readObjectCache.computeIfAbsent(source, SerializableStrategy::reflectReadObject));
-    }
-
     private static Method reflectReadObject(Class source) {
         return reflectMethod(source, c -> accessDeclaredMethod(c, METHOD_READOBJECT, PARAMS_OIS));
     }
@@ -177,6 +160,30 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
         Method reflect(Class source) throws NoSuchMethodException;
     }
 
+    private SerOutputStream acquireOutStream(Object target, CompositeWriter writer, MarshalContext ctx, Field outerRef) {
+        final SerOutputStream pooled = outStreamPool.get().pollFirst();
+        final SerOutputStream ret = pooled != null ? pooled : SerOutputStream.tryCreate();
+        ret.reset(target, writer, ctx, outerRef);
+        return ret;
+    }
+
+    private void releaseOutStream(SerOutputStream outStream) {
+        outStream.reset(null, null, null, null);
+        outStreamPool.get().addFirst(outStream);
+    }
+
+    private SerInputStream acquireInStream(Object instance, CompositeReader reader, UnmarshalContext ctx) {
+        final SerInputStream pooled = inStreamPool.get().pollFirst();
+        final SerInputStream ret = pooled != null ? pooled : SerInputStream.tryCreate();
+        ret.reset(instance, reader, ctx);
+        return ret;
+    }
+
+    private void releaseInStream(SerInputStream inStream) {
+        inStream.reset(null, null, null);
+        inStreamPool.get().addFirst(inStream);
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -217,105 +224,107 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
     @Override
     public void marshal(Serializable target, CompositeWriter writer, MarshalContext ctx) {
         Object theTarget = target;
-        Object theDef = null;
+        ClassDescriptor descriptor = this.classDescriptorFor(theTarget.getClass());
         // check for writeReplace():
-        try {
-            final Object replacement = cachedWriteReplace(theTarget.getClass())
-                    .invoke(theTarget);
-            if (replacement == null || replacement instanceof Externalizable) {
-                writer.write(replacement); // redirect to null or Externalizable.
-                return;
-            }
-            if (!(replacement instanceof Serializable)) {
-                throw new RuntimeException(new NotSerializableException(replacement.getClass().getName()));
+        if (descriptor.writeReplace != null) {
+            try {
+                final Object replacement = descriptor.writeReplace.invoke(theTarget);
+                if (replacement == null || replacement instanceof Externalizable) {
+                    writer.write(replacement); // redirect to null or Externalizable.
+                    return;
+                }
+                if (!(replacement instanceof Serializable)) {
+                    throw new RuntimeException(new NotSerializableException(replacement.getClass().getName()));
+                }
+                theTarget = replacement; // continue here but with replacement as target.
+                descriptor = this.classDescriptorFor(theTarget.getClass());
+            } catch (IllegalAccessException neverThrown) {
+                // ignored.
+            } catch (InvocationTargetException writeReplaceFailure) {
+                throw new RuntimeException(writeReplaceFailure);
             }
-            theTarget = replacement; // continue here but with replacement as target.
-        } catch (NoSuchMethodException | IllegalAccessException writeReplaceNotFound) {
-            // writeReplace not found.
-        } catch (InvocationTargetException writeReplaceFailure) {
-            throw new RuntimeException(writeReplaceFailure);
         }
         // begin object encoding:
         final Class cls = theTarget.getClass();
-        writer.startElement(this.name());
-        writer.setAttribute(DTD.ATTRIBUTE_CLASS, ctx.aliasOrNameFor(cls));
+        writer.startElement(this.nameToken());
+        writer.setAttribute(DTD.ATTRIBUTE_CLASS_TOKEN, ctx.aliasOrNameFor(cls));
         // if inner class then write outer instance:
-        final Field clsOuter = ReflectionUtil.outerRefField(cls);
+        final Field clsOuter = descriptor.outerRef;
         Object outer = null;
         if (clsOuter != null) {
             try {
-                outer = ReflectionUtil.readField(theTarget, clsOuter);
+                outer = clsOuter.get(theTarget);
             } catch (IllegalAccessException neverThrown) {
                 // ignored.
             }
-            writer.startElement(SerializableStrategy.ELEMENT_OUTER);
+            writer.startElement(SerializableStrategy.ELEMENT_OUTER_TOKEN);
             writer.write(outer);
             writer.endElement();
         }
-        // if skipDefaults then init default for comparison usage:
+        // if skipDefaults then get defaults for comparison usage:
+        Object[][] defaults = null;
         if (ctx.skipDefaults()) {
-            try {
-                theDef = clsOuter != null ? ReflectionUtil.instantiateInner(cls, outer) : ReflectionUtil.instantiate(cls);
-            } catch (ReflectiveOperationException defaultConstructorX) {
-                // cannot use defaults defined.
+            if (clsOuter == null) {
+                defaults = descriptor.defaults();
+            } else { // inner class defaults may depend on the outer instance:
+                try {
+                    defaults = descriptor.snapshot(ReflectionUtil.instantiateInner(cls, outer));
+                } catch (ReflectiveOperationException defaultConstructorX) {
+                    // cannot use defaults defined.
+                }
             }
         }
-        final SerOutputStream outStream = SerOutputStream.tryCreate(theTarget, theDef, writer, ctx, cls, clsOuter);
-        do {// process inheritance:
-            try { // process composition:
-                // check for writeObject():
-                cachedWriteObject(outStream.level)
-                        .invoke(theTarget, outStream);
-            } catch (NoSuchMethodException writeObjectNotFound) {
-                defaultMarshalObject(theTarget, theDef, writer, ctx, outStream.level, clsOuter);
-            } catch (InvocationTargetException writeObjectFailure) {
-                throw new RuntimeException(writeObjectFailure);
-            } catch (IllegalAccessException neverThrown) {
-                // ignored.
+        final SerOutputStream outStream = this.acquireOutStream(theTarget, writer, ctx, clsOuter);
+        try {
+            final LevelDescriptor[] levels = descriptor.levels;
+            for (int i = 0; i < levels.length; i++) { // process inheritance:
+                outStream.level = levels[i];
+                outStream.levelDefaults = defaults != null ? defaults[i] : null;
+                // process composition:
+                final Method writeObject = outStream.level.writeObject;
+                if (writeObject != null) {
+                    try {
+                        writeObject.invoke(theTarget, outStream);
+                    } catch (InvocationTargetException writeObjectFailure) {
+                        throw new RuntimeException(writeObjectFailure);
+                    } catch (IllegalAccessException neverThrown) {
+                        // ignored.
+                    }
+                } else {
+                    defaultMarshalObject(theTarget, outStream.levelDefaults, writer, ctx, outStream.level, clsOuter);
+                }
             }
-            outStream.level = outStream.level.getSuperclass();
-        } while (Serializable.class.isAssignableFrom(outStream.level));
+        } finally {
+            this.releaseOutStream(outStream);
+        }
         // end object encoding:
         writer.endElement();
     }
 
-    private static void defaultMarshalObject(Object target, Object defTarget, CompositeWriter writer, MarshalContext ctx, Class level, Field outerRef) {
-        writer.startElement(ELEMENT_FIELDS);
-        for (Field f : level.getDeclaredFields()) { // process composition:
+    private static void defaultMarshalObject(Object target, Object[] defaults, CompositeWriter writer, MarshalContext ctx, LevelDescriptor level, Field outerRef) {
+        writer.startElement(ELEMENT_FIELDS_TOKEN);
+        final Field[] fields = level.fields;
+        for (int i = 0; i < fields.length; i++) { // process composition:
             // process field:
-            final int fMod = f.getModifiers();
-            if (Modifier.isStatic(fMod)
-                    || Modifier.isTransient(fMod)
-                    || (outerRef != null && f.getName().equals(outerRef.getName()))
-                    || ctx.excluded(f)) {
-                continue; // skip static, transient, already encoded outer-ref object, or EasyML excluded field.
+            final Field f = fields[i];
+            if ((outerRef != null && f.getName().equals(outerRef.getName())) || ctx.excluded(f)) {
+                continue; // skip already encoded outer-ref object, or EasyML excluded field.
             }
-            ReflectionUtil.setAccessible(f);
             // process field value:
             Object fieldValue = null;
-            Object fieldDefaultValue = null;
-            if (ctx.skipDefaults() && defTarget != null) {
-                try {
-                    fieldValue = f.get(target);
-                    fieldDefaultValue = f.get(defTarget);
-                } catch (IllegalAccessException neverThrown) {
-                    // ignored.
-                }
+            try {
+                fieldValue = f.get(target);
                 // null-safe equality test:
-                if (Objects.equals(fieldValue, fieldDefaultValue)) {
+                if (defaults != null && Objects.equals(fieldValue, defaults[i])) {
                     continue; // skip default value.
                 }
-            } else { // comparison default value undefined:
-                try {
-                    fieldValue = f.get(target);
-                } catch (IllegalAccessException neverThrown) {
-                    // ignored.
-                }
+            } catch (IllegalAccessException neverThrown) {
+                // ignored.
             }
             // encode non-default field value:
             writer.startElement(ctx.aliasOrNameFor(f));
             if (fieldValue == null) {
-                writer.setAttribute(ATTRIBUTE_NIL, Boolean.toString(true));
+                writer.setAttribute(ATTRIBUTE_NIL_TOKEN, Boolean.toString(true));
             } else { // non-null:
                 if (ValueType.is(f.getType())) {
                     writer.writeValue(fieldValue.toString());
@@ -368,46 +377,52 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
             throw new InvalidFormatException(ctx.readerPositionDescriptor(),
                     "expected: start element, found: " + reader.elementName());
         }
-        final Class cls = target.getClass();
-        final SerInputStream inStream = SerInputStream.tryCreate(target, reader, ctx, cls);
-        do {
-            try {
+        final ClassDescriptor descriptor = this.classDescriptorFor(target.getClass());
+        final SerInputStream inStream = this.acquireInStream(target, reader, ctx);
+        try {
+            for (LevelDescriptor level : descriptor.levels) {
+                inStream.level = level;
                 // check for readObject():
-                cachedReadObject(inStream.level)
-                        .invoke(target, inStream);
-            } catch (NoSuchMethodException readObjectNotFound) {
-                defaultUnmarshalObject(target, reader, ctx, inStream.level, inStream);
-            } catch (InvocationTargetException readObjectFailure) {
-                throw new RuntimeException(readObjectFailure);
-            } catch (IllegalAccessException neverThrown) {
-                // ignored.
+                if (level.readObject != null) {
+                    try {
+                        level.readObject.invoke(target, inStream);
+                    } catch (InvocationTargetException readObjectFailure) {
+                        throw new RuntimeException(readObjectFailure);
+                    } catch (IllegalAccessException neverThrown) {
+                        // ignored.
+                    }
+                } else {
+                    defaultUnmarshalObject(target, reader, ctx, level, inStream);
+                }
             }
-            inStream.level = inStream.level.getSuperclass();
-        } while (Serializable.class.isAssignableFrom(inStream.level));
+        } finally {
+            this.releaseInStream(inStream);
+        }
         if (reader.atElementEnd() && reader.elementName().equals(this.name())) {
             // check for readResolve():
-            try {
-                final Object resolved = cachedReadResolve(cls)
-                        .invoke(target);
-                if (resolved == null) {
-                    return null;
-                }
-                if (!(resolved instanceof Serializable)) {
-                    throw new RuntimeException(new NotSerializableException(resolved.getClass().getName()));
+            if (descriptor.readResolve != null) {
+                try {
+                    final Object resolved = descriptor.readResolve.invoke(target);
+                    if (resolved == null) {
+                        return null;
+                    }
+                    if (!(resolved instanceof Serializable)) {
+                        throw new RuntimeException(new NotSerializableException(resolved.getClass().getName()));
+                    }
+                    return resolved;
+                } catch (IllegalAccessException neverThrown) {
+                    // ignore.
+                } catch (InvocationTargetException readResolveFailure) {
+                    throw new RuntimeException(readResolveFailure);
                 }
-                return resolved;
-            } catch (NoSuchMethodException | IllegalAccessException readResolveNotFound) {
-                // ignore.
-            } catch (InvocationTargetException readResolveFailure) {
-                throw new RuntimeException(readResolveFailure);
             }
             return target;
         }
         throw new InvalidFormatException(ctx.readerPositionDescriptor(), "missing element end: " + this.name());
     }
 
-    private static void defaultUnmarshalObject(Object instance, CompositeReader reader, UnmarshalContext ctx, Class level, SerInputStream inputStream) {
-        if (hasSerializablePersistentFields(level)) {
+    private static void defaultUnmarshalObject(Object instance, CompositeReader reader, UnmarshalContext ctx, LevelDescriptor levelDescriptor, SerInputStream inputStream) {
+        if (levelDescriptor.persistentFields) {
             inputStream.readFields();
             return;
         }
@@ -415,23 +430,28 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
             throw new InvalidFormatException(ctx.readerPositionDescriptor(),
                     "expected: " + SerializableStrategy.ELEMENT_FIELDS);
         }
+        final Class level = levelDescriptor.level;
         while (reader.next()) {
             if (reader.atElementStart()) {
                 final String localPartName = reader.elementName();
+                // search the class-level for the specified field:
+                final FieldIndex.Entry e = ctx.fieldIndexFor(level).get(localPartName);
+                if (e == null) {
+                    throw new InvalidFormatException(ctx.readerPositionDescriptor(),
+                            "undefined field: " + level.getName() + '.' + localPartName);
+                }
                 // check if class-level field is excluded:
-                if (ctx.excluded(level, localPartName)) {
+                if (e.excluded) {
                     reader.consume();
                     continue; // skip excluded field.
                 }
-                // search the class-level for the specified field:
                 try {
-                    Field f = ctx.fieldFor(level, localPartName);
                     // check if field is indeed valid:
-                    if (Modifier.isStatic(f.getModifiers()) || Modifier.isTransient(f.getModifiers())) {
+                    if (Modifier.isStatic(e.field.getModifiers()) || Modifier.isTransient(e.field.getModifiers())) {
                         throw new InvalidFormatException(ctx.readerPositionDescriptor(),
                                 "illegal field: " + level.getName() + '.' + localPartName);
                     }
-                    ReflectionUtil.setAccessible(f);
+                    final Field f = e.field; // index fields are accessible.
                     // read and set it to field:
                     final String nilAttr = reader.elementAttribute(ATTRIBUTE_NIL);
                     if (nilAttr != null && Boolean.parseBoolean(nilAttr)) {
@@ -440,7 +460,7 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
                         final ValueType vt = ValueType.of(f.getType());
                         if (vt != null) {
                             try {
-                                f.set(instance, vt.parseValue(reader.readValue()));
+                                vt.setReadField(reader, instance, f);
                             } catch (NumberFormatException nfx) {
                                 throw new InvalidFormatException(ctx.readerPositionDescriptor(), nfx);
                             } catch (IllegalArgumentException iax) {
@@ -456,9 +476,6 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
                     }
                 } catch (IllegalAccessException neverThrown) {
                     // field is set to accessible. Hence, ignore.
-                } catch (NoSuchFieldException nsfX) {
-                    throw new InvalidFormatException(ctx.readerPositionDescriptor(),
-                            "undefined field: " + level.getName() + '.' + localPartName);
                 }
             } else if (reader.atElementEnd() && reader.elementName().equals(SerializableStrategy.ELEMENT_FIELDS)) {
                 reader.next();
@@ -470,53 +487,161 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
     }
 
     private static boolean hasSerializablePersistentFields(Class cls) {
-        try {
-            final Field serialPersistentFields = cls.getDeclaredField(FIELD_PERSISTENTFIELDS);
-            return (serialPersistentFields.getModifiers() & MODIFIERS_PERSISTENTFIELDS) == MODIFIERS_PERSISTENTFIELDS
-                    && serialPersistentFields.getType() == ObjectStreamField[].class;
-        } catch (NoSuchFieldException noSerialPersistentFields) {
-            return false;
+        for (Field f : cls.getDeclaredFields()) {
+            if (f.getName().equals(FIELD_PERSISTENTFIELDS)) {
+                return (f.getModifiers() & MODIFIERS_PERSISTENTFIELDS) == MODIFIERS_PERSISTENTFIELDS
+                        && f.getType() == ObjectStreamField[].class;
+            }
         }
+        return false;
     }
 
-    private static ValueType valueTypeFor(Class declaring, String field) {
-        try {
-            return valueTypeFor(declaring.getDeclaredField(field));
-        } catch (NoSuchFieldException nsfX) {
-            return null;
+    private static ValueType valueTypeFor(Field f) {
+        return Modifier.isStatic(f.getModifiers()) ? null : ValueType.of(f.getType());
+    }
+
+    /**
+     * ClassDescriptor class holds the per-class serialization data: the outer
+     * reference field, the hierarchy level descriptors, the writeReplace and
+     * readResolve methods, and the lazily snapshot default values.
+     */
+    private static final class ClassDescriptor {
+
+        private static final Object[][] NO_DEFAULTS = new Object[0][];
+        private final Class cls;
+        private final Field outerRef;
+        private final LevelDescriptor[] levels;
+        private final Method writeReplace;
+        private final Method readResolve;
+        private volatile Object[][] defaults; // lazy: NO_DEFAULTS if not defined.
+
+        private ClassDescriptor(Class cls, SerializableStrategy owner) {
+            this.cls = cls;
+            this.outerRef = ReflectionUtil.outerRefField(cls);
+            if (this.outerRef != null) {
+                ReflectionUtil.setAccessible(this.outerRef);
+            }
+            final List<LevelDescriptor> levelList = new ArrayList<>();
+            Class level = cls;
+            do {
+                levelList.add(owner.levelDescriptorFor(level));
+                level = level.getSuperclass();
+            } while (Serializable.class.isAssignableFrom(level));
+            this.levels = levelList.toArray(new LevelDescriptor[levelList.size()]);
+            this.writeReplace = reflectWriteReplace(cls);
+            this.readResolve = reflectReadResolve(cls);
+        }
+
+        /**
+         * Returns the default field values, per hierarchy level, or null if the
+         * class does not define a default constructor.
+         *
+         * @return the default values snapshot or null
+         */
+        private Object[][] defaults() {
+            Object[][] ret = this.defaults;
+            if (ret == null) {
+                synchronized (this) {
+                    ret = this.defaults;
+                    if (ret == null) {
+                        try {
+                            ret = this.snapshot(ReflectionUtil.instantiate(this.cls));
+                        } catch (ReflectiveOperationException defaultConstructorX) {
+                            ret = NO_DEFAULTS; // cannot use defaults defined.
+                        }
+                        this.defaults = ret;
+                    }
+                }
+            }
+            return ret != NO_DEFAULTS ? ret : null;
+        }
+
+        private Object[][] snapshot(Object defTarget) {
+            final Object[][] ret = new Object[this.levels.length][];
+            for (int i = 0; i < this.levels.length; i++) {
+                final Field[] levelFields = this.levels[i].fields;
+                ret[i] = new Object[levelFields.length];
+                for (int j = 0; j < levelFields.length; j++) {
+                    try {
+                        ret[i][j] = levelFields[j].get(defTarget);
+                    } catch (IllegalAccessException neverThrown) {
+                        // ignored.
+                    }
+                }
+            }
+            return ret;
         }
     }
 
-    private static ValueType valueTypeFor(Field f) {
-        return Modifier.isStatic(f.getModifiers()) ? null : ValueType.of(f.getType());
+    /**
+     * LevelDescriptor class holds the serialization data of a class hierarchy
+     * level: the default-serializable fields, the field value types, the
+     * <code>serialPersistentFields</code> flag and the writeObject and
+     * readObject methods.
+     */
+    private static final class LevelDescriptor {
+
+        private final Class level;
+        private final Field[] fields;
+        private final Map<String, ValueType> valueTypes;
+        private final boolean persistentFields;
+        private final Method writeObject;
+        private final Method readObject;
+
+        private LevelDescriptor(Class level) {
+            this.level = level;
+            final List<Field> fieldList = new ArrayList<>();
+            this.valueTypes = new HashMap<>();
+            for (Field f : level.getDeclaredFields()) {
+                final int fMod = f.getModifiers();
+                if (Modifier.isStatic(fMod)) {
+                    continue;
+                }
+                this.valueTypes.put(f.getName(), ValueType.of(f.getType()));
+                if (!Modifier.isTransient(fMod)) {
+                    ReflectionUtil.setAccessible(f);
+                    fieldList.add(f);
+                }
+            }
+            this.fields = fieldList.toArray(new Field[fieldList.size()]);
+            this.persistentFields = hasSerializablePersistentFields(level);
+            this.writeObject = reflectWriteObject(level);
+            this.readObject = reflectReadObject(level);
+        }
     }
 
     private static final class SerOutputStream extends ObjectOutputStream {
 
-        private final Object target;
-        private final Object defs;
-        private final CompositeWriter writer;
-        private final MarshalContext context;
-        private Class level;
-        private final Field outerRef;
+        private Object target;
+        private CompositeWriter writer;
+        private MarshalContext context;
+        private Field outerRef;
+        private LevelDescriptor level;
+        private Object[] levelDefaults;
         private PutFieldImpl lazyPutFieldImpl;
 
-        public static SerOutputStream tryCreate(Object target, Object defs, CompositeWriter writer, MarshalContext ctx, Class level, Field outerRef) {
+        public static SerOutputStream tryCreate() {
             try {
-                return new SerOutputStream(target, defs, writer, ctx, level, outerRef);
+                return new SerOutputStream();
             } catch (IOException ioX) {
                 throw new RuntimeException(ioX);
             }
         }
 
-        private SerOutputStream(Object target, Object defs, CompositeWriter writer, MarshalContext ctx, Class level, Field outerRef) throws IOException {
+        private SerOutputStream() throws IOException {
+            this.lazyPutFieldImpl = null; // lazy.
+        }
+
+        private void reset(Object target, CompositeWriter writer, MarshalContext ctx, Field outerRef) {
             this.target = target;
-            this.defs = defs;
             this.writer = writer;
             this.context = ctx;
-            this.level = level;
             this.outerRef = outerRef;
-            this.lazyPutFieldImpl = null; // lazy.
+            this.level = null;
+            this.levelDefaults = null;
+            if (this.lazyPutFieldImpl != null) {
+                this.lazyPutFieldImpl.fields.clear();
+            }
         }
 
         @Override
@@ -531,7 +656,7 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
 
         @Override
         public void defaultWriteObject() {
-            defaultMarshalObject(this.target, this.defs, this.writer, this.context, this.level, this.outerRef);
+            defaultMarshalObject(this.target, this.levelDefaults, this.writer, this.context, this.level, this.outerRef);
         }
 
         @Override
@@ -601,16 +726,16 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
 
         @Override
         public void writeFields() {
-            this.writer.startElement(SerializableStrategy.ELEMENT_FIELDS);
+            this.writer.startElement(SerializableStrategy.ELEMENT_FIELDS_TOKEN);
             if (this.lazyPutFieldImpl != null) {
                 for (Map.Entry<String, Object> field : this.lazyPutFieldImpl.fields.entrySet()) {
                     final String key = field.getKey();
                     final Object val = field.getValue();
                     this.writer.startElement(key);
                     if (val == null) {
-                        this.writer.setAttribute(SerializableStrategy.ATTRIBUTE_NIL, Boolean.toString(true));
+                        this.writer.setAttribute(SerializableStrategy.ATTRIBUTE_NIL_TOKEN, Boolean.toString(true));
                     } else { // non-null:
-                        if (SerializableStrategy.valueTypeFor(this.level, key) != null) {
+                        if (this.level.valueTypes.get(key) != null) {
                             this.writer.writeValue(val.toString());
                         } else {
                             this.writer.write(val);
@@ -718,22 +843,25 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
 
         private Object instance;
         private CompositeReader reader;
-        private final UnmarshalContext context;
-        private Class level;
+        private UnmarshalContext context;
+        private LevelDescriptor level;
 
-        public static SerInputStream tryCreate(Object instance, CompositeReader reader, UnmarshalContext ctx, Class level) {
+        public static SerInputStream tryCreate() {
             try {
-                return new SerInputStream(instance, reader, ctx, level);
+                return new SerInputStream();
             } catch (IOException ioX) {
                 throw new RuntimeException(ioX);
             }
         }
 
-        private SerInputStream(Object instance, CompositeReader reader, UnmarshalContext ctx, Class level) throws IOException {
+        private SerInputStream() throws IOException {
+        }
+
+        private void reset(Object instance, CompositeReader reader, UnmarshalContext ctx) {
             this.instance = instance;
             this.reader = reader;
             this.context = ctx;
-            this.level = level;
+            this.level = null;
         }
 
         @Override
@@ -799,18 +927,13 @@ public final class SerializableStrategy extends AbstractStrategy implements Comp
                         fields.put(localPartName, null);
                     } else {
                         // check for an alias in case readFields reads XML written by defaultMarshalObject:
-                        ValueType keyVT;
-                        try {
-                            final Field aliasedF = this.context.fieldFor(this.level, localPartName);
-                            keyVT = SerializableStrategy.valueTypeFor(aliasedF);
-                        } catch (NoSuchFieldException customFieldKey) {
-                            // must be a non-source field name.
-                            // we will read type from XML.
-                            keyVT = null;
-                        }
+                        final FieldIndex.Entry aliased = this.context.fieldIndexFor(this.level.level).get(localPartName);
+                        // if not found then must be a non-source field name: we will read type from XML.
+                        final ValueType keyVT = aliased != null && aliased.field != null
+                                ? SerializableStrategy.valueTypeFor(aliased.field) : null;
                         if (keyVT != null) {
                             try {
-                                fields.put(localPartName, keyVT.parseValue(this.reader.readValue()));
+                                fields.put(localPartName, keyVT.readValue(this.reader));
                             } catch (IllegalArgumentException iax) {
                                 throw new InvalidFormatException(this.context.readerPositionDescriptor(), iax);
                             }
@@ -40,7 +40,7 @@ import java.lang.reflect.Array;
  * <br/>This implementation is thread-safe.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.3.7
+ * @version 1.9.0
  * @since 1.0
  */
 public final class ArrayStrategy extends AbstractStrategy implements CompositeStrategy {
@@ -55,6 +55,8 @@ public final class ArrayStrategy extends AbstractStrategy implements CompositeSt
     public static final ArrayStrategy INSTANCE = new ArrayStrategy();
     private static final String ELEMENT_SKIP = "this.skip";
     private static final String ATTRIBUTE_SIZE = "size";
+    private static final NameToken ELEMENT_SKIP_TOKEN = new NameToken(ELEMENT_SKIP);
+    private static final NameToken ATTRIBUTE_SIZE_TOKEN = new NameToken(ATTRIBUTE_SIZE);
 
     private ArrayStrategy() {
     }
@@ -98,9 +100,9 @@ public final class ArrayStrategy extends AbstractStrategy implements CompositeSt
     public void marshal(Object target, CompositeWriter writer, MarshalContext ctx) {
         final Class cls = target.getClass();
         final int length = Array.getLength(target);
-        writer.startElement(ArrayStrategy.NAME);
-        writer.setAttribute(DTD.ATTRIBUTE_CLASS, ctx.aliasOrNameFor(cls));
-        writer.setAttribute(DTD.ATTRIBUTE_LENGTH, Integer.toString(length));
+        writer.startElement(this.nameToken());
+        writer.setAttribute(DTD.ATTRIBUTE_CLASS_TOKEN, ctx.aliasOrNameFor(cls));
+        writer.setAttribute(DTD.ATTRIBUTE_LENGTH_TOKEN, Integer.toString(length));
         // if skipDefaults then compute array default element value:
         final boolean skipDefaults = ctx.skipDefaults();
         final Class arrayItemCls = cls.getComponentType();
@@ -118,9 +120,9 @@ public final class ArrayStrategy extends AbstractStrategy implements CompositeSt
                         skip++;
                         i++;
                     }
-                    writer.startElement(ArrayStrategy.ELEMENT_SKIP);
+                    writer.startElement(ArrayStrategy.ELEMENT_SKIP_TOKEN);
                     if (skip > 1) {
-                        writer.setAttribute(ATTRIBUTE_SIZE, Integer.toString(skip));
+                        writer.setAttribute(ATTRIBUTE_SIZE_TOKEN, Integer.toString(skip));
                     }
                     writer.endElement();
                 }
@@ -136,9 +138,9 @@ public final class ArrayStrategy extends AbstractStrategy implements CompositeSt
                         skip++;
                         i++;
                     }
-                    writer.startElement(ArrayStrategy.ELEMENT_SKIP);
+                    writer.startElement(ArrayStrategy.ELEMENT_SKIP_TOKEN);
                     if (skip > 1) {
-                        writer.setAttribute(ATTRIBUTE_SIZE, Integer.toString(skip));
+                        writer.setAttribute(ATTRIBUTE_SIZE_TOKEN, Integer.toString(skip));
                     }
                     writer.endElement();
                 } else { // write element:
@@ -26,7 +26,10 @@ import net.sourceforge.easyml.util.ReflectionUtil.ValueType;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ObjectStrategy class that implements the {@linkplain CompositeStrategy}
@@ -38,7 +41,8 @@ import java.util.Objects;
  * <code>writeObject</code> and XML reader's <code>readObject</code>, enabling
  * support for all-field serialization, inner classes, and encodes only the
  * non-default fields (i.e. fields with values different as the ones defined by
- * the default constructor, if any).
+ * the default constructor, if any). The default values are computed once per
+ * class, by instantiating it using the default constructor, and cached.
  * <p>
  * <br/> Non-pure Java reflection is used when un-marshalling objects of classes
  * which do not define a default constructor.
@@ -46,10 +50,10 @@ import java.util.Objects;
  * <br/>This implementation is thread-safe.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.7.3
+ * @version 1.9.0
  * @since 1.0
  */
-public final class ObjectStrategy extends AbstractStrategy implements CompositeStrategy {
+public final class ObjectStrategy extends AbstractStrategy implements CompositeStrategy, Caching {
     /**
      * Constant defining the value used for the strategy name.
      */
@@ -61,8 +65,29 @@ public final class ObjectStrategy extends AbstractStrategy implements CompositeS
     private static final String ELEMENT_OUTER = "this.out";
     private static final String ELEMENT_SUPER = "this.sup";
     private static final String ATTRIBUTE_NIL = "nil";
+    private static final NameToken ELEMENT_OUTER_TOKEN = new NameToken(ELEMENT_OUTER);
+    private static final NameToken ELEMENT_SUPER_TOKEN = new NameToken(ELEMENT_SUPER);
+    private static final NameToken ATTRIBUTE_NIL_TOKEN = new NameToken(ATTRIBUTE_NIL);
+    private final ConcurrentHashMap<Class, ClassDescriptor> descriptorCache;
 
     private ObjectStrategy() {
+        this.descriptorCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void clearCache() {
+        this.descriptorCache.clear();
+    }
+
+    private ClassDescriptor descriptorFor(Class cls) {
+        final ClassDescriptor cached = this.descriptorCache.get(cls);
+        if (cached != null) {
+            return cached;
+        }
+        return this.descriptorCache.computeIfAbsent(cls, ClassDescriptor::new);
     }
 
     /**
@@ -104,72 +129,71 @@ public final class ObjectStrategy extends AbstractStrategy implements CompositeS
     @Override
     public void marshal(Object target, CompositeWriter writer, MarshalContext ctx) {
         // begin object encoding: class
-        Class cls = target.getClass();
-        writer.startElement(this.name());
-        writer.setAttribute(DTD.ATTRIBUTE_CLASS, ctx.aliasOrNameFor(cls));
+        final Class cls = target.getClass();
+        writer.startElement(this.nameToken());
+        writer.setAttribute(DTD.ATTRIBUTE_CLASS_TOKEN, ctx.aliasOrNameFor(cls));
+        final ClassDescriptor descriptor = this.descriptorFor(cls);
         // if inner class then write outer instance:
-        final Field outerRef = ReflectionUtil.outerRefField(cls);
-        Object defTarget = null;
+        final Field outerRef = descriptor.outerRef;
         Object outer = null;
         if (outerRef != null) {
             try {
-                outer = ReflectionUtil.readField(target, outerRef);
+                outer = outerRef.get(target);
             } catch (IllegalAccessException neverThrown) {
                 // ignored.
             }
-            writer.startElement(ObjectStrategy.ELEMENT_OUTER);
+            writer.startElement(ObjectStrategy.ELEMENT_OUTER_TOKEN);
             writer.write(outer);
             writer.endElement();
         }
-        // if skipDefaults and defTarget not inited then init for comparison usage:
-        final boolean skipDefaults = ctx.skipDefaults();
-        if (skipDefaults) {
-            try {
-                defTarget = (outerRef != null ? ReflectionUtil.instantiateInner(cls, outer) : ReflectionUtil.instantiate(cls));
-            } catch (ReflectiveOperationException defaultConstructorX) {
-                // cannot use defaults defined.
+        // if skipDefaults then get defaults for comparison usage:
+        Object[][] defaults = null;
+        Object defTarget = null;
+        if (ctx.skipDefaults()) {
+            if (outerRef == null) {
+                defaults = descriptor.defaults();
+            } else { // inner class defaults may depend on the outer instance:
+                try {
+                    defTarget = ReflectionUtil.instantiateInner(cls, outer);
+                } catch (ReflectiveOperationException defaultConstructorX) {
+                    // cannot use defaults defined.
+                }
             }
         }
         // process inheritance:
-        boolean notFirst = false;
-        while (cls != Object.class) {
-            if (notFirst) {
-                writer.startElement(ELEMENT_SUPER);
+        final Field[][] fields = descriptor.fields;
+        for (int level = 0; level < fields.length; level++) {
+            if (level > 0) {
+                writer.startElement(ELEMENT_SUPER_TOKEN);
                 writer.endElement();
             }
-            notFirst = true;
+            final Field[] levelFields = fields[level];
+            final Object[] levelDefaults = defaults != null ? defaults[level] : null;
             // process composition:
-            for (Field f : cls.getDeclaredFields()) {
+            for (int i = 0; i < levelFields.length; i++) {
                 // process field:
-                if (Modifier.isStatic(f.getModifiers()) || (outerRef != null && f.getName().equals(outerRef.getName())) || ctx.excluded(f)) {
-                    continue; // skip static, already encoded outer-ref object, or excluded field.
+                final Field f = levelFields[i];
+                if (ctx.excluded(f)) {
+                    continue; // skip excluded field.
                 }
-                ReflectionUtil.setAccessible(f);
                 // process field value:
                 Object fieldValue = null;
-                Object fieldDefaultValue = null;
-                if (skipDefaults && defTarget != null) { // default defined:
-                    try {
-                        fieldValue = f.get(target);
-                        fieldDefaultValue = f.get(defTarget);
-                    } catch (IllegalAccessException neverThrown) {
-                        // ignored.
-                    }
-                    // null-safe equality test:
-                    if (Objects.equals(fieldValue, fieldDefaultValue)) {
-                        continue; // skip default value.
-                    }
-                } else { // default not defined:
-                    try {
-                        fieldValue = f.get(target);
-                    } catch (IllegalAccessException neverThrown) {
-                        // ignored.
+                try {
+                    fieldValue = f.get(target);
+                    if (levelDefaults != null || defTarget != null) { // default defined:
+                        final Object fieldDefaultValue = levelDefaults != null ? levelDefaults[i] : f.get(defTarget);
+                        // null-safe equality test:
+                        if (Objects.equals(fieldValue, fieldDefaultValue)) {
+                            continue; // skip default value.
+                        }
                     }
+                } catch (IllegalAccessException neverThrown) {
+                    // ignored.
                 }
                 // write non-default attribute value:
                 writer.startElement(ctx.aliasOrNameFor(f));
                 if (fieldValue == null) {
-                    writer.setAttribute(ATTRIBUTE_NIL, Boolean.toString(true));
+                    writer.setAttribute(ATTRIBUTE_NIL_TOKEN, Boolean.toString(true));
                 } else { // non-null:
                     if (ValueType.is(f.getType())) {
                         writer.writeValue(fieldValue.toString());
@@ -179,7 +203,6 @@ public final class ObjectStrategy extends AbstractStrategy implements CompositeS
                 }
                 writer.endElement();
             }
-            cls = cls.getSuperclass();
         }
         // end object encoding:
         writer.endElement();
@@ -224,23 +247,21 @@ public final class ObjectStrategy extends AbstractStrategy implements CompositeS
                     cls = cls.getSuperclass();
                 } else {
                     final String localPartName = reader.elementName();
+                    // field: search the class for it:
+                    final FieldIndex.Entry e = ctx.fieldIndexFor(cls).get(localPartName);
+                    if (e == null) {
+                        throw new InvalidFormatException(ctx.readerPositionDescriptor(), "undefined field: " + cls.getName() + '.' + localPartName);
+                    }
                     // check if field is excluded:
-                    if (ctx.excluded(cls, localPartName)) {
+                    if (e.excluded) {
                         reader.consume();
                         continue; // skip excluded field.
                     }
-                    // field: search the class for it:
-                    Field f;
-                    try {
-                        f = ctx.fieldFor(cls, localPartName);
-                    } catch (NoSuchFieldException invalidFieldName) {
-                        throw new InvalidFormatException(ctx.readerPositionDescriptor(), invalidFieldName);
-                    }
                     // check if field is indeed valid:
-                    if (Modifier.isStatic(f.getModifiers())) {
+                    if (Modifier.isStatic(e.field.getModifiers())) {
                         throw new InvalidFormatException(ctx.readerPositionDescriptor(), "illegal field: " + cls.getName() + '.' + localPartName);
                     }
-                    ReflectionUtil.setAccessible(f);
+                    final Field f = e.field; // index fields are accessible.
                     // read and set it to field:
                     final String nilAttr = reader.elementAttribute(ATTRIBUTE_NIL);
                     if (nilAttr != null && Boolean.parseBoolean(nilAttr)) {
@@ -249,7 +270,7 @@ public final class ObjectStrategy extends AbstractStrategy implements CompositeS
                         final ValueType vt = ValueType.of(f.getType());
                         if (vt != null) {
                             try {
-                                f.set(target, vt.parseValue(reader.readValue()));
+                                vt.setReadField(reader, target, f);
                             } catch (NumberFormatException nfx) {
                                 throw new InvalidFormatException(ctx.readerPositionDescriptor(), nfx);
                             } catch (IllegalArgumentException iax) {
@@ -269,4 +290,82 @@ public final class ObjectStrategy extends AbstractStrategy implements CompositeS
         }// while.
         throw new InvalidFormatException(ctx.readerPositionDescriptor(), "missing element end: " + this.name());
     }
+
+    /**
+     * ClassDescriptor class holds the per-class reflection data used at
+     * marshalling: the outer reference field, the serializable fields per
+     * hierarchy level, and the lazily snapshot default values.
+     */
+    private static final class ClassDescriptor {
+
+        private static final Object[][] NO_DEFAULTS = new Object[0][];
+        private final Class cls;
+        private final Field outerRef;
+        private final Field[][] fields;
+        private volatile Object[][] defaults; // lazy: NO_DEFAULTS if not defined.
+
+        private ClassDescriptor(Class cls) {
+            this.cls = cls;
+            this.outerRef = ReflectionUtil.outerRefField(cls);
+            if (this.outerRef != null) {
+                ReflectionUtil.setAccessible(this.outerRef);
+            }
+            final List<Field[]> levels = new ArrayList<>();
+            final List<Field> levelFields = new ArrayList<>();
+            while (cls != Object.class) {
+                for (Field f : cls.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers()) || (this.outerRef != null && f.getName().equals(this.outerRef.getName()))) {
+                        continue; // skip static and outer-ref field.
+                    }
+                    ReflectionUtil.setAccessible(f);
+                    levelFields.add(f);
+                }
+                levels.add(levelFields.toArray(new Field[levelFields.size()]));
+                levelFields.clear();
+                cls = cls.getSuperclass();
+            }
+            this.fields = levels.toArray(new Field[levels.size()][]);
+        }
+
+        /**
+         * Returns the default field values, per hierarchy level, or null if the
+         * class does not define a default constructor.
+         *
+         * @return the default values snapshot or null
+         */
+        private Object[][] defaults() {
+            Object[][] ret = this.defaults;
+            if (ret == null) {
+                synchronized (this) {
+                    ret = this.defaults;
+                    if (ret == null) {
+                        this.defaults = ret = this.snapshotDefaults();
+                    }
+                }
+            }
+            return ret != NO_DEFAULTS ? ret : null;
+        }
+
+        private Object[][] snapshotDefaults() {
+            final Object defTarget;
+            try {
+                defTarget = ReflectionUtil.instantiate(this.cls);
+            } catch (ReflectiveOperationException defaultConstructorX) {
+                return NO_DEFAULTS; // cannot use defaults defined.
+            }
+            final Object[][] ret = new Object[this.fields.length][];
+            for (int level = 0; level < this.fields.length; level++) {
+                final Field[] levelFields = this.fields[level];
+                ret[level] = new Object[levelFields.length];
+                for (int i = 0; i < levelFields.length; i++) {
+                    try {
+                        ret[level][i] = levelFields[i].get(defTarget);
+                    } catch (IllegalAccessException neverThrown) {
+                        // ignored.
+                    }
+                }
+            }
+            return ret;
+        }
+    }
 }
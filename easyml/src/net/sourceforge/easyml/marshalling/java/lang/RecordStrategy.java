@@ -26,18 +26,20 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.RecordComponent;
-import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * RecordStrategy class that implements {@linkplain CompositeStrategy} for
- * the Java records.
+ * the Java records. The record component accessors and canonical constructor
+ * are resolved once per record class, into a {@linkplain RecordCodec}, and
+ * cached.
  * This implementation is thread-safe.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.7.1
+ * @version 1.9.0
  * @since 1.7.0
  */
-public final class RecordStrategy extends AbstractStrategy implements CompositeStrategy<Record> {
+public final class RecordStrategy extends AbstractStrategy implements CompositeStrategy<Record>, Caching {
 
     /**
      * Constant defining the value used for the strategy name.
@@ -48,8 +50,35 @@ public final class RecordStrategy extends AbstractStrategy implements CompositeS
      */
     public static final RecordStrategy INSTANCE = new RecordStrategy();
     private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final ConcurrentHashMap<Class, RecordCodec> codecCache;
 
     private RecordStrategy() {
+        this.codecCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void clearCache() {
+        this.codecCache.clear();
+    }
+
+    /**
+     * Returns the cached codec of the given record class, creating it if
+     * not already cached.
+     *
+     * @param c the record class
+     * @return the record codec
+     * @throws IllegalArgumentException if c is not a record or its accessors or
+     *                                  canonical constructor are not accessible
+     */
+    public RecordCodec codecFor(Class c) {
+        final RecordCodec cached = this.codecCache.get(c);
+        if (cached != null) {
+            return cached;
+        }
+        return this.codecCache.computeIfAbsent(c, RecordCodec::new);
     }
 
     /**
@@ -89,27 +118,16 @@ public final class RecordStrategy extends AbstractStrategy implements CompositeS
      */
     @Override
     public void marshal(Record target, CompositeWriter writer, MarshalContext ctx) {
-        Class cls = target.getClass();
-        writer.startElement(RecordStrategy.NAME);
-        writer.setAttribute(DTD.ATTRIBUTE_CLASS, ctx.aliasOrNameFor(cls));
-        for (RecordComponent rc : cls.getRecordComponents()) {
-            writer.write(getValue(target, rc));
+        final Class cls = target.getClass();
+        final RecordCodec codec = this.codecFor(cls);
+        writer.startElement(this.nameToken());
+        writer.setAttribute(DTD.ATTRIBUTE_CLASS_TOKEN, ctx.aliasOrNameFor(cls));
+        for (int i = 0; i < codec.componentCount(); i++) {
+            writer.write(codec.component(target, i));
         }
         writer.endElement();
     }
 
-    private static Object getValue(Record source, RecordComponent component) {
-        try {
-            final MethodHandle getterMH = lookup.findVirtual(
-                    source.getClass(),
-                    component.getName(),
-                    MethodType.methodType(component.getType()));
-            return getterMH.invoke(source);
-        } catch (Throwable e) {
-            throw new IllegalArgumentException("component: cannot marshal record component: " + component, e);
-        }
-    }
-
     /**
      * Also inits records because constructor requires all values and does not allow escaping this reference.
      * <p>
@@ -121,40 +139,126 @@ public final class RecordStrategy extends AbstractStrategy implements CompositeS
         if (!cls.isRecord()) {
             throw new InvalidFormatException(ctx.readerPositionDescriptor(), "element class not a record: " + cls);
         }
+        final RecordCodec codec;
+        try {
+            codec = this.codecFor(cls);
+        } catch (IllegalArgumentException iax) {
+            throw new InvalidFormatException(ctx.readerPositionDescriptor(), "could not instantiate record: " + cls, iax);
+        }
         // consume root tag:
         reader.next();
 
         // read record components: in exactly the same order as they were written:
-        final RecordComponent[] rcs = cls.getRecordComponents();
-        final Object[] values = new Object[rcs.length];
+        final int componentCount = codec.componentCount();
+        final Object[] values = new Object[componentCount];
 
         int component = 0;
-        while (component < rcs.length && reader.atElementStart()) {
+        while (component < componentCount && reader.atElementStart()) {
             values[component] = reader.read();
             component++;
         }
 
-        if (component == rcs.length && reader.atElementEnd() && reader.elementName().equals(RecordStrategy.NAME)) {
+        if (component == componentCount && reader.atElementEnd() && reader.elementName().equals(RecordStrategy.NAME)) {
             try {
-                return newRecord(cls, rcs, values);
-            } catch (Throwable e) {
-                throw new InvalidFormatException(ctx.readerPositionDescriptor(), "could not instantiate record: " + cls);
+                return codec.newRecord(values);
+            } catch (IllegalArgumentException iax) {
+                throw new InvalidFormatException(ctx.readerPositionDescriptor(), "could not instantiate record: " + cls, iax);
             }
         }
-        final String message = component != rcs.length ?
-                "unexpected record components: " + component + ", expected " + rcs.length :
+        final String message = component != componentCount ?
+                "unexpected record components: " + component + ", expected " + componentCount :
                 "unexpected element end";
         throw new InvalidFormatException(ctx.readerPositionDescriptor(), message);
     }
 
-    private static Record newRecord(Class recordClass, RecordComponent[] recordComponents, Object[] args) throws Throwable {
-        Class<?>[] paramTypes = Arrays.stream(recordComponents)
-                .map(RecordComponent::getType)
-                .toArray(Class<?>[]::new);
-        final MethodHandle constructorMH = lookup.findConstructor(
-                        recordClass,
-                        MethodType.methodType(void.class, paramTypes))
-                .asType(MethodType.methodType(Object.class, paramTypes));
-        return (Record) constructorMH.invokeWithArguments(args);
+    /**
+     * RecordCodec class holds the method handles of a record class' component
+     * accessors and canonical constructor, adapted for generic invocation.
+     * Instances are obtained via {@linkplain RecordStrategy#codecFor(Class)}.
+     * <br/>
+     * This implementation is immutable and thus thread-safe.
+     *
+     * @author Victor Cordis ( cordis.victor at gmail.com)
+     * @version 1.9.0
+     * @since 1.9.0
+     */
+    public static final class RecordCodec {
+
+        private final Class recordClass;
+        private final RecordComponent[] components;
+        private final MethodHandle[] getters; // (Object)Object.
+        private final MethodHandle constructor; // (Object[])Object.
+
+        private RecordCodec(Class recordClass) {
+            if (!recordClass.isRecord()) {
+                throw new IllegalArgumentException("recordClass: not a record: " + recordClass.getName());
+            }
+            this.recordClass = recordClass;
+            this.components = recordClass.getRecordComponents();
+            this.getters = new MethodHandle[this.components.length];
+            final Class[] paramTypes = new Class[this.components.length];
+            try {
+                for (int i = 0; i < this.components.length; i++) {
+                    final RecordComponent rc = this.components[i];
+                    paramTypes[i] = rc.getType();
+                    this.getters[i] = lookup.findVirtual(recordClass, rc.getName(), MethodType.methodType(rc.getType()))
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                }
+                this.constructor = lookup.findConstructor(recordClass, MethodType.methodType(void.class, paramTypes))
+                        .asSpreader(Object[].class, paramTypes.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("recordClass: cannot access components or canonical constructor: " + recordClass.getName(), e);
+            }
+        }
+
+        /**
+         * Returns the record class of this codec.
+         *
+         * @return the record class
+         */
+        public Class recordClass() {
+            return this.recordClass;
+        }
+
+        /**
+         * Returns the number of components of the record class.
+         *
+         * @return component count
+         */
+        public int componentCount() {
+            return this.components.length;
+        }
+
+        /**
+         * Returns the value of the component at the given index of the given record.
+         *
+         * @param source the record to read from
+         * @param index  the component index, in declaration order
+         * @return the component value
+         * @throws IllegalArgumentException if the component could not be read
+         */
+        public Object component(Record source, int index) {
+            try {
+                return (Object) this.getters[index].invokeExact((Object) source);
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("component: cannot marshal record component: " + this.components[index], e);
+            }
+        }
+
+        /**
+         * Creates a new record instance using the canonical constructor.
+         *
+         * @param values the component values, in declaration order
+         * @return the new record
+         * @throws IllegalArgumentException if the record could not be created
+         */
+        public Record newRecord(Object[] values) {
+            try {
+                return (Record) (Object) this.constructor.invokeExact(values);
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("values: cannot instantiate record: " + this.recordClass.getName(), e);
+            }
+        }
     }
 }
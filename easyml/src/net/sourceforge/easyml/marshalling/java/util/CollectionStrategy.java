@@ -31,7 +31,7 @@ import java.util.function.Function;
  *
  * @param <T> target collection class
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.2
+ * @version 1.9.0
  * @since 1.0
  */
 public abstract class CollectionStrategy<T extends Collection> extends AbstractStrategy implements CompositeStrategy<T> {
@@ -40,13 +40,17 @@ public abstract class CollectionStrategy<T extends Collection> extends AbstractS
      * Constant defining collection size attribute name.
      */
     protected static final String ATTRIBUTE_SIZE = "size";
+    /**
+     * Constant defining collection size attribute token.
+     */
+    protected static final NameToken ATTRIBUTE_SIZE_TOKEN = new NameToken(ATTRIBUTE_SIZE);
 
     /**
      * {@inheritDoc }
      */
     @Override
     public void marshal(T target, CompositeWriter writer, MarshalContext ctx) {
-        writer.startElement(this.name());
+        writer.startElement(this.nameToken());
         this.marshalAttrs(target, writer, ctx);
         this.marshalElements(target, writer);
         writer.endElement();
@@ -60,7 +64,7 @@ public abstract class CollectionStrategy<T extends Collection> extends AbstractS
      * @param writer to write attributes with
      */
     protected void marshalAttrs(T target, CompositeWriter writer, MarshalContext ctx) {
-        writer.setAttribute(ATTRIBUTE_SIZE, Integer.toString(target.size()));
+        writer.setAttribute(ATTRIBUTE_SIZE_TOKEN, Integer.toString(target.size()));
     }
 
     /**
@@ -32,7 +32,7 @@ import java.util.function.Function;
  *
  * @param <T> target map class
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.2
+ * @version 1.9.0
  * @since 1.0
  */
 public abstract class MapStrategy<T extends Map> extends AbstractStrategy implements CompositeStrategy<T> {
@@ -41,13 +41,17 @@ public abstract class MapStrategy<T extends Map> extends AbstractStrategy implem
      * Constant defining collection size attribute name.
      */
     protected static final String ATTRIBUTE_SIZE = "size";
+    /**
+     * Constant defining collection size attribute token.
+     */
+    protected static final NameToken ATTRIBUTE_SIZE_TOKEN = new NameToken(ATTRIBUTE_SIZE);
 
     /**
      * {@inheritDoc }
      */
     @Override
     public void marshal(T target, CompositeWriter writer, MarshalContext ctx) {
-        writer.startElement(this.name());
+        writer.startElement(this.nameToken());
         this.marshalAttrs(target, writer, ctx);
         this.marshalEntrySet(target, writer);
         writer.endElement();
@@ -61,7 +65,7 @@ public abstract class MapStrategy<T extends Map> extends AbstractStrategy implem
      * @param writer to write attributes with
      */
     protected void marshalAttrs(T target, CompositeWriter writer, MarshalContext ctx) {
-        writer.setAttribute(ATTRIBUTE_SIZE, Integer.toString(target.size()));
+        writer.setAttribute(ATTRIBUTE_SIZE_TOKEN, Integer.toString(target.size()));
     }
 
     /**
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml.processing;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * GenerateStrategy annotation marks the classes and records for which the
+ * {@linkplain StrategyProcessor} generates, at compile time, a
+ * {@linkplain net.sourceforge.easyml.marshalling.CompositeStrategy} which
+ * produces the same XML as the reflection-based
+ * {@linkplain net.sourceforge.easyml.marshalling.java.lang.ObjectStrategy} and
+ * {@linkplain net.sourceforge.easyml.marshalling.java.lang.RecordStrategy}.
+ * <br/>
+ * The generated strategy is named after the annotated type, suffixed with
+ * <code>Strategy</code>, and is to be registered via
+ * {@linkplain net.sourceforge.easyml.EasyMLBuilder#withStrategy(net.sourceforge.easyml.marshalling.CompositeStrategy)}.
+ * The processor must be enabled explicitly at compile time, see
+ * {@linkplain StrategyProcessor}.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateStrategy {
+}
@@ -0,0 +1,648 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml.processing;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * StrategyProcessor class is the annotation processor which generates, for
+ * each class or record annotated with {@linkplain GenerateStrategy}, a
+ * {@linkplain net.sourceforge.easyml.marshalling.CompositeStrategy} source
+ * file. The generated strategies access fields, getters, setters, record
+ * accessors and constructors directly, producing and consuming exactly the
+ * same XML as the {@linkplain net.sourceforge.easyml.marshalling.java.lang.ObjectStrategy}
+ * and {@linkplain net.sourceforge.easyml.marshalling.java.lang.RecordStrategy},
+ * but without reflection.
+ * <br/>
+ * The annotated classes must be non-private, top-level or static nested,
+ * non-abstract and non-{@linkplain java.io.Serializable}, and must define a
+ * non-private default constructor. Their fields, including the inherited
+ * ones, must be non-final and either accessible from the class' package or
+ * have accessible getters and setters.
+ * <br/>
+ * As the generated strategies share the XML element name of the reflection
+ * based strategies, each one delegates the un-marshalling of other classes to
+ * a fallback strategy. When registering several generated strategies, chain
+ * them via their fallback constructor, so that each class is read by its own
+ * generated strategy.
+ * <br/>
+ * The processor is not registered as a service, so that compiling against the
+ * library does not run it implicitly. It is to be enabled explicitly, e.g.
+ * <code>javac -processor net.sourceforge.easyml.processing.StrategyProcessor</code>,
+ * or via the annotation processor path of the build tool.
+ *
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ * @version 1.9.0
+ * @since 1.9.0
+ */
+@SupportedAnnotationTypes("net.sourceforge.easyml.processing.GenerateStrategy")
+public final class StrategyProcessor extends AbstractProcessor {
+
+    /**
+     * Constant defining the suffix of the generated strategy class names.
+     */
+    public static final String SUFFIX = "Strategy";
+    private static final String ELEMENT_SUPER = "this.sup";
+    private static final String ATTRIBUTE_NIL = "nil";
+    private static final Set<String> VALUE_WRAPPERS = new HashSet<>(Arrays.asList(
+            "java.lang.Boolean", "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long",
+            "java.lang.Float", "java.lang.Double", "java.lang.Character", "java.lang.String"));
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element e : roundEnv.getElementsAnnotatedWith(GenerateStrategy.class)) {
+            try {
+                final TypeElement type = this.validateType(e);
+                final String source = type.getKind() == ElementKind.RECORD
+                        ? this.recordStrategySource(type)
+                        : this.objectStrategySource(type);
+                try (Writer w = this.processingEnv.getFiler()
+                        .createSourceFile(this.qualifiedStrategyName(type), type).openWriter()) {
+                    w.write(source);
+                }
+            } catch (InvalidTypeException itx) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, itx.getMessage(), itx.element);
+            } catch (IOException ioX) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "cannot generate strategy: " + ioX.getMessage(), e);
+            }
+        }
+        return true;
+    }
+
+    private TypeElement validateType(Element e) throws InvalidTypeException {
+        if (e.getKind() != ElementKind.CLASS && e.getKind() != ElementKind.RECORD) {
+            throw new InvalidTypeException(e, "@GenerateStrategy: not a class or record");
+        }
+        final TypeElement type = (TypeElement) e;
+        for (Element crt = type; crt instanceof TypeElement; crt = crt.getEnclosingElement()) {
+            final TypeElement crtType = (TypeElement) crt;
+            if (crtType.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new InvalidTypeException(e, "@GenerateStrategy: private type: " + crtType.getSimpleName());
+            }
+            if (crtType.getNestingKind() == NestingKind.LOCAL || crtType.getNestingKind() == NestingKind.ANONYMOUS
+                    || (crtType.getNestingKind() == NestingKind.MEMBER && !crtType.getModifiers().contains(Modifier.STATIC))) {
+                throw new InvalidTypeException(e, "@GenerateStrategy: inner type: " + crtType.getSimpleName());
+            }
+        }
+        if (this.processingEnv.getTypeUtils().isAssignable(type.asType(),
+                this.processingEnv.getElementUtils().getTypeElement("java.io.Serializable").asType())) {
+            throw new InvalidTypeException(e, "@GenerateStrategy: serializable type is marshalled by SerializableStrategy");
+        }
+        if (type.getKind() == ElementKind.CLASS) {
+            if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+                throw new InvalidTypeException(e, "@GenerateStrategy: abstract class");
+            }
+            boolean hasDefaultConstructor = false;
+            for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+                if (c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE)) {
+                    hasDefaultConstructor = true;
+                }
+            }
+            if (!hasDefaultConstructor) {
+                throw new InvalidTypeException(e, "@GenerateStrategy: missing non-private default constructor");
+            }
+        }
+        return type;
+    }
+
+    private String packageName(TypeElement type) {
+        return this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    }
+
+    private String simpleStrategyName(TypeElement type) {
+        final StringBuilder sb = new StringBuilder(type.getSimpleName());
+        for (Element crt = type.getEnclosingElement(); crt instanceof TypeElement; crt = crt.getEnclosingElement()) {
+            sb.insert(0, '_').insert(0, crt.getSimpleName());
+        }
+        return sb.append(SUFFIX).toString();
+    }
+
+    private String qualifiedStrategyName(TypeElement type) {
+        final String pkg = this.packageName(type);
+        return pkg.isEmpty() ? this.simpleStrategyName(type) : pkg + '.' + this.simpleStrategyName(type);
+    }
+
+    private String typeName(TypeMirror t) {
+        return this.processingEnv.getTypeUtils().erasure(t).toString();
+    }
+
+    private boolean accessible(Element member, TypeElement type) {
+        final Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return modifiers.contains(Modifier.PUBLIC)
+                || this.packageName((TypeElement) member.getEnclosingElement()).equals(this.packageName(type));
+    }
+
+    private ExecutableElement accessor(TypeElement level, TypeElement type, String name, TypeMirror returned, TypeMirror param) {
+        for (ExecutableElement m : ElementFilter.methodsIn(level.getEnclosedElements())) {
+            if (!m.getSimpleName().contentEquals(name) || m.getModifiers().contains(Modifier.STATIC) || !this.accessible(m, type)) {
+                continue;
+            }
+            if (param == null && m.getParameters().isEmpty()
+                    && this.processingEnv.getTypeUtils().isSameType(m.getReturnType(), returned)) {
+                return m;
+            }
+            if (param != null && m.getParameters().size() == 1
+                    && this.processingEnv.getTypeUtils().isSameType(m.getParameters().get(0).asType(), param)) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    private List<List<Property>> objectLevels(TypeElement type) throws InvalidTypeException {
+        final List<List<Property>> levels = new ArrayList<>();
+        TypeElement level = type;
+        while (!level.getQualifiedName().contentEquals("java.lang.Object")) {
+            final List<Property> properties = new ArrayList<>();
+            for (VariableElement f : ElementFilter.fieldsIn(level.getEnclosedElements())) {
+                if (f.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                if (f.getModifiers().contains(Modifier.FINAL)) {
+                    throw new InvalidTypeException(f, "@GenerateStrategy: final field: " + level.getSimpleName() + '.' + f.getSimpleName());
+                }
+                final String name = f.getSimpleName().toString();
+                if (this.accessible(f, type)) {
+                    properties.add(new Property(f, this.typeName(f.asType()), "%s." + name, "%s." + name + " = %s"));
+                    continue;
+                }
+                final String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                ExecutableElement getter = this.accessor(level, type, "get" + capitalized, f.asType(), null);
+                if (getter == null && f.asType().getKind() == TypeKind.BOOLEAN) {
+                    getter = this.accessor(level, type, "is" + capitalized, f.asType(), null);
+                }
+                final ExecutableElement setter = this.accessor(level, type, "set" + capitalized, null, f.asType());
+                if (getter == null || setter == null) {
+                    throw new InvalidTypeException(f, "@GenerateStrategy: field not accessible and missing getter or setter: "
+                            + level.getSimpleName() + '.' + name);
+                }
+                properties.add(new Property(f, this.typeName(f.asType()),
+                        "%s." + getter.getSimpleName() + "()", "%s." + setter.getSimpleName() + "(%s)"));
+            }
+            levels.add(properties);
+            level = (TypeElement) this.processingEnv.getTypeUtils().asElement(level.getSuperclass());
+        }
+        return levels;
+    }
+
+    private String objectStrategySource(TypeElement type) throws InvalidTypeException {
+        final List<List<Property>> levels = this.objectLevels(type);
+        final String target = this.typeName(type.asType());
+        final Source src = this.header(type, "net.sourceforge.easyml.marshalling.java.lang.ObjectStrategy");
+        // fields:
+        src.line("    private static final Class[] LEVELS = levels(%s.class, %d);", target, levels.size());
+        src.line("    private static final Field[] FIELDS = {");
+        for (int level = 0; level < levels.size(); level++) {
+            for (Property p : levels.get(level)) {
+                src.line("            field(LEVELS[%d], \"%s\"),", level, p.field.getSimpleName());
+            }
+        }
+        src.line("    };");
+        src.line("    private final CompositeStrategy fallback;");
+        src.line("    private volatile %s defaults; // lazy.", target);
+        src.line("");
+        this.constructors(src, type);
+        src.line("    private static Class[] levels(Class cls, int count) {");
+        src.line("        final Class[] ret = new Class[count];");
+        src.line("        for (int i = 0; i < count; i++, cls = cls.getSuperclass()) {");
+        src.line("            ret[i] = cls;");
+        src.line("        }");
+        src.line("        return ret;");
+        src.line("    }");
+        src.line("");
+        src.line("    private static Field field(Class level, String name) {");
+        src.line("        try {");
+        src.line("            return level.getDeclaredField(name);");
+        src.line("        } catch (NoSuchFieldException nsfX) {");
+        src.line("            throw new IllegalStateException(nsfX);");
+        src.line("        }");
+        src.line("    }");
+        src.line("");
+        src.line("    private %s defaults() {", target);
+        src.line("        %s ret = this.defaults;", target);
+        src.line("        if (ret == null) {");
+        src.line("            ret = new %s();", target);
+        src.line("            this.defaults = ret;");
+        src.line("        }");
+        src.line("        return ret;");
+        src.line("    }");
+        src.line("");
+        this.strategyMethods(src, target);
+        // marshal:
+        src.line("    @Override");
+        src.line("    public void marshal(Object target, CompositeWriter writer, MarshalContext ctx) {");
+        src.line("        final %s t = (%s) target;", target, target);
+        src.line("        final %s d = ctx.skipDefaults() ? this.defaults() : null;", target);
+        src.line("        writer.startElement(this.name());");
+        src.line("        writer.setAttribute(DTD.ATTRIBUTE_CLASS, ctx.aliasOrNameFor(%s.class));", target);
+        int index = 0;
+        for (int level = 0; level < levels.size(); level++) {
+            if (level > 0) {
+                src.line("        writer.startElement(\"%s\");", ELEMENT_SUPER);
+                src.line("        writer.endElement();");
+            }
+            for (Property p : levels.get(level)) {
+                src.line("        if (!ctx.excluded(FIELDS[%d])) {", index);
+                src.line("            final %s v = %s;", p.type, p.get("t"));
+                src.line("            if (d == null || %s) {", p.notEqual("v", p.get("d")));
+                src.line("                writer.startElement(ctx.aliasOrNameFor(FIELDS[%d]));", index);
+                if (p.primitive()) {
+                    src.line("                writer.writeValue(String.valueOf(v));");
+                } else {
+                    src.line("                if (v == null) {");
+                    src.line("                    writer.setAttribute(\"%s\", Boolean.toString(true));", ATTRIBUTE_NIL);
+                    src.line("                } else {");
+                    src.line(VALUE_WRAPPERS.contains(p.type)
+                            ? "                    writer.writeValue(v.toString());"
+                            : "                    writer.write(v);");
+                    src.line("                }");
+                }
+                src.line("                writer.endElement();");
+                src.line("            }");
+                src.line("        }");
+                index++;
+            }
+        }
+        src.line("        writer.endElement();");
+        src.line("    }");
+        src.line("");
+        // unmarshalNew:
+        src.line("    @Override");
+        src.line("    public Object unmarshalNew(CompositeReader reader, UnmarshalContext ctx) throws ClassNotFoundException, InstantiationException, IllegalAccessException {");
+        src.line("        if (ctx.classFor(reader.elementRequiredAttribute(DTD.ATTRIBUTE_CLASS)) != %s.class) {", target);
+        src.line("            return this.fallback.unmarshalNew(reader, ctx);");
+        src.line("        }");
+        src.line("        return new %s();", target);
+        src.line("    }");
+        src.line("");
+        // unmarshalInit:
+        src.line("    @Override");
+        src.line("    public Object unmarshalInit(Object target, CompositeReader reader, UnmarshalContext ctx) throws IllegalAccessException {");
+        src.line("        if (target.getClass() != %s.class) {", target);
+        src.line("            return this.fallback.unmarshalInit(target, reader, ctx);");
+        src.line("        }");
+        src.line("        final %s t = (%s) target;", target, target);
+        src.line("        int level = 0;");
+        src.line("        while (reader.next()) {");
+        src.line("            if (reader.atElementStart()) {");
+        src.line("                if (reader.elementName().equals(\"%s\")) {", ELEMENT_SUPER);
+        src.line("                    reader.next(); // consume start, leaving end tag to be consumed by the next while.");
+        src.line("                    if (++level == LEVELS.length) {");
+        src.line("                        throw new InvalidFormatException(ctx.readerPositionDescriptor(), \"illegal super: %s\");", target);
+        src.line("                    }");
+        src.line("                } else {");
+        src.line("                    final Class cls = LEVELS[level];");
+        src.line("                    final String localPartName = reader.elementName();");
+        src.line("                    final FieldIndex.Entry e = ctx.fieldIndexFor(cls).get(localPartName);");
+        src.line("                    if (e == null) {");
+        src.line("                        throw new InvalidFormatException(ctx.readerPositionDescriptor(), \"undefined field: \" + cls.getName() + '.' + localPartName);");
+        src.line("                    }");
+        src.line("                    if (e.excluded) {");
+        src.line("                        reader.consume();");
+        src.line("                        continue; // skip excluded field.");
+        src.line("                    }");
+        src.line("                    final String fieldName = e.field.getName();");
+        src.line("                    final String nilAttr = reader.elementAttribute(\"%s\");", ATTRIBUTE_NIL);
+        src.line("                    final boolean nil = nilAttr != null && Boolean.parseBoolean(nilAttr);");
+        src.line("                    if (!readField(t, level, fieldName, nil, reader, ctx)) {");
+        src.line("                        throw new InvalidFormatException(ctx.readerPositionDescriptor(), \"illegal field: \" + cls.getName() + '.' + localPartName);");
+        src.line("                    }");
+        src.line("                }");
+        src.line("            } else if (reader.atElementEnd() && reader.elementName().equals(this.name())) {");
+        src.line("                return target;");
+        src.line("            }");
+        src.line("        }// while.");
+        src.line("        throw new InvalidFormatException(ctx.readerPositionDescriptor(), \"missing element end: \" + this.name());");
+        src.line("    }");
+        src.line("");
+        src.line("    private static boolean readField(%s t, int level, String fieldName, boolean nil, CompositeReader reader, UnmarshalContext ctx) {", target);
+        src.line("        switch (level) {");
+        for (int level = 0; level < levels.size(); level++) {
+            if (levels.get(level).isEmpty()) {
+                continue;
+            }
+            src.line("            case %d:", level);
+            src.line("                switch (fieldName) {");
+            for (Property p : levels.get(level)) {
+                src.line("                    case \"%s\":", p.field.getSimpleName());
+                src.line("                        if (nil) {");
+                if (p.primitive()) {
+                    src.line("                            throw new InvalidFormatException(ctx.readerPositionDescriptor(), \"nil primitive: \" + fieldName);");
+                } else {
+                    src.line("                            %s;", p.set("t", "null"));
+                }
+                src.line("                        } else {");
+                final String parse = p.parse("reader.readValue()");
+                if (parse != null) {
+                    src.line("                            try {");
+                    src.line("                                %s;", p.set("t", parse));
+                    src.line("                            } catch (IllegalArgumentException iax) {");
+                    src.line("                                throw new InvalidFormatException(ctx.readerPositionDescriptor(), iax);");
+                    src.line("                            }");
+                } else {
+                    src.line("                            if (!reader.next() || !reader.atElementStart()) {");
+                    src.line("                                throw new InvalidFormatException(ctx.readerPositionDescriptor(), \"expected element start\");");
+                    src.line("                            }");
+                    src.line("                            %s;", p.set("t", "(" + p.type + ") reader.read()"));
+                }
+                src.line("                        }");
+                src.line("                        return true;");
+            }
+            src.line("                }");
+            src.line("                break;");
+        }
+        src.line("        }");
+        src.line("        return false;");
+        src.line("    }");
+        src.line("}");
+        return src.toString();
+    }
+
+    private String recordStrategySource(TypeElement type) {
+        final List<? extends RecordComponentElement> components = type.getRecordComponents();
+        final String target = this.typeName(type.asType());
+        final Source src = this.header(type, "net.sourceforge.easyml.marshalling.java.lang.RecordStrategy");
+        src.line("    private final CompositeStrategy fallback;");
+        src.line("");
+        this.constructors(src, type);
+        this.strategyMethods(src, target);
+        // marshal:
+        src.line("    @Override");
+        src.line("    public void marshal(Object target, CompositeWriter writer, MarshalContext ctx) {");
+        src.line("        final %s t = (%s) target;", target, target);
+        src.line("        writer.startElement(this.name());");
+        src.line("        writer.setAttribute(DTD.ATTRIBUTE_CLASS, ctx.aliasOrNameFor(%s.class));", target);
+        for (RecordComponentElement c : components) {
+            src.line("        writer.%s(t.%s());", primitiveMethod("write", c.asType()), c.getAccessor().getSimpleName());
+        }
+        src.line("        writer.endElement();");
+        src.line("    }");
+        src.line("");
+        // unmarshalNew:
+        src.line("    @Override");
+        src.line("    public Object unmarshalNew(CompositeReader reader, UnmarshalContext ctx) throws ClassNotFoundException, InstantiationException, IllegalAccessException {");
+        src.line("        if (ctx.classFor(reader.elementRequiredAttribute(DTD.ATTRIBUTE_CLASS)) != %s.class) {", target);
+        src.line("            return this.fallback.unmarshalNew(reader, ctx);");
+        src.line("        }");
+        src.line("        // consume root tag:");
+        src.line("        reader.next();");
+        final StringBuilder args = new StringBuilder();
+        for (int i = 0; i < components.size(); i++) {
+            final TypeMirror t = components.get(i).asType();
+            src.line("        expectComponent(reader, ctx, %d);", i);
+            if (t.getKind().isPrimitive()) {
+                src.line("        final %s c%d = reader.%s();", t, i, primitiveMethod("read", t));
+            } else {
+                src.line("        final %s c%d = (%s) reader.read();", this.typeName(t), i, this.typeName(t));
+            }
+            args.append(i > 0 ? ", c" : "c").append(i);
+        }
+        src.line("        if (!reader.atElementEnd() || !reader.elementName().equals(this.name())) {");
+        src.line("            throw new InvalidFormatException(ctx.readerPositionDescriptor(), \"unexpected element end\");");
+        src.line("        }");
+        src.line("        return new %s(%s);", target, args);
+        src.line("    }");
+        src.line("");
+        src.line("    @Override");
+        src.line("    public Object unmarshalInit(Object target, CompositeReader reader, UnmarshalContext ctx) throws IllegalAccessException {");
+        src.line("        if (target.getClass() != %s.class) {", target);
+        src.line("            return this.fallback.unmarshalInit(target, reader, ctx);");
+        src.line("        }");
+        src.line("        return target;");
+        src.line("    }");
+        src.line("");
+        src.line("    private static void expectComponent(CompositeReader reader, UnmarshalContext ctx, int component) {");
+        src.line("        if (!reader.atElementStart()) {");
+        src.line("            throw new InvalidFormatException(ctx.readerPositionDescriptor(),");
+        src.line("                    \"unexpected record components: \" + component + \", expected %d\");", components.size());
+        src.line("        }");
+        src.line("    }");
+        src.line("}");
+        return src.toString();
+    }
+
+    private static String primitiveMethod(String prefix, TypeMirror t) {
+        if (!t.getKind().isPrimitive()) {
+            return prefix;
+        }
+        final String kind = t.getKind().name();
+        return prefix + kind.charAt(0) + kind.substring(1).toLowerCase();
+    }
+
+    private Source header(TypeElement type, String fallbackClass) {
+        final Source src = new Source();
+        final String pkg = this.packageName(type);
+        if (!pkg.isEmpty()) {
+            src.line("package %s;", pkg);
+            src.line("");
+        }
+        src.line("import net.sourceforge.easyml.DTD;");
+        src.line("import net.sourceforge.easyml.InvalidFormatException;");
+        src.line("import net.sourceforge.easyml.marshalling.*;");
+        src.line("");
+        src.line("import java.lang.reflect.Field;");
+        src.line("");
+        src.line("/**");
+        src.line(" * Generated strategy for {@linkplain %s}, compatible with the {@linkplain %s}.", this.typeName(type.asType()), fallbackClass);
+        src.line(" */");
+        src.line("@javax.annotation.processing.Generated(\"%s\")", StrategyProcessor.class.getName());
+        src.line("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        src.line("public final class %s implements CompositeStrategy {", this.simpleStrategyName(type));
+        src.line("");
+        src.line("    /**");
+        src.line("     * Constant defining the instance falling back to the reflection-based strategy.");
+        src.line("     */");
+        src.line("    public static final %s INSTANCE = new %s(%s.INSTANCE);", this.simpleStrategyName(type), this.simpleStrategyName(type), fallbackClass);
+        return src;
+    }
+
+    private void constructors(Source src, TypeElement type) {
+        src.line("    /**");
+        src.line("     * Creates a new instance which delegates the un-marshalling of other");
+        src.line("     * classes, sharing the XML element name, to the given fallback.");
+        src.line("     *");
+        src.line("     * @param fallback to delegate the other classes to");
+        src.line("     */");
+        src.line("    public %s(CompositeStrategy fallback) {", this.simpleStrategyName(type));
+        src.line("        if (fallback == null) {");
+        src.line("            throw new IllegalArgumentException(\"fallback: null\");");
+        src.line("        }");
+        src.line("        this.fallback = fallback;");
+        src.line("    }");
+        src.line("");
+    }
+
+    private void strategyMethods(Source src, String target) {
+        src.line("    @Override");
+        src.line("    public boolean strict() {");
+        src.line("        return true;");
+        src.line("    }");
+        src.line("");
+        src.line("    @Override");
+        src.line("    public Class target() {");
+        src.line("        return %s.class;", target);
+        src.line("    }");
+        src.line("");
+        src.line("    @Override");
+        src.line("    public String name() {");
+        src.line("        return this.fallback.name();");
+        src.line("    }");
+        src.line("");
+        src.line("    @Override");
+        src.line("    public String toString() {");
+        src.line("        return this.name() + '(' + target().getName() + ')';");
+        src.line("    }");
+        src.line("");
+    }
+
+    /**
+     * Property class holds the generated access code of a field.
+     */
+    private static final class Property {
+
+        private final VariableElement field;
+        private final String type;
+        private final String getFormat;
+        private final String setFormat;
+
+        private Property(VariableElement field, String type, String getFormat, String setFormat) {
+            this.field = field;
+            this.type = type;
+            this.getFormat = getFormat;
+            this.setFormat = setFormat;
+        }
+
+        private boolean primitive() {
+            return this.field.asType().getKind().isPrimitive();
+        }
+
+        private String get(String target) {
+            return String.format(this.getFormat, target);
+        }
+
+        private String set(String target, String value) {
+            return String.format(this.setFormat, target, value);
+        }
+
+        private String notEqual(String value, String defaultValue) {
+            switch (this.field.asType().getKind()) {
+                case FLOAT:
+                    return "Float.compare(" + value + ", " + defaultValue + ") != 0";
+                case DOUBLE:
+                    return "Double.compare(" + value + ", " + defaultValue + ") != 0";
+                default:
+                    return this.primitive()
+                            ? value + " != " + defaultValue
+                            : "!java.util.Objects.equals(" + value + ", " + defaultValue + ")";
+            }
+        }
+
+        private String parse(String value) {
+            switch (this.type) {
+                case "boolean":
+                case "java.lang.Boolean":
+                    return "Boolean.parseBoolean(" + value + ")";
+                case "byte":
+                case "java.lang.Byte":
+                    return "Byte.parseByte(" + value + ")";
+                case "short":
+                case "java.lang.Short":
+                    return "Short.parseShort(" + value + ")";
+                case "int":
+                case "java.lang.Integer":
+                    return "Integer.parseInt(" + value + ")";
+                case "long":
+                case "java.lang.Long":
+                    return "Long.parseLong(" + value + ")";
+                case "float":
+                case "java.lang.Float":
+                    return "Float.parseFloat(" + value + ")";
+                case "double":
+                case "java.lang.Double":
+                    return "Double.parseDouble(" + value + ")";
+                case "char":
+                case "java.lang.Character":
+                    return "(Character) net.sourceforge.easyml.util.ReflectionUtil.ValueType.CHAR.parseValue(" + value + ")";
+                case "java.lang.String":
+                    return value;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Source class accumulates the generated source lines.
+     */
+    private static final class Source {
+
+        private final StringBuilder sb = new StringBuilder();
+
+        private void line(String format, Object... args) {
+            this.sb.append(args.length == 0 ? format : String.format(format, args)).append('\n');
+        }
+
+        @Override
+        public String toString() {
+            return this.sb.toString();
+        }
+    }
+
+    /**
+     * InvalidTypeException class signals an annotated type for which no
+     * strategy can be generated.
+     */
+    private static final class InvalidTypeException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Element element;
+
+        private InvalidTypeException(Element element, String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+}
@@ -469,6 +469,16 @@ public final class ReflectionUtil {
                 return Boolean.parseBoolean(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return reader.readBooleanValue();
+            }
+
+            @Override
+            public void setReadField(CompositeReader reader, Object target, Field f) throws IllegalAccessException {
+                f.setBoolean(target, reader.readBooleanValue());
+            }
+
             @Override
             public boolean getWriteArrayItem(CompositeWriter writer, Object array, int itemIdx, boolean skipDefs) {
                 final boolean item = Array.getBoolean(array, itemIdx);
@@ -500,6 +510,11 @@ public final class ReflectionUtil {
                 return Boolean.parseBoolean(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return reader.readBooleanValue();
+            }
+
         },
         BYTE {
             @Override
@@ -507,6 +522,16 @@ public final class ReflectionUtil {
                 return Byte.parseByte(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return readByteValue(reader);
+            }
+
+            @Override
+            public void setReadField(CompositeReader reader, Object target, Field f) throws IllegalAccessException {
+                f.setByte(target, readByteValue(reader));
+            }
+
             @Override
             public boolean getWriteArrayItem(CompositeWriter writer, Object array, int itemIdx, boolean skipDefs) {
                 final byte item = Array.getByte(array, itemIdx);
@@ -538,6 +563,11 @@ public final class ReflectionUtil {
                 return Byte.parseByte(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return readByteValue(reader);
+            }
+
         },
         SHORT {
             @Override
@@ -545,6 +575,16 @@ public final class ReflectionUtil {
                 return Short.parseShort(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return readShortValue(reader);
+            }
+
+            @Override
+            public void setReadField(CompositeReader reader, Object target, Field f) throws IllegalAccessException {
+                f.setShort(target, readShortValue(reader));
+            }
+
             @Override
             public boolean getWriteArrayItem(CompositeWriter writer, Object array, int itemIdx, boolean skipDefs) {
                 final short item = Array.getShort(array, itemIdx);
@@ -576,6 +616,11 @@ public final class ReflectionUtil {
                 return Short.parseShort(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return readShortValue(reader);
+            }
+
         },
         INT {
             @Override
@@ -583,6 +628,16 @@ public final class ReflectionUtil {
                 return Integer.parseInt(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return reader.readIntValue();
+            }
+
+            @Override
+            public void setReadField(CompositeReader reader, Object target, Field f) throws IllegalAccessException {
+                f.setInt(target, reader.readIntValue());
+            }
+
             @Override
             public boolean getWriteArrayItem(CompositeWriter writer, Object array, int itemIdx, boolean skipDefs) {
                 final int item = Array.getInt(array, itemIdx);
@@ -614,6 +669,11 @@ public final class ReflectionUtil {
                 return Integer.parseInt(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return reader.readIntValue();
+            }
+
         },
         LONG {
             @Override
@@ -621,6 +681,16 @@ public final class ReflectionUtil {
                 return Long.parseLong(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return reader.readLongValue();
+            }
+
+            @Override
+            public void setReadField(CompositeReader reader, Object target, Field f) throws IllegalAccessException {
+                f.setLong(target, reader.readLongValue());
+            }
+
             @Override
             public boolean getWriteArrayItem(CompositeWriter writer, Object array, int itemIdx, boolean skipDefs) {
                 final long item = Array.getLong(array, itemIdx);
@@ -652,6 +722,11 @@ public final class ReflectionUtil {
                 return Long.parseLong(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return reader.readLongValue();
+            }
+
         },
         FLOAT {
             @Override
@@ -696,6 +771,16 @@ public final class ReflectionUtil {
                 return Double.parseDouble(value);
             }
 
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return reader.readDoubleValue();
+            }
+
+            @Override
+            public void setReadField(CompositeReader reader, Object target, Field f) throws IllegalAccessException {
+                f.setDouble(target, reader.readDoubleValue());
+            }
+
             @Override
             public boolean getWriteArrayItem(CompositeWriter writer, Object array, int itemIdx, boolean skipDefs) {
                 final double item = Array.getDouble(array, itemIdx);
@@ -726,6 +811,11 @@ public final class ReflectionUtil {
             public Object parseValue(String value) {
                 return Double.parseDouble(value);
             }
+
+            @Override
+            public Object readValue(CompositeReader reader) {
+                return reader.readDoubleValue();
+            }
         },
         CHAR {
             @Override
@@ -830,6 +920,34 @@ public final class ReflectionUtil {
          */
         public abstract Object parseValue(String value);
 
+        /**
+         * Reads the value of the element the given reader is at directly and
+         * returns it, same as {@linkplain #parseValue(String)} of
+         * {@linkplain CompositeReader#readValue()}. The number and boolean
+         * types are parsed via the reader's in-place parsing methods, such as
+         * {@linkplain CompositeReader#readIntValue()}.
+         *
+         * @param reader to read with
+         * @return the value
+         */
+        public Object readValue(CompositeReader reader) {
+            return this.parseValue(reader.readValue());
+        }
+
+        /**
+         * Reflection method used to read the value of the element the given
+         * reader is at directly and set it to the given field, to prevent
+         * auto-boxing.
+         *
+         * @param reader to read with
+         * @param target the field owner
+         * @param f      the accessible field to set
+         * @throws IllegalAccessException if the field is not accessible
+         */
+        public void setReadField(CompositeReader reader, Object target, Field f) throws IllegalAccessException {
+            f.set(target, this.readValue(reader));
+        }
+
         /**
          * Reflection method used to check if the item at itemIdx of the given array
          * has a default value.
@@ -881,6 +999,23 @@ public final class ReflectionUtil {
         }
     }
 
+    // reads a byte as an int, range-checked as by Byte.parseByte:
+    private static byte readByteValue(CompositeReader reader) {
+        return (byte) checkRange(reader.readIntValue(), Byte.MIN_VALUE, Byte.MAX_VALUE);
+    }
+
+    // reads a short as an int, range-checked as by Short.parseShort:
+    private static short readShortValue(CompositeReader reader) {
+        return (short) checkRange(reader.readIntValue(), Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    private static int checkRange(int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new NumberFormatException("Value out of range. Value:\"" + value + "\"");
+        }
+        return value;
+    }
+
     private ReflectionUtil() {
     }
 }
@@ -18,6 +18,8 @@
  */
 package net.sourceforge.easyml.util;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,7 +28,7 @@ import java.util.regex.Pattern;
  * values by escaping and un-escaping illegal XML characters.
  *
  * @author Victor Cordis ( cordis.victor at gmail.com)
- * @version 1.8.3
+ * @version 1.9.0
  * @since 1.0
  */
 public final class XMLUtil {
@@ -100,6 +102,27 @@ public final class XMLUtil {
         return true;
     }
 
+    /**
+     * Returns true if the input text is a legal XML name, i.e. a legal XML tag
+     * which can also contain <code>.</code> after the first char.
+     *
+     * @param name to test if legal
+     * @return true if name is a legal XML name, false otherwise
+     */
+    public static boolean isLegalXMLName(String name) {
+        if (name == null || name.isEmpty() || !Character.isLetter(name.charAt(0))) {
+            return false;
+        }
+        final int len = name.length();
+        for (int i = 1; i < len; i++) {
+            final char crt = name.charAt(i);
+            if (!Character.isLetterOrDigit(crt) && crt != '-' && crt != '_' && crt != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Escapes the illegal chars in the input string, if any, and returns the
      * escaped string.
@@ -125,6 +148,53 @@ public final class XMLUtil {
         return sb.toString();
     }
 
+    /**
+     * Escapes the illegal chars in the input string, if any, writing the
+     * escaped string to the given writer. The legal runs are written as
+     * ranges of the input string, hence no intermediary string is created.
+     *
+     * @param text the string to escape
+     * @param out  the writer to write to
+     * @throws IOException if the writer failed
+     */
+    public static void escapeXML(String text, Writer out) throws IOException {
+        final int len = text.length();
+        int legalStartIdx = 0;
+        for (int i = 0; i < len; i++) {
+            final String escaped = escapedOf(text.charAt(i));
+            if (escaped != null) {
+                if (i > legalStartIdx) {
+                    out.write(text, legalStartIdx, i - legalStartIdx);
+                }
+                out.write(escaped);
+                legalStartIdx = i + 1;
+            }
+        }
+        if (legalStartIdx < len) {
+            out.write(text, legalStartIdx, len - legalStartIdx);
+        }
+    }
+
+    // returns the escaped form of c, or null if c is legal:
+    private static String escapedOf(char c) {
+        switch (c) {
+            case XML_ILLEGAL_LT:
+                return XML_LEGAL_LT;
+            case XML_ILLEGAL_GT:
+                return XML_LEGAL_GT;
+            case XML_ILLEGAL_AMP:
+                return XML_LEGAL_AMP;
+            case XML_ILLEGAL_QUOT:
+                return XML_LEGAL_QUOT;
+            case XML_ILLEGAL_APOS:
+                return XML_LEGAL_APOS;
+            case XML_ILLEGAL_CR:
+                return XML_LEGAL_CR;
+            default:
+                return null;
+        }
+    }
+
     private static void appendEscaped(StringBuilder destination, char c) {
         if (c == XML_ILLEGAL_LT) {
             destination.append(XML_LEGAL_LT);
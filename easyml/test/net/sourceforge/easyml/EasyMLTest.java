@@ -22,9 +22,23 @@ import net.sourceforge.easyml.marshalling.dtd.StringStrategy;
 import net.sourceforge.easyml.testmodel.AbstractDTO;
 import net.sourceforge.easyml.testmodel.PersonDTO;
 import org.junit.Test;
-
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -58,12 +72,16 @@ public class EasyMLTest {
         final PersonDTO expected = new PersonDTO(1, "fn", "ln");
         final Object actual = easyml.deserialize(easyml.serialize(expected));
 
-        assertEquals(4, easyml.readerPrototype.cachedAliasingReflection.size());
+        assertEquals(4, easyml.readerPrototype.cachedAliasingReflection.size() + easyml.readerPrototype.cachedFieldIndexes.size());
+        assertEquals(2/* 2 aliases */, easyml.readerPrototype.cachedAliasingReflection.size());
+        assertEquals(2/* PersonDTO, AbstractDTO */, easyml.readerPrototype.cachedFieldIndexes.size());
 
         easyml.clearCache();
 
         assertEquals(expected, actual);
-        assertEquals(4 - 2/* 2 aliases */, easyml.readerPrototype.cachedAliasingReflection.size());
+        assertEquals(4 - 2/* 2 aliases */, easyml.readerPrototype.cachedAliasingReflection.size() + easyml.readerPrototype.cachedFieldIndexes.size());
+        assertEquals(2/* 2 aliases */, easyml.readerPrototype.cachedAliasingReflection.size());
+        assertEquals(0, easyml.readerPrototype.cachedFieldIndexes.size());
     }
 
     @Test
@@ -238,6 +256,404 @@ public class EasyMLTest {
         assertArrayEquals(expected.toArray(), actual.toArray());
     }
 
+    @Test
+    public void testSkipDefaultsConstructsDefaultsOnce() {
+        easyml = new EasyML();
+        final List<CountedObject> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final CountedObject o = new CountedObject();
+            o.value = i;
+            expected.add(o);
+        }
+        CountedObject.constructed = 0;
+        final String xml = easyml.serialize(expected);
+        assertTrue(CountedObject.constructed <= 1);
+        assertFalse(xml.contains("<name>"));
+
+        final List<CountedObject> actual = (List<CountedObject>) easyml.deserialize(xml);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, actual.get(i).value);
+            assertEquals("default", actual.get(i).name);
+        }
+    }
+
+    @Test
+    public void testTreeMode() {
+        easyml = new EasyMLBuilder().withTreeMode(true).build();
+        final List<Object> expected = new ArrayList<>();
+        final PersonDTO shared = new PersonDTO(1, "fn", "ln");
+        expected.add(shared);
+        expected.add(new Object[]{shared, new int[]{1, 2}});
+        final String xml = easyml.serialize(expected);
+        assertFalse(xml.contains(" id="));
+        assertFalse(xml.contains(" idref="));
+
+        final List<Object> actual = (List<Object>) easyml.deserialize(xml);
+        assertEquals(shared, actual.get(0));
+        final Object[] array = (Object[]) actual.get(1);
+        assertEquals(shared, array[0]);
+        assertNotSame(actual.get(0), array[0]); // written once per reference.
+        assertArrayEquals(new int[]{1, 2}, (int[]) array[1]);
+
+        // tree mode rejects idrefs:
+        try {
+            easyml.deserialize(new EasyML().serialize(expected));
+            fail("idref in tree mode");
+        } catch (InvalidFormatException expectedX) {
+        }
+    }
+
+    @Test
+    public void testTreeModeSharedReferenceCheck() {
+        easyml = new EasyMLBuilder().withTreeMode(true).withSharedReferenceCheck(true).build();
+        final PersonDTO p = new PersonDTO(1, "fn", "ln");
+        final List<PersonDTO> tree = new ArrayList<>(Arrays.asList(p, new PersonDTO(1, "fn", "ln")));
+        assertEquals(tree, easyml.deserialize(easyml.serialize(tree)));
+        try {
+            easyml.serialize(new ArrayList<>(Arrays.asList(p, p)));
+            fail("shared reference in tree mode");
+        } catch (IllegalArgumentException expectedX) {
+        }
+        final Object[] cyclic = new Object[1];
+        cyclic[0] = cyclic;
+        try {
+            easyml.serialize(cyclic);
+            fail("cyclic reference in tree mode");
+        } catch (IllegalArgumentException expectedX) {
+        }
+        // the writer is reusable after failure:
+        assertEquals(p, easyml.deserialize(easyml.serialize(p)));
+    }
+
+    @Test
+    public void testCompactIds() throws Exception {
+        easyml = new EasyMLBuilder().withCompactIds(true).build();
+        final List<Object> expected = new ArrayList<>();
+        final PersonDTO shared = new PersonDTO(0, "shared", null);
+        for (int i = 0; i < 100; i++) {
+            expected.add(new PersonDTO(i, "fn" + i, "ln" + i));
+        }
+        expected.add(shared);
+        expected.add(shared);
+        expected.add(expected);
+        final String xml = easyml.serialize(expected);
+        assertEquals(2, xml.split(" id=").length - 1); // the shared person and the list.
+        assertTrue(xml.length() < new EasyML().serialize(expected).length());
+
+        final List<Object> actual = (List<Object>) easyml.deserialize(xml);
+        assertEquals(expected.subList(0, 102), actual.subList(0, 102));
+        assertSame(actual.get(100), actual.get(101));
+        assertSame(actual, actual.get(102));
+
+        final Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        easyml.serialize(expected, dom);
+        final List<Object> fromDOM = (List<Object>) easyml.deserialize(dom);
+        assertSame(fromDOM.get(100), fromDOM.get(101));
+        assertSame(fromDOM, fromDOM.get(102));
+
+        // ids are required in default mode:
+        try {
+            new EasyML().deserialize(xml);
+            fail("missing id");
+        } catch (InvalidFormatException expectedX) {
+        }
+    }
+
+    @Test
+    public void testCompactIdsFreshObjects() {
+        easyml = new EasyMLBuilder().withCompactIds(true).build();
+        Replaced.replacements = 0;
+        final List<Object> expected = new ArrayList<>();
+        expected.add(new Replaced());
+        expected.add(expected);
+        final String xml = easyml.serialize(expected);
+        assertEquals(1, Replaced.replacements); // marshalled once.
+
+        final List<Object> actual = (List<Object>) easyml.deserialize(xml);
+        final Proxy outer = (Proxy) actual.get(0);
+        final Proxy fresh = (Proxy) outer.self; // created by writeReplace, with a cycle through itself:
+        assertSame(fresh, fresh.self);
+        assertSame(fresh.list, fresh.sameList); // created by writeReplace, shared.
+        assertSame(fresh.list, outer.list);
+        assertSame(actual, actual.get(1));
+    }
+
+    @Test
+    public void testStreamCharsets() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("text <&> \u00e2\u00ee\u0103 \u20ac \uD83D\uDE00 ").append(i);
+        }
+        final List<Object> expected = new ArrayList<>(Arrays.asList(text.toString(), new PersonDTO(1, "fn", "ln")));
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1}) {
+            easyml = new EasyMLBuilder().withCharset(charset).withBufferSize(64).build();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            easyml.serialize(expected, out);
+            assertArrayEquals(easyml.serialize(expected).getBytes(charset), out.toByteArray());
+            if (charset != StandardCharsets.ISO_8859_1) { // unmappable chars replaced.
+                assertEquals(expected, easyml.deserialize(new ByteArrayInputStream(out.toByteArray())));
+            }
+        }
+    }
+
+    @Test
+    public void testStreamBuffering() {
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.UTF_16}) {
+            easyml = new EasyMLBuilder().withCharset(charset).build();
+            final int[] writes = new int[2]; // writes, flushes.
+            final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+                @Override
+                public synchronized void write(byte[] b, int off, int len) {
+                    writes[0]++;
+                    super.write(b, off, len);
+                }
+
+                @Override
+                public synchronized void write(int b) {
+                    writes[0]++;
+                    super.write(b);
+                }
+
+                @Override
+                public void flush() {
+                    writes[1]++;
+                }
+            };
+            easyml.serialize(new PersonDTO(1, "fn", "ln"), out);
+            assertEquals(1, writes[0]);
+            assertEquals(1, writes[1]);
+            assertEquals(new PersonDTO(1, "fn", "ln"), easyml.deserialize(new ByteArrayInputStream(out.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testStatefulCharsetEnding() throws Exception {
+        final Charset charset = Charset.forName("ISO-2022-JP");
+        final String expected = "\u65e5\u672c\u8a9e";
+        easyml = new EasyMLBuilder().withCharset(charset).build();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        easyml.serialize(expected, out);
+        assertArrayEquals(easyml.serialize(expected).getBytes(charset), out.toByteArray());
+        assertEquals(expected, easyml.deserialize(new ByteArrayInputStream(out.toByteArray())));
+
+        final ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        final PooledStreamWriter writer = new PooledStreamWriter(direct, charset.newEncoder(), new char[64], new byte[64]);
+        writer.write(expected);
+        writer.close();
+        writer.close(); // no-op.
+        assertArrayEquals(expected.getBytes(charset), direct.toByteArray());
+        try {
+            writer.write("d");
+            fail("closed");
+        } catch (IOException expectedX) {
+        }
+    }
+
+    @Test
+    public void testNewWriterBufferSize() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            text.append("text ").append(i);
+        }
+        easyml = new EasyMLBuilder().withBufferSize(64 * 1024).build();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final XMLWriter writer = easyml.newWriter(out);
+        writer.write(text.toString());
+        assertEquals(0, out.size()); // fits the configured buffer.
+        writer.close();
+        assertEquals(text.toString(), easyml.deserialize(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    public void testBufferPool() {
+        final BufferPool pool = new BufferPool(64, 256);
+        final byte[] b1 = pool.takeBytes();
+        final byte[] b2 = pool.takeBytes();
+        final char[] c1 = pool.takeChars();
+        final char[] c2 = pool.takeChars();
+        pool.give(b1);
+        pool.give(c1);
+        assertEquals(64 + 128, pool.pooledBytes());
+        pool.give(c2); // over the bound.
+        pool.give(b2);
+        pool.give(new byte[32]); // other size.
+        assertEquals(256, pool.pooledBytes());
+        assertSame(b1, pool.takeBytes());
+        assertSame(b2, pool.takeBytes());
+        assertSame(c1, pool.takeChars());
+        assertEquals(0, pool.pooledBytes());
+        assertNotSame(c2, pool.takeChars());
+    }
+
+    @Test
+    public void testPooledStreamReaderSurrogates() throws Exception {
+        final String expected = "a\uD83D\uDE00b\u20ac";
+        final PooledStreamReader reader = new PooledStreamReader(
+                new ByteArrayInputStream(expected.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8.newDecoder(),
+                new byte[64]);
+        final StringBuilder actual = new StringBuilder();
+        for (int c = reader.read(); c != -1; c = reader.read()) {
+            actual.append((char) c);
+        }
+        assertEquals(expected, actual.toString());
+        assertEquals(-1, reader.read());
+    }
+
+    @Test
+    public void testPooledStreamsDetachBuffers() throws Exception {
+        final PooledStreamReader reader = new PooledStreamReader(
+                new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8.newDecoder(),
+                new byte[64]);
+        assertEquals('a', reader.read());
+        reader.detachBuffer();
+        assertEquals(-1, reader.read());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PooledStreamWriter writer = new PooledStreamWriter(out, StandardCharsets.UTF_16.newEncoder(), new char[64], new byte[64]);
+        writer.write("abc");
+        writer.flush();
+        writer.detachBuffers();
+        writer.flush(); // no-op.
+        assertEquals("abc", out.toString(StandardCharsets.UTF_16.name()));
+        try {
+            writer.write("d");
+            fail("detached");
+        } catch (IOException expectedX) {
+        }
+
+        // the per-thread reader and writer are reusable after failures:
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.UTF_16}) {
+            easyml = new EasyMLBuilder().withCharset(charset).build();
+            try {
+                easyml.deserialize(new ByteArrayInputStream("<easyml><int>x</int></easyml>".getBytes(charset)));
+                fail("invalid int");
+            } catch (InvalidFormatException expectedX) {
+            }
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            easyml.serialize(new PersonDTO(1, "fn", "ln"), bytes);
+            assertEquals(new PersonDTO(1, "fn", "ln"), easyml.deserialize(new ByteArrayInputStream(bytes.toByteArray())));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferSizeTooSmall() {
+        new EasyMLBuilder().withBufferSize(8);
+    }
+
+    @Test
+    public void testDeserializeMappedFile() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("text <&> \u00e2\u00ee\u0103 \u20ac \uD83D\uDE00 ").append(i);
+        }
+        final List<Object> expected = new ArrayList<>(Arrays.asList(text.toString(), new PersonDTO(1, "fn", "ln")));
+        final Path file = Files.createTempFile("easyml", ".xml");
+        try {
+            for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.UTF_16}) {
+                easyml = new EasyMLBuilder().withCharset(charset).build();
+                Files.write(file, easyml.serialize(expected).getBytes(charset));
+                assertEquals(expected, easyml.deserialize(file));
+                final XMLReader reader = easyml.newReader(file);
+                assertEquals(expected, reader.read());
+                reader.close();
+            }
+            // foreign input:
+            easyml = new EasyML();
+            Files.write(file, "<!DOCTYPE easyml><easyml><string>doc</string></easyml>".getBytes(StandardCharsets.UTF_8));
+            assertEquals("doc", easyml.deserialize(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStAXFactories() {
+        final List<Object> expected = new ArrayList<>(Arrays.asList(
+                "text <&> \"'\u0103 \uD83D\uDE00", new PersonDTO(1, "fn", null), new int[0], null, new Object[]{1, "s"}));
+        expected.add(expected.get(1)); // reference.
+        for (EasyML.Style style : new EasyML.Style[]{EasyML.Style.FAST, EasyML.Style.PRETTY}) {
+            easyml = new EasyMLBuilder()
+                    .withStyle(style)
+                    .withXMLInputFactory(XMLInputFactory.newFactory())
+                    .withXMLOutputFactory(XMLOutputFactory.newFactory())
+                    .build();
+            final List actual = (List) easyml.deserialize(easyml.serialize(expected));
+            assertEquals(expected.get(0), actual.get(0));
+            assertEquals(expected.get(1), actual.get(1));
+            assertArrayEquals((int[]) expected.get(2), (int[]) actual.get(2));
+            assertNull(actual.get(3));
+            assertArrayEquals((Object[]) expected.get(4), (Object[]) actual.get(4));
+            assertSame(actual.get(1), actual.get(5));
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            easyml.serialize(expected.get(1), out);
+            assertEquals(expected.get(1), easyml.deserialize(new ByteArrayInputStream(out.toByteArray())));
+            // interoperable with the built-in drivers:
+            assertEquals(expected.get(1), new EasyML().deserialize(easyml.serialize(expected.get(1))));
+            assertEquals(expected.get(1), easyml.deserialize(new EasyML().serialize(expected.get(1))));
+        }
+    }
+
+    @Test
+    public void testStAXEmbedding() throws Exception {
+        easyml = new EasyML();
+        final PersonDTO expected = new PersonDTO(1, "fn", "ln");
+        final StringWriter out = new StringWriter();
+        final XMLStreamWriter xsw = XMLOutputFactory.newFactory().createXMLStreamWriter(out);
+        xsw.writeStartDocument();
+        xsw.writeStartElement("envelope");
+        easyml.serialize(expected, xsw);
+        xsw.writeStartElement("after");
+        xsw.writeEndElement();
+        xsw.writeEndElement();
+        xsw.writeEndDocument();
+        xsw.close();
+
+        final XMLStreamReader xsr = XMLInputFactory.newFactory().createXMLStreamReader(new StringReader(out.toString()));
+        xsr.nextTag(); // envelope.
+        xsr.nextTag(); // easyml.
+        assertEquals(expected, easyml.deserialize(xsr));
+        assertEquals(XMLStreamConstants.END_ELEMENT, xsr.getEventType());
+        assertEquals(XMLStreamConstants.START_ELEMENT, xsr.nextTag());
+        assertEquals("after", xsr.getLocalName());
+        xsr.close();
+    }
+
+    private static final class Replaced implements java.io.Serializable {
+        private static int replacements;
+
+        private Object writeReplace() {
+            replacements++;
+            final Proxy fresh = new Proxy();
+            fresh.self = fresh;
+            fresh.list = new ArrayList<>(Arrays.asList("fresh"));
+            fresh.sameList = fresh.list;
+            final Proxy outer = new Proxy();
+            outer.self = fresh;
+            outer.list = fresh.list;
+            return outer;
+        }
+    }
+
+    private static final class Proxy implements java.io.Serializable {
+        private Object self;
+        private List<String> list;
+        private List<String> sameList;
+    }
+
+    public static final class CountedObject {
+        private static int constructed;
+        private int value;
+        private String name;
+
+        public CountedObject() {
+            constructed++;
+            this.name = "default";
+        }
+    }
+
     private static final class IntegerComparator implements Comparator<Integer> {
         @Override
         public int compare(Integer i1, Integer i2) {
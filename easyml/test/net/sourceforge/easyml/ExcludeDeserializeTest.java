@@ -147,6 +147,25 @@ public class ExcludeDeserializeTest {
         assertEquals(expected, eml.deserialize(oldXml));
     }
 
+    @Test(expected = InvalidFormatException.class)
+    public void testUndefinedFieldObject() {
+        final String modifiedPojoXml = "<easyml><objectx id=\"1\" class=\"net.sourceforge.easyml.ExcludeDeserializeTest$ModifiedPojo\"><removedVersionField>1</removedVersionField><text>someText</text></objectx></easyml>";
+
+        final XMLReader xis = new XMLReader(new ByteArrayInputStream(modifiedPojoXml.getBytes()));
+        xis.getCompositeStrategies().put(ObjectStrategy.NAME, ObjectStrategy.INSTANCE);
+        xis.exclude(ModifiedPojo.class, "removedNamesField");
+        xis.read();
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testUndefinedFieldSerializable() {
+        final String modifiedPojoXml = "<easyml><serial id=\"1\" class=\"net.sourceforge.easyml.ExcludeDeserializeTest$ModifiedDTO\"><this.fields><text>someText</text><removedVersionField>1</removedVersionField></this.fields></serial></easyml>";
+
+        final XMLReader xis = new XMLReader(new ByteArrayInputStream(modifiedPojoXml.getBytes()));
+        xis.getCompositeStrategies().put(SerializableStrategy.NAME, new SerializableStrategy());
+        xis.read();
+    }
+
     public static final class ModifiedPojo {
 
         private String text;
@@ -73,6 +73,121 @@ public class ExternalizableSerializableTest {
         xis.close();
     }
 
+    @Test
+    public void testNestedWriteObjectStreams() {
+        final Node[] expected = {new Node(1, new Node(2, new Node(3, null))), new Node(4, null)};
+        final XMLWriter xos = new XMLWriter(this.out);
+        xos.getCompositeStrategies().add(new SerializableStrategy());
+        xos.write(expected);
+        xos.close();
+        System.out.println(this.out);
+        final XMLReader xis = new XMLReader(new ByteArrayInputStream(this.out.toByteArray()));
+        xis.getCompositeStrategies().put(SerializableStrategy.NAME, new SerializableStrategy());
+        final Object[] actual = (Object[]) xis.read();
+        xis.close();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+    }
+
+    @Test
+    public void testNestedExternalizables() {
+        final Envelope[] expected = {
+                new Envelope("first", new Envelope("inner", null)),
+                new Envelope("second", null)};
+        final XMLWriter xos = new XMLWriter(this.out);
+        xos.getCompositeStrategies().add(ExternalizableStrategy.INSTANCE);
+        xos.write(expected);
+        xos.close();
+        System.out.println(this.out);
+        final XMLReader xis = new XMLReader(new ByteArrayInputStream(this.out.toByteArray()));
+        xis.getCompositeStrategies().put(ExternalizableStrategy.NAME, ExternalizableStrategy.INSTANCE);
+        final Object[] actual = (Object[]) xis.read();
+        xis.close();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+    }
+
+    public static final class Envelope implements Externalizable {
+
+        private String header;
+        private Envelope payload;
+
+        public Envelope() {
+        }
+
+        Envelope(String header, Envelope payload) {
+            this.header = header;
+            this.payload = payload;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeUTF(header);
+            out.writeObject(payload);
+            out.writeInt(header.length());
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+            header = in.readUTF();
+            payload = (Envelope) in.readObject();
+            if (in.readInt() != header.length()) {
+                throw new IOException("corrupt envelope");
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Envelope that = (Envelope) o;
+            return Objects.equals(header, that.header) && Objects.equals(payload, that.payload);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(header, payload);
+        }
+    }
+
+    private static final class Node implements Serializable {
+
+        private transient int value;
+        private Node next;
+
+        public Node(int value, Node next) {
+            this.value = value;
+            this.next = next;
+        }
+
+        private void writeObject(ObjectOutputStream s) throws IOException {
+            s.defaultWriteObject();
+            s.writeInt(value);
+        }
+
+        private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+            s.defaultReadObject();
+            value = s.readInt();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Node that = (Node) o;
+            return value == that.value && Objects.equals(next, that.next);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(value, next);
+        }
+    }
+
     private static final class ObjectUsingPutGetFields implements Serializable {
 
         private String text;
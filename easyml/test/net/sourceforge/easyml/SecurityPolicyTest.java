@@ -53,6 +53,120 @@ public class SecurityPolicyTest {
         assertFalse(sp.contains(LinkedList.class));
     }
 
+    @Test
+    public void testContainsAfterModification() {
+        final XMLReader r = new XMLReader(System.in);
+        final XMLReader.SecurityPolicy sp = r.getSecurityPolicy();
+        assertFalse(sp.contains(ArrayList.class));
+        sp.add(ArrayList.class);
+        assertTrue(sp.contains(ArrayList.class));
+        assertFalse(sp.contains(HashMap.class));
+        sp.addHierarchy(Map.class);
+        assertTrue(sp.contains(HashMap.class));
+        sp.clear();
+        assertFalse(sp.contains(ArrayList.class));
+        assertFalse(sp.contains(HashMap.class));
+    }
+
+    @Test
+    public void testCheckName() {
+        final XMLReader r = new XMLReader(System.in);
+        final XMLReader.SecurityPolicy sp = r.getSecurityPolicy();
+        sp.add(ArrayList.class);
+        sp.addHierarchy(AbstractMap.class);
+        sp.checkName(LinkedList.class.getName());
+        sp.checkName(HashMap.class.getName()); // hierarchies are checked after loading.
+        try {
+            sp.checkName(ArrayList.class.getName());
+            fail("illegal class name not thrown");
+        } catch (IllegalClassException icx) {
+            assertEquals(ArrayList.class, icx.getIllegalClass());
+        }
+        sp.setWhitelistMode();
+        sp.checkName(LinkedList.class.getName()); // whitelisted classes are checked after loading.
+        sp.checkName(ArrayList.class.getName());
+    }
+
+    @Test
+    public void testBlacklistRejectsBeforeLoading() {
+        final String xml = "<easyml><object class=\"net.sourceforge.easyml.SecurityPolicyTest$NotLoaded\"/></easyml>";
+        final XMLReader r = new XMLReader(new ByteArrayInputStream(xml.getBytes()));
+        EasyML.defaultConfiguration(r);
+        r.getSecurityPolicy().add(NotLoaded.class);
+        try {
+            r.read();
+            fail("illegal class not thrown");
+        } catch (IllegalClassException icx) {
+            assertEquals(NotLoaded.class, icx.getIllegalClass());
+            assertFalse(notLoadedInitialized);
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testBlacklistReadsClassValues() {
+        final XMLReader r = readerFor(ArrayList.class);
+        r.getSecurityPolicy().add(ArrayList.class);
+        assertEquals(ArrayList.class, r.read());
+        r.close();
+    }
+
+    @Test
+    public void testWhitelistReadsClassValues() {
+        final XMLReader r = readerFor(String.class);
+        r.getSecurityPolicy().setWhitelistMode();
+        r.getSecurityPolicy().add(Class.class);
+        assertEquals(String.class, r.read());
+        r.close();
+    }
+
+    @Test
+    public void testWhitelistReadsEnumSets() throws ClassNotFoundException {
+        final EnumSet<Color> expected = EnumSet.of(Color.RED);
+        final XMLReader r = readerFor(expected);
+        r.getSecurityPolicy().setWhitelistMode();
+        r.getSecurityPolicy().add(Class.forName("java.util.RegularEnumSet"));
+        assertEquals(expected, r.read());
+        r.close();
+    }
+
+    @Test
+    public void testWhitelistReadsEnumMaps() {
+        final EnumMap<Color, Integer> expected = new EnumMap<>(Color.class);
+        expected.put(Color.RED, 1);
+        final XMLReader r = readerFor(expected);
+        r.getSecurityPolicy().setWhitelistMode();
+        r.getSecurityPolicy().add(EnumMap.class);
+        r.getSecurityPolicy().add(Integer.class);
+        assertEquals(expected, r.read());
+        r.close();
+    }
+
+    private static XMLReader readerFor(Object o) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final XMLWriter w = new XMLWriter(out);
+        EasyML.defaultConfiguration(w);
+        w.write(o);
+        w.close();
+        final XMLReader r = new XMLReader(new ByteArrayInputStream(out.toByteArray()));
+        EasyML.defaultConfiguration(r);
+        return r;
+    }
+
+    private enum Color {
+        RED, GREEN
+    }
+
+    private static boolean notLoadedInitialized;
+
+    private static final class NotLoaded {
+
+        static {
+            notLoadedInitialized = true;
+        }
+    }
+
     @Test
     public void testAddHierarchySquash() {
         final XMLReader r = new XMLReader(System.in);
@@ -24,8 +24,10 @@ import org.junit.Test;
 
 import javax.swing.*;
 import java.io.Serializable;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -78,6 +80,47 @@ public class StrategyRegistryTest {
         assertEquals(serial, xw.getCompositeStrategies().lookup(JLabel.class));
     }
 
+    @Test
+    public void testLookupAfterModification() {
+        final CompositeStrategy serial = new SerlialStrategy();
+        final CompositeStrategy jcomp = new JCompStrategy();
+
+        final XMLWriter xw = new XMLWriter(System.out);
+        final XMLWriter.StrategyRegistry<CompositeStrategy> registry = xw.getCompositeStrategies();
+        assertNull(registry.lookup(JLabel.class));
+        registry.add(serial);
+        assertEquals(serial, registry.lookup(JLabel.class));
+        registry.add(jcomp);
+        assertEquals(jcomp, registry.lookup(JLabel.class));
+        registry.prioritize(serial, jcomp);
+        assertEquals(serial, registry.lookup(JLabel.class));
+        registry.remove(serial);
+        assertEquals(jcomp, registry.lookup(JLabel.class));
+        registry.clear();
+        assertNull(registry.lookup(JLabel.class));
+        registry.getBackup().add(jcomp);
+        assertEquals(jcomp, registry.lookup(JLabel.class));
+    }
+
+    @Test
+    public void testLookupAfterBackupModification() {
+        final CompositeStrategy jcomp = new JCompStrategy();
+
+        final XMLWriter xw = new XMLWriter(System.out);
+        final XMLWriter.StrategyRegistry<CompositeStrategy> registry = xw.getCompositeStrategies();
+        registry.clear();
+        final List<CompositeStrategy> backup = registry.getBackup();
+        assertNull(registry.lookup(JLabel.class));
+        backup.add(jcomp);
+        assertEquals(jcomp, registry.lookup(JLabel.class));
+        backup.clear();
+        assertNull(registry.lookup(JLabel.class));
+        backup.add(jcomp);
+        assertEquals(jcomp, registry.lookup(JLabel.class));
+        backup.removeIf(s -> s == jcomp);
+        assertNull(registry.lookup(JLabel.class));
+    }
+
     private static class SerlialStrategy extends AbstractStrategy implements CompositeStrategy<Serializable> {
 
         @Override
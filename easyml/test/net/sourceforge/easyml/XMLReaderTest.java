@@ -19,15 +19,43 @@
 package net.sourceforge.easyml;
 
 import net.sourceforge.easyml.marshalling.dtd.IntStrategy;
+import net.sourceforge.easyml.testmodel.AbstractDTO;
+import net.sourceforge.easyml.testmodel.PersonDTO;
+import net.sourceforge.easyml.util.XMLUtil;
+import org.junit.Assume;
 import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
+import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import static org.hamcrest.core.Is.is;
-import static org.junit.Assert.assertThat;
-import static org.junit.Assert.fail;
+import static org.junit.Assert.*;
 
 /**
  * @author Victor Cordis ( cordis.victor at gmail.com)
@@ -54,6 +82,18 @@ public class XMLReaderTest {
         }
     }
 
+    @Test
+    public void testSymbolFor() {
+        final XMLReader xr = new XMLReader(new ByteArrayInputStream(new byte[0]));
+        final String custom = new String("custom"); // not interned.
+        xr.getSimpleStrategies().put(custom, IntStrategy.INSTANCE);
+        assertSame(DTD.TYPE_INT, xr.symbolFor(new String("int")));
+        assertSame(DTD.ELEMENT_NIL, xr.symbolFor(new String("nil")));
+        assertSame(custom, xr.symbolFor("custom"));
+        assertEquals("a$b", xr.symbolFor(XMLUtil.escapeXMLTag("a$b")));
+        assertSame(xr.symbolFor("unknown"), xr.symbolFor(new String("unknown")));
+    }
+
     @Test
     public void testHasMore() throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -74,4 +114,509 @@ public class XMLReaderTest {
         assertThat(xr.hasMore(), is(false));
         xr.close();
     }
+
+    @Test
+    public void testReadObjectsAliasedAndExcluded() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final XMLWriter xw = new XMLWriter(out);
+        xw.alias(PersonDTO.class.getDeclaredField("lastName"), "surname");
+        xw.alias(AbstractDTO.class.getDeclaredField("id"), "key");
+        xw.write(new PersonDTO(1, "Victor", "Cordis"));
+        xw.write(new PersonDTO(2, "Ana", "Popescu"));
+        xw.close();
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        final XMLReader xr = new XMLReader(in);
+        xr.alias(PersonDTO.class.getDeclaredField("lastName"), "surname");
+        xr.alias(AbstractDTO.class.getDeclaredField("id"), "key");
+        xr.exclude(PersonDTO.class, "firstName");
+        final PersonDTO first = (PersonDTO) xr.read();
+        final PersonDTO second = (PersonDTO) xr.read();
+        xr.close();
+
+        assertThat(first.getId(), is(1));
+        assertThat(first.getFirstName(), is("DefaultFN"));
+        assertThat(first.getLastName(), is("Cordis"));
+        assertThat(second.getId(), is(2));
+        assertThat(second.getFirstName(), is("DefaultFN"));
+        assertThat(second.getLastName(), is("Popescu"));
+    }
+
+    @Test
+    public void testDialectParserMarkup() {
+        final String xml = "\uFEFF<?xml version='1.0' encoding='UTF-8'?>\n<!-- head -->\n"
+                + "<easyml>\r\n  <string>a &lt;&amp;&gt; &#65;&#x42;&#x1F600;<![CDATA[<c>]]><!-- x --></string>\r\n"
+                + "  <string/>\n  <?pi data?>\n  <int >3</int\n>\n</easyml>";
+        final XMLReader xr = new XMLReader(new StringReader(xml));
+        assertEquals("a <&> AB\uD83D\uDE00<c>", xr.readString());
+        assertEquals("", xr.readString());
+        assertEquals(3, xr.readInt());
+        assertFalse(xr.hasMore());
+        xr.close();
+    }
+
+    @Test
+    public void testDialectParserWindow() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append("t&<>\"'\r\n\u0103\uD83D\uDE00").append(i);
+        }
+        final List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            expected.add(new PersonDTO(i, "fn" + i, i % 2 == 0 ? null : "ln" + i));
+            expected.add(new Object[]{i, "s" + i});
+        }
+        expected.add(text.toString());
+        final StringWriter out = new StringWriter();
+        final XMLWriter xw = new XMLWriter(out);
+        xw.setPrettyPrint(true);
+        xw.write(expected.toArray());
+        xw.close();
+
+        final XMLReader xr = new XMLReader(new Reader() { // one char per read:
+            private final StringReader in = new StringReader(out.toString());
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return this.in.read(cbuf, off, Math.min(len, 1));
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        final Object[] actual = (Object[]) xr.read();
+        xr.close();
+        assertEquals(expected.size(), actual.length);
+        for (int i = 0; i < expected.size() - 1; i += 2) {
+            assertEquals(expected.get(i), actual[i]);
+            assertArrayEquals((Object[]) expected.get(i + 1), (Object[]) actual[i + 1]);
+        }
+        assertEquals(text.toString(), actual[actual.length - 1]);
+    }
+
+    @Test
+    public void testDialectParserSkipSubtree() throws Exception {
+        final String xml = "<easyml><object id=\"1\" class=\"" + PersonDTO.class.getName() + "\">"
+                + "<firstName><string a='>'>x<!-- </firstName> --><![CDATA[</firstName>]]></string><nil/></firstName>"
+                + "<lastName><string>ln</string></lastName></object></easyml>";
+        final XMLReader xr = new XMLReader(new StringReader(xml));
+        xr.exclude(PersonDTO.class, "firstName");
+        final PersonDTO actual = (PersonDTO) xr.read();
+        xr.close();
+        assertEquals("DefaultFN", actual.getFirstName());
+        assertEquals("ln", actual.getLastName());
+    }
+
+    @Test
+    public void testDialectParserFallback() {
+        final String xml = "<?xml version=\"1.0\"?>\n<!DOCTYPE easyml>\n<easyml><string>doc</string><int>1</int></easyml>";
+        final XMLReader xr = new XMLReader(new StringReader(xml));
+        assertEquals("doc", xr.readString());
+        assertEquals(1, xr.readInt());
+        xr.close();
+    }
+
+    @Test
+    public void testDialectParserInvalid() {
+        for (String xml : new String[]{
+                "<easyml><string>a</strin></easyml>",
+                "<easyml><string>a&unknown;</string></easyml>",
+                "<easyml><string>a<int>1</int></string></easyml>",
+                "<easyml><string>a",
+                "<easyml><string a=b>a</string></easyml>"}) {
+            final XMLReader xr = new XMLReader(new StringReader(xml));
+            try {
+                xr.readString();
+                fail("did not throw: " + xml);
+            } catch (InvalidFormatException expected) {
+                assertTrue(expected.getMessage().startsWith("1,"));
+            } finally {
+                xr.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMappedDialectParserSegments() throws Exception {
+        final StringBuilder xml = new StringBuilder("\uFEFF<?xml version=\"1.0\"?>\n<easyml>");
+        for (int i = 0; i < 300; i++) {
+            xml.append("<item id=\"").append(i).append("\" a='x&amp;y&#10;\u0103\r\n'>")
+                    .append("<v>t&lt;\r\n\uD83D\uDE00").append(i).append("</v>")
+                    .append("<e/><!-- </item> --><w>a<![CDATA[<b>]]>c</w>")
+                    .append("<s><v>skipped</v><s/></s>")
+                    .append("<\u0103name>").append(i).append("</\u0103name>")
+                    .append("</item>\n");
+        }
+        xml.append("<v>");
+        for (int i = 0; i < 3000; i++) {
+            xml.append("t&amp;\u0103\uD83D\uDE00").append(i);
+        }
+        xml.append("</v></easyml>");
+        final Path file = Files.createTempFile("easyml", ".xml");
+        try (FileChannel channel = FileChannel.open(file.toAbsolutePath())) {
+            Files.write(file, xml.toString().getBytes(StandardCharsets.UTF_8));
+            final DialectPullParser expected = new DialectPullParser(String::intern);
+            expected.setInput(new StringReader(xml.substring(1)));
+            final MappedDialectParser actual = new MappedDialectParser(String::intern, 64);
+            actual.setInput(channel);
+            int et;
+            do {
+                et = expected.nextTag();
+                assertEquals(et, actual.nextTag());
+                if (et == DialectParser.START_TAG || et == DialectParser.END_TAG) {
+                    assertSame(expected.getName(), actual.getName());
+                    assertEquals(expected.getDepth(), actual.getDepth());
+                }
+                if (et == DialectParser.START_TAG) {
+                    assertEquals(expected.getAttributeValue("id"), actual.getAttributeValue("id"));
+                    assertEquals(expected.getAttributeValue("a"), actual.getAttributeValue("a"));
+                    switch (expected.getName()) {
+                        case "v":
+                        case "w":
+                        case "\u0103name":
+                            assertEquals(expected.nextText(), actual.nextText());
+                            break;
+                        case "s":
+                            expected.skipSubtree();
+                            actual.skipSubtree();
+                            break;
+                    }
+                }
+            } while (et != DialectParser.END_TAG || expected.getDepth() > 1);
+            assertEquals(DialectParser.END_DOCUMENT, actual.next());
+            // position descriptors, across segments:
+            assertEquals(expected.positionDescriptor().split(",")[0], actual.positionDescriptor().split(",")[0]);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMappedDialectParserInvalid() throws Exception {
+        final Path file = Files.createTempFile("easyml", ".xml");
+        try {
+            Files.write(file, "<easyml>\n<string>a</strin></easyml>".getBytes(StandardCharsets.UTF_8));
+            final XMLReader xr = new XMLReader(file);
+            try {
+                xr.readString();
+                fail("did not throw");
+            } catch (InvalidFormatException expected) {
+                assertTrue(expected.getMessage().startsWith("2,"));
+            } finally {
+                xr.close();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDOMDriverManySiblings() throws Exception {
+        final int n = 100000;
+        assertManySiblingsRead(manySiblingsDOM(n), n);
+    }
+
+    @Test
+    public void testDOMDriverLinearOnIndexedNodeLists() throws Exception {
+        // DOM whose NodeList.item(i) walks i siblings, as some implementations do:
+        final int n = 1000;
+        final long[] steps = new long[1];
+        assertManySiblingsRead((Document) LinkedDOM.wrap(manySiblingsDOM(n), steps), n);
+        final long stepsN = steps[0];
+        steps[0] = 0;
+        assertManySiblingsRead((Document) LinkedDOM.wrap(manySiblingsDOM(4 * n), steps), 4 * n);
+        final long steps4N = steps[0];
+        // linear traversal takes about 4 times the steps, quadratic about 16 times:
+        assertTrue("steps: " + stepsN + " -> " + steps4N, steps4N < 5 * stepsN);
+    }
+
+    private static Document manySiblingsDOM(int n) throws Exception {
+        final Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        final Element easyml = dom.createElement("easyml");
+        dom.appendChild(easyml);
+        final Element array = dom.createElement("array");
+        array.setAttribute("id", "1");
+        array.setAttribute("length", Integer.toString(n));
+        easyml.appendChild(array);
+        for (int i = 0; i < n; i++) {
+            array.appendChild(dom.createTextNode("\n  "));
+            array.appendChild(dom.createComment("item " + i));
+            final Element item = dom.createElement("int");
+            item.appendChild(dom.createTextNode(Integer.toString(i)));
+            array.appendChild(item);
+        }
+        array.appendChild(dom.createTextNode("\n"));
+        easyml.appendChild(dom.createElement("nil"));
+        return dom;
+    }
+
+    private static void assertManySiblingsRead(Document dom, int n) {
+        final XMLReader xr = new XMLReader(dom);
+        final Object[] actual = (Object[]) xr.read();
+        assertEquals(n, actual.length);
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, actual[i]);
+        }
+        assertNull(xr.read());
+        xr.close();
+    }
+
+    /**
+     * LinkedDOM class wraps DOM nodes into proxies counting each call as a
+     * step, except for <code>NodeList.item(i)</code> which walks, and counts,
+     * i + 1 siblings, as linked DOM implementations do.
+     */
+    private static final class LinkedDOM implements InvocationHandler {
+
+        private final Object target;
+        private final Map<Object, Object> proxies;
+        private final long[] steps;
+
+        private LinkedDOM(Object target, Map<Object, Object> proxies, long[] steps) {
+            this.target = target;
+            this.proxies = proxies;
+            this.steps = steps;
+        }
+
+        private static Object wrap(Object target, long[] steps) {
+            return wrap(target, new IdentityHashMap<>(), steps);
+        }
+
+        private static Object wrap(Object target, Map<Object, Object> proxies, long[] steps) {
+            if (!(target instanceof Node || target instanceof NamedNodeMap)) {
+                return target;
+            }
+            Object ret = proxies.get(target);
+            if (ret == null) {
+                final Set<Class<?>> domInterfaces = new LinkedHashSet<>();
+                for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass()) {
+                    collectDOMInterfaces(c, domInterfaces);
+                }
+                ret = Proxy.newProxyInstance(LinkedDOM.class.getClassLoader(),
+                        domInterfaces.toArray(new Class<?>[0]), new LinkedDOM(target, proxies, steps));
+                proxies.put(target, ret);
+            }
+            return ret;
+        }
+
+        private static void collectDOMInterfaces(Class<?> c, Set<Class<?>> domInterfaces) {
+            for (Class<?> i : c.getInterfaces()) {
+                if (i.getPackageName().equals("org.w3c.dom")) {
+                    domInterfaces.add(i);
+                }
+                collectDOMInterfaces(i, domInterfaces);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            this.steps[0]++;
+            if (method.getName().equals("getChildNodes") && args == null) {
+                final Node parent = (Node) this.target;
+                return new NodeList() {
+                    @Override
+                    public Node item(int index) {
+                        Node ret = parent.getFirstChild();
+                        for (int i = 0; i < index && ret != null; i++) {
+                            ret = ret.getNextSibling();
+                        }
+                        LinkedDOM.this.steps[0] += index + 1;
+                        return (Node) LinkedDOM.wrap(ret, LinkedDOM.this.proxies, LinkedDOM.this.steps);
+                    }
+
+                    @Override
+                    public int getLength() {
+                        int ret = 0;
+                        for (Node c = parent.getFirstChild(); c != null; c = c.getNextSibling()) {
+                            ret++;
+                        }
+                        LinkedDOM.this.steps[0] += ret;
+                        return ret;
+                    }
+                };
+            }
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    if (args[i] != null && Proxy.isProxyClass(args[i].getClass())
+                            && Proxy.getInvocationHandler(args[i]) instanceof LinkedDOM) {
+                        args[i] = ((LinkedDOM) Proxy.getInvocationHandler(args[i])).target;
+                    }
+                }
+            }
+            try {
+                return wrap(method.invoke(this.target, args), this.proxies, this.steps);
+            } catch (InvocationTargetException itx) {
+                throw itx.getCause();
+            }
+        }
+    }
+
+    @Test
+    public void testValueParser() {
+        final String[] doubles = {"0", "1", "-0.0", "0.0", "0.1", ".5", "1.", "-1.5", "+1.5", " 2.5", "2.5 ",
+                "1e22", "1e23", "1E-22", "1.0E-23", "123456789012345678901", "9007199254740993", "0.000001",
+                "1.0d", "2f", "0x1p3", "NaN", "-Infinity", "4.9E-324", "1.7976931348623157E308", "1e0400"};
+        for (String d : doubles) {
+            assertDoubleParsed(d);
+        }
+        final Random random = new Random(17);
+        for (int i = 0; i < 100_000; i++) {
+            assertDoubleParsed(Double.toString(Double.longBitsToDouble(random.nextLong())));
+            assertDoubleParsed(Double.toString(random.nextInt(1_000_000) / 1000.0));
+            assertDoubleParsed(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20)));
+        }
+        for (String invalid : new String[]{"", "-", ".", "1e", "1e+", "abc", "1.2.3", "--1", "1e5x"}) {
+            try {
+                ValueParser.parseDouble(invalid);
+                fail("parseDouble: did not throw: " + invalid);
+            } catch (NumberFormatException expected) {
+            }
+        }
+        assertEquals(Integer.MIN_VALUE, ValueParser.parseInt(Integer.toString(Integer.MIN_VALUE)));
+        assertEquals(Long.MAX_VALUE, ValueParser.parseLong(Long.toString(Long.MAX_VALUE)));
+        try {
+            ValueParser.parseInt("2147483648");
+            fail("parseInt: did not throw overflow");
+        } catch (NumberFormatException expected) {
+        }
+        for (String b : new String[]{"true", "TRUE", "tRuE", "false", "tru", "truee", ""}) {
+            assertEquals(b, Boolean.parseBoolean(b), ValueParser.parseBoolean(b));
+        }
+    }
+
+    private static void assertDoubleParsed(String text) {
+        assertEquals(text, Double.doubleToRawLongBits(Double.parseDouble(text)),
+                Double.doubleToRawLongBits(ValueParser.parseDouble(text)));
+    }
+
+    @Test
+    public void testReadValuesInPlace() {
+        final String entities = "<easyml><int>&#49;2</int><long><![CDATA[-3]]></long><double> 1.5</double>"
+                + "<boolean>TRUE</boolean><short>-32768</short><byte>128</byte></easyml>";
+        final XMLReader xr = new XMLReader(new StringReader(entities));
+        assertEquals(12, xr.readInt());
+        assertEquals(-3L, xr.readLong());
+        assertEquals(1.5, xr.readDouble(), 0);
+        assertTrue(xr.readBoolean());
+        assertEquals(Short.MIN_VALUE, xr.readShort());
+        try {
+            xr.readByte();
+            fail("readByte: did not throw out of range");
+        } catch (InvalidFormatException expected) {
+        }
+    }
+
+    @Test
+    public void testSteadyStateAllocationFree() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        final StringWriter xml = new StringWriter();
+        final XMLWriter xw = new XMLWriter(xml);
+        xw.writeInt(-123456789);
+        xw.writeLong(1234567890123456789L);
+        xw.writeDouble(0.125);
+        xw.writeDouble(-98.6);
+        xw.writeBoolean(true);
+        xw.writeShort((short) 1000);
+        xw.writeByte((byte) -7);
+        xw.close();
+        final RewindableReader in = new RewindableReader(xml.toString().toCharArray());
+        final XMLReader xr = new XMLReader(in);
+        // warm-up, in order to get past class loading and lazy initialization:
+        long checksum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            checksum += readSteadyState(xr, in);
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20_000; i++) {
+            checksum += readSteadyState(xr, in);
+        }
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(40_000L * readSteadyState(xr, in), checksum);
+        // a few bytes per value would add up to megabytes over the 140k values:
+        assertTrue("allocated: " + allocated, allocated < 16 * 1024);
+    }
+
+    private static long readSteadyState(XMLReader xr, RewindableReader in) {
+        in.rewind();
+        xr.reset(in, null);
+        long ret = xr.readInt();
+        ret += xr.readLong();
+        ret += (long) (8 * xr.readDouble());
+        ret += (long) (10 * xr.readDouble());
+        ret += xr.readBoolean() ? 1 : 0;
+        ret += xr.readShort();
+        ret += xr.readByte();
+        return ret;
+    }
+
+    // reader over a fixed text, to be re-read without re-allocation:
+    private static final class RewindableReader extends Reader {
+
+        private final char[] text;
+        private int pos;
+
+        private RewindableReader(char[] text) {
+            this.text = text;
+        }
+
+        private void rewind() {
+            this.pos = 0;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (this.pos == this.text.length) {
+                return -1;
+            }
+            final int n = Math.min(len, this.text.length - this.pos);
+            System.arraycopy(this.text, this.pos, cbuf, off, n);
+            this.pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testReferenceTable() {
+        final ReferenceTable table = new ReferenceTable();
+        for (int round = 0; round < 40; round++) {
+            final int n = round % 20 == 0 ? 100_000 : 10;
+            for (int id = 1; id <= n; id++) {
+                table.put(id, null, id);
+            }
+            table.put(1_000_000_000, null, "sparse");
+            table.put(-1, "named", "named");
+            for (int id = 1; id <= n; id++) {
+                assertEquals(id, table.get(id, null));
+            }
+            assertEquals("sparse", table.get(1_000_000_000, null));
+            assertEquals("named", table.get(-1, "named"));
+            assertNull(table.get(n + 1, null));
+            table.clear();
+            assertNull(table.get(1, null));
+            assertNull(table.get(1_000_000_000, null));
+            assertNull(table.get(-1, "named"));
+        }
+    }
+
+    @Test
+    public void testReadIdsWrittenOtherwise() {
+        final XMLReader xr = new XMLReader(new StringReader("<easyml>"
+                + "<array id=\"&#49;\" length=\"&#50;\"><object idref=\"1\"/><nil/></array>"
+                + "<array id=\"a\" length=\"1\"><object idref=\"a\"/></array>"
+                + "<array id=\"7\" length=\"1\"><object idref=\"&#55;\"/></array>"
+                + "</easyml>"));
+        for (int i = 0; i < 3; i++) {
+            final Object[] array = (Object[]) xr.read();
+            assertSame(array, array[0]);
+        }
+        xr.close();
+    }
 }
@@ -18,6 +18,7 @@
  */
 package net.sourceforge.easyml;
 
+import net.sourceforge.easyml.marshalling.NameToken;
 import net.sourceforge.easyml.marshalling.java.io.SerializableStrategy;
 import net.sourceforge.easyml.marshalling.java.lang.ObjectStrategy;
 import net.sourceforge.easyml.testmodel.DefaultCompositeObject;
@@ -25,13 +26,31 @@ import net.sourceforge.easyml.testmodel.FacultyDTO;
 import net.sourceforge.easyml.testmodel.PersonDTO;
 import net.sourceforge.easyml.testmodel.StudentPersonDTO;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Test;
 import org.w3c.dom.Document;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 import static org.junit.Assert.*;
 
@@ -264,4 +283,431 @@ public class XMLWriterTest {
 
     public static class NoFields {
     }
+
+    @Test
+    public void testNameTokens() {
+        final StringWriter byNames = new StringWriter();
+        final XMLWriterTextDriver namesDriver = new XMLWriterTextDriver(new XMLWriter(byNames), byNames);
+        namesDriver.startElement("a$b");
+        namesDriver.setAttribute("size", "<1>");
+        namesDriver.startElement("this.sup");
+        namesDriver.endElement();
+        namesDriver.endElement();
+        namesDriver.flush();
+
+        final StringWriter byTokens = new StringWriter();
+        final XMLWriterTextDriver tokensDriver = new XMLWriterTextDriver(new XMLWriter(byTokens), byTokens);
+        tokensDriver.startElement(new NameToken("a$b"));
+        tokensDriver.setAttribute(new NameToken("size"), "<1>");
+        tokensDriver.startElement(new NameToken("this.sup"));
+        tokensDriver.endElement();
+        tokensDriver.endElement();
+        tokensDriver.flush();
+
+        assertEquals(byNames.toString(), byTokens.toString());
+        assertEquals("a$b", new NameToken("a$b").name());
+        assertEquals("a_-_b", new NameToken("a$b").escaped());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNameTokenIllegal() {
+        new NameToken("a<b");
+    }
+
+    @Test
+    public void testUTF8Driver() {
+        final StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            big.append("a<\u00e9\u20ac\ud83d\ude00'");
+        }
+        final Object[] graph = {new PersonDTO(1, "fn\u00e9", "<ln & \"co\">\r"), big.toString(), "\ud83d", null, 3.5};
+        for (EasyML.Style style : new EasyML.Style[]{EasyML.Style.FAST, EasyML.Style.PRETTY}) {
+            final EasyML easyml = new EasyMLBuilder().withStyle(style).build();
+            final ByteArrayOutputStream viaWriter = new ByteArrayOutputStream();
+            easyml.serialize(graph, new OutputStreamWriter(viaWriter, StandardCharsets.UTF_8));
+            final ByteArrayOutputStream viaStream = new ByteArrayOutputStream();
+            easyml.serialize(graph, viaStream);
+            assertArrayEquals(viaWriter.toByteArray(), viaStream.toByteArray());
+            // buffer reused by the same thread:
+            viaStream.reset();
+            easyml.serialize(graph, viaStream);
+            assertArrayEquals(viaWriter.toByteArray(), viaStream.toByteArray());
+        }
+    }
+
+    @Test
+    public void testSAXDriver() throws Exception {
+        final Object[] graph = new Object[]{
+                new PersonDTO(1, "fn <&> \"'", null), "text \u0103 \uD83D\uDE00", new int[]{1, 2}, null};
+        final EasyML easyml = new EasyMLBuilder().withStyle(EasyML.Style.PRETTY).build();
+        final SAXTransformerFactory factory = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
+        // to text, via the identity transformer:
+        final TransformerHandler toText = factory.newTransformerHandler();
+        final StringWriter text = new StringWriter();
+        toText.setResult(new StreamResult(text));
+        easyml.serialize(graph, toText);
+        assertArrayEquals(graph, (Object[]) easyml.deserialize(text.toString()));
+        // to DOM:
+        final TransformerHandler toDOM = factory.newTransformerHandler();
+        final DOMResult dom = new DOMResult();
+        toDOM.setResult(dom);
+        final XMLWriter xw = easyml.newWriter(toDOM);
+        xw.write(graph[0]);
+        xw.writeInt(3);
+        xw.close();
+        final XMLReader xr = easyml.newReader((Document) dom.getNode());
+        assertEquals(graph[0], xr.read());
+        assertEquals(3, xr.readInt());
+        xr.close();
+    }
+
+    @Test
+    public void testNumbersAndEscapes() {
+        final long[] longs = {0, 7, -5, 10, Long.MIN_VALUE, Long.MAX_VALUE};
+        final int[] ints = {0, -1, 100, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        final String text = "<a href=\"x\">&'\r</a> plain";
+        // text driver:
+        final StringWriter sw = new StringWriter();
+        XMLWriter xw = new XMLWriter(sw);
+        writeNumbersAndEscapes(xw, longs, ints, text);
+        xw.close();
+        assertNumbersAndEscapes(new XMLReader(new StringReader(sw.toString())), longs, ints, text);
+        // UTF-8 driver:
+        xw = new XMLWriter(this.out);
+        writeNumbersAndEscapes(xw, longs, ints, text);
+        xw.close();
+        assertNumbersAndEscapes(new XMLReader(new ByteArrayInputStream(this.out.toByteArray())), longs, ints, text);
+    }
+
+    private static void writeNumbersAndEscapes(XMLWriter xw, long[] longs, int[] ints, String text) {
+        for (long l : longs) {
+            xw.writeLong(l);
+            xw.write(l);
+        }
+        for (int i : ints) {
+            xw.writeInt(i);
+            xw.write(i);
+        }
+        xw.writeShort(Short.MIN_VALUE);
+        xw.writeByte(Byte.MIN_VALUE);
+        xw.write(ints);
+        xw.writeString(text);
+    }
+
+    private static void assertNumbersAndEscapes(XMLReader xr, long[] longs, int[] ints, String text) {
+        for (long l : longs) {
+            assertEquals(l, xr.readLong());
+            assertEquals(l, xr.read());
+        }
+        for (int i : ints) {
+            assertEquals(i, xr.readInt());
+            assertEquals(i, xr.read());
+        }
+        assertEquals(Short.MIN_VALUE, xr.readShort());
+        assertEquals(Byte.MIN_VALUE, xr.readByte());
+        final Object[] array = (Object[]) xr.read(); // standalone readers read untyped arrays.
+        assertEquals(ints.length, array.length);
+        for (int i = 0; i < ints.length; i++) {
+            assertEquals(ints[i], array[i]);
+        }
+        assertEquals(text, xr.readString());
+        xr.close();
+    }
+
+    @Test
+    public void testSteadyStateAllocationFree() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        final Writer discardWriter = new Writer() {
+            @Override
+            public void write(int c) {
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+            }
+
+            @Override
+            public void write(String str, int off, int len) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final OutputStream discardStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        final XMLWriter textWriter = new XMLWriter(discardWriter);
+        final XMLWriter utf8Writer = new XMLWriter(discardStream);
+        final Integer boxedInt = 123456;
+        final Long boxedLong = -1234567890123L;
+        // warm-up, in order to get past class loading and lazy initialization:
+        for (int i = 0; i < 20_000; i++) {
+            writeSteadyState(textWriter, discardWriter, i, boxedInt, boxedLong);
+            writeSteadyState(utf8Writer, discardStream, i, boxedInt, boxedLong);
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20_000; i++) {
+            writeSteadyState(textWriter, discardWriter, i, boxedInt, boxedLong);
+            writeSteadyState(utf8Writer, discardStream, i, boxedInt, boxedLong);
+        }
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        // a few bytes per message would add up to megabytes over the 40k messages:
+        assertTrue("allocated: " + allocated, allocated < 16 * 1024);
+    }
+
+    private static void writeSteadyState(XMLWriter xw, Object out, int i, Integer boxedInt, Long boxedLong) {
+        if (out instanceof Writer) {
+            xw.reset((Writer) out);
+        } else {
+            xw.reset((OutputStream) out);
+        }
+        xw.writeInt(i);
+        xw.writeInt(-i);
+        xw.writeLong(i * 1_000_000_007L);
+        xw.writeShort((short) i);
+        xw.writeByte((byte) i);
+        xw.writeBoolean((i & 1) == 0);
+        xw.writeString("plain text");
+        xw.writeString("escaped <text> & \"quotes\"");
+        xw.write(boxedInt);
+        xw.write(boxedLong);
+        xw.flush();
+    }
+
+    @Test
+    public void testIdentityTable() {
+        final IdentityTable table = new IdentityTable();
+        for (int round = 0; round < 40; round++) {
+            // a spike every 20 rounds, which is shrunk after:
+            final Object[] keys = new Object[round % 20 == 0 ? 100_000 : 10];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = new Object();
+                assertEquals(0, table.get(keys[i]));
+                assertEquals(i + 1, table.add(keys[i]));
+                if (i % 3 == 0) {
+                    table.mark(i + 1, -1 - i);
+                }
+            }
+            assertEquals(keys.length, table.size());
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(i + 1, table.get(keys[i]));
+                assertEquals(i % 3 == 0 ? -1 - i : 0, table.markOf(i + 1));
+            }
+            assertEquals(0, table.get(new Object()));
+            table.clear();
+            assertEquals(0, table.size());
+            assertEquals(0, table.get(keys[0]));
+            assertEquals(1, table.add(keys[0]));
+            assertEquals(0, table.markOf(1));
+            table.clear();
+        }
+    }
+
+    @Test
+    public void testSharedReferencesAcrossRoots() {
+        final PersonDTO shared = new PersonDTO(1, "shared", null);
+        final StringWriter sw = new StringWriter();
+        final XMLWriter xw = new XMLWriter(sw);
+        final List<Object> big = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            big.add(new Object[]{shared, i});
+        }
+        xw.write(big.toArray());
+        xw.flush();
+        for (int i = 0; i < 20; i++) { // small graphs after the big one, ids restarting from 1:
+            xw.reset(sw);
+            xw.write(new Object[]{shared, shared});
+            xw.flush();
+        }
+        xw.close();
+        assertTrue(sw.toString().endsWith("<object idref=\"2\"/></array></easyml>"));
+    }
+
+    @Test
+    public void testCompactIds() {
+        final PersonDTO shared = new PersonDTO(1, "shared", null);
+        final Object[] cyclic = new Object[2];
+        cyclic[0] = cyclic;
+        cyclic[1] = new PersonDTO(2, "unshared", null);
+        final StringWriter sw = new StringWriter();
+        final XMLWriter xw = new XMLWriter(sw);
+        xw.setCompactIds(true);
+        xw.write(new Object[]{shared, new PersonDTO(3, "unshared", null), shared});
+        xw.write(cyclic);
+        xw.writeInt(7);
+        xw.write(shared); // shared across values.
+        xw.close();
+        final String xml = sw.toString();
+        assertEquals(2, xml.split(" id=").length - 1);
+        assertEquals(3, xml.split(" idref=").length - 1);
+        assertTrue(xml.contains("<array id=\"2\""));
+
+        final XMLReader xr = new XMLReader(new StringReader(xml));
+        xr.setCompactIds(true);
+        final Object[] first = (Object[]) xr.read();
+        assertEquals(shared, first[0]);
+        assertSame(first[0], first[2]);
+        assertNotSame(first[0], first[1]);
+        final Object[] second = (Object[]) xr.read();
+        assertSame(second, second[0]);
+        assertEquals(cyclic[1], second[1]);
+        assertEquals(7, xr.readInt());
+        assertSame(first[0], xr.read());
+        xr.close();
+    }
+
+    @Test
+    public void testCompactIdsRecordingBound() {
+        final Object[] large = new Object[XMLWriterRecordingDriver.MAX_RECORDED / 4];
+        for (int i = 0; i < large.length - 1; i++) {
+            large[i] = new PersonDTO(i, "fn", null);
+        }
+        large[large.length - 1] = large[0]; // referenced beyond the bound.
+        final StringWriter sw = new StringWriter();
+        final XMLWriter xw = new XMLWriter(sw);
+        xw.setCompactIds(true);
+        xw.write(large);
+        assertTrue(sw.getBuffer().length() > 0); // written through, beyond the bound.
+        xw.write(new Object[]{large[1], large[1]}); // same scope: all ids.
+        xw.close();
+        final String xml = sw.toString();
+        assertEquals(large.length + 1, xml.split(" id=").length - 1);
+
+        final XMLReader xr = new XMLReader(new StringReader(xml));
+        xr.setCompactIds(true);
+        final Object[] actual = (Object[]) xr.read();
+        assertEquals(large.length, actual.length);
+        assertEquals(large[1], actual[1]);
+        assertSame(actual[0], actual[large.length - 1]);
+        final Object[] second = (Object[]) xr.read();
+        assertSame(actual[1], second[0]);
+        assertSame(actual[1], second[1]);
+        xr.close();
+    }
+
+    @Test
+    public void testCompactIdsRecordingValidation() {
+        final XMLWriter xw = new XMLWriter(new StringWriter());
+        final XMLWriterRecordingDriver recorder = new XMLWriterRecordingDriver(xw);
+        recorder.record(new XMLWriterTextDriver(xw, new StringWriter()));
+        try {
+            recorder.endElement();
+            fail("element end at initial state");
+        } catch (IllegalStateException expectedX) {
+        }
+        recorder.startElement("a");
+        try {
+            recorder.setAttribute("b c", "d");
+            fail("illegal attribute name");
+        } catch (IllegalArgumentException expectedX) {
+        }
+        recorder.writeValue("v");
+        try {
+            recorder.setAttribute("b", "c");
+            fail("attribute after value");
+        } catch (IllegalStateException expectedX) {
+        }
+        try {
+            recorder.writeValue(1);
+            fail("second value");
+        } catch (IllegalStateException expectedX) {
+        }
+        try {
+            recorder.startElement("e");
+            fail("element start after value");
+        } catch (IllegalStateException expectedX) {
+        }
+        recorder.endElement();
+        recorder.clear();
+    }
+
+    @Test
+    public void testReferenceScope() {
+        for (int scope = 1; scope <= 3; scope++) {
+            final PersonDTO acrossScopes = new PersonDTO(0, "across", null);
+            final StringWriter sw = new StringWriter();
+            final XMLWriter xw = new XMLWriter(sw);
+            xw.setReferenceScope(scope);
+            for (int i = 0; i < 12; i++) {
+                final PersonDTO withinValue = new PersonDTO(i, "within", null);
+                xw.write(new Object[]{withinValue, withinValue, acrossScopes});
+            }
+            xw.close();
+            final String xml = sw.toString();
+            // ids restart at each scope:
+            assertEquals(12 / scope, xml.split(" id=\"1\"").length - 1);
+
+            final XMLReader xr = new XMLReader(new StringReader(xml));
+            xr.setReferenceScope(scope);
+            Object lastAcross = null;
+            for (int i = 0; i < 12; i++) {
+                final Object[] value = (Object[]) xr.read();
+                assertEquals(new PersonDTO(i, "within", null), value[0]);
+                assertSame(value[0], value[1]);
+                assertEquals(acrossScopes, value[2]);
+                if (i % scope == 0) {
+                    assertNotSame(lastAcross, value[2]);
+                } else {
+                    assertSame(lastAcross, value[2]);
+                }
+                lastAcross = value[2];
+            }
+            xr.close();
+            // the scope is recorded on the root, and checked by the reader:
+            assertTrue(xml.contains(" scope=\"" + scope + "\""));
+            try {
+                new XMLReader(new StringReader(xml)).read();
+                fail("reference scope mismatch");
+            } catch (InvalidFormatException expectedX) {
+            }
+        }
+    }
+
+    @Test
+    public void testStAXCarriageReturns() throws Exception {
+        final String text = "a\rb";
+        // element text, via a caller-supplied stream writer:
+        final StringWriter sw = new StringWriter();
+        final XMLStreamWriter xsw = XMLOutputFactory.newFactory().createXMLStreamWriter(sw);
+        final XMLWriter xw = new XMLWriter(xsw);
+        xw.writeString(text);
+        xw.write(new String[]{text, "\r", "\r\n\r"});
+        xw.flush();
+        xsw.close();
+        assertFalse(sw.toString().contains("\r"));
+        final XMLReader xr = new XMLReader(new StringReader(sw.toString()));
+        assertEquals(text, xr.readString());
+        assertArrayEquals(new Object[]{text, "\r", "\r\n\r"}, (Object[]) xr.read());
+        xr.close();
+
+        // element text and attribute values, via EasyML-created stream writers:
+        final EasyML easyml = new EasyMLBuilder()
+                .withXMLOutputFactory(XMLOutputFactory.newFactory())
+                .withXMLInputFactory(XMLInputFactory.newFactory())
+                .build();
+        final Properties expected = new Properties();
+        expected.setProperty(text, text); // written as attributes.
+        final Object[] graph = {text, expected};
+        final String xml = easyml.serialize(graph);
+        assertFalse(xml.contains("\r"));
+        assertArrayEquals(graph, (Object[]) easyml.deserialize(xml));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        easyml.serialize(graph, out);
+        assertArrayEquals(graph, (Object[]) easyml.deserialize(new ByteArrayInputStream(out.toByteArray())));
+        assertArrayEquals(graph, (Object[]) new EasyML().deserialize(xml));
+    }
 }
@@ -278,6 +278,28 @@ public class VariousTypesTest {
         xis.close();
     }
 
+    @Test
+    public void testRecordStrategyPrimitiveComponents() {
+        final MyPoint[] expected = {new MyPoint(1, 2.5, 'x'), new MyPoint(-3, 0.0, 'y')};
+
+        final XMLWriter xos = new XMLWriter(this.out);
+        xos.getCompositeStrategies().add(RecordStrategy.INSTANCE);
+        xos.write(expected);
+        xos.close();
+
+        System.out.println(this.out);
+
+        final XMLReader xis = new XMLReader(new ByteArrayInputStream(this.out.toByteArray()));
+        xis.getCompositeStrategies().put(RecordStrategy.INSTANCE.name(), RecordStrategy.INSTANCE);
+        final Object[] actual = (Object[]) xis.read();
+        xis.close();
+        assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+        assertEquals(3, RecordStrategy.INSTANCE.codecFor(MyPoint.class).componentCount());
+    }
+
+    public record MyPoint(int x, double y, char label) {
+    }
+
     public record MyRecord(
             Optional<String> name,
             Date theDate) {
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 Victor Cordis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Please contact the author ( cordis.victor@gmail.com ) if you need additional
+ * information or have any questions.
+ */
+package net.sourceforge.easyml.processing;
+
+import net.sourceforge.easyml.EasyML;
+import net.sourceforge.easyml.EasyMLBuilder;
+import net.sourceforge.easyml.marshalling.CompositeStrategy;
+import org.junit.Test;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Victor Cordis ( cordis.victor at gmail.com)
+ */
+public class StrategyProcessorTest {
+
+    private static final String BASE = "package gen;\n"
+            + "public class Base {\n"
+            + "    int id;\n"
+            + "    private String note = \"base\";\n"
+            + "    public String getNote() { return note; }\n"
+            + "    public void setNote(String note) { this.note = note; }\n"
+            + "}\n";
+    private static final String POINT = "package gen;\n"
+            + "@net.sourceforge.easyml.processing.GenerateStrategy\n"
+            + "public class Point extends Base {\n"
+            + "    int x;\n"
+            + "    Integer y = 7;\n"
+            + "    double w;\n"
+            + "    char c = 'c';\n"
+            + "    private boolean visible = true;\n"
+            + "    java.util.List<String> tags;\n"
+            + "    Object[] extra;\n"
+            + "    public Point() {}\n"
+            + "    public boolean isVisible() { return visible; }\n"
+            + "    public void setVisible(boolean visible) { this.visible = visible; }\n"
+            + "}\n";
+    private static final String PAIR = "package gen;\n"
+            + "@net.sourceforge.easyml.processing.GenerateStrategy\n"
+            + "public record Pair(int a, String b, long c, char d, boolean e, Point p) {}\n";
+    private static final String FIXTURE = "package gen;\n"
+            + "public class Fixture {\n"
+            + "    public static Object sample() {\n"
+            + "        final java.util.List<Object> ret = new java.util.ArrayList<>();\n"
+            + "        for (int i = 0; i < 5; i++) {\n"
+            + "            final Point p = new Point();\n"
+            + "            p.id = i;\n"
+            + "            p.x = i * 2;\n"
+            + "            p.y = i % 2 == 0 ? null : i;\n"
+            + "            p.w = i / 3.0;\n"
+            + "            p.c = (char) ('a' + i);\n"
+            + "            p.setVisible(i % 2 == 0);\n"
+            + "            p.setNote(i == 1 ? null : \"note\" + i);\n"
+            + "            p.tags = new java.util.ArrayList<>(java.util.List.of(\"t\" + i));\n"
+            + "            p.extra = i == 0 ? null : new Object[]{i, \"e\"};\n"
+            + "            ret.add(p);\n"
+            + "            ret.add(new Pair(i, i == 2 ? null : \"b\" + i, -i, 'z', i == 3, p));\n"
+            + "        }\n"
+            + "        return ret;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static List<Diagnostic<? extends JavaFileObject>> compile(Path dir, String... sources) throws IOException {
+        final List<File> files = new ArrayList<>();
+        for (String source : sources) {
+            final String name = source.split("(class|record) ")[1].split("[ (]")[0];
+            final Path file = dir.resolve("gen").resolve(name + ".java");
+            Files.createDirectories(file.getParent());
+            Files.write(file, source.getBytes("UTF-8"));
+            files.add(file.toFile());
+        }
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, null)) {
+            compiler.getTask(null, fm, diagnostics,
+                    Arrays.asList("-d", dir.toString(), "-s", dir.toString(),
+                            "-classpath", System.getProperty("java.class.path"),
+                            "-processor", StrategyProcessor.class.getName()),
+                    null, fm.getJavaFileObjectsFromFiles(files)).call();
+        }
+        final List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(d);
+            }
+        }
+        return errors;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testGeneratedStrategiesMatchReflection() throws Exception {
+        final Path dir = Files.createTempDirectory("easyml-gen");
+        try {
+            this.assertGeneratedStrategiesMatchReflection(dir);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private void assertGeneratedStrategiesMatchReflection(Path dir) throws Exception {
+        assertEquals(new ArrayList<>(), compile(dir, BASE, POINT, PAIR, FIXTURE));
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+            final Class point = loader.loadClass("gen.Point");
+            final Class pair = loader.loadClass("gen.Pair");
+            final CompositeStrategy pointStrategy = (CompositeStrategy) loader.loadClass("gen.PointStrategy").getField("INSTANCE").get(null);
+            final CompositeStrategy pairStrategy = (CompositeStrategy) loader.loadClass("gen.PairStrategy").getField("INSTANCE").get(null);
+            final Object sample = loader.loadClass("gen.Fixture").getMethod("sample").invoke(null);
+
+            for (EasyML.Style style : new EasyML.Style[]{EasyML.Style.FAST, EasyML.Style.PRETTY}) {
+                final EasyML reflective = new EasyMLBuilder().withStyle(style)
+                        .withAlias(point, "point").withAlias(pair, "pair").build();
+                final EasyML generated = new EasyMLBuilder().withStyle(style)
+                        .withAlias(point, "point").withAlias(pair, "pair")
+                        .withStrategy(pointStrategy).withStrategy(pairStrategy).build();
+
+                final String expected = reflective.serialize(sample);
+                assertEquals(expected, generated.serialize(sample));
+                assertEquals(expected, reflective.serialize(generated.deserialize(expected)));
+            }
+        }
+    }
+
+    @Test
+    public void testInaccessibleFieldFails() throws Exception {
+        final Path dir = Files.createTempDirectory("easyml-gen");
+        final List<Diagnostic<? extends JavaFileObject>> errors;
+        try {
+            errors = compile(dir, "package gen;\n"
+                    + "@net.sourceforge.easyml.processing.GenerateStrategy\n"
+                    + "public class Hidden {\n"
+                    + "    private int secret;\n"
+                    + "}\n");
+        } finally {
+            delete(dir);
+        }
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getMessage(null).contains("Hidden.secret"));
+    }
+}
@@ -43,6 +43,16 @@ public class XMLUtilTest {
         assertFalse(XMLUtil.isLegalXMLTag("_easyml"));
     }
 
+    @Test
+    public void testIsLegalXMLName() {
+        assertTrue(XMLUtil.isLegalXMLName("easyml"));
+        assertTrue(XMLUtil.isLegalXMLName("this.sup"));
+        assertTrue(XMLUtil.isLegalXMLName("a_-_b"));
+        assertFalse(XMLUtil.isLegalXMLName("3easyml"));
+        assertFalse(XMLUtil.isLegalXMLName("a$b"));
+        assertFalse(XMLUtil.isLegalXMLName("a b"));
+    }
+
     @Test
     public void testEscapeXML_String_legal() {
         final String expected = "legal text";